@@ -126,8 +126,7 @@ public class AgendaController {
     /**
      * Configura las citas para el usuario especificado.
      * Inicializa la lista de citas y configura el DatePicker para resaltar los días
-     * que tienen citas programadas. También establece un listener para cuando
-     * cambia la fecha seleccionada en el DatePicker.
+     * que tienen citas programadas.
      * @param usuario El usuario para el cual se cargarán las citas.
      */
     public void setCitas(Usuario usuario) {
@@ -166,11 +165,6 @@ public class AgendaController {
             // Asigna la CellFactory al DatePicker
             fechaDatePicker.setDayCellFactory(dayCellFactory);
         }
-
-        // cuando cambia la fecha en la agenda
-        fechaDatePicker.valueProperty().addListener((observable, oldValue, newValue) -> {
-            this.setCitasDia(this.usuario, newValue);
-        });
     }
 
     /**
@@ -196,7 +190,8 @@ public class AgendaController {
     /**
      * Método de inicialización llamado automáticamente después de que los campos FXML han sido inyectados.
      * Configura las fábricas de celdas (cell value factories) para las columnas del TableView,
-     * enlazando las propiedades de los objetos Cita con las columnas correspondientes.
+     * enlazando las propiedades de los objetos Cita con las columnas correspondientes, y el
+     * listener que carga las citas del día cuando cambia la fecha seleccionada en el DatePicker.
      */
     public void initialize() {
         // columnas TableView
@@ -204,6 +199,11 @@ public class AgendaController {
         this.horaTableColumn.setCellValueFactory(new PropertyValueFactory("hora"));
         this.animalTableColumn.setCellValueFactory(new PropertyValueFactory("nombreAnimal"));
         this.motivoTableColumn.setCellValueFactory(new PropertyValueFactory("motivo"));
+
+        // cuando cambia la fecha en la agenda (se registra una sola vez, porque la vista se reutiliza)
+        fechaDatePicker.valueProperty().addListener((observable, oldValue, newValue) -> {
+            this.setCitasDia(this.usuario, newValue);
+        });
     }
 
     /**
@@ -229,7 +229,7 @@ public class AgendaController {
 
             nuevaVentana.setTitle("Modificar cita");
 
-            Image logo = new Image(getClass().getResource("/images/logo-app.png").toExternalForm());
+            Image logo = CacheImagenes.getInstancia().recurso("/images/logo-app.png");
             nuevaVentana.getIcons().add(logo);
 
             nuevaVentana.setScene(scene);
@@ -348,7 +348,7 @@ public class AgendaController {
 
         nuevaVentana.setTitle("Añadir nueva cita");
 
-        Image logo = new Image(getClass().getResource("/images/logo-app.png").toExternalForm());
+        Image logo = CacheImagenes.getInstancia().recurso("/images/logo-app.png");
         nuevaVentana.getIcons().add(logo);
 
         nuevaVentana.setScene(scene);
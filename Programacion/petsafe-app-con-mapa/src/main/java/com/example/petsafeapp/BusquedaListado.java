@@ -0,0 +1,150 @@
+package com.example.petsafeapp;
+
+import javafx.application.Platform;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.scene.control.Alert;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import model.BuscadorTexto;
+import model.ElementoBuscable;
+import model.FilaListado;
+import model.IndiceEspacial;
+import model.ServicioCercano;
+import model.ServiciosCercanos;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Búsquedas de las pantallas de listado de servicios (locales, veterinarios y protectoras): por texto
+ * con el {@link BuscadorTexto} y por cercanía a una dirección con {@link ServiciosCercanos}.
+ * <p>
+ * Los resultados se muestran con {@link ListaPaginada#mostrarSeleccion}, así que la geocodificación
+ * de la dirección, la búsqueda en los índices y la lectura de las filas se hacen en segundo plano; si
+ * el usuario vuelve a buscar antes de que terminen, el resultado anterior se descarta.
+ * </p>
+ */
+public class BusquedaListado {
+
+    private final ListaPaginada<FilaListado> lista;
+    private final TableView<FilaListado> tabla;
+    private final TableColumn<FilaListado, String> distanciaColumn;
+    private final ServicioCercano.Categoria categoriaCercanos;
+    private final ElementoBuscable.Categoria categoriaTexto;
+    private final Function<List<Integer>, List<FilaListado>> lector;
+
+    /**
+     * Distancia en kilómetros de cada elemento de la tabla (por su ID) a la última dirección buscada.
+     * Solo se usa desde el hilo de la interfaz.
+     */
+    private final Map<Integer, Double> distancias = new HashMap<>();
+
+    /**
+     * Asocia las búsquedas a una tabla de listado y configura su columna de distancia.
+     *
+     * @param lista La carga por páginas de la tabla.
+     * @param tabla La tabla.
+     * @param distanciaColumn Columna con la distancia a la dirección buscada; solo es visible tras una búsqueda por cercanía.
+     * @param categoriaCercanos Categoría de los servicios en la búsqueda por cercanía.
+     * @param categoriaTexto Categoría de los elementos en la búsqueda por texto.
+     * @param lector Lee las filas con los IDs indicados, o devuelve {@code null} si ocurre un error.
+     */
+    public BusquedaListado(ListaPaginada<FilaListado> lista, TableView<FilaListado> tabla,
+                           TableColumn<FilaListado, String> distanciaColumn, ServicioCercano.Categoria categoriaCercanos,
+                           ElementoBuscable.Categoria categoriaTexto, Function<List<Integer>, List<FilaListado>> lector) {
+        this.lista = lista;
+        this.tabla = tabla;
+        this.distanciaColumn = distanciaColumn;
+        this.categoriaCercanos = categoriaCercanos;
+        this.categoriaTexto = categoriaTexto;
+        this.lector = lector;
+
+        distanciaColumn.setCellValueFactory(celda -> new SimpleStringProperty(formatearDistancia(celda.getValue().id())));
+    }
+
+    /**
+     * Muestra en la tabla los servicios más cercanos a una dirección, ordenados por distancia y con la
+     * columna de distancia visible. Si la dirección está vacía, vuelve a mostrar la lista completa; si
+     * no se encuentra, avisa al usuario y la tabla no cambia.
+     *
+     * @param direccion La dirección escrita por el usuario.
+     */
+    public void buscarCercanos(String direccion) {
+        if (direccion == null || direccion.isBlank()) {
+            quitarDistancias();
+            lista.mostrar();
+            return;
+        }
+
+        // Se rellena en el hilo de lectura y se lee en el de la interfaz, después de mostrarSeleccion
+        Map<Integer, Double> nuevas = new HashMap<>();
+        lista.mostrarSeleccion(() -> {
+            ServiciosCercanos servicios = ServiciosCercanos.getInstancia();
+            servicios.refrescar();
+            List<IndiceEspacial.Resultado<ServicioCercano>> cercanos =
+                    servicios.buscarCercanos(direccion, ServiciosCercanos.RESULTADOS_POR_DEFECTO, categoriaCercanos);
+            if (cercanos == null) {
+                Platform.runLater(BusquedaListado::avisarDireccionNoEncontrada);
+                return null;
+            }
+            List<Integer> ids = new ArrayList<>();
+            for (IndiceEspacial.Resultado<ServicioCercano> r : cercanos) {
+                ids.add(r.getValor().getId());
+                nuevas.put(r.getValor().getId(), r.getDistanciaKm());
+            }
+            return ids;
+        }, lector, () -> {
+            distancias.clear();
+            distancias.putAll(nuevas);
+            distanciaColumn.setVisible(true);
+            tabla.refresh();
+        });
+    }
+
+    /**
+     * Muestra en la tabla los elementos cuyo nombre o descripción contienen el texto escrito, de
+     * mejor a peor coincidencia. Si el texto está vacío vuelve a mostrar la lista completa.
+     *
+     * @param texto El texto escrito.
+     */
+    public void buscarTexto(String texto) {
+        quitarDistancias();
+        if (texto == null || texto.isBlank()) {
+            lista.mostrar();
+            return;
+        }
+        lista.mostrarSeleccion(
+                () -> BuscadorTexto.getInstancia().buscarIds(texto, BuscadorTexto.RESULTADOS_POR_DEFECTO, categoriaTexto),
+                lector);
+    }
+
+    /**
+     * Olvida las distancias de la última búsqueda por cercanía y oculta su columna.
+     */
+    public void quitarDistancias() {
+        distancias.clear();
+        distanciaColumn.setVisible(false);
+    }
+
+    /**
+     * Devuelve la distancia a la última dirección buscada con un decimal, o una cadena vacía si no se conoce.
+     *
+     * @param id El ID del elemento de la tabla.
+     * @return La distancia formateada.
+     */
+    private String formatearDistancia(int id) {
+        Double distancia = distancias.get(id);
+        return distancia == null ? "" : String.format("%.1f", distancia);
+    }
+
+    private static void avisarDireccionNoEncontrada() {
+        Alert alertaError = new Alert(Alert.AlertType.ERROR);
+        alertaError.setTitle("ERROR");
+        alertaError.setHeaderText("No se ha encontrado la dirección");
+        alertaError.setContentText("Comprueba que la dirección tenga el formato: calle, número, ciudad");
+        alertaError.showAndWait();
+    }
+}
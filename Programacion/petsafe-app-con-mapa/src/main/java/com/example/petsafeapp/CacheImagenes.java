@@ -0,0 +1,178 @@
+package com.example.petsafeapp;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.stage.Screen;
+
+import java.io.File;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Caché de imágenes compartida por todas las pantallas.
+ * <p>
+ * Las fotos de negocios, protectoras y usuarios se decodifican en segundo plano (con la carga en
+ * segundo plano de {@link Image}) y al tamaño con el que se van a mostrar, no a su resolución
+ * completa, así que abrir una pantalla no bloquea el hilo de JavaFX. Los iconos de
+ * {@code /images} son pequeños y se cargan una sola vez.
+ * </p>
+ * <p>
+ * Las imágenes se guardan por archivo (o recurso) y tamaño, de menos a más usada, y cuando ocupan
+ * más de {@value #MEGAS_POR_DEFECTO} MB (o los indicados en la propiedad del sistema
+ * {@value #PROPIEDAD_MEGAS}) se descartan las menos usadas. Dos peticiones de la misma imagen,
+ * aunque la primera aún no haya terminado de cargarse, devuelven el mismo objeto {@link Image},
+ * que se decodifica una sola vez.
+ * </p>
+ */
+public class CacheImagenes {
+
+    /**
+     * Propiedad del sistema con el tamaño máximo de la caché, en MB.
+     */
+    public static final String PROPIEDAD_MEGAS = "petsafe.cacheImagenes.mb";
+
+    /**
+     * Tamaño máximo de la caché, en MB, si no se indica otro.
+     */
+    public static final int MEGAS_POR_DEFECTO = 64;
+
+    private static final CacheImagenes instancia = new CacheImagenes(
+            Long.getLong(PROPIEDAD_MEGAS, MEGAS_POR_DEFECTO) * 1024 * 1024);
+
+    /**
+     * Imagen guardada con los bytes que ocupa decodificada.
+     */
+    private static final class Entrada {
+        final Image imagen;
+        final long bytes;
+
+        Entrada(Image imagen, long bytes) {
+            this.imagen = imagen;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * Imágenes por clave, de menos a más usada.
+     */
+    private final LinkedHashMap<String, Entrada> imagenes = new LinkedHashMap<>(64, 0.75f, true);
+
+    private final long maxBytes;
+    private long bytes;
+
+    private CacheImagenes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Devuelve la caché compartida.
+     *
+     * @return La instancia compartida.
+     */
+    public static CacheImagenes getInstancia() {
+        return instancia;
+    }
+
+    /**
+     * Devuelve una imagen de los recursos de la aplicación (por ejemplo {@code /images/carta.png})
+     * a su tamaño original. Se carga la primera vez que se pide.
+     *
+     * @param ruta La ruta del recurso.
+     * @return La imagen, ya cargada.
+     */
+    public synchronized Image recurso(String ruta) {
+        Entrada entrada = imagenes.get(ruta);
+        if (entrada == null) {
+            URL url = CacheImagenes.class.getResource(ruta);
+            Image imagen = new Image(url.toExternalForm());
+            entrada = guardar(ruta, imagen, bytes(imagen.getWidth(), imagen.getHeight()));
+        }
+        return entrada.imagen;
+    }
+
+    /**
+     * Devuelve la imagen de un archivo reducida para caber en un rectángulo, manteniendo la
+     * proporción. La imagen se decodifica en segundo plano: hasta que termina no se ve, pero ya se
+     * puede poner en un {@link ImageView}.
+     *
+     * @param archivo El archivo de la imagen.
+     * @param ancho Ancho máximo, en píxeles.
+     * @param alto Alto máximo, en píxeles.
+     * @return La imagen, que puede estar todavía cargándose.
+     */
+    public synchronized Image archivo(File archivo, double ancho, double alto) {
+        // La fecha de modificación cambia si se reemplaza el archivo, y con ella la clave
+        String clave = archivo.toURI() + "@" + archivo.lastModified() + ":" + Math.round(ancho) + "x" + Math.round(alto);
+        Entrada entrada = imagenes.get(clave);
+        if (entrada == null) {
+            Image imagen = new Image(archivo.toURI().toString(), ancho, alto, true, true, true);
+            // Si no se puede leer, se descarta para volver a intentarlo la próxima vez
+            imagen.errorProperty().addListener((obs, antes, error) -> {
+                if (error) {
+                    descartar(clave, imagen);
+                }
+            });
+            entrada = guardar(clave, imagen, bytes(ancho, alto));
+        }
+        return entrada.imagen;
+    }
+
+    /**
+     * Muestra la imagen de un archivo en un {@link ImageView}, decodificada al tamaño con el que
+     * se ve (su {@code fitWidth} y {@code fitHeight}, multiplicados por la escala de la pantalla).
+     *
+     * @param vista El {@link ImageView}.
+     * @param archivo El archivo de la imagen.
+     */
+    public void mostrar(ImageView vista, File archivo) {
+        double escala = Screen.getPrimary().getOutputScaleX();
+        vista.setImage(archivo(archivo, vista.getFitWidth() * escala, vista.getFitHeight() * escala));
+    }
+
+    /**
+     * Descarta todas las imágenes guardadas.
+     */
+    public synchronized void vaciar() {
+        imagenes.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Memoria que ocupan las imágenes guardadas.
+     *
+     * @return Los bytes ocupados, aproximadamente.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    private Entrada guardar(String clave, Image imagen, long tamano) {
+        Entrada entrada = new Entrada(imagen, tamano);
+        imagenes.put(clave, entrada);
+        bytes += tamano;
+
+        // Se descartan las menos usadas, salvo la que se acaba de pedir
+        Iterator<Entrada> menosUsadas = imagenes.values().iterator();
+        while (bytes > maxBytes && imagenes.size() > 1) {
+            bytes -= menosUsadas.next().bytes;
+            menosUsadas.remove();
+        }
+        return entrada;
+    }
+
+    private synchronized void descartar(String clave, Image imagen) {
+        Entrada entrada = imagenes.get(clave);
+        if (entrada != null && entrada.imagen == imagen) {
+            imagenes.remove(clave);
+            bytes -= entrada.bytes;
+        }
+    }
+
+    /**
+     * Bytes de una imagen decodificada (4 por píxel).
+     */
+    private static long bytes(double ancho, double alto) {
+        return Math.max(1, Math.round(ancho)) * Math.max(1, Math.round(alto)) * 4;
+    }
+}
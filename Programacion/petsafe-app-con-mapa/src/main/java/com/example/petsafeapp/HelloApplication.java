@@ -12,14 +12,43 @@
 package com.example.petsafeapp;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
-import javafx.scene.image.Image;
+import javafx.scene.control.Alert;
 import javafx.stage.Stage;
+import model.Migraciones;
+import model.ServidorImagenes;
 
 import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
 
 public class HelloApplication extends Application {
+
+    /**
+     * Propiedad del sistema que activa el modo de entrenamiento: la aplicación inicia sesión sola
+     * con las credenciales de {@value #PROPIEDAD_EMAIL} y {@value #PROPIEDAD_CONTRASENA}, espera a que
+     * el mapa esté listo y se cierra. Lo usa el perfil {@code arranque-rapido} de Maven para generar
+     * el archivo CDS con las clases que se cargan en un arranque real.
+     */
+    public static final String PROPIEDAD_ENTRENAMIENTO = "petsafe.entrenamiento";
+
+    /**
+     * Propiedad del sistema con el correo del usuario del modo de entrenamiento.
+     */
+    public static final String PROPIEDAD_EMAIL = "petsafe.entrenamiento.email";
+
+    /**
+     * Propiedad del sistema con la contraseña del usuario del modo de entrenamiento.
+     */
+    public static final String PROPIEDAD_CONTRASENA = "petsafe.entrenamiento.contrasena";
+
+    /**
+     * Segundos que espera como mucho el modo de entrenamiento antes de cerrar la aplicación,
+     * por si el inicio de sesión falla o el mapa no llega a cargar.
+     */
+    private static final long LIMITE_ENTRENAMIENTO_SEGUNDOS = 120;
     
     /**
      * Método principal que inicia la aplicación JavaFX.
@@ -27,7 +56,14 @@ public class HelloApplication extends Application {
      * @param args Argumentos de línea de comandos (no utilizados en esta aplicación).
      */
     public static void main(String[] args) {
+        TiempoArranque.marcar(TiempoArranque.Hito.MAIN);
+        // Antes de crear ningún WebView, para que el mapa pueda pedir las fotos con petsafe-img://
+        ServidorImagenes.registrar();
         launch();
+        if (Boolean.getBoolean(PROPIEDAD_ENTRENAMIENTO)) {
+            // Cierra la JVM aunque quede algún hilo vivo, para que escriba el archivo CDS
+            System.exit(0);
+        }
     }
 
     /**
@@ -46,15 +82,104 @@ public class HelloApplication extends Application {
      */
     @Override
     public void start(Stage stage) throws IOException {
+        // Las migraciones se aplican al desplegar; aquí solo se comprueba que no falte ninguna
+        comprobarEsquema();
+
         FXMLLoader fxmlLoader = new FXMLLoader(HelloApplication.class.getResource("inicioSesion-view.fxml"));
         Scene scene = new Scene(fxmlLoader.load(), 411, 700);
         stage.setTitle("PetSafe");
 
         // Carga el icono de la aplicación desde los recursos
-        Image logo = new Image(getClass().getResource("/images/logo-app.png").toExternalForm());
-        stage.getIcons().add(logo);
+        stage.getIcons().add(CacheImagenes.getInstancia().recurso("/images/logo-app.png"));
 
         stage.setScene(scene);
+
+        // Primer pulso tras mostrar la ventana: ya está pintada. Lo siguiente que procese el hilo
+        // de JavaFX ya puede ser la entrada del usuario.
+        Runnable primerFrame = new Runnable() {
+            @Override
+            public void run() {
+                scene.removePostLayoutPulseListener(this);
+                TiempoArranque.marcar(TiempoArranque.Hito.PRIMER_FRAME);
+                Platform.runLater(() -> TiempoArranque.marcar(TiempoArranque.Hito.LOGIN_INTERACTIVO));
+            }
+        };
+        scene.addPostLayoutPulseListener(primerFrame);
+
+        if (Boolean.getBoolean(PROPIEDAD_ENTRENAMIENTO)) {
+            iniciarEntrenamiento(fxmlLoader.getController());
+        }
+
         stage.show();
+
+        // Mientras el usuario escribe sus credenciales, preparación de lo que necesitará el mapa
+        Precalentador.iniciar();
+    }
+
+    /**
+     * Comprueba en segundo plano que la base de datos tiene todas las migraciones que necesita esta
+     * versión (ver {@link Migraciones#comprobarVersion()}). Si falta alguna, avisa al usuario y cierra
+     * la aplicación; si no se puede conectar, no hace nada y el error se verá al iniciar sesión.
+     */
+    private void comprobarEsquema() {
+        Thread hilo = new Thread(() -> {
+            List<String> pendientes;
+            try {
+                pendientes = new Migraciones().comprobarVersion();
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return;
+            }
+            if (pendientes.isEmpty()) {
+                return;
+            }
+            System.err.println("Faltan migraciones en la base de datos: " + pendientes);
+            Platform.runLater(() -> {
+                Alert alerta = new Alert(Alert.AlertType.ERROR);
+                alerta.setTitle("ERROR");
+                alerta.setHeaderText("La base de datos no está actualizada");
+                alerta.setContentText("Faltan " + pendientes.size() + " cambios de esquema (" + pendientes.get(0)
+                        + "...). Hay que aplicarlos con mvn -Pmigraciones verify antes de usar esta versión.");
+                alerta.showAndWait();
+                Platform.exit();
+            });
+        }, "comprobar-esquema");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Prepara el modo de entrenamiento: en cuanto la pantalla de inicio de sesión es interactiva
+     * se inicia sesión con las credenciales indicadas, y al tener el mapa listo se cierra la aplicación
+     * para que la JVM escriba el archivo CDS. Sin credenciales se cierra tras la pantalla de inicio
+     * de sesión, con lo que el archivo solo cubre esa parte del arranque.
+     *
+     * @param inicioSesion Controlador de la pantalla de inicio de sesión.
+     */
+    private void iniciarEntrenamiento(InicioSesionController inicioSesion) {
+        String email = System.getProperty(PROPIEDAD_EMAIL);
+        String contrasena = System.getProperty(PROPIEDAD_CONTRASENA);
+        boolean conCredenciales = email != null && !email.isBlank() && contrasena != null;
+
+        TiempoArranque.setAlMarcar(() -> {
+            if (TiempoArranque.getMilisegundos(TiempoArranque.Hito.MAPA_LISTO) >= 0
+                    || (!conCredenciales && TiempoArranque.getMilisegundos(TiempoArranque.Hito.LOGIN_INTERACTIVO) >= 0)) {
+                Platform.runLater(Platform::exit);
+            } else if (conCredenciales && TiempoArranque.getMilisegundos(TiempoArranque.Hito.LOGIN_INTERACTIVO) >= 0) {
+                Platform.runLater(() -> inicioSesion.iniciarSesion(email, contrasena));
+            }
+        });
+
+        Thread limite = new Thread(() -> {
+            try {
+                Thread.sleep(LIMITE_ENTRENAMIENTO_SEGUNDOS * 1000);
+                System.err.println("Entrenamiento sin terminar tras " + LIMITE_ENTRENAMIENTO_SEGUNDOS + " s; se cierra la aplicación");
+                Platform.runLater(Platform::exit);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "limite-entrenamiento");
+        limite.setDaemon(true);
+        limite.start();
     }
 }
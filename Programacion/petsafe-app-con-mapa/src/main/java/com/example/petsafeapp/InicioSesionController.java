@@ -7,6 +7,7 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.control.*;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.VBox;
+import model.ReplicaLocal;
 import model.UsuarioModel;
 
 import java.io.IOException;
@@ -62,6 +63,19 @@ public class InicioSesionController {
         */
     }
 
+    /**
+     * Rellena las credenciales e inicia sesión como si el usuario hubiera pulsado el botón.
+     * Lo usa el modo de entrenamiento de {@link HelloApplication}.
+     *
+     * @param email Correo del usuario.
+     * @param contrasena Contraseña del usuario.
+     */
+    void iniciarSesion(String email, String contrasena) {
+        emailTextField.setText(email);
+        contraseñaPasswordField.setText(contrasena);
+        iniciarSesionButton.fire();
+    }
+
     /**
      * Maneja el evento de clic en el botón de inicio de sesión.
      * Valida las credenciales y navega a la pantalla principal si son correctas.
@@ -76,8 +90,9 @@ public class InicioSesionController {
         boolean inicioSesionValido = false;
 
         // POR AQUÍ SE VERIFICA SI EXISTE LA CUENTA Y SE CAMBIA EL VALOR DE LA VARIABLE "inicioSesionValido"
+        // (sin descargar la foto de perfil, que se carga en segundo plano desde la plantilla)
         UsuarioModel um = new UsuarioModel();
-        Usuario encontrado = um.getUsuarioConCredenciales(email, contrasena);
+        Usuario encontrado = um.autenticar(email, contrasena);
 
         if(encontrado != null)
             inicioSesionValido = true;
@@ -85,6 +100,9 @@ public class InicioSesionController {
         if(inicioSesionValido) {
             this.usuario = encontrado;
 
+            // Modo local (-Dpetsafe.localFirst=true): copia de los datos del usuario en disco
+            ReplicaLocal.iniciar(this.usuario.getId());
+
             // CAMBIO DE PANTALLA
             // la plantilla para las pantallas, donde se carga el mapa localizador por defecto
             FXMLLoader loader = new FXMLLoader(getClass().getResource("plantillaPantallas-view.fxml"));
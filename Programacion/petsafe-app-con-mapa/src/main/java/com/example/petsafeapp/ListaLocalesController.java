@@ -1,5 +1,6 @@
 package com.example.petsafeapp;
 
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -11,14 +12,18 @@ import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
-import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.control.TextField;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
+import model.FilaListado;
+import model.ElementoBuscable;
 import model.NegocioModel;
+import model.ServicioCercano;
 import model.TipoNegocioModel;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Collectors;
 
 /**
@@ -26,13 +31,13 @@ import java.util.stream.Collectors;
  * Permite visualizar los negocios (excluyendo un tipo específico, presumiblemente veterinarios)
  * y seleccionar uno para ver sus detalles.
  */
-public class ListaLocalesController {
+public class ListaLocalesController implements VistaRefrescable {
 
     /**
      * Columna de la tabla que muestra la información de contacto del negocio (e.g., email).
      */
     @javafx.fxml.FXML
-    private TableColumn contactoColumn;
+    private TableColumn<FilaListado, String> contactoColumn;
     /**
      * Panel principal que contiene la tabla de locales y donde se cargarán otras vistas
      * como la de detalles del negocio.
@@ -43,17 +48,17 @@ public class ListaLocalesController {
      * Columna de la tabla que muestra el nombre del negocio.
      */
     @javafx.fxml.FXML
-    private TableColumn nombreColumn;
+    private TableColumn<FilaListado, String> nombreColumn;
     /**
      * Tabla (TableView) que muestra la lista de negocios.
      */
     @javafx.fxml.FXML
-    private TableView listaTabla;
+    private TableView<FilaListado> listaTabla;
     /**
      * Columna de la tabla que muestra la dirección del negocio.
      */
     @javafx.fxml.FXML
-    private TableColumn direccionColumn;
+    private TableColumn<FilaListado, String> direccionColumn;
 
     /**
      * Etiqueta utilizada para mostrar el título de la pantalla actual.
@@ -76,7 +81,7 @@ public class ListaLocalesController {
      * Columna de la tabla que muestra el ID único del negocio.
      */
     @javafx.fxml.FXML
-    private TableColumn idColumn;
+    private TableColumn<FilaListado, Integer> idColumn;
     /**
      * Botón que, al ser presionado, muestra los detalles del negocio seleccionado en la tabla.
      * Se habilita cuando se selecciona un negocio.
@@ -85,43 +90,97 @@ public class ListaLocalesController {
     private Button verButton;
 
     /**
-     * Almacena la instancia del negocio ({@link Negocio}) que ha sido seleccionado
+     * Almacena la fila del negocio ({@link FilaListado}) que ha sido seleccionado
      * por el usuario en la {@link #listaTabla}.
      */
-    Negocio l ;
+    FilaListado l ;
+
+    /**
+     * Campo de texto para buscar los locales por nombre o descripción mientras se escribe.
+     */
+    @javafx.fxml.FXML
+    private TextField busquedaField;
+    /**
+     * Campo de texto con la dirección desde la que buscar los locales más cercanos.
+     */
+    @javafx.fxml.FXML
+    private TextField direccionBusquedaField;
+    /**
+     * Columna de la tabla que muestra la distancia en kilómetros a la dirección buscada.
+     * Solo es visible después de una búsqueda por cercanía.
+     */
+    @javafx.fxml.FXML
+    private TableColumn<FilaListado, String> distanciaColumn;
+
+    /**
+     * Carga por páginas de los locales, a medida que se desplaza la tabla.
+     */
+    private ListaPaginada<FilaListado> lista;
+    /**
+     * Búsquedas por texto y por cercanía sobre la tabla.
+     */
+    private BusquedaListado busqueda;
+    /**
+     * Nodos originales de {@link #localesTabla} (la tabla y sus controles), para restaurarlos
+     * si se estaba viendo la ficha de un local al volver a la pantalla.
+     */
+    private List<Node> contenidoTabla;
 
     /**
      * Método de inicialización invocado por JavaFX después de que todos los elementos
      * FXML han sido inyectados. Configura las columnas de la tabla {@link #listaTabla}
-     * para que muestren las propiedades correspondientes de los objetos {@link Negocio}.
-     * Carga todos los negocios desde el {@link NegocioModel} y filtra aquellos cuyo tipo
-     * de negocio no sea igual a 1 (presumiblemente veterinarios), añadiéndolos a la tabla.
+     * para que muestren los campos de las filas {@link FilaListado}.
+     * Muestra la primera página de los negocios cuyo tipo no es el de las veterinarias
+     * ({@link NegocioModel#TIPO_VETERINARIA}); el resto se carga al desplazar la tabla.
      * Captura y maneja excepciones que puedan ocurrir durante este proceso.
      */
     public void initialize() {
         try {
-
-            // Configurar columnas con PropertyValueFactory
-            // IMPORTANTE: Asegúrate de que estos nombres coincidan EXACTAMENTE con los getters de la clase Negocio
-            nombreColumn.setCellValueFactory(new PropertyValueFactory<>("nombreNegocio"));
-            direccionColumn.setCellValueFactory(new PropertyValueFactory<>("direccion"));
-            contactoColumn.setCellValueFactory(new PropertyValueFactory<>("email"));
-            idColumn.setCellValueFactory(new PropertyValueFactory<>("idNegocio"));
+            // Las filas son records, así que las columnas leen sus campos directamente
+            nombreColumn.setCellValueFactory(celda -> new SimpleStringProperty(celda.getValue().nombre()));
+            direccionColumn.setCellValueFactory(celda -> new SimpleStringProperty(celda.getValue().direccion()));
+            contactoColumn.setCellValueFactory(celda -> new SimpleStringProperty(celda.getValue().contacto()));
+            idColumn.setCellValueFactory(celda -> new SimpleObjectProperty<>(celda.getValue().id()));
             System.out.println(idColumn);
 
-            NegocioModel modelo = new NegocioModel();
-            ArrayList<Negocio> todosNegocios = modelo.readNegocios();
-
+            contenidoTabla = new ArrayList<>(localesTabla.getChildren());
+            lista = new ListaPaginada<>("locales", listaTabla, FilaListado::id, (desde, limite) ->
+                    new NegocioModel().readPaginaNegocios(desde, limite, NegocioModel.TIPO_VETERINARIA, true));
+            busqueda = new BusquedaListado(lista, listaTabla, distanciaColumn, ServicioCercano.Categoria.LOCAL,
+                    ElementoBuscable.Categoria.LOCAL, ids -> new NegocioModel().readNegociosPorIds(ids));
+            busquedaField.textProperty().addListener((obs, anterior, texto) -> busqueda.buscarTexto(texto));
+            cargarDatos();
+        } catch (Exception e) {
+            System.out.println("Error en initialize: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
 
+    /**
+     * Muestra en la tabla los negocios que no son veterinarios, desde la primera página. El filtro
+     * por tipo se hace en la consulta.
+     */
+    private void cargarDatos() {
+        lista.mostrar();
+    }
 
-            // Filtrar veterinarios
-            for (Negocio negocio : todosNegocios) {
-                if (negocio.getTipo() != null && negocio.getTipo().getId() != 1) {
-                    listaTabla.getItems().add(negocio);
-                }
-            }
+    /**
+     * Vuelve a mostrar la tabla (por si se estaba viendo la ficha de un local), quita la búsqueda
+     * por cercanía y la selección, y recarga los datos de la base de datos.
+     */
+    @Override
+    public void refrescar() {
+        localesTabla.getChildren().setAll(contenidoTabla);
+        busquedaField.clear();
+        direccionBusquedaField.clear();
+        busqueda.quitarDistancias();
+        listaTabla.getSelectionModel().clearSelection();
+        verButton.setDisable(true);
+        lista.invalidar();
+        try {
+            cargarDatos();
         } catch (Exception e) {
-            System.out.println("Error en initialize: " + e.getMessage());
+            System.out.println("Error en refrescar: " + e.getMessage());
             e.printStackTrace();
         }
     }
@@ -160,7 +219,7 @@ public class ListaLocalesController {
      */
     @javafx.fxml.FXML
     public void onClickTabla(Event event) {
-        this.l = (Negocio) this.listaTabla.getSelectionModel().getSelectedItem();
+        this.l = this.listaTabla.getSelectionModel().getSelectedItem();
         if(this.l !=null) {
             verButton.setDisable(false);
         }
@@ -182,9 +241,22 @@ public class ListaLocalesController {
         FXMLLoader loader = new FXMLLoader(this.getClass().getResource("Negocio.fxml"));
         Pane pane = (Pane)loader.load();
         NegocioController nc = (NegocioController) loader.getController();
-        nc.cargarNegocio(this.l.getIdNegocio());
+        nc.cargarNegocio(this.l.id());
         loader.setController(nc);
         this.localesTabla.getChildren().setAll(new Node[]{pane});
         if(this.flechaAtras != null) this.flechaAtras.setVisible(true);
     }
+
+    /**
+     * Manejador de eventos para el botón "Cercanos" y para la tecla Intro en {@link #direccionBusquedaField}.
+     * Geocodifica la dirección introducida y muestra en la tabla los locales más cercanos a ella,
+     * ordenados por distancia y con la columna {@link #distanciaColumn} visible.
+     * La búsqueda se hace en segundo plano con {@link BusquedaListado}.
+     * Si el campo está vacío, vuelve a mostrar la lista completa.
+     * @param actionEvent El evento de acción.
+     */
+    @javafx.fxml.FXML
+    public void onCercanosButtonClick(ActionEvent actionEvent) {
+        busqueda.buscarCercanos(direccionBusquedaField.getText());
+    }
 }
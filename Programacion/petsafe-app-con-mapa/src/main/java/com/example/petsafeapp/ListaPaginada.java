@@ -0,0 +1,280 @@
+package com.example.petsafeapp;
+
+import javafx.application.Platform;
+import javafx.scene.control.TableRow;
+import javafx.scene.control.TableView;
+import model.DBUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Carga por páginas de una {@link TableView} de listado, a medida que el usuario se desplaza.
+ * <p>
+ * Al mostrar la lista solo se pide la primera página de {@value #TAMANO_PAGINA} filas. Cuando la
+ * tabla dibuja una fila a menos de {@value #MARGEN} del final, se pide la siguiente página al
+ * modelo, con paginación por clave (las filas con ID mayor que el de la última cargada), en un hilo
+ * en segundo plano, que lee del servidor principal si el hilo de la interfaz acaba de escribir
+ * ({@link DBUtil#conEscriturasDelHilo(Runnable)}). Cada página se añade a la tabla de una vez, con
+ * un solo cambio de la lista.
+ * </p>
+ * <p>
+ * Las páginas leídas se guardan en una caché compartida por todas las pantallas (hasta
+ * {@value #MAX_PAGINAS} páginas, descartando las menos usadas), así que volver a mostrar la lista,
+ * por ejemplo al borrar una búsqueda, no vuelve a consultar la base de datos. {@link #invalidar()}
+ * descarta las páginas de la lista, y lo usan las pantallas al refrescarse.
+ * </p>
+ *
+ * @param <T> El tipo de los elementos de la tabla.
+ */
+public class ListaPaginada<T> {
+
+    /**
+     * Filas que se piden en cada consulta.
+     */
+    public static final int TAMANO_PAGINA = 50;
+
+    /**
+     * Distancia al final, en filas, a partir de la que se pide la siguiente página.
+     */
+    private static final int MARGEN = 10;
+
+    /**
+     * Número máximo de páginas en la caché.
+     */
+    private static final int MAX_PAGINAS = 200;
+
+    /**
+     * Lectura de una página del modelo.
+     *
+     * @param <T> El tipo de los elementos.
+     */
+    @FunctionalInterface
+    public interface Cargador<T> {
+        /**
+         * Lee una página.
+         *
+         * @param despuesDe ID del último elemento de la página anterior, o 0 para la primera.
+         * @param limite Número máximo de elementos.
+         * @return Los elementos, ordenados por ID, o {@code null} si ocurre un error.
+         */
+        List<T> cargar(int despuesDe, int limite);
+    }
+
+    /**
+     * Páginas leídas, por nombre de lista e ID a partir del que empiezan.
+     */
+    private static final Map<String, List<?>> CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<?>> eldest) {
+            return size() > MAX_PAGINAS;
+        }
+    };
+
+    private static final ExecutorService LECTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "paginas-listados");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    private final String nombre;
+    private final TableView<T> tabla;
+    private final ToIntFunction<T> id;
+    private final Cargador<T> cargador;
+
+    /**
+     * ID del último elemento cargado.
+     */
+    private int ultimoId;
+    private boolean completa;
+    private boolean cargando;
+    /**
+     * Indica si la tabla muestra la lista (y no, por ejemplo, los resultados de una búsqueda).
+     */
+    private boolean activa;
+    /**
+     * Se incrementa cada vez que se vuelve a mostrar la lista, para descartar las páginas que
+     * lleguen de una carga anterior. Se lee también desde el hilo de lectura.
+     */
+    private volatile int generacion;
+
+    /**
+     * Asocia la carga por páginas a una tabla. No carga nada hasta llamar a {@link #mostrar()}.
+     *
+     * @param nombre Nombre de la lista en la caché; debe ser distinto para cada consulta.
+     * @param tabla La tabla.
+     * @param id Devuelve el ID (la clave de la paginación) de un elemento.
+     * @param cargador Lee una página del modelo.
+     */
+    public ListaPaginada(String nombre, TableView<T> tabla, ToIntFunction<T> id, Cargador<T> cargador) {
+        this.nombre = nombre;
+        this.tabla = tabla;
+        this.id = id;
+        this.cargador = cargador;
+
+        tabla.setRowFactory(t -> new TableRow<>() {
+            @Override
+            public void updateIndex(int indice) {
+                super.updateIndex(indice);
+                if (indice >= 0 && indice >= tabla.getItems().size() - MARGEN) {
+                    siguientePagina();
+                }
+            }
+        });
+    }
+
+    /**
+     * Vacía la tabla y muestra la lista desde el principio.
+     */
+    public void mostrar() {
+        generacion++;
+        activa = true;
+        cargando = false;
+        completa = false;
+        ultimoId = 0;
+        tabla.getItems().clear();
+        siguientePagina();
+    }
+
+    /**
+     * Deja de cargar páginas, porque la tabla va a mostrar otra cosa.
+     */
+    public void detener() {
+        generacion++;
+        activa = false;
+    }
+
+    /**
+     * Deja de cargar páginas y muestra en la tabla otros elementos, por ejemplo los resultados de
+     * una búsqueda. Los IDs y los elementos se leen en segundo plano y se muestran en el orden de
+     * los IDs. Si antes de terminar se vuelve a llamar a este método o a {@link #mostrar()}, el
+     * resultado se descarta sin llegar a leer los elementos.
+     *
+     * @param ids Devuelve los IDs de los elementos a mostrar, en orden.
+     * @param lector Lee los elementos con esos IDs, en cualquier orden, o devuelve {@code null} si ocurre un error.
+     */
+    public void mostrarSeleccion(Supplier<List<Integer>> ids, Function<List<Integer>, List<T>> lector) {
+        mostrarSeleccion(ids, lector, () -> { });
+    }
+
+    /**
+     * Igual que {@link #mostrarSeleccion(Supplier, Function)}, pero ejecuta {@code alMostrar} en el hilo
+     * de la interfaz justo antes de poner los elementos en la tabla, por ejemplo para actualizar los
+     * datos que usan sus columnas. Si {@code ids} o {@code lector} devuelven {@code null} la tabla no
+     * cambia y {@code alMostrar} no se ejecuta.
+     *
+     * @param ids Devuelve los IDs de los elementos a mostrar, en orden, o {@code null} si ocurre un error.
+     * @param lector Lee los elementos con esos IDs, en cualquier orden, o devuelve {@code null} si ocurre un error.
+     * @param alMostrar Se ejecuta en el hilo de la interfaz antes de mostrar los elementos.
+     */
+    public void mostrarSeleccion(Supplier<List<Integer>> ids, Function<List<Integer>, List<T>> lector, Runnable alMostrar) {
+        detener();
+        int carga = generacion;
+        LECTOR.execute(DBUtil.conEscriturasDelHilo(() -> {
+            if (carga != generacion) {
+                return;
+            }
+            List<Integer> orden = ids.get();
+            if (orden == null) {
+                return;
+            }
+            List<T> leidos = orden.isEmpty() || carga != generacion ? List.of() : lector.apply(orden);
+            if (leidos == null) {
+                return;
+            }
+            Map<Integer, T> porId = new HashMap<>();
+            for (T elemento : leidos) {
+                porId.put(id.applyAsInt(elemento), elemento);
+            }
+            List<T> ordenados = new ArrayList<>();
+            for (int i : orden) {
+                T elemento = porId.get(i);
+                if (elemento != null) {
+                    ordenados.add(elemento);
+                }
+            }
+            Platform.runLater(() -> {
+                if (carga == generacion) {
+                    alMostrar.run();
+                    tabla.getItems().setAll(ordenados);
+                }
+            });
+        }));
+    }
+
+    /**
+     * Descarta las páginas de esta lista guardadas en la caché.
+     */
+    public void invalidar() {
+        synchronized (CACHE) {
+            Iterator<String> claves = CACHE.keySet().iterator();
+            while (claves.hasNext()) {
+                if (claves.next().startsWith(nombre + ":")) {
+                    claves.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Pide la página siguiente a la última cargada, de la caché o del modelo.
+     */
+    @SuppressWarnings("unchecked")
+    private void siguientePagina() {
+        if (!activa || cargando || completa) {
+            return;
+        }
+        cargando = true;
+        int desde = ultimoId;
+        int carga = generacion;
+        String clave = nombre + ":" + desde;
+
+        List<T> guardada;
+        synchronized (CACHE) {
+            guardada = (List<T>) CACHE.get(clave);
+        }
+        if (guardada != null) {
+            // Se añade después, porque este método se llama mientras la tabla coloca sus filas
+            Platform.runLater(() -> anadir(guardada, carga));
+            return;
+        }
+        LECTOR.execute(DBUtil.conEscriturasDelHilo(() -> {
+            List<T> pagina = cargador.cargar(desde, TAMANO_PAGINA);
+            if (pagina != null) {
+                pagina = List.copyOf(pagina);
+                synchronized (CACHE) {
+                    CACHE.put(clave, pagina);
+                }
+            }
+            List<T> res = pagina;
+            Platform.runLater(() -> anadir(res, carga));
+        }));
+    }
+
+    private void anadir(List<T> pagina, int carga) {
+        if (carga != generacion) {
+            return;
+        }
+        cargando = false;
+        if (pagina == null) {
+            completa = true;
+            return;
+        }
+        if (pagina.size() < TAMANO_PAGINA) {
+            completa = true;
+        }
+        if (!pagina.isEmpty()) {
+            ultimoId = id.applyAsInt(pagina.get(pagina.size() - 1));
+            tabla.getItems().addAll(pagina);
+        }
+    }
+}
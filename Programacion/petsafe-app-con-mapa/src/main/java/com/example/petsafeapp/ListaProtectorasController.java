@@ -1,5 +1,6 @@
 package com.example.petsafeapp;
 
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -11,44 +12,48 @@ import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
-import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.control.TextField;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
 import model.NegocioModel; // Aunque no se usa directamente, se mantiene por si es relevante en el proyecto.
+import model.FilaListado;
+import model.ElementoBuscable;
 import model.ProtectoraModel;
+import model.ServicioCercano;
 import model.TipoNegocioModel; // Aunque no se usa directamente, se mantiene por si es relevante en el proyecto.
 
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Collectors; // Aunque no se usa directamente, se mantiene por si es relevante en el proyecto.
 
 /**
  * Controlador para la vista que muestra una lista de protectoras de animales.
  * Permite visualizar las protectoras y seleccionar una para ver sus detalles.
  */
-public class ListaProtectorasController {
+public class ListaProtectorasController implements VistaRefrescable {
 
     /**
      * Columna de la tabla que muestra la información de contacto de la protectora (e.g., email).
      */
     @javafx.fxml.FXML
-    private TableColumn contactoColumn;
+    private TableColumn<FilaListado, String> contactoColumn;
     /**
      * Columna de la tabla que muestra el nombre de la protectora.
      */
     @javafx.fxml.FXML
-    private TableColumn nombreColumn;
+    private TableColumn<FilaListado, String> nombreColumn;
     /**
      * Tabla (TableView) que muestra la lista de protectoras.
      */
     @javafx.fxml.FXML
-    private TableView listaTabla;
+    private TableView<FilaListado> listaTabla;
     /**
      * Columna de la tabla que muestra la dirección de la protectora.
      */
     @javafx.fxml.FXML
-    private TableColumn direccionColumn;
+    private TableColumn<FilaListado, String> direccionColumn;
 
     /**
      * Etiqueta utilizada para mostrar el título de la pantalla actual.
@@ -71,13 +76,13 @@ public class ListaProtectorasController {
      * Columna de la tabla que muestra el ID único de la protectora.
      */
     @javafx.fxml.FXML
-    private TableColumn idColumn;
+    private TableColumn<FilaListado, Integer> idColumn;
 
     /**
-     * Almacena la instancia de la protectora ({@link Protectora}) que ha sido seleccionada
-     * por el usuario en la {@link #listaTabla}. Se inicializa con un nuevo objeto Protectora.
+     * Almacena la fila de la protectora ({@link FilaListado}) que ha sido seleccionada
+     * por el usuario en la {@link #listaTabla}.
      */
-    Protectora p = new Protectora();
+    FilaListado p;
     /**
      * Botón que, al ser presionado, muestra los detalles de la protectora seleccionada en la tabla.
      * Se habilita cuando se selecciona una protectora.
@@ -91,38 +96,90 @@ public class ListaProtectorasController {
     @javafx.fxml.FXML
     private Pane protectorasTabla;
 
+    /**
+     * Campo de texto para buscar las protectoras por nombre o descripción mientras se escribe.
+     */
+    @javafx.fxml.FXML
+    private TextField busquedaField;
+    /**
+     * Campo de texto con la dirección desde la que buscar las protectoras más cercanas.
+     */
+    @javafx.fxml.FXML
+    private TextField direccionBusquedaField;
+    /**
+     * Columna de la tabla que muestra la distancia en kilómetros a la dirección buscada.
+     * Solo es visible después de una búsqueda por cercanía.
+     */
+    @javafx.fxml.FXML
+    private TableColumn<FilaListado, String> distanciaColumn;
+
+    /**
+     * Carga por páginas de las protectoras, a medida que se desplaza la tabla.
+     */
+    private ListaPaginada<FilaListado> lista;
+    /**
+     * Búsquedas por texto y por cercanía sobre la tabla.
+     */
+    private BusquedaListado busqueda;
+    /**
+     * Nodos originales de {@link #protectorasTabla} (la tabla y sus controles), para restaurarlos
+     * si se estaba viendo la ficha de una protectora al volver a la pantalla.
+     */
+    private List<Node> contenidoTabla;
+
     /**
      * Método de inicialización invocado por JavaFX después de que todos los elementos
      * FXML han sido inyectados. Configura las columnas de la tabla {@link #listaTabla}
-     * para que muestren las propiedades correspondientes de los objetos {@link Protectora}.
-     * Carga todas las protectoras desde el {@link ProtectoraModel} y las añade a la tabla.
-     * Imprime el ID de la instancia {@link #p} recién inicializada (antes de cualquier selección).
+     * para que muestren los campos de las filas {@link FilaListado}.
+     * Muestra la primera página de las protectoras del {@link ProtectoraModel}; el resto se carga
+     * al desplazar la tabla.
      * Captura y maneja excepciones que puedan ocurrir durante este proceso.
      */
     public void initialize() {
         try {
+            // Las filas son records, así que las columnas leen sus campos directamente
+            nombreColumn.setCellValueFactory(celda -> new SimpleStringProperty(celda.getValue().nombre()));
+            direccionColumn.setCellValueFactory(celda -> new SimpleStringProperty(celda.getValue().direccion()));
+            contactoColumn.setCellValueFactory(celda -> new SimpleStringProperty(celda.getValue().contacto()));
+            idColumn.setCellValueFactory(celda -> new SimpleObjectProperty<>(celda.getValue().id()));
 
-            // Configurar columnas con PropertyValueFactory
-            // IMPORTANTE: Asegúrate de que estos nombres coincidan EXACTAMENTE con los getters de la clase Negocio // Este comentario parece ser un vestigio de otra clase, se refiere a Protectora aquí.
-            nombreColumn.setCellValueFactory(new PropertyValueFactory<>("nombreProtectora"));
-            direccionColumn.setCellValueFactory(new PropertyValueFactory<>("direccion"));
-            contactoColumn.setCellValueFactory(new PropertyValueFactory<>("email"));
-            idColumn.setCellValueFactory(new PropertyValueFactory<>("idProtectora"));
-            System.out.println(p.getIdProtectora());
-
-            ProtectoraModel modelo = new ProtectoraModel();
-            ArrayList<Protectora> prt = modelo.readProtectoras();
-
-
-
-            // Filtrar veterinarios // Este comentario parece ser un vestigio; el bucle añade todas las protectoras.
-            for (Protectora p : prt) {
+            contenidoTabla = new ArrayList<>(protectorasTabla.getChildren());
+            lista = new ListaPaginada<>("protectoras", listaTabla, FilaListado::id, (desde, limite) ->
+                    new ProtectoraModel().readPaginaProtectoras(desde, limite));
+            busqueda = new BusquedaListado(lista, listaTabla, distanciaColumn, ServicioCercano.Categoria.PROTECTORA,
+                    ElementoBuscable.Categoria.PROTECTORA, ids -> new ProtectoraModel().readProtectorasPorIds(ids));
+            busquedaField.textProperty().addListener((obs, anterior, texto) -> busqueda.buscarTexto(texto));
+            cargarDatos();
+        } catch (Exception e) {
+            System.out.println("Error en initialize: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
 
-                listaTabla.getItems().add(p);
-            }
+    /**
+     * Lee las protectoras de la base de datos y las muestra en la tabla.
+     */
+    private void cargarDatos() {
+        lista.mostrar();
+    }
 
+    /**
+     * Vuelve a mostrar la tabla (por si se estaba viendo la ficha de una protectora), quita la búsqueda
+     * por cercanía y la selección, y recarga los datos de la base de datos.
+     */
+    @Override
+    public void refrescar() {
+        protectorasTabla.getChildren().setAll(contenidoTabla);
+        busquedaField.clear();
+        direccionBusquedaField.clear();
+        busqueda.quitarDistancias();
+        listaTabla.getSelectionModel().clearSelection();
+        verButton.setDisable(true);
+        lista.invalidar();
+        try {
+            cargarDatos();
         } catch (Exception e) {
-            System.out.println("Error en initialize: " + e.getMessage());
+            System.out.println("Error en refrescar: " + e.getMessage());
             e.printStackTrace();
         }
     }
@@ -162,7 +219,7 @@ public class ListaProtectorasController {
      */
     @javafx.fxml.FXML
     public void onClickTabla(Event event) {
-        this.p = (Protectora) this.listaTabla.getSelectionModel().getSelectedItem();
+        this.p = this.listaTabla.getSelectionModel().getSelectedItem();
         if(this.p !=null) {
             verButton.setDisable(false);
         }
@@ -185,9 +242,22 @@ public class ListaProtectorasController {
         FXMLLoader loader = new FXMLLoader(this.getClass().getResource("Protectora.fxml"));
         Pane pane = (Pane)loader.load();
         ProtectoraController pc = (ProtectoraController) loader.getController();
-        pc.cargarProtectora(this.p.getIdProtectora());
+        pc.cargarProtectora(this.p.id());
         loader.setController(pc);
         this.protectorasTabla.getChildren().setAll(new Node[]{pane});
         if(this.flechaAtras != null) this.flechaAtras.setVisible(true);
     }
+
+    /**
+     * Manejador de eventos para el botón "Cercanos" y para la tecla Intro en {@link #direccionBusquedaField}.
+     * Geocodifica la dirección introducida y muestra en la tabla las protectoras más cercanas a ella,
+     * ordenados por distancia y con la columna {@link #distanciaColumn} visible.
+     * La búsqueda se hace en segundo plano con {@link BusquedaListado}.
+     * Si el campo está vacío, vuelve a mostrar la lista completa.
+     * @param actionEvent El evento de acción.
+     */
+    @javafx.fxml.FXML
+    public void onCercanosButtonClick(ActionEvent actionEvent) {
+        busqueda.buscarCercanos(direccionBusquedaField.getText());
+    }
 }
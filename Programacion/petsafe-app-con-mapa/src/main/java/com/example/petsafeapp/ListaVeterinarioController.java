@@ -1,5 +1,6 @@
 package com.example.petsafeapp;
 
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -11,29 +12,33 @@ import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
-import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.scene.control.TextField;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
+import model.FilaListado;
+import model.ElementoBuscable;
 import model.NegocioModel;
+import model.ServicioCercano;
 import model.TipoNegocioModel; // Aunque no se usa directamente, se mantiene por si es relevante en el proyecto.
 
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Collectors; // Aunque no se usa directamente, se mantiene por si es relevante en el proyecto.
 
 /**
  * Controlador para la vista que muestra una lista de negocios de tipo veterinario.
  * Permite visualizar los veterinarios y seleccionar uno para ver sus detalles.
  */
-public class ListaVeterinarioController {
+public class ListaVeterinarioController implements VistaRefrescable {
 
     /**
      * Columna de la tabla que muestra la información de contacto del veterinario (e.g., email).
-     * Se enlaza a la propiedad 'email' del objeto {@link Negocio}.
+     * Muestra el campo {@code contacto} de cada {@link FilaListado}.
      */
     @javafx.fxml.FXML
-    private TableColumn contactoColumn;
+    private TableColumn<FilaListado, String> contactoColumn;
     /**
      * Panel principal que contiene la tabla de veterinarios y donde se cargarán otras vistas,
      * como la de detalles del veterinario.
@@ -42,22 +47,22 @@ public class ListaVeterinarioController {
     private Pane veterinarioTabla;
     /**
      * Columna de la tabla que muestra el nombre del veterinario.
-     * Se enlaza a la propiedad 'nombreNegocio' del objeto {@link Negocio}.
+     * Muestra el campo {@code nombre} de cada {@link FilaListado}.
      */
     @javafx.fxml.FXML
-    private TableColumn nombreColumn;
+    private TableColumn<FilaListado, String> nombreColumn;
     /**
      * Tabla (TableView) que muestra la lista de veterinarios.
-     * Los ítems de esta tabla son objetos de tipo {@link Negocio}.
+     * Los ítems de esta tabla son filas {@link FilaListado}.
      */
     @javafx.fxml.FXML
-    private TableView listaTabla;
+    private TableView<FilaListado> listaTabla;
     /**
      * Columna de la tabla que muestra la dirección del veterinario.
-     * Se enlaza a la propiedad 'direccion' del objeto {@link Negocio}.
+     * Muestra el campo {@code direccion} de cada {@link FilaListado}.
      */
     @javafx.fxml.FXML
-    private TableColumn direccionColumn;
+    private TableColumn<FilaListado, String> direccionColumn;
 
     /**
      * Etiqueta utilizada para mostrar el título de la pantalla actual.
@@ -78,10 +83,10 @@ public class ListaVeterinarioController {
 
     /**
      * Columna de la tabla que muestra el ID único del negocio veterinario.
-     * Se enlaza a la propiedad 'idNegocio' del objeto {@link Negocio}.
+     * Muestra el campo {@code id} de cada {@link FilaListado}.
      */
     @javafx.fxml.FXML
-    private TableColumn idColumn;
+    private TableColumn<FilaListado, Integer> idColumn;
     /**
      * Botón que, al ser presionado, muestra los detalles del veterinario seleccionado en la tabla.
      * Se habilita cuando se selecciona un veterinario.
@@ -90,44 +95,97 @@ public class ListaVeterinarioController {
     private Button verButton;
 
     /**
-     * Almacena la instancia del negocio ({@link Negocio}) que representa al veterinario
+     * Almacena la fila del negocio ({@link FilaListado}) que representa al veterinario
      * seleccionado por el usuario en la {@link #listaTabla}.
      */
-    Negocio n ;
+    FilaListado n ;
+
+    /**
+     * Campo de texto para buscar los veterinarios por nombre o descripción mientras se escribe.
+     */
+    @javafx.fxml.FXML
+    private TextField busquedaField;
+    /**
+     * Campo de texto con la dirección desde la que buscar los veterinarios más cercanos.
+     */
+    @javafx.fxml.FXML
+    private TextField direccionBusquedaField;
+    /**
+     * Columna de la tabla que muestra la distancia en kilómetros a la dirección buscada.
+     * Solo es visible después de una búsqueda por cercanía.
+     */
+    @javafx.fxml.FXML
+    private TableColumn<FilaListado, String> distanciaColumn;
+
+    /**
+     * Carga por páginas de los veterinarios, a medida que se desplaza la tabla.
+     */
+    private ListaPaginada<FilaListado> lista;
+    /**
+     * Búsquedas por texto y por cercanía sobre la tabla.
+     */
+    private BusquedaListado busqueda;
+    /**
+     * Nodos originales de {@link #veterinarioTabla} (la tabla y sus controles), para restaurarlos
+     * si se estaba viendo la ficha de un veterinario al volver a la pantalla.
+     */
+    private List<Node> contenidoTabla;
 
     /**
      * Método de inicialización invocado por JavaFX después de que todos los elementos
      * FXML han sido inyectados. Configura las columnas de la tabla {@link #listaTabla}
-     * para que muestren las propiedades correspondientes de los objetos {@link Negocio}.
-     * Carga todos los negocios desde el {@link NegocioModel}, filtra aquellos cuyo tipo
-     * de negocio tiene ID 1 (identificándolos como veterinarios) y los añade a la tabla.
+     * para que muestren los campos de las filas {@link FilaListado}.
+     * Muestra la primera página de los negocios del tipo de las veterinarias
+     * ({@link NegocioModel#TIPO_VETERINARIA}); el resto se carga al desplazar la tabla.
      * Captura y maneja excepciones que puedan ocurrir durante este proceso.
      */
     public void initialize() {
         try {
-
-            // Configurar columnas con PropertyValueFactory
-            // IMPORTANTE: Asegúrate de que estos nombres coincidan EXACTAMENTE con los getters de la clase Negocio
-            nombreColumn.setCellValueFactory(new PropertyValueFactory<>("nombreNegocio"));
-            direccionColumn.setCellValueFactory(new PropertyValueFactory<>("direccion"));
-            contactoColumn.setCellValueFactory(new PropertyValueFactory<>("email"));
-            idColumn.setCellValueFactory(new PropertyValueFactory<>("idNegocio"));
+            // Las filas son records, así que las columnas leen sus campos directamente
+            nombreColumn.setCellValueFactory(celda -> new SimpleStringProperty(celda.getValue().nombre()));
+            direccionColumn.setCellValueFactory(celda -> new SimpleStringProperty(celda.getValue().direccion()));
+            contactoColumn.setCellValueFactory(celda -> new SimpleStringProperty(celda.getValue().contacto()));
+            idColumn.setCellValueFactory(celda -> new SimpleObjectProperty<>(celda.getValue().id()));
             System.out.println(idColumn);
 
-            NegocioModel modelo = new NegocioModel();
-            ArrayList<Negocio> todosNegocios = modelo.readNegocios();
+            contenidoTabla = new ArrayList<>(veterinarioTabla.getChildren());
+            lista = new ListaPaginada<>("veterinarios", listaTabla, FilaListado::id, (desde, limite) ->
+                    new NegocioModel().readPaginaNegocios(desde, limite, NegocioModel.TIPO_VETERINARIA, false));
+            busqueda = new BusquedaListado(lista, listaTabla, distanciaColumn, ServicioCercano.Categoria.VETERINARIO,
+                    ElementoBuscable.Categoria.VETERINARIO, ids -> new NegocioModel().readNegociosPorIds(ids));
+            busquedaField.textProperty().addListener((obs, anterior, texto) -> busqueda.buscarTexto(texto));
+            cargarDatos();
+        } catch (Exception e) {
+            System.out.println("Error en initialize: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
 
-            // Crear lista observable para los veterinarios // Esta lista no se usa directamente para poblar la tabla aquí.
-            ObservableList<Negocio> veterinarios = FXCollections.observableArrayList();
+    /**
+     * Muestra en la tabla los negocios que son veterinarios, desde la primera página. El filtro
+     * por tipo se hace en la consulta.
+     */
+    private void cargarDatos() {
+        lista.mostrar();
+    }
 
-            // Filtrar veterinarios
-            for (Negocio negocio : todosNegocios) {
-                if (negocio.getTipo() != null && negocio.getTipo().getId() == 1) {
-                    listaTabla.getItems().add(negocio);
-                }
-            }
+    /**
+     * Vuelve a mostrar la tabla (por si se estaba viendo la ficha de un veterinario), quita la búsqueda
+     * por cercanía y la selección, y recarga los datos de la base de datos.
+     */
+    @Override
+    public void refrescar() {
+        veterinarioTabla.getChildren().setAll(contenidoTabla);
+        busquedaField.clear();
+        direccionBusquedaField.clear();
+        busqueda.quitarDistancias();
+        listaTabla.getSelectionModel().clearSelection();
+        verButton.setDisable(true);
+        lista.invalidar();
+        try {
+            cargarDatos();
         } catch (Exception e) {
-            System.out.println("Error en initialize: " + e.getMessage());
+            System.out.println("Error en refrescar: " + e.getMessage());
             e.printStackTrace();
         }
     }
@@ -166,7 +224,7 @@ public class ListaVeterinarioController {
      */
     @javafx.fxml.FXML
     public void onClickTabla(Event event) {
-        this.n = (Negocio) this.listaTabla.getSelectionModel().getSelectedItem();
+        this.n = this.listaTabla.getSelectionModel().getSelectedItem();
         if(this.n !=null) {
             verButton.setDisable(false);
         }
@@ -188,9 +246,22 @@ public class ListaVeterinarioController {
         FXMLLoader loader = new FXMLLoader(this.getClass().getResource("Veterinario.fxml"));
         Pane pane = (Pane)loader.load();
         VeterinarioController nc = (VeterinarioController)loader.getController();
-        nc.cargarVeterinario(this.n.getIdNegocio());
+        nc.cargarVeterinario(this.n.id());
         loader.setController(nc);
         this.veterinarioTabla.getChildren().setAll(new Node[]{pane});
         if(this.flechaAtras != null) this.flechaAtras.setVisible(true);
     }
+
+    /**
+     * Manejador de eventos para el botón "Cercanos" y para la tecla Intro en {@link #direccionBusquedaField}.
+     * Geocodifica la dirección introducida y muestra en la tabla los veterinarios más cercanos a ella,
+     * ordenados por distancia y con la columna {@link #distanciaColumn} visible.
+     * La búsqueda se hace en segundo plano con {@link BusquedaListado}.
+     * Si el campo está vacío, vuelve a mostrar la lista completa.
+     * @param actionEvent El evento de acción.
+     */
+    @javafx.fxml.FXML
+    public void onCercanosButtonClick(ActionEvent actionEvent) {
+        busqueda.buscarCercanos(direccionBusquedaField.getText());
+    }
 }
@@ -1,9 +1,11 @@
 package com.example.petsafeapp;
 
 import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.concurrent.Worker;
 import javafx.event.Event;
 import javafx.fxml.FXMLLoader;
+import javafx.scene.Node;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.image.ImageView;
@@ -12,14 +14,13 @@ import javafx.scene.web.WebEngine;
 import javafx.scene.web.WebView;
 import javafx.util.Duration;
 import model.*;
-import org.json.JSONArray;
 import org.json.JSONObject;
 import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.net.URL;
-import java.net.URLEncoder;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
 
 /**
  * Controlador para la vista del mapa localizador.
@@ -27,7 +28,19 @@ import java.util.Scanner;
  * la carga de marcadores para reportes de animales perdidos, negocios y protectoras,
  * y la funcionalidad de búsqueda de direcciones en el mapa.
  */
-public class MapaLocalizadorController {
+public class MapaLocalizadorController implements VistaRefrescable {
+
+  /**
+  * Lado mayor, en píxeles, de las fotos de los popups del mapa. Se muestran a 50 píxeles, y el
+  * doble deja margen para pantallas de alta densidad.
+  */
+  private static final int TAMANO_FOTO_POPUP = 100;
+
+  /**
+  * Marcadores que se envían al mapa en cada llamada a su script. Con este tamaño cada llamada
+  * tarda pocos milisegundos, así que el hilo de JavaFX no deja de pintar mientras se cargan.
+  */
+  private static final int MARCADORES_POR_LOTE = 200;
 
   /**
   * Panel principal que contiene la vista actual.
@@ -68,6 +81,26 @@ public class MapaLocalizadorController {
   */
   private Usuario usuario;
 
+  /**
+  * Nodos originales de {@link #panelContenido} (buscador y mapa), para restaurarlos al volver
+  * a la pantalla si se había abierto el registro de un animal encima.
+  */
+  private List<Node> contenidoMapa;
+  /**
+  * Dirección en la que centrar el mapa en la carga en curso, o null para la ubicación predeterminada.
+  */
+  private String direccionInicio;
+  /**
+  * Indica si ya se ha registrado el listener de carga del WebView. La vista se reutiliza entre
+  * visitas, así que el listener se registra una sola vez.
+  */
+  private boolean listenerRegistrado = false;
+  /**
+  * Número de la última carga de marcadores. Lo incrementa cada carga del mapa, y los envíos de
+  * una carga anterior que aún no hayan terminado lo comprueban para abandonarse.
+  */
+  private volatile int cargaMarcadores = 0;
+
 
   /**
   * Establece la etiqueta del título de la pantalla.
@@ -104,10 +137,20 @@ public class MapaLocalizadorController {
 
   /**
   * Método de inicialización del controlador. Se ejecuta después de que los elementos FXML han sido cargados.
-  * Actualmente vacío, la lógica de carga del mapa se maneja en {@link #loadMapMarkers(String)}.
+  * Guarda los nodos originales de la pantalla; la lógica de carga del mapa se maneja en {@link #loadMapMarkers(String)}.
   */
   public void initialize() {
+    contenidoMapa = new ArrayList<>(panelContenido.getChildren());
+  }
 
+  /**
+  * Restaura el buscador y el mapa si se había abierto el registro de un animal encima.
+  * Los marcadores se recargan con {@link #loadMapMarkers(String)}, que la plantilla llama siempre al mostrar el mapa.
+  */
+  @Override
+  public void refrescar() {
+    panelContenido.getChildren().setAll(contenidoMapa);
+    searchDirectionTextField.clear();
   }
 
   /**
@@ -136,6 +179,7 @@ public class MapaLocalizadorController {
     controller.setFlechaAtras(flechaAtras);
     controller.setTituloPantallaLabel(tituloPantallaLabel);
     controller.setUsuario(this.usuario);
+    controller.setPlantillaController(this.plantillaController);
 
     this.panelContenido.getChildren().setAll(pane);
   }
@@ -147,220 +191,261 @@ public class MapaLocalizadorController {
   * @param direccionInicio La dirección en la que se debe centrar el mapa inicialmente. Puede ser null para usar la ubicación predeterminada.
   */
   public void loadMapMarkers(String direccionInicio) {
+    this.direccionInicio = direccionInicio;
     WebEngine engine = webViewMapa.getEngine();
+
+    // Espera a que se cargue el HTML
+    if (!listenerRegistrado) {
+      engine.getLoadWorker().stateProperty().addListener((obs, oldState, newState) -> onMapaCargado(engine, newState));
+      listenerRegistrado = true;
+    }
+
     URL mapaURL = getClass().getResource("/html/mapa_mascotas.html");
     engine.load(mapaURL.toExternalForm());
+  }
 
-    // Espera a que se cargue el HTML
-    engine.getLoadWorker().stateProperty().addListener((obs, oldState, newState) -> {
-      if (newState == Worker.State.SUCCEEDED) {
-        // Ejecutar el primer script
-        try {
-          PauseTransition delayMapa = new PauseTransition(Duration.millis(500));
-          delayMapa.setOnFinished(event1 -> {
-                if (direccionInicio == null) {
-                  engine.executeScript(getScriptMapa());
-                } else {
-                  engine.executeScript(getScriptMapaRecentrado(direccionInicio));
-                }
+  /**
+  * Centra el mapa y añade los marcadores cuando el HTML del mapa ha terminado de cargarse.
+  * @param engine El motor del WebView del mapa.
+  * @param newState El nuevo estado de la carga.
+  */
+  private void onMapaCargado(WebEngine engine, Worker.State newState) {
+    String direccionInicio = this.direccionInicio;
+    if (newState == Worker.State.SUCCEEDED) {
+      // Ejecutar el primer script
+      try {
+        PauseTransition delayMapa = new PauseTransition(Duration.millis(500));
+        delayMapa.setOnFinished(event1 -> {
+          if (direccionInicio == null) {
+            engine.executeScript(getScriptMapa());
+          } else {
+            engine.executeScript(getScriptMapaRecentrado(direccionInicio));
+          }
 
           // Retraso de 0.01 segundos para que termine de cargar el mapa antes de cargar los marcadores
           PauseTransition delay = new PauseTransition(Duration.millis(500));
-          delay.setOnFinished(event -> {
-            try {
-              engine.executeScript(getScriptReportes());
-              engine.executeScript(getScriptLocales());
-              engine.executeScript(getScriptProtectoras());
-              engine.executeScript(getScriptVeterinarios());
-            } catch (Exception e) {
-              e.printStackTrace();
-            }
-          });
+          delay.setOnFinished(event -> cargarMarcadores(engine));
           delay.play();
-          });
-          delayMapa.play();
+        });
+        delayMapa.play();
 
-        } catch (Exception e) {
-          e.printStackTrace();
-        }
+      } catch (Exception e) {
+        e.printStackTrace();
       }
-    });
+    }
   }
 
   /**
-  * Obtiene las coordenadas de latitud y longitud para una dirección dada utilizando el servicio Nominatim de OpenStreetMap.
+  * Obtiene las coordenadas de latitud y longitud para una dirección dada utilizando el geocodificador
+  * de la aplicación (índice local del callejero si está disponible, con Nominatim como respaldo).
   * @param direccion La dirección de la cual obtener las coordenadas.
   * @return Un array de doubles donde el primer elemento es la latitud y el segundo es la longitud, o null si no se encuentran coordenadas.
+  * @see Geocodificador#getPredeterminado()
   */
   private double[] obtenerCoordenadasDesdeDireccion(String direccion) {
-    try {
-      String query = URLEncoder.encode(direccion, "UTF-8");
-      String urlStr = "https://nominatim.openstreetmap.org/search?q=" + query + "&format=json&limit=1";
-      HttpURLConnection conn = (HttpURLConnection) new URL(urlStr).openConnection();
-      conn.setRequestProperty("User-Agent", "PetSafe");
-
-
-      Scanner scanner = new Scanner(conn.getInputStream());
-      String json = scanner.useDelimiter("\\A").next();
-      scanner.close();
-
-      JSONArray array = new JSONArray(json);
-      if (array.isEmpty()) return null;
-
-      JSONObject obj = array.getJSONObject(0);
-      double lat = obj.getDouble("lat");
-      double lon = obj.getDouble("lon");
-
-      return new double[]{lat, lon};
-    } catch (Exception e) {
-      e.printStackTrace();
-      return null;
-    }
+    return Geocodificador.getPredeterminado().obtenerCoordenadas(direccion);
   }
 
   /**
-  * Genera el script JavaScript para añadir marcadores de reportes al mapa.
-  * Recupera los reportes de animales perdidos o en adopción, obtiene sus coordenadas
-  * y crea un array JSON con la información necesaria para el script del mapa.
-  * @return El script JavaScript como String.
-  * @throws Exception Si ocurre un error al leer los reportes o animales, o al obtener las coordenadas.
-  */
-  private String getScriptReportes() throws Exception {
-    ReporteModel rm = new ReporteModel();
-    AnimalModel am = new AnimalModel();
-    ArrayList<Reporte> listaReportes = rm.readReportes();
-    ArrayList<Animal> listaAnimales = am.readAnimales();
-    JSONArray arrayReportes = new JSONArray();
-    JSONArray arrayAnimales = new JSONArray();
-    for (Reporte r : listaReportes) {
-      if (r.getAnimal().getSituacion().getId() != 1) { // Asumiendo que 1 es "Encontrado" o "Adoptado"
-        double[] coord = obtenerCoordenadasDesdeDireccion(r.getUbicacion());
-        JSONObject obj = new JSONObject();
-        obj.put("lat", coord[0]);
-        obj.put("lng", coord[1]);
-        obj.put("nombre", r.getUsuario().getNombre());//TODO: Comprobar qué nombre obtener
-        obj.put("descripcion", r.getAnimal().getDescripción());
-        obj.put("enAdopcion", r.getAnimal().getSituacion().getId() == 3); // Asumiendo que 3 es "En Adopción"
-        obj.put("tipo", r.getAnimal().getTipo().getId()); // Asumiendo que Tipo tiene un ID relevante
-        obj.put("id", r.getId());
-        arrayReportes.put(obj);
+  * Lee en segundo plano los reportes, locales, protectoras y veterinarios y los envía al mapa en
+  * lotes (ver {@link EnvioMarcadores}). Los marcadores ({@link MarcadorMapa}, sin imágenes) se leen
+  * de una sola tabla con {@link MarcadorMapaModel#readMarcadores()}, que a partir de la segunda
+  * visita solo pide a la base de datos los que han cambiado. Cuando termina marca el mapa como listo.
+  * Si mientras tanto se vuelve a cargar el mapa, el envío se abandona.
+  * @param engine El motor del WebView del mapa.
+  */
+  private void cargarMarcadores(WebEngine engine) {
+    int carga = ++cargaMarcadores;
+    Thread hilo = new Thread(DBUtil.conEscriturasDelHilo(() -> {
+      try {
+        EnvioMarcadores envio = new EnvioMarcadores(engine, carga);
+        List<MarcadorMapa> marcadores = new MarcadorMapaModel().readMarcadores();
+        enviarReportes(envio, marcadores);
+        enviarServicios(envio, "procesarLocales", marcadores, MarcadorMapa.Categoria.LOCAL);
+        enviarServicios(envio, "procesarProtectoras", marcadores, MarcadorMapa.Categoria.PROTECTORA);
+        enviarServicios(envio, "procesarVeterinarios", marcadores, MarcadorMapa.Categoria.VETERINARIO);
+      } catch (CancellationException | InterruptedException e) {
+        return; // el mapa se ha vuelto a cargar
+      } catch (Exception e) {
+        e.printStackTrace();
       }
-    }
-
-    for (Animal a : listaAnimales) {
-      JSONObject obj = new JSONObject();
-      obj.put("id", a.getId());
-      obj.put("foto", a.getFoto().toURI().toString());
-      arrayAnimales.put(obj);
-    }
-
-    return "procesarReportes(" + arrayReportes.toString() + ", " + arrayAnimales + ");";
+      Platform.runLater(() -> TiempoArranque.marcar(TiempoArranque.Hito.MAPA_LISTO));
+    }), "marcadores-mapa");
+    hilo.setDaemon(true);
+    hilo.start();
   }
 
   /**
-  * Genera el script JavaScript para añadir marcadores de locales (negocios que no son veterinarios) al mapa.
-  * Recupera los negocios, filtra los que no son veterinarios, obtiene sus coordenadas y
-  * crea un array JSON con la información necesaria para el script del mapa.
-  * También incluye un array JSON con las fotos de los usuarios.
-  * @return El script JavaScript como String.
-  * @throws Exception Si ocurre un error al leer los negocios, usuarios o al obtener las coordenadas.
-  */
-  private String getScriptLocales() throws Exception {
-    NegocioModel nm = new NegocioModel();
-    ArrayList<Negocio> listaNegocios = nm.readNegocios();
-
-    JSONArray array = new JSONArray();
-    for (Negocio n : listaNegocios) {
-      if (n.getTipo().getId() != 1) { // Asumiendo que 1 es el ID para Veterinario
-        double[] coord = obtenerCoordenadasDesdeDireccion(n.getDireccion());
-        JSONObject obj = new JSONObject();
-        obj.put("lat", coord[0]);
-        obj.put("lng", coord[1]);
-        obj.put("nombre", n.getNombreNegocio());
-        obj.put("descripcion", n.getDescripcion());
-        obj.put("idUsuario", n.getId()); // Asumiendo que el ID del Negocio se usa como idUsuario para la foto
-        array.put(obj);
+  * Envía al mapa los marcadores de reportes de animales perdidos o en adopción, con la URL de la foto
+  * del animal de cada reporte.
+  * @param envio El envío en curso.
+  * @param marcadores Los marcadores leídos, de reportes o de otras categorías, o null si no se pudieron leer.
+  * @throws InterruptedException Si se interrumpe el hilo mientras espera a que el mapa procese un lote.
+  */
+  private void enviarReportes(EnvioMarcadores envio, List<MarcadorMapa> marcadores) throws InterruptedException {
+    envio.empezar("procesarReportes");
+    for (MarcadorMapa m : marcadores != null ? marcadores : List.<MarcadorMapa>of()) {
+      if (m.categoria() != MarcadorMapa.Categoria.REPORTE) {
+        continue;
       }
+      double[] coord = coordenadas(m);
+      if (coord == null) {
+        continue;
+      }
+      envio.marcador()
+          .campo("lat", coord[0])
+          .campo("lng", coord[1])
+          .campo("nombre", m.nombre())//TODO: Comprobar qué nombre obtener
+          .campo("descripcion", m.descripcion())
+          .campo("enAdopcion", m.enAdopcion())
+          .campo("tipo", m.tipo())
+          .campo("id", m.id())
+          .finObjeto();
+      // La foto del animal se pide a la base de datos cuando se abre el popup del reporte
+      envio.foto()
+          .campo("id", m.id())
+          .campo("foto", m.urlImagen(TAMANO_FOTO_POPUP))
+          .finObjeto();
+      envio.siguiente();
     }
-
-    System.out.println(getUsuariosFotos().toString()); // Imprime las fotos de usuario (para depuración)
-    return "procesarLocales(" + array.toString() + ", " + getUsuariosFotos().toString() + ");";
+    envio.terminar();
   }
 
   /**
-  * Genera el script JavaScript para añadir marcadores de protectoras al mapa.
-  * Recupera las protectoras, obtiene sus coordenadas y crea un array JSON con la información
-  * necesaria para el script del mapa. También incluye un array JSON con las fotos de los usuarios.
-  * @return El script JavaScript como String.
-  * @throws Exception Si ocurre un error al leer las protectoras, usuarios o al obtener las coordenadas.
-  */
-  private String getScriptProtectoras() throws Exception {
-      ProtectoraModel pm = new ProtectoraModel();
-      ArrayList<Protectora> listaProtectoras = pm.readProtectoras();
-
-      JSONArray array = new JSONArray();
-      for (Protectora p : listaProtectoras) {
-        double[] coord = obtenerCoordenadasDesdeDireccion(p.getDireccion());
-        JSONObject obj = new JSONObject();
-        obj.put("lat", coord[0]);
-        obj.put("lng", coord[1]);
-        obj.put("nombre", p.getNombreProtectora());
-        obj.put("descripcion", p.getDescripcion());
-        obj.put("idUsuario", p.getId()); // Asumiendo que el ID de la Protectora se usa como idUsuario para la foto
-        array.put(obj);
+  * Envía al mapa los marcadores de una categoría de servicios (locales, veterinarios o protectoras),
+  * con la URL de la foto de su usuario. Las URLs son del protocolo {@link ServidorImagenes}, así que
+  * las fotos no se leen de la base de datos hasta que el usuario abre el popup del marcador.
+  * @param envio El envío en curso.
+  * @param funcion La función del mapa que añade los marcadores.
+  * @param marcadores Los marcadores leídos, de esta categoría o de otras, o null si no se pudieron leer.
+  * @param categoria La categoría que se envía.
+  * @throws InterruptedException Si se interrumpe el hilo mientras espera a que el mapa procese un lote.
+  */
+  private void enviarServicios(EnvioMarcadores envio, String funcion, List<MarcadorMapa> marcadores,
+      MarcadorMapa.Categoria categoria) throws InterruptedException {
+    envio.empezar(funcion);
+    for (MarcadorMapa m : marcadores != null ? marcadores : List.<MarcadorMapa>of()) {
+      if (m.categoria() != categoria) {
+        continue;
       }
-
-      return "procesarProtectoras(" + array.toString() + ", " + getUsuariosFotos().toString() + ");";
-  }
-
-  /**
-  * Genera el script JavaScript para añadir marcadores de veterinarios al mapa.
-  * Recupera los negocios, filtra los que son veterinarios, obtiene sus coordenadas y
-  * crea un array JSON con la información necesaria para el script del mapa.
-  * También incluye un array JSON con las fotos de los usuarios.
-  * @return El script JavaScript como String.
-  * @throws Exception Si ocurre un error al leer los negocios, usuarios o al obtener las coordenadas.
-  */
-  private String getScriptVeterinarios() throws Exception {
-    NegocioModel nm = new NegocioModel();
-    ArrayList<Negocio> listaNegocios = nm.readNegocios();
-
-    JSONArray array = new JSONArray();
-    for (Negocio n : listaNegocios) {
-      if (n.getTipo().getId() == 1) { // Asumiendo que 1 es el ID para Veterinario
-        double[] coord = obtenerCoordenadasDesdeDireccion(n.getDireccion());
-        JSONObject obj = new JSONObject();
-        obj.put("lat", coord[0]);
-        obj.put("lng", coord[1]);
-        obj.put("nombre", n.getNombreNegocio());
-        obj.put("descripcion", n.getDescripcion());
-        obj.put("idUsuario", n.getId()); // Asumiendo que el ID del Negocio se usa como idUsuario para la foto
-        array.put(obj);
+      double[] coord = coordenadas(m);
+      if (coord == null) {
+        continue;
       }
+      envio.marcador()
+          .campo("lat", coord[0])
+          .campo("lng", coord[1])
+          .campo("nombre", m.nombre())
+          .campo("descripcion", m.descripcion())
+          .campo("idUsuario", m.idImagen())
+          .finObjeto();
+      envio.foto()
+          .campo("id", m.idImagen())
+          .campo("foto", m.urlImagen(TAMANO_FOTO_POPUP))
+          .finObjeto();
+      envio.siguiente();
     }
+    envio.terminar();
+  }
 
-    return "procesarVeterinarios(" + array.toString() + ", " + getUsuariosFotos().toString() + ");";
+  /**
+  * Devuelve la posición de un marcador: sus coordenadas guardadas o, si el registro todavía no está
+  * geocodificado, las de su dirección.
+  * @param m El marcador.
+  * @return La latitud y la longitud, o null si no se conocen.
+  */
+  private double[] coordenadas(MarcadorMapa m) {
+    return m.tieneCoordenadas() ? new double[]{m.latitud(), m.longitud()} : obtenerCoordenadasDesdeDireccion(m.direccion());
   }
 
   /**
-  * Obtiene un array JSON con los IDs de usuario y las URLs de sus fotos.
-  * Esto se utiliza para asociar fotos con los marcadores de reportes, locales, protectoras y veterinarios.
-  * @return Un JSONArray con objetos JSON que contienen "id" y "foto" para cada usuario.
-  * @throws IOException Si ocurre un error al leer los usuarios.
+  * Envío de marcadores al mapa por lotes.
+  * <p>
+  * Los marcadores y sus fotos se escriben con dos {@link EscritorJson} que se reutilizan en todos los
+  * lotes, y cada {@value #MARCADORES_POR_LOTE} marcadores se llama a la función del mapa
+  * ({@code procesarReportes(marcadores, fotos)}, etc.) en el hilo de JavaFX. Como mucho hay un lote
+  * esperando en ese hilo mientras se prepara el siguiente, así que ni la memoria ni lo que tarda cada
+  * llamada crecen con el número de marcadores, y entre lote y lote el mapa se sigue pintando.
+  * </p>
   */
-  private JSONArray getUsuariosFotos() throws IOException {
-    UsuarioModel um = new UsuarioModel();
-    ArrayList<Usuario> listaUsuarios = um.readUsuarios();
+  private final class EnvioMarcadores {
+    private final WebEngine engine;
+    private final int carga;
+    private final EscritorJson marcadores = new EscritorJson(16 * 1024);
+    private final EscritorJson fotos = new EscritorJson(8 * 1024);
+    /**
+    * Permiso para dejar un lote en el hilo de JavaFX; se devuelve cuando el mapa lo ha procesado.
+    */
+    private final Semaphore libre = new Semaphore(1);
+    private String funcion;
+    private int enLote;
+
+    EnvioMarcadores(WebEngine engine, int carga) {
+      this.engine = engine;
+      this.carga = carga;
+    }
+
+    /**
+    * Empieza un lote nuevo para una función del mapa.
+    */
+    void empezar(String funcion) {
+      this.funcion = funcion;
+      this.enLote = 0;
+      marcadores.reiniciar().inicioArray();
+      fotos.reiniciar().inicioArray();
+    }
+
+    /**
+    * Abre el objeto del siguiente marcador; hay que cerrarlo con {@link EscritorJson#finObjeto()}.
+    */
+    EscritorJson marcador() {
+      return marcadores.inicioObjeto();
+    }
+
+    /**
+    * Abre el objeto de la foto del marcador actual; hay que cerrarlo con {@link EscritorJson#finObjeto()}.
+    */
+    EscritorJson foto() {
+      return fotos.inicioObjeto();
+    }
+
+    /**
+    * Cuenta el marcador escrito y envía el lote si está completo.
+    */
+    void siguiente() throws InterruptedException {
+      if (++enLote >= MARCADORES_POR_LOTE) {
+        enviar();
+      }
+    }
 
-    JSONArray array = new JSONArray();
-    for (Usuario u : listaUsuarios) {
-      JSONObject obj = new JSONObject();
-      obj.put("id", u.getId());
-      obj.put("foto", u.getFoto().toURI().toString());
-      array.put(obj);
+    /**
+    * Envía los marcadores que queden en el lote.
+    */
+    void terminar() throws InterruptedException {
+      if (enLote > 0) {
+        enviar();
+      }
     }
 
-    return array;
+    private void enviar() throws InterruptedException {
+      String script = funcion + "(" + marcadores.finArray() + ", " + fotos.finArray() + ");";
+      libre.acquire();
+      if (carga != cargaMarcadores) {
+        throw new CancellationException();
+      }
+      Platform.runLater(() -> {
+        try {
+          if (carga == cargaMarcadores) {
+            engine.executeScript(script);
+          }
+        } catch (Exception e) {
+          e.printStackTrace();
+        } finally {
+          libre.release();
+        }
+      });
+      empezar(funcion);
+    }
   }
 
   /**
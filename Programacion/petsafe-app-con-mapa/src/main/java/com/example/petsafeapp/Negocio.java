@@ -73,7 +73,7 @@ public class Negocio extends Usuario{
   * @param id El ID a establecer.
   */
   public void setIdNegocio(int id) {
-    this.idNegocio = idNegocio;
+    this.idNegocio = id;
   }
 
   /**
@@ -175,7 +175,7 @@ public class Negocio extends Usuario{
   */
   public Negocio(int id, File imagen, String numTel, String email, String contrasena, String nombre, int idNegocio, String nombreNegocio, String descripcion, String direccion, File foto, TipoNegocio tipo, double puntuacion) {
     super(id, imagen, numTel, email, contrasena, nombre);
-    this.idNegocio = idNegocio;
+    this.idNegocio = id;
     this.nombreNegocio = nombre; // POSIBLE ERROR: Esto parece que debería ser nombreNegocio = nombreNegocio;
     this.descripcion = descripcion;
     this.direccion = direccion;
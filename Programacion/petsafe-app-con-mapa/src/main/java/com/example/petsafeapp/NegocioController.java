@@ -6,7 +6,6 @@ package com.example.petsafeapp;
  * información de contacto y dirección.
  */
 import javafx.scene.control.Label;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
 import model.NegocioModel;
@@ -82,17 +81,14 @@ public class NegocioController {
     public void cargarNegocio(int id){
         NegocioModel nm = new NegocioModel();
         Negocio n = nm.getNegocioById(id);
-        Image imagen = new Image(n.getFoto().toURI().toString());
-        logoImageView.setImage(imagen);
+        CacheImagenes imagenes = CacheImagenes.getInstancia();
+        imagenes.mostrar(logoImageView, n.getFoto());
         nombreLabel.setText(n.getNombreNegocio());
-        Image imagencorreo = new Image(getClass().getResource("/images/carta.png").toExternalForm());
-        correoImageView.setImage(imagencorreo);
+        correoImageView.setImage(imagenes.recurso("/images/carta.png"));
         emailLabel.setText(n.getEmail());
         telefonoLabel.setText(n.getNumTel());
-        Image imagentelf = new Image(getClass().getResource("/images/contacto.png").toExternalForm());
-        telefonoImageView.setImage(imagentelf);
-        Image imagendireccion = new Image(getClass().getResource("/images/ubicacion.png").toExternalForm());
-        direccionImageView.setImage(imagendireccion);
+        telefonoImageView.setImage(imagenes.recurso("/images/contacto.png"));
+        direccionImageView.setImage(imagenes.recurso("/images/ubicacion.png"));
         direccionLabel.setText(n.getDireccion());
         descipcionLabel.setText(n.getDescripcion());
     }
@@ -2,18 +2,22 @@ package com.example.petsafeapp;
 
 import javafx.event.ActionEvent;
 import javafx.scene.control.*;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import model.Catalogos;
+import model.Geocodificador;
 import model.NegocioModel;
 import model.PersonaModel;
 import model.ProtectoraModel;
+import model.Suscripcion;
+import model.SuscripcionModel;
 import model.UsuarioModel;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Controlador para la vista del perfil de usuario.
@@ -57,6 +61,21 @@ public class PerfilUsuarioController {
   */
   @javafx.fxml.FXML
   private TextField telefonoTextField;
+  /**
+  * Campo de texto con la dirección del centro de la zona vigilada.
+  */
+  @javafx.fxml.FXML
+  private TextField zonaAvisoTextField;
+  /**
+  * Campo de texto con el radio de la zona vigilada, en kilómetros.
+  */
+  @javafx.fxml.FXML
+  private TextField radioAvisoTextField;
+  /**
+  * ComboBox con el tipo de animal del que se quiere recibir avisos (o "Todos").
+  */
+  @javafx.fxml.FXML
+  private ComboBox<TipoAnimal> tipoAvisoComboBox;
 
   /**
   * Etiqueta que muestra el título de la pantalla actual.
@@ -86,6 +105,11 @@ public class PerfilUsuarioController {
   * ImageView que muestra la imagen de perfil en el menú lateral (posiblemente).
   */
   private ImageView imgPerfil;
+  /**
+  * Tipo de cuenta del usuario, o {@code null} si no se conoce. Sirve para actualizar solo la tabla
+  * que corresponde al guardar.
+  */
+  private CompletableFuture<UsuarioModel.TipoCuenta> tipoCuenta;
 
 
   /**
@@ -120,6 +144,14 @@ public class PerfilUsuarioController {
     // flechaAtras.setVisible(true);
   }
 
+  /**
+  * Establece el tipo de cuenta del usuario, que puede estar todavía averiguándose.
+  * @param tipoCuenta El tipo de cuenta, o {@code null} si no se conoce.
+  */
+  public void setTipoCuenta(CompletableFuture<UsuarioModel.TipoCuenta> tipoCuenta) {
+    this.tipoCuenta = tipoCuenta;
+  }
+
   /**
   * Establece el usuario actual y carga sus datos en los campos de la interfaz.
   * También carga la foto de perfil en la ImageView y guarda la foto original.
@@ -128,16 +160,79 @@ public class PerfilUsuarioController {
   public void setUsuario(Usuario usuario) {
     this.usuario = usuario;
 
-    System.out.println(this.usuario.getFoto().toURI().toString());
-    Image imagen = new Image(this.usuario.getFoto().toURI().toString());
-    fotoPerfilImageView.setImage(imagen);
+    PlantillaPantallasController.mostrarFotoPerfil(fotoPerfilImageView, this.usuario.getFoto());
 
     imgOriginal = usuario.getFoto();
+    imgFile = null; // la vista se reutiliza: descarta una foto elegida y no guardada en una visita anterior
+    fotoPerfilButton.setText("Selecciona una imagen");
 
     nombreTextField.setText(usuario.getNombre());
     emailTextField.setText(usuario.getEmail());
     contrasenaPasswordField.setText(usuario.getContrasena());
     telefonoTextField.setText(usuario.getNumTel());
+
+    tipoAvisoComboBox.getItems().setAll(new TipoAnimal(Suscripcion.TODOS_LOS_TIPOS, "Todos"));
+    tipoAvisoComboBox.getItems().addAll(Catalogos.getTiposAnimal());
+    tipoAvisoComboBox.getSelectionModel().selectFirst();
+  }
+
+  /**
+  * Maneja el evento de clic en el botón "Añadir" de la zona vigilada.
+  * Geocodifica la dirección indicada y guarda una suscripción para que el usuario reciba
+  * una notificación cada vez que se reporte un animal del tipo elegido dentro del radio.
+  * @param actionEvent El evento de acción.
+  */
+  @javafx.fxml.FXML
+  public void onAddAvisoButtonClick(ActionEvent actionEvent) {
+    Alert alertaError = new Alert(Alert.AlertType.ERROR);
+    alertaError.setTitle("ERROR");
+    alertaError.setHeaderText("No se ha podido crear el aviso");
+
+    String direccion = zonaAvisoTextField.getText();
+    double radio;
+    try {
+      radio = Double.parseDouble(radioAvisoTextField.getText().replace(',', '.'));
+    } catch (NumberFormatException e) {
+      radio = -1;
+    }
+
+    StringBuilder sb = new StringBuilder("Existen los siguientes errores:\n");
+    if (direccion == null || direccion.isBlank()) {
+      sb.append("- No has introducido la dirección.\n");
+    }
+    if (radio <= 0 || radio > Suscripcion.RADIO_MAXIMO_KM) {
+      sb.append("- El radio debe ser un número de kilómetros entre 0 y " + (int) Suscripcion.RADIO_MAXIMO_KM + ".\n");
+    }
+    if (sb.indexOf("-") >= 0) {
+      alertaError.setContentText(sb.toString());
+      alertaError.showAndWait();
+      return;
+    }
+
+    double[] coordenadas = Geocodificador.getPredeterminado().obtenerCoordenadas(direccion);
+    if (coordenadas == null) {
+      alertaError.setContentText("- No se ha encontrado la dirección indicada.");
+      alertaError.showAndWait();
+      return;
+    }
+
+    TipoAnimal tipo = tipoAvisoComboBox.getValue();
+    Suscripcion suscripcion = new Suscripcion(0, this.usuario.getId(), coordenadas[0], coordenadas[1], radio,
+        tipo != null ? tipo.getId() : Suscripcion.TODOS_LOS_TIPOS);
+
+    if (new SuscripcionModel().createSuscripcion(suscripcion)) {
+      Alert alerta = new Alert(Alert.AlertType.INFORMATION);
+      alerta.setTitle("Aviso creado");
+      alerta.setHeaderText("Aviso creado correctamente");
+      alerta.setContentText("Recibirás una notificación cuando se reporte un animal a menos de " + radio + " km de " + direccion + ".");
+      alerta.showAndWait();
+
+      zonaAvisoTextField.clear();
+      radioAvisoTextField.clear();
+    } else {
+      alertaError.setContentText("- No se ha podido guardar el aviso.");
+      alertaError.showAndWait();
+    }
   }
 
   /**
@@ -205,9 +300,13 @@ public class PerfilUsuarioController {
         um.updateUsuario(this.usuario);
         imgOriginal = imgFile; // La nueva imagen seleccionada se convierte en la original tras guardar
 
+        // si ya se sabe el tipo de cuenta, solo se consulta la tabla que corresponde
+        UsuarioModel.TipoCuenta tipo = tipoCuenta != null ? tipoCuenta.getNow(null) : null;
+
         // si es una persona
         PersonaModel pm = new PersonaModel();
-        Persona persona = pm.getPersonaFromIdUsuario(this.usuario.getId());
+        Persona persona = tipo == null || tipo == UsuarioModel.TipoCuenta.PERSONA
+            ? pm.getPersonaFromIdUsuario(this.usuario.getId()) : null;
 
         if(persona != null) {
           persona.setNombrePersona(nombre);
@@ -217,7 +316,8 @@ public class PerfilUsuarioController {
 
         // si es un negocio
         NegocioModel nm = new NegocioModel();
-        Negocio negocio = nm.getNegocioFromIdUsuario(this.usuario.getId());
+        Negocio negocio = tipo == null || tipo == UsuarioModel.TipoCuenta.NEGOCIO
+            ? nm.getNegocioFromIdUsuario(this.usuario.getId()) : null;
 
         if(negocio != null) {
           negocio.setNombreNegocio(nombre); // POSIBLE ERROR: Esto parece que debería actualizar el nombre del negocio, no el nombre del usuario asociado.
@@ -227,7 +327,8 @@ public class PerfilUsuarioController {
 
         // si es una protectora
         ProtectoraModel ptm = new ProtectoraModel();
-        Protectora protectora = ptm.getProtectoraFromIdUsuario(this.usuario.getId());
+        Protectora protectora = tipo == null || tipo == UsuarioModel.TipoCuenta.PROTECTORA
+            ? ptm.getProtectoraFromIdUsuario(this.usuario.getId()) : null;
 
         if(protectora != null) {
           protectora.setNombreProtectora(nombre); // POSIBLE ERROR: Esto parece que debería actualizar el nombre de la protectora, no el nombre del usuario asociado.
@@ -244,8 +345,7 @@ public class PerfilUsuarioController {
         alerta.showAndWait();
 
         if(this.imgFile != null) {
-          Image imagen = new Image(imgFile.getAbsolutePath());
-          this.imgPerfil.setImage(imagen); // Actualiza la imagen en el menú lateral si se cambió la foto
+          PlantillaPantallasController.mostrarFotoPerfil(this.imgPerfil, imgFile); // Actualiza la imagen en el menú lateral si se cambió la foto
         }
       }
     } catch(NumberFormatException e) {
@@ -286,12 +386,10 @@ public class PerfilUsuarioController {
 
     // Compruebo si ha seleccionado alguna image
     if (imgFile != null) {
-      Image image = new Image("file:" + imgFile.getAbsolutePath());
-      fotoPerfilImageView.setImage(image);
+      PlantillaPantallasController.mostrarFotoPerfil(fotoPerfilImageView, imgFile);
       fotoPerfilButton.setText(imgFile.getName());
     } else {
-      Image image = new Image(imgOriginal.toURI().toString());
-      fotoPerfilImageView.setImage(image);
+      PlantillaPantallasController.mostrarFotoPerfil(fotoPerfilImageView, imgOriginal != null ? imgOriginal : usuario.getFoto());
       fotoPerfilButton.setText("Selecciona una imagen");
     }
   }
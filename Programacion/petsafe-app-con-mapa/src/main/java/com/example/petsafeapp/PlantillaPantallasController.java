@@ -1,17 +1,30 @@
 package com.example.petsafeapp;
 
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.event.Event;
-import javafx.fxml.FXMLLoader;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
 import javafx.animation.TranslateTransition;
 import javafx.util.Duration;
+import model.Notificacion;
+import model.NotificacionModel;
+import model.ReplicaLocal;
+import model.ServicioNotificaciones;
+import model.UsuarioModel;
 
+import java.io.File;
 import java.io.IOException;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Controlador principal para la plantilla de pantallas de la aplicación.
@@ -73,11 +86,44 @@ private Label tituloPantallaLabel;
   * Almacena la última dirección buscada en el mapa para mantener el estado al regresar.
   */
   private String direccionBusqueda = null;
+  /**
+  * Vistas ya cargadas en esta sesión. Cada pantalla se lee del FXML una sola vez y después
+  * se reutiliza, refrescando sus datos.
+  */
+  private final RegistroVistas registroVistas = new RegistroVistas();
+  /**
+  * Tipo de cuenta del usuario, que se averigua en segundo plano tras iniciar sesión.
+  */
+  private CompletableFuture<UsuarioModel.TipoCuenta> tipoCuenta;
+  /**
+  * Hilo que consulta periódicamente las notificaciones sin leer del usuario, o {@code null} si
+  * todavía no ha iniciado sesión.
+  */
+  private ScheduledExecutorService lectorNotificaciones;
+  /**
+  * Indica si se está mostrando la alerta con los avisos; mientras tanto no se vuelven a consultar.
+  */
+  private volatile boolean mostrandoAvisos = false;
+
+  /**
+  * Pantallas del menú que se precargan al iniciar sesión (ver {@link RegistroVistas#precargar(String...)}).
+  * El mapa no se incluye porque ya se carga al entrar.
+  */
+  private static final String[] VISTAS_PRECARGADAS = {
+      "agenda-view.fxml",
+      "listaVeterinario-view.fxml",
+      "listaLocales-view.fxml",
+      "listaProtectoras-view.fxml",
+      "perfilUsuario-view.fxml"
+  };
 
 
   /**
   * Establece el usuario actual, actualiza el nombre y la foto en el menú lateral,
   * oculta el menú inicialmente y carga la vista del mapa localizador como pantalla predeterminada.
+  * Después programa la precarga de las pantallas del menú ({@link #VISTAS_PRECARGADAS}).
+  * Si el usuario viene sin foto (ver {@link UsuarioModel#autenticar(String, String)}), se muestra
+  * una imagen genérica hasta que se descarga la suya.
   * @param usuario El objeto Usuario a establecer como usuario actual.
   * @throws IOException Si ocurre un error al cargar la vista del mapa localizador.
   */
@@ -86,23 +132,31 @@ private Label tituloPantallaLabel;
     this.usuario = usuario;
     nombreUsuarioMenuButton.setText(this.usuario.getNombre());
 
-    Image imagen = new Image(this.usuario.getFoto().toURI().toString());
-    fotoPerfilUsuarioMenuImageView.setImage(imagen);
+    mostrarFotoPerfil(fotoPerfilUsuarioMenuImageView, this.usuario.getFoto());
+    if (this.usuario.getFoto() == null) {
+      CompletableFuture<UsuarioModel.DatosUsuario> datos = UsuarioModel.hidratarUsuario(this.usuario.getId());
+      tipoCuenta = datos.thenApply(UsuarioModel.DatosUsuario::tipoCuenta);
+      // la foto se asigna en el hilo de JavaFX, que es desde el que se lee
+      datos.thenAccept(d -> Platform.runLater(() -> {
+        if (d.foto() != null) {
+          this.usuario.setFoto(d.foto());
+          mostrarFotoPerfil(fotoPerfilUsuarioMenuImageView, d.foto());
+        }
+      }));
+    }
 
     // oculto el menú
     menuPane.setTranslateX(254);
 
     // carga "MapaLocalizador" en el panelContenido como predeterminado
     // CAMBIO DE PANTALLA
-    FXMLLoader loader = new FXMLLoader(getClass().getResource("mapaLocalizador-view.fxml"));
-
-    // 2. Carga el Pane
-    Pane pane = loader.load();
+    RegistroVistas.Vista vista = registroVistas.mostrar("mapaLocalizador-view.fxml");
+    Pane pane = vista.getPane();
 
-    // 3. Obtén el controlador
-    MapaLocalizadorController controller = loader.getController();
+    // Obtén el controlador
+    MapaLocalizadorController controller = vista.getControlador(MapaLocalizadorController.class);
 
-    // 4. Pasa los datos (ejemplo: pasar un usuario)
+    // Pasa los datos (ejemplo: pasar un usuario)
     controller.setGestorStrings(gestorStrings);
     controller.setFlechaAtras(flechaAtras);
     controller.setTituloPantallaLabel(tituloPantallaLabel);
@@ -113,25 +167,140 @@ private Label tituloPantallaLabel;
     this.setTituloPantalla("Mapa localizador");
     this.panelContenido.getChildren().setAll(pane);
     mostrarFlecha(false);
+
+    // precarga las pantallas del menú
+    registroVistas.precargar(VISTAS_PRECARGADAS);
+
+    iniciarLecturaNotificaciones();
+  }
+
+  /**
+  * Muestra en una vista la imagen de perfil de una foto de usuario, decodificada al tamaño de la vista.
+  * @param vista La vista en la que mostrarla.
+  * @param foto El archivo de la foto, o {@code null} si todavía no se ha descargado.
+  */
+  static void mostrarFotoPerfil(ImageView vista, File foto) {
+    if (foto == null) {
+      vista.setImage(CacheImagenes.getInstancia().recurso("/images/perfil-de-usuario.png"));
+    } else {
+      CacheImagenes.getInstancia().mostrar(vista, foto);
+    }
+  }
+
+  /**
+  * Empieza a consultar en segundo plano las notificaciones sin leer del usuario (reportes nuevos en
+  * sus zonas vigiladas) y los cambios en sus citas que el modo local no ha podido subir: nada más entrar
+  * y después cada {@link ServicioNotificaciones#getIntervaloLectura()} segundos. Si ya se consultaban
+  * las de una sesión anterior, se dejan de consultar.
+  */
+  private void iniciarLecturaNotificaciones() {
+    if (lectorNotificaciones != null) {
+      lectorNotificaciones.shutdownNow();
+    }
+    int idUsuario = this.usuario.getId();
+    lectorNotificaciones = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread hilo = new Thread(r, "notificaciones-usuario");
+      hilo.setDaemon(true);
+      return hilo;
+    });
+    long intervalo = ServicioNotificaciones.getIntervaloLectura();
+    lectorNotificaciones.scheduleWithFixedDelay(() -> {
+      try {
+        mostrarNotificaciones(idUsuario);
+        mostrarCambiosRechazados();
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }, 0, intervalo, TimeUnit.SECONDS);
+  }
+
+  /**
+  * Muestra juntas al usuario las notificaciones que tiene sin leer y las marca como leídas. Se llama
+  * desde el hilo de {@link #lectorNotificaciones}; la alerta se muestra después en el hilo de JavaFX
+  * y, hasta que el usuario la cierra, no se vuelve a consultar.
+  * @param idUsuario El ID del usuario.
+  */
+  private void mostrarNotificaciones(int idUsuario) {
+    if (mostrandoAvisos) {
+      return;
+    }
+    NotificacionModel nm = new NotificacionModel();
+    ArrayList<Notificacion> notificaciones = nm.readNotificacionesNoLeidas(idUsuario);
+    if (notificaciones == null || notificaciones.isEmpty()) {
+      return;
+    }
+    int ultima = 0;
+    StringBuilder sb = new StringBuilder();
+    for (Notificacion n : notificaciones) {
+      ultima = Math.max(ultima, n.getId());
+      sb.append("- ").append(n.getMensaje()).append("\n");
+    }
+    nm.marcarLeidas(idUsuario, ultima);
+
+    mostrandoAvisos = true;
+    Platform.runLater(() -> {
+      Alert alerta = new Alert(Alert.AlertType.INFORMATION);
+      alerta.setTitle("Avisos");
+      alerta.setHeaderText(notificaciones.size() == 1 ? "Tienes 1 aviso nuevo" : "Tienes " + notificaciones.size() + " avisos nuevos");
+      alerta.setContentText(sb.toString());
+      alerta.setOnHidden(e -> mostrandoAvisos = false);
+      alerta.show();
+    });
+  }
+
+  /**
+  * Avisa al usuario de los cambios en sus citas hechos sin conexión que se han descartado al
+  * sincronizar (porque la cita se había cambiado desde otro equipo o el servidor no los ha aceptado),
+  * para que pueda revisarlos y volver a hacerlos. Se llama desde el hilo de {@link #lectorNotificaciones}.
+  */
+  private void mostrarCambiosRechazados() {
+    if (mostrandoAvisos) {
+      return;
+    }
+    List<ReplicaLocal.CambioRechazado> rechazados = ReplicaLocal.recogerRechazadosActiva();
+    if (rechazados.isEmpty()) {
+      return;
+    }
+    DateTimeFormatter formatoFecha = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    DateTimeFormatter formatoHora = DateTimeFormatter.ofPattern("HH:mm");
+    StringBuilder sb = new StringBuilder();
+    for (ReplicaLocal.CambioRechazado r : rechazados) {
+      Cita cita = r.cita();
+      sb.append("- Cita de ").append(cita.getNombreAnimal())
+              .append(" del ").append(cita.getFecha().format(formatoFecha))
+              .append(" a las ").append(cita.getHora().format(formatoHora))
+              .append(" (").append(r.operacion()).append(")")
+              .append(r.conflicto() ? ": la cita se había cambiado desde otro equipo" : ": el servidor no lo ha aceptado")
+              .append("\n");
+    }
+
+    mostrandoAvisos = true;
+    Platform.runLater(() -> {
+      Alert alerta = new Alert(Alert.AlertType.WARNING);
+      alerta.setTitle("Cambios no guardados");
+      alerta.setHeaderText(rechazados.size() == 1 ? "No se ha podido guardar 1 cambio en tus citas"
+              : "No se han podido guardar " + rechazados.size() + " cambios en tus citas");
+      alerta.setContentText(sb + "Revisa la agenda y vuelve a hacerlos si siguen haciendo falta.");
+      alerta.setOnHidden(e -> mostrandoAvisos = false);
+      alerta.show();
+    });
   }
 
   /**
   * Maneja el evento de clic en la flecha de retroceso.
-  * Carga la vista almacenada en el gestor de strings como la vista anterior
-  * y configura el controlador correspondiente.
+  * Muestra la vista almacenada en el gestor de strings como la vista anterior
+  * (reutilizándola si ya estaba cargada) y configura el controlador correspondiente.
   * @param event El evento de clic.
   * @throws IOException Si ocurre un error al cargar la vista FXML.
   */
   @javafx.fxml.FXML
   public void onFlechaAtrasClick(Event event) throws IOException {
     // CAMBIO DE PANTALLA
-    FXMLLoader loader = new FXMLLoader(getClass().getResource(gestorStrings.getVistaFlechaAtras()));
+    RegistroVistas.Vista vista = registroVistas.mostrar(gestorStrings.getVistaFlechaAtras());
+    Pane pane = vista.getPane();
 
-    // 2. Carga el Pane
-    Pane pane = loader.load();
-
-    // 3. Obtén el controlador y pasa los datos
-    Object controller = loader.getController();
+    // Obtén el controlador y pasa los datos
+    Object controller = vista.getControlador(Object.class);
     switch(gestorStrings.getVistaFlechaAtras()) {
       case "mapaLocalizador-view.fxml":
         ((MapaLocalizadorController) controller).setGestorStrings(gestorStrings);
@@ -200,16 +369,14 @@ private Label tituloPantallaLabel;
     this.mostrarMenu(false);
     this.mostrarFlecha(false); // La flecha de atrás se oculta al ir a una pantalla principal
 
-    // CAMBIO DE PANTALLA
-    FXMLLoader loader = new FXMLLoader(getClass().getResource("agenda-view.fxml"));
-
-    // 2. Carga el Pane
-    Pane pane = loader.load();
+    // CAMBIO DE PANTALLA (reutiliza la vista si ya estaba cargada o precargada)
+    RegistroVistas.Vista vista = registroVistas.mostrar("agenda-view.fxml");
+    Pane pane = vista.getPane();
 
-    // 3. Obtén el controlador
-    AgendaController controller = loader.getController();
+    // Obtén el controlador
+    AgendaController controller = vista.getControlador(AgendaController.class);
 
-    // 4. Pasa los datos (ejemplo: pasar un usuario)
+    // Pasa los datos (ejemplo: pasar un usuario)
     gestorStrings.setVistaFlechaAtras("agenda-view.fxml"); // Establece la vista actual como destino de la flecha (no se usa al ir *a* agenda)
     controller.setGestorStrings(gestorStrings);
     controller.setFlechaAtras(flechaAtras);
@@ -253,16 +420,14 @@ private Label tituloPantallaLabel;
     this.setTituloPantalla("Veterinarios");
     this.mostrarMenu(false);
 
-    // CAMBIO DE PANTALLA
-    FXMLLoader loader = new FXMLLoader(getClass().getResource("listaVeterinario-view.fxml"));
+    // CAMBIO DE PANTALLA (reutiliza la vista si ya estaba cargada o precargada)
+    RegistroVistas.Vista vista = registroVistas.mostrar("listaVeterinario-view.fxml");
+    Pane pane = vista.getPane();
 
-    // 2. Carga el Pane
-    Pane pane = loader.load();
+    // Obtén el controlador
+    ListaVeterinarioController controller = vista.getControlador(ListaVeterinarioController.class);
 
-    // 3. Obtén el controlador
-    ListaVeterinarioController controller = loader.getController();
-
-    // 4. Pasa los datos (ejemplo: pasar un usuario)
+    // Pasa los datos (ejemplo: pasar un usuario)
     gestorStrings.setVistaFlechaAtras("listaVeterinario-view.fxml"); // Establece la vista actual como destino de la flecha
     controller.setGestorStrings(gestorStrings);
     controller.setFlechaAtras(flechaAtras);
@@ -285,16 +450,14 @@ private Label tituloPantallaLabel;
     this.setTituloPantalla("Locales PetFriendly");
     this.mostrarMenu(false);
 
-    // CAMBIO DE PANTALLA
-    FXMLLoader loader = new FXMLLoader(getClass().getResource("listaLocales-view.fxml"));
-
-    // 2. Carga el Pane
-    Pane pane = loader.load();
+    // CAMBIO DE PANTALLA (reutiliza la vista si ya estaba cargada o precargada)
+    RegistroVistas.Vista vista = registroVistas.mostrar("listaLocales-view.fxml");
+    Pane pane = vista.getPane();
 
-    // 3. Obtén el controlador
-    ListaLocalesController controller = loader.getController();
+    // Obtén el controlador
+    ListaLocalesController controller = vista.getControlador(ListaLocalesController.class);
 
-    // 4. Pasa los datos (ejemplo: pasar un usuario)
+    // Pasa los datos (ejemplo: pasar un usuario)
     gestorStrings.setVistaFlechaAtras("listaLocales-view.fxml"); // Establece la vista actual como destino de la flecha
     controller.setGestorStrings(gestorStrings);
     controller.setFlechaAtras(flechaAtras);
@@ -315,16 +478,14 @@ private Label tituloPantallaLabel;
     this.setTituloPantalla("Protectoras");
     this.mostrarMenu(false);
 
-    // CAMBIO DE PANTALLA
-    FXMLLoader loader = new FXMLLoader(getClass().getResource("listaProtectoras-view.fxml"));
-
-    // 2. Carga el Pane
-    Pane pane = loader.load();
+    // CAMBIO DE PANTALLA (reutiliza la vista si ya estaba cargada o precargada)
+    RegistroVistas.Vista vista = registroVistas.mostrar("listaProtectoras-view.fxml");
+    Pane pane = vista.getPane();
 
-    // 3. Obtén el controlador
-    ListaProtectorasController controller = loader.getController();
+    // Obtén el controlador
+    ListaProtectorasController controller = vista.getControlador(ListaProtectorasController.class);
 
-    // 4. Pasa los datos (ejemplo: pasar un usuario)
+    // Pasa los datos (ejemplo: pasar un usuario)
     gestorStrings.setVistaFlechaAtras("listaProtectoras-view.fxml"); // Establece la vista actual como destino de la flecha
     controller.setGestorStrings(gestorStrings);
     controller.setFlechaAtras(flechaAtras);
@@ -394,16 +555,14 @@ private Label tituloPantallaLabel;
     this.mostrarFlecha(false);
     this.mostrarMenu(false);
 
-    // CAMBIO DE PANTALLA
-    FXMLLoader loader = new FXMLLoader(getClass().getResource("mapaLocalizador-view.fxml"));
-
-    // 2. Carga el Pane
-    Pane pane = loader.load();
+    // CAMBIO DE PANTALLA (reutiliza la vista si ya estaba cargada)
+    RegistroVistas.Vista vista = registroVistas.mostrar("mapaLocalizador-view.fxml");
+    Pane pane = vista.getPane();
 
-    // 3. Obtén el controlador
-    MapaLocalizadorController controller = loader.getController();
+    // Obtén el controlador
+    MapaLocalizadorController controller = vista.getControlador(MapaLocalizadorController.class);
 
-    // 4. Pasa los datos (ejemplo: pasar un usuario)
+    // Pasa los datos (ejemplo: pasar un usuario)
     controller.setGestorStrings(gestorStrings);
     controller.setFlechaAtras(flechaAtras);
     controller.setTituloPantallaLabel(tituloPantallaLabel);
@@ -429,20 +588,19 @@ private Label tituloPantallaLabel;
     flechaAtras.setVisible(true);
     tituloPantallaLabel.setText("Perfil");
 
-    // CAMBIO DE PANTALLA
-    FXMLLoader loader = new FXMLLoader(getClass().getResource("perfilUsuario-view.fxml"));
-
-    // 2. Carga el Pane
-    Pane pane = loader.load();
+    // CAMBIO DE PANTALLA (reutiliza la vista si ya estaba cargada o precargada)
+    RegistroVistas.Vista vista = registroVistas.mostrar("perfilUsuario-view.fxml");
+    Pane pane = vista.getPane();
 
-    // 3. Obtén el controlador
-    PerfilUsuarioController controller = loader.getController();
+    // Obtén el controlador
+    PerfilUsuarioController controller = vista.getControlador(PerfilUsuarioController.class);
     controller.setImgMenuLateral(fotoPerfilUsuarioMenuImageView); // Pasa la ImageView del menú lateral para actualizar la foto si cambia
 
-    // 4. Pasa los datos (ejemplo: pasar un usuario)
+    // Pasa los datos (ejemplo: pasar un usuario)
     controller.setGestorStrings(gestorStrings);
     controller.setFlechaAtras(flechaAtras);
     controller.setTituloPantallaLabel(tituloPantallaLabel);
+    controller.setTipoCuenta(tipoCuenta);
     controller.setUsuario(this.usuario);
 
     this.panelContenido.getChildren().setAll(pane);
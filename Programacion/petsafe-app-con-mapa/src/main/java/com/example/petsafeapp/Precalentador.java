@@ -0,0 +1,193 @@
+package com.example.petsafeapp;
+
+import javafx.application.Platform;
+import javafx.concurrent.Worker;
+import javafx.scene.web.WebEngine;
+import model.BuscadorTexto;
+import model.Catalogos;
+import model.DBUtil;
+import model.EscritorJson;
+import model.Geocodificador;
+
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Precalentamiento de la aplicación mientras el usuario escribe sus credenciales.
+ * <p>
+ * Al iniciar sesión se carga el mapa, y la primera vez eso supone cargar el driver de MySQL, abrir
+ * la primera conexión, inicializar WebKit y descargar Leaflet. Para que el usuario no lo espere,
+ * nada más mostrarse la pantalla de inicio de sesión se hacen en segundo plano estas etapas:
+ * </p>
+ * <ol>
+ *     <li>{@code conexion}: abre una conexión y la deja reservada para la primera consulta
+ *     (la del inicio de sesión).</li>
+ *     <li>{@code catalogos}: lee los catálogos de {@link Catalogos}.</li>
+ *     <li>{@code geocodificador}: abre el índice local del callejero.</li>
+ *     <li>{@code buscador}: carga el índice del {@link BuscadorTexto}, para que la primera búsqueda
+ *     de las listas no tenga que esperarlo.</li>
+ *     <li>{@code json}: genera varias veces con {@link EscritorJson} lotes como los de los marcadores
+ *     del mapa, para que el compilador JIT ya haya optimizado ese código al cargar el mapa de verdad.</li>
+ *     <li>{@code webkit}: carga {@code mapa_mascotas.html} en un {@link WebEngine} sin ventana, lo
+ *     que inicializa WebKit y deja Leaflet en la caché. Se hace en el hilo de JavaFX, así que se
+ *     deja para el final.</li>
+ * </ol>
+ * <p>
+ * Cada etapa es independiente: si una falla se anota y se sigue con la siguiente. Al terminar se
+ * muestran por consola los milisegundos de cada una. Se desactiva con la propiedad del sistema
+ * {@code -D}{@value #PROPIEDAD_PRECALENTAR}{@code =false}.
+ * </p>
+ */
+public final class Precalentador {
+
+    /**
+     * Propiedad del sistema que, con valor {@code false}, desactiva el precalentamiento.
+     */
+    public static final String PROPIEDAD_PRECALENTAR = "petsafe.precalentar";
+
+    /**
+     * Número de marcadores de prueba con los que se calienta el código JSON.
+     */
+    private static final int MARCADORES_JSON = 500;
+
+    /**
+     * Número de veces que se generan los marcadores de prueba.
+     */
+    private static final int RONDAS_JSON = 20;
+
+    /**
+     * Milisegundos de cada etapa terminada, en el orden en que terminaron (-1 si falló).
+     */
+    private static final Map<String, Long> tiempos = new LinkedHashMap<>();
+
+    /**
+     * Indica si ya se ha iniciado el precalentamiento.
+     */
+    private static boolean iniciado = false;
+
+    /**
+     * Motor del mapa oculto; se guarda mientras carga para que no se libere antes de terminar.
+     */
+    private static WebEngine motorMapa;
+
+    private Precalentador() {
+    }
+
+    /**
+     * Inicia el precalentamiento en segundo plano, salvo que esté desactivado o ya iniciado.
+     * Debe llamarse desde el hilo de JavaFX una vez mostrada la ventana.
+     */
+    public static synchronized void iniciar() {
+        if (iniciado || "false".equalsIgnoreCase(System.getProperty(PROPIEDAD_PRECALENTAR))) {
+            return;
+        }
+        iniciado = true;
+
+        Thread hilo = new Thread(() -> {
+            etapa("conexion", DBUtil::precalentarConexion);
+            etapa("catalogos", Catalogos::cargar);
+            etapa("geocodificador", () -> Geocodificador.getPredeterminado() != null);
+            etapa("buscador", () -> BuscadorTexto.getInstancia() != null);
+            etapa("json", Precalentador::calentarJson);
+            Platform.runLater(Precalentador::calentarWebKit);
+        }, "precalentamiento");
+        hilo.setDaemon(true);
+        hilo.setPriority(Thread.MIN_PRIORITY);
+        hilo.start();
+    }
+
+    /**
+     * Devuelve los milisegundos de cada etapa terminada hasta ahora.
+     *
+     * @return Copia de los tiempos por etapa; -1 indica que la etapa falló.
+     */
+    public static Map<String, Long> getTiempos() {
+        synchronized (tiempos) {
+            return new LinkedHashMap<>(tiempos);
+        }
+    }
+
+    /**
+     * Ejecuta una etapa y anota su duración.
+     */
+    private static void etapa(String nombre, BooleanSupplier accion) {
+        long inicio = System.nanoTime();
+        boolean ok;
+        try {
+            ok = accion.getAsBoolean();
+        } catch (Exception e) {
+            e.printStackTrace();
+            ok = false;
+        }
+        anotar(nombre, ok ? (System.nanoTime() - inicio) / 1_000_000 : -1);
+    }
+
+    private static void anotar(String nombre, long ms) {
+        synchronized (tiempos) {
+            tiempos.put(nombre, ms);
+        }
+    }
+
+    /**
+     * Genera marcadores JSON de prueba con la misma forma que los del mapa.
+     */
+    private static boolean calentarJson() {
+        int longitud = 0;
+        EscritorJson json = new EscritorJson();
+        for (int ronda = 0; ronda < RONDAS_JSON; ronda++) {
+            json.reiniciar().crudo("procesarReportes(").inicioArray();
+            for (int i = 0; i < MARCADORES_JSON; i++) {
+                json.inicioObjeto()
+                        .campo("lat", 39.4699 + i * 1e-4)
+                        .campo("lng", -0.3763 - i * 1e-4)
+                        .campo("nombre", "Marcador " + i)
+                        .campo("descripcion", "Descripción de prueba \"" + ronda + "\"")
+                        .campo("enAdopcion", i % 3 == 0)
+                        .campo("tipo", i % 4)
+                        .campo("id", i)
+                        .finObjeto();
+            }
+            longitud += json.finArray().crudo(");").toString().length();
+        }
+        return longitud > 0;
+    }
+
+    /**
+     * Carga el HTML del mapa en un motor sin ventana y anota cuánto tarda. Debe llamarse desde el
+     * hilo de JavaFX.
+     */
+    private static void calentarWebKit() {
+        long inicio = System.nanoTime();
+        try {
+            URL mapaURL = Precalentador.class.getResource("/html/mapa_mascotas.html");
+            motorMapa = new WebEngine();
+            motorMapa.getLoadWorker().stateProperty().addListener((obs, anterior, estado) -> {
+                if (estado == Worker.State.SUCCEEDED || estado == Worker.State.FAILED || estado == Worker.State.CANCELLED) {
+                    anotar("webkit", estado == Worker.State.SUCCEEDED ? (System.nanoTime() - inicio) / 1_000_000 : -1);
+                    motorMapa = null;
+                    terminar();
+                }
+            });
+            motorMapa.load(mapaURL.toExternalForm());
+        } catch (Exception e) {
+            e.printStackTrace();
+            anotar("webkit", -1);
+            motorMapa = null;
+            terminar();
+        }
+    }
+
+    /**
+     * Muestra por consola el resumen del precalentamiento.
+     */
+    private static void terminar() {
+        StringBuilder resumen = new StringBuilder("Precalentamiento (ms):");
+        for (Map.Entry<String, Long> e : getTiempos().entrySet()) {
+            resumen.append(' ').append(e.getKey()).append('=')
+                    .append(e.getValue() >= 0 ? String.valueOf(e.getValue()) : "error");
+        }
+        System.out.println(resumen);
+    }
+}
@@ -66,7 +66,7 @@ public class Protectora extends Usuario {
   * @param id El ID a establecer.
   */
   public void setIdProtectora(int id) {
-    this.idProtectora = idProtectora; // POSIBLE ERROR: Esto parece que debería ser this.idProtectora = id;
+    this.idProtectora = id;
   }
 
   /**
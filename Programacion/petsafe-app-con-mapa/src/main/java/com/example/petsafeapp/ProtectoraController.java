@@ -1,7 +1,6 @@
 package com.example.petsafeapp;
 
 import javafx.scene.control.Label;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
 import model.NegocioModel;
@@ -73,17 +72,14 @@ public class ProtectoraController {
   public void cargarProtectora(int id){
     ProtectoraModel pm = new ProtectoraModel();
     Protectora p = pm.getProtectoraById(id);
-    Image imagen = new Image(p.getFoto().toURI().toString());
-    logoImageView.setImage(imagen);
+    CacheImagenes imagenes = CacheImagenes.getInstancia();
+    imagenes.mostrar(logoImageView, p.getFoto());
     nombreLabel.setText(p.getNombreProtectora());
-    Image imagencorreo = new Image(getClass().getResource("/images/carta.png").toExternalForm());
-    correoImageView.setImage(imagencorreo);
+    correoImageView.setImage(imagenes.recurso("/images/carta.png"));
     emailLabel.setText(p.getEmail());
     telefonoLabel.setText(p.getNumTel());
-    Image imagentelf = new Image(getClass().getResource("/images/contacto.png").toExternalForm());
-    telefonoImageView.setImage(imagentelf);
-    Image imagendireccion = new Image(getClass().getResource("/images/ubicacion.png").toExternalForm());
-    direccionImageView.setImage(imagendireccion);
+    telefonoImageView.setImage(imagenes.recurso("/images/contacto.png"));
+    direccionImageView.setImage(imagenes.recurso("/images/ubicacion.png"));
     direccionLabel.setText(p.getDireccion());
     descipcionLabel.setText(p.getDescripcion());
 
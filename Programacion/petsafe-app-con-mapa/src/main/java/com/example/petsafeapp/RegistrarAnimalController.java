@@ -2,32 +2,31 @@
  * Controlador para la vista de registro de animales en la aplicación PetSafeApp.
  * Gestiona la lógica de negocio para registrar animales perdidos/encontrados,
  * incluyendo validación de formularios, selección de imágenes y geocodificación
- * de direcciones para integración con mapas.
+ * de direcciones en segundo plano para integración con mapas.
  */
 package com.example.petsafeapp;
 
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
-import javafx.fxml.FXMLLoader;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
-import javafx.scene.image.Image;
 import javafx.util.Callback;
 import model.AnimalModel;
+import model.ArbolBK;
+import model.Catalogos;
+import model.CoincidenciaReporte;
+import model.DBUtil;
+import model.HashPerceptual;
+import model.EmparejadorReportes;
 import model.ReporteModel;
-import model.SituacionModel;
-import model.TipoAnimalModel;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import java.io.File;
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLEncoder;
 import java.time.LocalDate;
-import java.util.Scanner;
+import java.util.List;
 
 /**
  * Clase controladora que implementa la funcionalidad de registro de animales.
@@ -35,12 +34,12 @@ import java.util.Scanner;
  * - Formulario de registro (campos de texto, combos, calendario)
  * - Selección de imágenes desde el sistema de archivos
  * - Validación de datos e integración con modelos de base de datos
- * - Comunicación con servicios externos de geocodificación
+ * - Geocodificación de direcciones en segundo plano con {@link ReporteModel#geocodificar(Reporte)}
  */
 public class RegistrarAnimalController {
     /**
      * ComboBox para seleccionar la situación del animal (perdido/encontrado).
-     * @see SituacionModel Modelo de datos para las posibles situaciones
+     * @see model.SituacionModel Modelo de datos para las posibles situaciones
      */
     @javafx.fxml.FXML
     private ComboBox situacionComboBox;
@@ -66,7 +65,7 @@ public class RegistrarAnimalController {
 
     /**
      * ComboBox para seleccionar el tipo de animal (perro, gato, etc.).
-     * @see TipoAnimalModel Modelo de datos para los tipos de animales
+     * @see model.TipoAnimalModel Modelo de datos para los tipos de animales
      */
     @javafx.fxml.FXML
     private ComboBox tipoComboBox;
@@ -128,6 +127,19 @@ public class RegistrarAnimalController {
      */
     private Usuario usuario;
 
+    /**
+     * Controlador de la plantilla principal, utilizado para volver al mapa tras registrar el animal.
+     */
+    private PlantillaPantallasController plantillaController;
+
+    /**
+     * Establece el controlador de la plantilla principal de pantallas.
+     * @param plantillaController El controlador de la plantilla
+     */
+    public void setPlantillaController(PlantillaPantallasController plantillaController) {
+        this.plantillaController = plantillaController;
+    }
+
     /**
      * Establece la etiqueta de título de la pantalla.
      * @param tituloPantallaLabel Referencia a la etiqueta de título
@@ -173,13 +185,11 @@ public class RegistrarAnimalController {
         fechaDatePicker.setValue(actual);
         
         // Cargar opciones de situaciones y tipos de animales
-        SituacionModel sm = new SituacionModel();
-        for(Situacion s : sm.readSituaciones()) {
+        for(Situacion s : Catalogos.getSituaciones()) {
             situacionComboBox.getItems().add(s);
         }
         
-        TipoAnimalModel tam = new TipoAnimalModel();
-        for(TipoAnimal ta : tam.readTipoAnimales()) {
+        for(TipoAnimal ta : Catalogos.getTiposAnimal()) {
             tipoComboBox.getItems().add(ta);
         }
 
@@ -204,6 +214,8 @@ public class RegistrarAnimalController {
     /**
      * Manejador de evento para seleccionar una imagen del sistema.
      * Abre un diálogo de selección de archivos y actualiza el botón con el nombre del archivo.
+     * Después comprueba en segundo plano si la foto se parece a la de algún animal ya registrado
+     * (ver {@link #avisarFotosParecidas(File)}).
      * 
      * @param actionEvent Evento de acción disparado
      */
@@ -225,13 +237,45 @@ public class RegistrarAnimalController {
         
         // Actualizar texto del botón con el nombre del archivo
         if (imgFile != null) {
-            Image image = new Image("file:" + imgFile.getAbsolutePath());
             imagenesButton.setText(imgFile.getName());
+            avisarFotosParecidas(imgFile);
         } else {
             imagenesButton.setText("Seleccionar imagen");
         }
     }
 
+    /**
+     * Busca en segundo plano los animales registrados con una foto parecida a la seleccionada
+     * (la misma foto reescalada o recomprimida) y, si los hay, avisa al usuario de que el animal
+     * puede estar ya reportado. Si mientras tanto se ha elegido otra imagen, no avisa.
+     *
+     * @param imagen La imagen seleccionada.
+     */
+    private void avisarFotosParecidas(File imagen) {
+        Thread hilo = new Thread(() -> {
+            List<ArbolBK.Resultado<Integer>> parecidos =
+                    new AnimalModel().buscarAnimalesSimilares(imagen, HashPerceptual.DISTANCIA_SIMILAR);
+            if (parecidos.isEmpty()) {
+                return;
+            }
+            Platform.runLater(() -> {
+                if (imagen != imgFile) {
+                    return;
+                }
+                Alert alerta = new Alert(Alert.AlertType.WARNING);
+                alerta.setTitle("Foto repetida");
+                alerta.setHeaderText("Puede que este animal ya esté reportado");
+                alerta.setContentText((parecidos.size() == 1
+                        ? "La foto se parece a la de un animal ya registrado."
+                        : "La foto se parece a la de " + parecidos.size() + " animales ya registrados.")
+                        + " Comprueba en el mapa si ya se ha reportado antes de añadirlo.");
+                alerta.show();
+            });
+        }, "fotos-parecidas");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
     /**
      * Manejador de evento para registrar un nuevo animal.
      * Valida todos los campos, crea el registro y navega de vuelta al mapa.
@@ -307,46 +351,38 @@ public class RegistrarAnimalController {
                 return;
             }
 
-            // Geocodificar dirección
-            double[] coord = obtenerCoordenadasDesdeDireccion(direccion);
-            if (coord == null) {
-                sb.append("- No has introducido una dirección correcta.\n");
-                alertaError.setContentText(sb.toString());
-                alertaError.showAndWait();
-                return;
-            }
-
-            // Guardar datos en base de datos
-            AnimalModel am = new AnimalModel();
+            // Guardar datos en base de datos en segundo plano, para no bloquear la interfaz con las
+            // consultas; el botón se desactiva hasta que termina. El reporte se guarda sin coordenadas
+            // y la dirección se geocodifica después, también en segundo plano: cuando se conocen
+            // sus coordenadas se buscan las coincidencias y, si las hay, se muestran
             Animal animal = new Animal(imgFile, fecha, tipo, descripcion, situacion);
-            am.createAnimal(animal);
-            
-            ReporteModel rm = new ReporteModel();
-            Animal animalCreado = am.getAnimalConNombreYTipo(descripcion, tipo);
-            Reporte reporte = new Reporte(direccion, animalCreado, this.usuario);
-            rm.createReporte(reporte);
-
-            // Mostrar confirmación y navegar al mapa
-            Alert alerta = new Alert(Alert.AlertType.INFORMATION);
-            alerta.setTitle("Animal añadido");
-            alerta.setHeaderText("Animal añadido correctamente");
-            alerta.setContentText("Se ha añadido correctamente al animal.");
-            alerta.showAndWait();
-
-            // Navegar a la vista del mapa
-            FXMLLoader loader = new FXMLLoader(getClass().getResource("mapaLocalizador-view.fxml"));
-            Pane pane = loader.load();
-            
-            MapaLocalizadorController controller = loader.getController();
-            controller.setGestorStrings(this.gestorStrings);
-            controller.setFlechaAtras(this.flechaAtras);
-            controller.setTituloPantallaLabel(this.tituloPantallaLabel);
-            controller.setUsuario(this.usuario);
-            controller.loadMapMarkers(reporte.getUbicacion());
-
-            tituloPantallaLabel.setText("Mapa localizador");
-            flechaAtras.setVisible(false);
-            this.panelContenido.getChildren().setAll(pane);
+            Node boton = (Node) actionEvent.getSource();
+            boton.setDisable(true);
+            Thread hilo = new Thread(() -> {
+                try {
+                    Reporte reporte = guardarReporte(animal, direccion);
+                    Platform.runLater(DBUtil.trasEscriturasDelHilo(() -> {
+                        boton.setDisable(false);
+                        mostrarReporteGuardado(reporte);
+                    }));
+                    ReporteModel.geocodificar(reporte).thenAccept(geocodificado -> {
+                        List<CoincidenciaReporte> coincidencias = EmparejadorReportes.buscarCoincidencias(geocodificado);
+                        if (!coincidencias.isEmpty()) {
+                            Platform.runLater(() -> mostrarCoincidencias(situacion, coincidencias));
+                        }
+                    });
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    Platform.runLater(() -> {
+                        boton.setDisable(false);
+                        alertaError.setHeaderText("Error en el registro");
+                        alertaError.setContentText("Ocurrió un error al procesar el registro: " + e.getMessage());
+                        alertaError.showAndWait();
+                    });
+                }
+            }, "registrar-animal");
+            hilo.setDaemon(true);
+            hilo.start();
 
         } catch (Exception e) {
             alertaError.setHeaderText("Error en el registro");
@@ -357,33 +393,65 @@ public class RegistrarAnimalController {
     }
 
     /**
-     * Obtiene coordenadas geográficas desde una dirección usando OpenStreetMap Nominatim.
-     * 
-     * @param direccion Dirección textual a geocodificar
-     * @return Array con [latitud, longitud] o null si falla
+     * Guarda el animal y su reporte. Hace consultas a la base de datos: se llama en segundo plano.
+     *
+     * @param animal El animal, con su imagen.
+     * @param direccion La dirección del reporte.
+     * @return El reporte guardado, con su ID y sin coordenadas.
+     * @throws IOException Si no se puede leer la imagen del animal guardado.
+     * @throws IllegalStateException Si no se ha podido guardar el animal o el reporte.
      */
-    private double[] obtenerCoordenadasDesdeDireccion(String direccion) {
-        try {
-            String query = URLEncoder.encode(direccion, "UTF-8");
-            String urlStr = "https://nominatim.openstreetmap.org/search?q=" + query + "&format=json&limit=1";
-            HttpURLConnection conn = (HttpURLConnection) new URL(urlStr).openConnection();
-            conn.setRequestProperty("User-Agent", "PetSafe");
-
-            Scanner scanner = new Scanner(conn.getInputStream());
-            String json = scanner.useDelimiter("\\A").next();
-            scanner.close();
-
-            JSONArray array = new JSONArray(json);
-            if (array.isEmpty()) return null;
+    private Reporte guardarReporte(Animal animal, String direccion) throws IOException {
+        AnimalModel am = new AnimalModel();
+        Animal animalCreado = am.createAnimal(animal)
+                ? am.getAnimalConNombreYTipo(animal.getDescripción(), animal.getTipo()) : null;
+        if (animalCreado == null) {
+            throw new IllegalStateException("No se ha podido guardar el animal.");
+        }
+        Reporte reporte = new Reporte(direccion, animalCreado, this.usuario);
+        if (!new ReporteModel().createReporte(reporte)) {
+            throw new IllegalStateException("No se ha podido guardar el reporte.");
+        }
+        return reporte;
+    }
 
-            JSONObject obj = array.getJSONObject(0);
-            double lat = obj.getDouble("lat");
-            double lon = obj.getDouble("lon");
+    /**
+     * Muestra la confirmación del registro y navega a la vista del mapa de la plantilla, centrada
+     * en la ubicación del reporte.
+     *
+     * @param reporte El reporte guardado.
+     */
+    private void mostrarReporteGuardado(Reporte reporte) {
+        Alert alerta = new Alert(Alert.AlertType.INFORMATION);
+        alerta.setTitle("Animal añadido");
+        alerta.setHeaderText("Animal añadido correctamente");
+        alerta.setContentText("Se ha añadido correctamente al animal.");
+        alerta.showAndWait();
 
-            return new double[]{lat, lon};
-        } catch (Exception e) {
+        try {
+            plantillaController.mapSearch(reporte.getUbicacion());
+        } catch (IOException e) {
             e.printStackTrace();
-            return null;
         }
     }
+
+    /**
+     * Muestra los reportes que pueden ser el mismo animal que el que se acaba de registrar.
+     *
+     * @param situacion La situación del animal registrado.
+     * @param coincidencias Las posibles coincidencias, de más a menos probable.
+     */
+    private void mostrarCoincidencias(Situacion situacion, List<CoincidenciaReporte> coincidencias) {
+        StringBuilder texto = new StringBuilder(situacion.getId() == EmparejadorReportes.SITUACION_PERDIDO
+                ? "Animales encontrados cerca que podrían ser el tuyo:\n"
+                : "Animales perdidos cerca que podrían ser este:\n");
+        for (CoincidenciaReporte c : coincidencias) {
+            texto.append("- ").append(c).append("\n");
+        }
+        Alert alerta = new Alert(Alert.AlertType.INFORMATION);
+        alerta.setTitle("Posibles coincidencias");
+        alerta.setHeaderText("Hay reportes que podrían ser el mismo animal");
+        alerta.setContentText(texto.toString());
+        alerta.show();
+    }
 }
@@ -5,7 +5,6 @@ import javafx.event.ActionEvent;
 import javafx.event.Event;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.control.*;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
 import javafx.stage.FileChooser;
@@ -290,12 +289,10 @@ public class RegistroUsuarioController {
 
     // Compruebo si ha seleccionado alguna image
     if (imgFile != null) {
-      Image image = new Image("file:" + imgFile.getAbsolutePath());
-      fotoImageView.setImage(image);
+      CacheImagenes.getInstancia().mostrar(fotoImageView, imgFile);
     } else {
       // Si no selecciona ninguna imagen, muestra una por defecto
-      Image image = new Image(getClass().getResource("/images/nuevo-archivo.png").toExternalForm());
-      fotoImageView.setImage(image);
+      fotoImageView.setImage(CacheImagenes.getInstancia().recurso("/images/nuevo-archivo.png"));
     }
   }
 }
@@ -5,13 +5,12 @@ import javafx.event.ActionEvent;
 import javafx.event.Event;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.control.*;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.Pane;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import model.Catalogos;
 import model.NegocioModel;
-import model.TipoNegocioModel;
 import model.UsuarioModel;
 
 import java.io.File;
@@ -96,8 +95,7 @@ public class RegistroVeterinarioOLocalController {
   public void initialize() {
 
 
-    TipoNegocioModel tnm = new TipoNegocioModel();
-    for(TipoNegocio tn : tnm.readTipoNegocio()) tipoNegocioComboBox.getItems().add(tn);
+    for(TipoNegocio tn : Catalogos.getTiposNegocio()) tipoNegocioComboBox.getItems().add(tn);
 
 
   }
@@ -278,12 +276,10 @@ public class RegistroVeterinarioOLocalController {
 
     // Compruebo si ha seleccionado alguna image
     if (imgFile != null) {
-      Image image = new Image("file:" + imgFile.getAbsolutePath());
-      fotoImageView.setImage(image);
+      CacheImagenes.getInstancia().mostrar(fotoImageView, imgFile);
     } else {
       // Si no selecciona ninguna imagen, muestra una por defecto
-      Image image = new Image(getClass().getResource("/images/nuevo-archivo.png").toExternalForm());
-      fotoImageView.setImage(image);
+      fotoImageView.setImage(CacheImagenes.getInstancia().recurso("/images/nuevo-archivo.png"));
     }
   }
 }
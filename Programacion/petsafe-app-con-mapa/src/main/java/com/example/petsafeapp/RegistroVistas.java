@@ -0,0 +1,150 @@
+package com.example.petsafeapp;
+
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.layout.Pane;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registro de las vistas (FXML) ya cargadas de una sesión, para no volver a leerlas cada vez que
+ * el usuario cambia de pantalla.
+ * <p>
+ * Cada vista se carga una sola vez y se conservan su panel y su controlador. Al volver a mostrarla,
+ * si el controlador implementa {@link VistaRefrescable} se le pide que actualice sus datos en lugar
+ * de reconstruir los nodos. Las vistas que probablemente se visitarán a continuación se pueden
+ * precargar con {@link #precargar(String...)}.
+ * </p>
+ * <p>
+ * Los nodos se crean siempre en el hilo de JavaFX, y todos los métodos deben llamarse desde él. La
+ * precarga carga cada vista en una tarea aparte de {@link Platform#runLater(Runnable)}, así que entre
+ * una y otra se sigue atendiendo al usuario. Las lecturas de la base de datos que hacen las vistas al
+ * cargarse (la primera página de los listados, ver {@link ListaPaginada}) van a un hilo en segundo
+ * plano. Si el usuario pide una vista que todavía no se ha precargado, se carga en ese momento y se
+ * quita de la precarga; nunca se espera a otro hilo.
+ * </p>
+ */
+public class RegistroVistas {
+
+    /**
+     * Vista cargada: su panel raíz y su controlador.
+     */
+    public static final class Vista {
+        private final Pane pane;
+        private final Object controlador;
+        private boolean mostrada;
+
+        Vista(Pane pane, Object controlador) {
+            this.pane = pane;
+            this.controlador = controlador;
+        }
+
+        /**
+         * @return El panel raíz de la vista.
+         */
+        public Pane getPane() {
+            return pane;
+        }
+
+        /**
+         * Devuelve el controlador de la vista.
+         *
+         * @param tipo Clase del controlador.
+         * @param <C> Tipo del controlador.
+         * @return El controlador.
+         */
+        public <C> C getControlador(Class<C> tipo) {
+            return tipo.cast(controlador);
+        }
+    }
+
+    /**
+     * Vistas cargadas, por nombre de fichero FXML.
+     */
+    private final Map<String, Vista> vistas = new HashMap<>();
+
+    /**
+     * Vistas pendientes de precargar, en orden.
+     */
+    private final Deque<String> pendientes = new ArrayDeque<>();
+
+    /**
+     * Devuelve una vista para mostrarla, cargándola si no estaba cargada.
+     * Si ya se había mostrado antes y su controlador es {@link VistaRefrescable}, la refresca.
+     *
+     * @param fxml Nombre del fichero FXML, relativo a este paquete.
+     * @return La vista.
+     * @throws IOException Si ocurre un error al cargar el FXML.
+     */
+    public Vista mostrar(String fxml) throws IOException {
+        pendientes.remove(fxml);
+        Vista vista = vistas.get(fxml);
+        if (vista == null) {
+            vista = cargar(fxml);
+            vistas.put(fxml, vista);
+        }
+
+        if (vista.mostrada && vista.controlador instanceof VistaRefrescable) {
+            ((VistaRefrescable) vista.controlador).refrescar();
+        }
+        vista.mostrada = true;
+        return vista;
+    }
+
+    /**
+     * Programa la carga de las vistas indicadas que todavía no estén cargadas, una por tarea del
+     * hilo de JavaFX.
+     *
+     * @param fxmls Nombres de los ficheros FXML, relativos a este paquete.
+     */
+    public void precargar(String... fxmls) {
+        boolean enCurso = !pendientes.isEmpty();
+        for (String fxml : fxmls) {
+            if (!vistas.containsKey(fxml) && !pendientes.contains(fxml)) {
+                pendientes.add(fxml);
+            }
+        }
+        if (!enCurso && !pendientes.isEmpty()) {
+            Platform.runLater(this::precargarSiguiente);
+        }
+    }
+
+    /**
+     * Carga la siguiente vista pendiente y programa la carga de la otra.
+     */
+    private void precargarSiguiente() {
+        String fxml = pendientes.poll();
+        if (fxml == null) {
+            return;
+        }
+        if (!vistas.containsKey(fxml)) {
+            try {
+                vistas.put(fxml, cargar(fxml));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (!pendientes.isEmpty()) {
+            Platform.runLater(this::precargarSiguiente);
+        }
+    }
+
+    /**
+     * Olvida una vista, de modo que la próxima vez se vuelva a cargar desde el FXML.
+     *
+     * @param fxml Nombre del fichero FXML.
+     */
+    public void descartar(String fxml) {
+        vistas.remove(fxml);
+    }
+
+    private Vista cargar(String fxml) throws IOException {
+        FXMLLoader loader = new FXMLLoader(getClass().getResource(fxml));
+        Pane pane = loader.load();
+        return new Vista(pane, loader.getController());
+    }
+}
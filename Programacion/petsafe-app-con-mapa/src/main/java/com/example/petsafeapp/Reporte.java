@@ -22,6 +22,14 @@ public class Reporte {
   * El objeto Usuario que creó el reporte.
   */
   private Usuario usuario;
+  /**
+  * La latitud de la ubicación, o NaN si no se conoce.
+  */
+  private double latitud = Double.NaN;
+  /**
+  * La longitud de la ubicación, o NaN si no se conoce.
+  */
+  private double longitud = Double.NaN;
 
   /**
   * Obtiene el ID del reporte.
@@ -87,6 +95,38 @@ public class Reporte {
     this.ubicacion = ubicacion;
   }
 
+  /**
+  * Obtiene la latitud de la ubicación del reporte.
+  * @return La latitud en grados, o NaN si no se conoce.
+  */
+  public double getLatitud() {
+    return latitud;
+  }
+
+  /**
+  * Establece la latitud de la ubicación del reporte.
+  * @param latitud La latitud en grados.
+  */
+  public void setLatitud(double latitud) {
+    this.latitud = latitud;
+  }
+
+  /**
+  * Obtiene la longitud de la ubicación del reporte.
+  * @return La longitud en grados, o NaN si no se conoce.
+  */
+  public double getLongitud() {
+    return longitud;
+  }
+
+  /**
+  * Establece la longitud de la ubicación del reporte.
+  * @param longitud La longitud en grados.
+  */
+  public void setLongitud(double longitud) {
+    this.longitud = longitud;
+  }
+
   /**
   * Constructor completo para la clase Reporte.
   * @param id El identificador único del reporte.
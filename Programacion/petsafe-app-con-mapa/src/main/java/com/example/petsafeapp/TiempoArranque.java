@@ -0,0 +1,180 @@
+package com.example.petsafeapp;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Registro de los tiempos de arranque de la aplicación, para detectar si un cambio hace que
+ * tarde más en abrirse.
+ * <p>
+ * En cada arranque se anotan los milisegundos transcurridos desde que se creó el proceso de la
+ * JVM hasta cada {@link Hito}. Cuando se alcanza el último ({@link Hito#MAPA_LISTO}) se añade una
+ * línea al fichero {@code ~/.petsafe/arranque.csv} (o al indicado en la propiedad del sistema
+ * {@value #PROPIEDAD_FICHERO}) y se muestra un resumen por consola. La columna {@code cds} indica
+ * si la JVM se lanzó con un archivo de clases compartidas (perfil {@code arranque-rapido}).
+ * </p>
+ */
+public final class TiempoArranque {
+
+    /**
+     * Propiedad del sistema con la ruta del fichero CSV de tiempos.
+     */
+    public static final String PROPIEDAD_FICHERO = "petsafe.arranque.fichero";
+
+    /**
+     * Momentos del arranque que se miden, en el orden en que ocurren.
+     */
+    public enum Hito {
+        /** Entrada en {@code main}: la JVM y el módulo de la aplicación ya están cargados. */
+        MAIN,
+        /** La ventana de inicio de sesión se ha pintado por primera vez. */
+        PRIMER_FRAME,
+        /** La pantalla de inicio de sesión ya responde a la entrada del usuario. */
+        LOGIN_INTERACTIVO,
+        /** Tras iniciar sesión, el mapa se ha cargado con todos sus marcadores. */
+        MAPA_LISTO
+    }
+
+    /**
+     * Instante de creación del proceso, en nanosegundos de {@link System#nanoTime()}.
+     */
+    private static final long INICIO_JVM = calcularInicioJvm();
+
+    /**
+     * Milisegundos desde el inicio de la JVM hasta cada hito alcanzado.
+     */
+    private static final Map<Hito, Long> hitos = new EnumMap<>(Hito.class);
+
+    /**
+     * Acción a ejecutar al alcanzar un hito (la usa el modo de entrenamiento), o {@code null}.
+     */
+    private static volatile Runnable alMarcar;
+
+    private TiempoArranque() {
+    }
+
+    /**
+     * Anota que se ha alcanzado un hito. Solo cuenta la primera vez: volver al mapa más tarde no
+     * cambia la medida. Al alcanzar {@link Hito#MAPA_LISTO} se guarda la línea del arranque.
+     *
+     * @param hito El hito alcanzado.
+     */
+    public static void marcar(Hito hito) {
+        synchronized (hitos) {
+            if (hitos.containsKey(hito)) {
+                return;
+            }
+            hitos.put(hito, (System.nanoTime() - INICIO_JVM) / 1_000_000);
+        }
+        if (hito == Hito.MAPA_LISTO) {
+            guardar();
+        }
+        Runnable accion = alMarcar;
+        if (accion != null) {
+            accion.run();
+        }
+    }
+
+    /**
+     * Establece una acción que se ejecuta cada vez que se alcanza un hito nuevo.
+     *
+     * @param accion La acción, o {@code null} para ninguna.
+     */
+    static void setAlMarcar(Runnable accion) {
+        alMarcar = accion;
+    }
+
+    /**
+     * Devuelve los milisegundos desde el inicio de la JVM hasta un hito.
+     *
+     * @param hito El hito.
+     * @return Los milisegundos, o -1 si todavía no se ha alcanzado.
+     */
+    public static long getMilisegundos(Hito hito) {
+        synchronized (hitos) {
+            return hitos.getOrDefault(hito, -1L);
+        }
+    }
+
+    /**
+     * Añade la línea de este arranque al fichero CSV y la muestra por consola.
+     */
+    private static void guardar() {
+        StringBuilder linea = new StringBuilder(LocalDateTime.now().withNano(0).toString())
+                .append(';').append(cdsActivo());
+        StringBuilder resumen = new StringBuilder("Arranque (ms desde el inicio de la JVM):");
+        for (Hito h : Hito.values()) {
+            long ms = getMilisegundos(h);
+            linea.append(';').append(ms);
+            resumen.append(' ').append(h.name().toLowerCase()).append('=').append(ms);
+        }
+        System.out.println(resumen);
+
+        String ruta = System.getProperty(PROPIEDAD_FICHERO);
+        Path fichero = ruta != null
+                ? Paths.get(ruta)
+                : Paths.get(System.getProperty("user.home"), ".petsafe", "arranque.csv");
+        try {
+            if (fichero.getParent() != null) {
+                Files.createDirectories(fichero.getParent());
+            }
+            boolean nuevo = !Files.exists(fichero);
+            try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(fichero, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+                if (nuevo) {
+                    StringBuilder cabecera = new StringBuilder("fecha;cds");
+                    for (Hito h : Hito.values()) {
+                        cabecera.append(';').append(h.name().toLowerCase()).append("_ms");
+                    }
+                    out.println(cabecera);
+                }
+                out.println(linea);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("No se pudo guardar el tiempo de arranque en " + fichero + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Indica si la JVM se lanzó con un archivo CDS de la aplicación. Se deduce de los argumentos
+     * del proceso; si el sistema no los proporciona, se devuelve {@code false}.
+     */
+    private static boolean cdsActivo() {
+        Optional<String[]> argumentos = ProcessHandle.current().info().arguments();
+        if (argumentos.isEmpty()) {
+            return false;
+        }
+        for (String arg : List.of(argumentos.get())) {
+            if (arg.startsWith("-XX:SharedArchiveFile") || arg.startsWith("-XX:AOTCache")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Calcula el instante de creación del proceso en la escala de {@link System#nanoTime()}.
+     * Si el sistema no informa de él, se toma el momento en que se carga esta clase.
+     */
+    private static long calcularInicioJvm() {
+        long ahora = System.nanoTime();
+        Optional<Instant> inicio = ProcessHandle.current().info().startInstant();
+        if (inicio.isEmpty()) {
+            return ahora;
+        }
+        long transcurrido = Instant.now().toEpochMilli() - inicio.get().toEpochMilli();
+        return ahora - Math.max(0, transcurrido) * 1_000_000;
+    }
+}
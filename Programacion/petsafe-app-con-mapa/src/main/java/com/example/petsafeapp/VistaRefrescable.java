@@ -0,0 +1,18 @@
+package com.example.petsafeapp;
+
+/**
+ * Controlador de una vista que {@link RegistroVistas} conserva entre visitas.
+ * <p>
+ * Cuando el usuario vuelve a una pantalla ya cargada no se vuelve a leer el FXML ni a construir
+ * sus nodos: solo se llama a {@link #refrescar()} para que actualice los datos que muestra y
+ * deje la pantalla en su estado inicial.
+ * </p>
+ */
+public interface VistaRefrescable {
+
+    /**
+     * Vuelve a cargar los datos de la vista y la devuelve a su estado inicial
+     * (sin selección, sin búsquedas y sin subpantallas abiertas).
+     */
+    void refrescar();
+}
@@ -6,12 +6,18 @@ import com.example.petsafeapp.TipoAnimal;
 import javafx.scene.image.Image; // No se usa directamente en esta versión, pero se mantiene el import
 
 import java.io.*;
+import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -26,6 +32,7 @@ public class AnimalModel extends DBUtil {
     /**
      * Crea un nuevo registro de animal en la base de datos, incluyendo su imagen como un BLOB.
      * La imagen se obtiene del objeto {@link Animal} a través de {@code animal.getFoto()}.
+     * También se guarda su hash perceptual ({@link HashPerceptual}) para la búsqueda de fotos parecidas.
      *
      * @param animal El objeto {@link Animal} que contiene la información a insertar.
      *               Se espera que el objeto {@code animal} tenga establecidos sus atributos
@@ -45,20 +52,28 @@ public class AnimalModel extends DBUtil {
         Date fecha = Date.valueOf(animal.getDate());
         File imagen = animal.getFoto(); // Obtiene la imagen como File desde el objeto Animal
         FileInputStream fis = new FileInputStream(imagen);
+        Long hash = HashPerceptual.calcular(imagen);
 
         try {
-            String sql = "INSERT INTO animal (situacion, descripcion, tipo, fecha, imagen) VALUES (?, ?, ?, ?, ?)";
-            PreparedStatement ps = this.getConexion().prepareStatement(sql);
+            String sql = "INSERT INTO animal (situacion, descripcion, tipo, fecha, imagen, hash_imagen) VALUES (?, ?, ?, ?, ?, ?)";
+            PreparedStatement ps = this.getConexion().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
 
             ps.setInt(1, idSituacion);
             ps.setString(2, descripcion);
             ps.setInt(3, idTipo);
             ps.setDate(4, fecha);
             ps.setBinaryStream(5, fis, (int) imagen.length()); // Almacena el archivo como BLOB
+            setHash(ps, 6, hash);
 
             int filasAfectadas = ps.executeUpdate();
-            if (filasAfectadas > 0)
+            if (filasAfectadas > 0) {
                 res = true;
+                ResultSet claves = ps.getGeneratedKeys();
+                if (claves.next()) {
+                    animal.setId(claves.getInt(1));
+                    IndiceImagenes.registrarCambio(animal.getId(), hash);
+                }
+            }
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -69,6 +84,45 @@ public class AnimalModel extends DBUtil {
         }
     }
 
+    /**
+     * Inserta varios animales con una sola ejecución por lotes, usando la conexión indicada sin
+     * confirmar la transacción ni cerrar la conexión (de eso se encarga quien llama). Con una
+     * conexión de {@link #getConexionPorLotes()} el driver envía las filas en sentencias de varias
+     * filas. A cada animal se le asigna el ID generado.
+     * <p>
+     * A diferencia de {@link #createAnimal(Animal)}, no avisa al índice de imágenes: quien llama debe
+     * hacerlo después de confirmar la transacción.
+     * </p>
+     *
+     * @param con La conexión, con la transacción abierta.
+     * @param animales Los animales, con situación, descripción, tipo y fecha.
+     * @param imagenes El contenido de la foto de cada animal, en el mismo orden.
+     * @param hashes El hash perceptual de cada foto, en el mismo orden; puede contener {@code null}.
+     * @throws SQLException Si ocurre un error al insertar.
+     */
+    void insertarAnimales(Connection con, List<Animal> animales, List<byte[]> imagenes, List<Long> hashes) throws SQLException {
+        String sql = "INSERT INTO animal (situacion, descripcion, tipo, fecha, imagen, hash_imagen) VALUES (?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < animales.size(); i++) {
+                Animal animal = animales.get(i);
+                ps.setInt(1, animal.getSituacion().getId());
+                ps.setString(2, animal.getDescripción());
+                ps.setInt(3, animal.getTipo().getId());
+                ps.setDate(4, Date.valueOf(animal.getDate()));
+                ps.setBytes(5, imagenes.get(i));
+                setHash(ps, 6, hashes.get(i));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+
+            try (ResultSet claves = ps.getGeneratedKeys()) {
+                for (int i = 0; i < animales.size() && claves.next(); i++) {
+                    animales.get(i).setId(claves.getInt(1));
+                }
+            }
+        }
+    }
+
     /**
      * Lee todos los registros de animales de la base de datos.
      * Para cada animal, recupera su imagen (almacenada como BLOB) y la guarda en un archivo temporal.
@@ -100,7 +154,7 @@ public class AnimalModel extends DBUtil {
                     "    Tipo t ON a.tipo = t.id -- Unir con Tipo donde los IDs coincidan\n" +
                     "INNER JOIN\n" +
                     "    Situacion s ON a.situacion = s.id -- Unir con Situacion donde los IDs coincidan";
-            PreparedStatement ps = this.getConexion().prepareStatement(sql);
+            PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
             ResultSet rs = ps.executeQuery();
 
             while (rs.next()) {
@@ -147,7 +201,7 @@ public class AnimalModel extends DBUtil {
     /**
      * Actualiza un registro de animal existente en la base de datos, incluyendo su imagen.
      * La imagen se obtiene del objeto {@link Animal} ({@code animal.getFoto()}) y se actualiza
-     * como un BLOB en la base de datos.
+     * como un BLOB en la base de datos, junto con su hash perceptual.
      * <p>
      * Nota: Este método podría lanzar una {@link FileNotFoundException} si el archivo
      * obtenido de {@code animal.getFoto()} no existe, aunque no está declarado explícitamente.
@@ -166,6 +220,7 @@ public class AnimalModel extends DBUtil {
         int idSituacion = animal.getSituacion().getId();
         Date fecha = Date.valueOf(animal.getDate());
         FileInputStream fis = null;
+        Long hash = HashPerceptual.calcular(animal.getFoto());
 
         try {
             String sql = "UPDATE animal\n" +
@@ -174,9 +229,10 @@ public class AnimalModel extends DBUtil {
                     "    tipo = ?,          -- 2nd placeholder\n" +
                     "    situacion = ?,     -- 3rd placeholder\n" +
                     "    fecha = ?,         -- 4th placeholder\n" +
-                    "    imagen = ?         -- 5th placeholder (para el BLOB de la imagen)\n" +
+                    "    imagen = ?,        -- 5th placeholder (para el BLOB de la imagen)\n" +
+                    "    hash_imagen = ?    -- 6th placeholder (hash perceptual de la imagen)\n" +
                     "WHERE\n" +
-                    "    id = ?;            -- 6th placeholder (for the ID)";
+                    "    id = ?;            -- 7th placeholder (for the ID)";
             PreparedStatement ps = this.getConexion().prepareStatement(sql);
 
             fis = new FileInputStream(animal.getFoto()); 
@@ -186,9 +242,15 @@ public class AnimalModel extends DBUtil {
             ps.setInt(3, idSituacion);
             ps.setDate(4, fecha);
             ps.setBinaryStream(5, fis, (int) animal.getFoto().length()); // Actualiza el BLOB
-            ps.setInt(6, animal.getId());
+            setHash(ps, 6, hash);
+            ps.setInt(7, animal.getId());
 
             res = ps.executeUpdate();
+            if (res > 0) {
+                IndiceImagenes.registrarCambio(animal.getId(), hash);
+                BuscadorTexto.registrarCambioAnimal(animal);
+                ServidorImagenes.registrarCambio(ImagenModel.ANIMAL, animal.getId());
+            }
         } catch (SQLException | FileNotFoundException e) { // Captura FileNotFoundException también
             e.printStackTrace();
         } finally {
@@ -238,8 +300,11 @@ public class AnimalModel extends DBUtil {
             ps.setInt(1, idAnimal);
 
             int filasAfectadas = ps.executeUpdate();
-            if (filasAfectadas > 0)
+            if (filasAfectadas > 0) {
                 res = true;
+                IndiceImagenes.registrarBaja(idAnimal);
+                ServidorImagenes.registrarCambio(ImagenModel.ANIMAL, idAnimal);
+            }
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -334,6 +399,123 @@ public class AnimalModel extends DBUtil {
         return animal; // Devolver el animal construido o null
     }
 
+    /**
+     * Busca los animales cuya foto se parece a una imagen, usando el índice de hashes perceptuales.
+     *
+     * @param imagen El fichero de la imagen de referencia.
+     * @param maxDistancia Número máximo de bits distintos entre hashes; {@link HashPerceptual#DISTANCIA_SIMILAR}
+     *                     es un buen valor para "la misma foto o casi".
+     * @return Los IDs de los animales encontrados con la distancia de su hash, de más a menos parecido.
+     */
+    public List<ArbolBK.Resultado<Integer>> buscarAnimalesSimilares(File imagen, int maxDistancia) {
+        return IndiceImagenes.getInstancia().buscarSimilares(imagen, maxDistancia);
+    }
+
+    /**
+     * Lee el hash perceptual de todos los animales que lo tienen calculado.
+     *
+     * @return Un mapa del ID del animal a su hash, o {@code null} si ocurre un error.
+     */
+    public Map<Integer, Long> readHashesImagen() {
+        Map<Integer, Long> hashes = new HashMap<>();
+
+        try {
+            String sql = "SELECT id, hash_imagen FROM animal WHERE hash_imagen IS NOT NULL";
+            PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
+            ResultSet rs = ps.executeQuery();
+
+            while (rs.next()) {
+                hashes.put(rs.getInt("id"), rs.getLong("hash_imagen"));
+            }
+            return hashes;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            this.cerrarConexion();
+        }
+    }
+
+    /**
+     * Lee los IDs de los animales que tienen imagen pero todavía no tienen hash perceptual.
+     *
+     * @return La lista de IDs, o {@code null} si ocurre un error.
+     */
+    public ArrayList<Integer> readIdsSinHashImagen() {
+        ArrayList<Integer> ids = new ArrayList<>();
+
+        try {
+            String sql = "SELECT id FROM animal WHERE hash_imagen IS NULL AND imagen IS NOT NULL ORDER BY id";
+            PreparedStatement ps = this.getConexion().prepareStatement(sql);
+            ResultSet rs = ps.executeQuery();
+
+            while (rs.next()) {
+                ids.add(rs.getInt("id"));
+            }
+            return ids;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            this.cerrarConexion();
+        }
+    }
+
+    /**
+     * Calcula y guarda el hash perceptual de la imagen de varios animales usando una sola conexión.
+     * Cada imagen se lee y se procesa de una en una, así que la memoria usada no depende del número de animales.
+     *
+     * @param ids Los IDs de los animales a procesar.
+     * @return El número de animales cuyo hash se ha guardado.
+     */
+    public int rellenarHashesImagen(List<Integer> ids) {
+        int res = 0;
+        Map<Integer, Long> calculados = new HashMap<>();
+
+        try {
+            PreparedStatement lectura = this.getConexion().prepareStatement("SELECT imagen FROM animal WHERE id = ?");
+            PreparedStatement escritura = this.conexion.prepareStatement("UPDATE animal SET hash_imagen = ? WHERE id = ?");
+
+            for (int id : ids) {
+                lectura.setInt(1, id);
+                try (ResultSet rs = lectura.executeQuery()) {
+                    if (!rs.next()) continue;
+                    try (InputStream is = rs.getBinaryStream("imagen")) {
+                        Long hash = HashPerceptual.calcular(is);
+                        if (hash == null) continue;
+                        escritura.setLong(1, hash);
+                        escritura.setInt(2, id);
+                        escritura.addBatch();
+                        calculados.put(id, hash);
+                    }
+                }
+            }
+
+            for (int filas : escritura.executeBatch()) {
+                if (filas > 0) res++;
+            }
+            for (Map.Entry<Integer, Long> e : calculados.entrySet()) {
+                IndiceImagenes.registrarCambio(e.getKey(), e.getValue());
+            }
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+        } finally {
+            this.cerrarConexion();
+        }
+        return res;
+    }
+
+    /**
+     * Asigna el hash de la imagen a un parámetro, o {@code NULL} si la imagen no se pudo leer.
+     */
+    private static void setHash(PreparedStatement ps, int indice, Long hash) throws SQLException {
+        if (hash == null) {
+            ps.setNull(indice, Types.BIGINT);
+        } else {
+            ps.setLong(indice, hash);
+        }
+    }
+
 //    /**
 //     * Obtiene la imagen de un animal (como un objeto {@link javafx.scene.image.Image})
 //     * desde la base de datos utilizando el ID del animal.
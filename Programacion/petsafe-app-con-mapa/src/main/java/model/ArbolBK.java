@@ -0,0 +1,196 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Árbol BK (Burkhard-Keller) sobre hashes de 64 bits con la distancia de Hamming.
+ * <p>
+ * Cada hijo de un nodo cuelga de la distancia que lo separa de él; por la desigualdad triangular,
+ * para encontrar los hashes a distancia como mucho {@code r} de una consulta basta con bajar por
+ * los hijos cuya distancia esté en {@code [d - r, d + r]}. Con radios pequeños (los que interesan
+ * para fotos parecidas) se visita una fracción muy pequeña del árbol.
+ * </p>
+ * <p>
+ * Varios elementos pueden compartir el mismo hash (fotos idénticas); se guardan en el mismo nodo.
+ * Al eliminar un elemento el nodo se conserva para no romper el árbol.
+ * </p>
+ *
+ * @param <T> Tipo de los elementos asociados a cada hash.
+ */
+public class ArbolBK<T> {
+
+    /**
+     * Nodo del árbol: un hash, los elementos que lo tienen y los hijos ordenados por distancia.
+     */
+    private static final class Nodo<T> {
+        final long hash;
+        final List<T> valores = new ArrayList<>(1);
+        int[] distancias = new int[0];
+        Nodo<T>[] hijos;
+
+        @SuppressWarnings("unchecked")
+        Nodo(long hash) {
+            this.hash = hash;
+            this.hijos = (Nodo<T>[]) new Nodo<?>[0];
+        }
+
+        Nodo<T> hijo(int distancia) {
+            int i = Arrays.binarySearch(distancias, distancia);
+            return i >= 0 ? hijos[i] : null;
+        }
+
+        void anadirHijo(int distancia, Nodo<T> hijo) {
+            int i = -Arrays.binarySearch(distancias, distancia) - 1;
+            int n = distancias.length;
+            distancias = Arrays.copyOf(distancias, n + 1);
+            hijos = Arrays.copyOf(hijos, n + 1);
+            System.arraycopy(distancias, i, distancias, i + 1, n - i);
+            System.arraycopy(hijos, i, hijos, i + 1, n - i);
+            distancias[i] = distancia;
+            hijos[i] = hijo;
+        }
+    }
+
+    /**
+     * Resultado de una búsqueda: el elemento encontrado y la distancia de su hash a la consulta.
+     *
+     * @param <T> Tipo del elemento.
+     */
+    public static final class Resultado<T> {
+        private final T valor;
+        private final int distancia;
+
+        Resultado(T valor, int distancia) {
+            this.valor = valor;
+            this.distancia = distancia;
+        }
+
+        /**
+         * @return El elemento encontrado.
+         */
+        public T getValor() {
+            return valor;
+        }
+
+        /**
+         * @return La distancia de Hamming entre su hash y el de la consulta.
+         */
+        public int getDistancia() {
+            return distancia;
+        }
+
+        @Override
+        public String toString() {
+            return valor + " (" + distancia + ")";
+        }
+    }
+
+    /**
+     * Raíz del árbol.
+     */
+    private Nodo<T> raiz;
+
+    /**
+     * Número de elementos guardados.
+     */
+    private int total;
+
+    /**
+     * Añade un elemento con su hash.
+     *
+     * @param hash El hash.
+     * @param valor El elemento.
+     */
+    public synchronized void insertar(long hash, T valor) {
+        total++;
+        if (raiz == null) {
+            raiz = new Nodo<>(hash);
+            raiz.valores.add(valor);
+            return;
+        }
+        Nodo<T> actual = raiz;
+        while (true) {
+            int d = HashPerceptual.distancia(hash, actual.hash);
+            if (d == 0) {
+                actual.valores.add(valor);
+                return;
+            }
+            Nodo<T> hijo = actual.hijo(d);
+            if (hijo == null) {
+                Nodo<T> nuevo = new Nodo<>(hash);
+                nuevo.valores.add(valor);
+                actual.anadirHijo(d, nuevo);
+                return;
+            }
+            actual = hijo;
+        }
+    }
+
+    /**
+     * Elimina un elemento asociado a un hash.
+     *
+     * @param hash El hash con el que se insertó el elemento.
+     * @param valor El elemento.
+     * @return {@code true} si el elemento estaba en el árbol.
+     */
+    public synchronized boolean eliminar(long hash, T valor) {
+        Nodo<T> actual = raiz;
+        while (actual != null) {
+            int d = HashPerceptual.distancia(hash, actual.hash);
+            if (d == 0) {
+                boolean eliminado = actual.valores.remove(valor);
+                if (eliminado) {
+                    total--;
+                }
+                return eliminado;
+            }
+            actual = actual.hijo(d);
+        }
+        return false;
+    }
+
+    /**
+     * Busca todos los elementos cuyo hash está a distancia como mucho {@code radio} del indicado.
+     *
+     * @param hash El hash de consulta.
+     * @param radio La distancia máxima (número de bits distintos).
+     * @return Los elementos encontrados, de más a menos parecido.
+     */
+    public synchronized List<Resultado<T>> buscar(long hash, int radio) {
+        List<Resultado<T>> res = new ArrayList<>();
+        if (raiz == null) {
+            return res;
+        }
+        List<Nodo<T>> pendientes = new ArrayList<>();
+        pendientes.add(raiz);
+        while (!pendientes.isEmpty()) {
+            Nodo<T> nodo = pendientes.remove(pendientes.size() - 1);
+            int d = HashPerceptual.distancia(hash, nodo.hash);
+            if (d <= radio) {
+                for (T valor : nodo.valores) {
+                    res.add(new Resultado<>(valor, d));
+                }
+            }
+            for (int i = 0; i < nodo.distancias.length; i++) {
+                int dh = nodo.distancias[i];
+                if (dh >= d - radio && dh <= d + radio) {
+                    pendientes.add(nodo.hijos[i]);
+                }
+            }
+        }
+        res.sort(Comparator.comparingInt(Resultado::getDistancia));
+        return res;
+    }
+
+    /**
+     * Número de elementos del árbol.
+     *
+     * @return El número de elementos.
+     */
+    public synchronized int size() {
+        return total;
+    }
+}
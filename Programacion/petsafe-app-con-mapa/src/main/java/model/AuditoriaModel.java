@@ -0,0 +1,63 @@
+package model;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+/**
+ * Lectura de la auditoría de animales (tabla {@code auditoriaanimal}), que rellenan los disparadores
+ * de {@code trigger.sql}.
+ * <p>
+ * La tabla está particionada por meses ({@code V007__auditoria_particionada.sql}) y
+ * {@link MantenimientoAuditoria} archiva y borra los meses que superan la retención. El historial
+ * de un animal se lee con el índice {@code (animal_id, fecha_hora)} de cada partición, así que su
+ * coste depende de las entradas del animal y del número de meses guardados, no del tamaño de la tabla.
+ * </p>
+ */
+public class AuditoriaModel extends DBUtil {
+
+    /**
+     * Una entrada de la auditoría.
+     *
+     * @param id ID de la entrada.
+     * @param operacion {@code INSERT}, {@code UPDATE} o {@code DELETE}.
+     * @param fechaHora Momento de la operación.
+     * @param datosAntiguos Datos del animal antes de la operación, o {@code null} en las altas.
+     * @param datosNuevos Datos del animal después de la operación, o {@code null} en las bajas.
+     */
+    public record EntradaAuditoria(int id, String operacion, LocalDateTime fechaHora, String datosAntiguos, String datosNuevos) {
+    }
+
+    /**
+     * Lee el historial de un animal, de la operación más reciente a la más antigua.
+     *
+     * @param idAnimal El ID del animal.
+     * @param limite Número máximo de entradas.
+     * @return Las entradas, o {@code null} si ocurre un error.
+     */
+    public ArrayList<EntradaAuditoria> readHistorial(int idAnimal, int limite) {
+        ArrayList<EntradaAuditoria> historial = new ArrayList<>();
+        try {
+            String sql = "SELECT id, operacion, fecha_hora, datos_antiguos, datos_nuevos FROM auditoriaanimal " +
+                    "WHERE animal_id = ? ORDER BY fecha_hora DESC, id DESC LIMIT ?";
+            PreparedStatement ps = this.abrirConexion().prepareStatement(sql);
+            ps.setInt(1, idAnimal);
+            ps.setInt(2, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    historial.add(new EntradaAuditoria(rs.getInt("id"), rs.getString("operacion"),
+                            rs.getTimestamp("fecha_hora").toLocalDateTime(),
+                            rs.getString("datos_antiguos"), rs.getString("datos_nuevos")));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            this.cerrarConexion();
+        }
+        return historial;
+    }
+}
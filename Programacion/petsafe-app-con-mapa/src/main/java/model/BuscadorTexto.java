@@ -0,0 +1,259 @@
+package model;
+
+import com.example.petsafeapp.Animal;
+import com.example.petsafeapp.Reporte;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Búsqueda por texto de negocios, protectoras y reportes mientras el usuario escribe.
+ * <p>
+ * Mantiene en memoria un {@link IndiceTexto} con el nombre y la descripción de los negocios, el
+ * nombre y la descripción de las protectoras y la descripción del animal de cada reporte, así que
+ * buscar no consulta la base de datos. Se carga la primera vez que se usa y después se actualiza
+ * de forma incremental: {@link NegocioModel}, {@link ProtectoraModel}, {@link ReporteModel} y
+ * {@link AnimalModel} avisan de cada alta, modificación o baja.
+ * </p>
+ */
+public class BuscadorTexto {
+
+    /**
+     * Número de resultados que muestran por defecto las listas.
+     */
+    public static final int RESULTADOS_POR_DEFECTO = 50;
+
+    /**
+     * Instancia compartida; es {@code null} hasta que alguien hace la primera búsqueda.
+     */
+    private static volatile BuscadorTexto instancia;
+
+    private final IndiceTexto<ElementoBuscable> indice = new IndiceTexto<>();
+
+    /**
+     * IDs de los reportes indexados de cada animal, para volver a indexarlos cuando cambia su descripción.
+     */
+    private final Map<Integer, Set<Integer>> reportesPorAnimal = new HashMap<>();
+
+    /**
+     * ID del animal de cada reporte indexado.
+     */
+    private final Map<Integer, Integer> animalPorReporte = new HashMap<>();
+
+    private BuscadorTexto() {
+    }
+
+    /**
+     * Devuelve el buscador compartido, cargándolo desde la base de datos la primera vez.
+     *
+     * @return La instancia compartida.
+     */
+    public static BuscadorTexto getInstancia() {
+        BuscadorTexto res = instancia;
+        if (res == null) {
+            synchronized (BuscadorTexto.class) {
+                res = instancia;
+                if (res == null) {
+                    res = new BuscadorTexto();
+                    res.cargar();
+                    instancia = res;
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Notifica el alta o la modificación de un negocio o una protectora si el buscador ya está cargado.
+     *
+     * @param elemento El negocio o la protectora, con su nombre como título.
+     * @param descripcion Su descripción.
+     */
+    static void registrarCambio(ElementoBuscable elemento, String descripcion) {
+        BuscadorTexto res = instancia;
+        if (res != null) {
+            res.actualizar(elemento, descripcion);
+        }
+    }
+
+    /**
+     * Notifica la baja de un negocio o una protectora si el buscador ya está cargado.
+     *
+     * @param elemento El elemento eliminado (basta con la categoría y el id).
+     */
+    static void registrarBaja(ElementoBuscable elemento) {
+        BuscadorTexto res = instancia;
+        if (res != null) {
+            res.eliminar(elemento);
+        }
+    }
+
+    /**
+     * Notifica el alta o la modificación de un reporte si el buscador ya está cargado.
+     *
+     * @param reporte El reporte, con su ID y su animal (ID y descripción).
+     */
+    static void registrarCambio(Reporte reporte) {
+        BuscadorTexto res = instancia;
+        if (res != null) {
+            res.actualizarReporte(reporte);
+        }
+    }
+
+    /**
+     * Notifica la baja de un reporte si el buscador ya está cargado.
+     *
+     * @param idReporte El ID del reporte eliminado.
+     */
+    static void registrarBajaReporte(int idReporte) {
+        BuscadorTexto res = instancia;
+        if (res != null) {
+            res.eliminarReporte(idReporte);
+        }
+    }
+
+    /**
+     * Notifica la modificación de un animal (su descripción puede haber cambiado) si el buscador
+     * ya está cargado.
+     *
+     * @param animal El animal con sus datos actuales.
+     */
+    static void registrarCambioAnimal(Animal animal) {
+        BuscadorTexto res = instancia;
+        if (res != null) {
+            res.actualizarAnimal(animal);
+        }
+    }
+
+    /**
+     * Carga en el índice todos los negocios, protectoras y reportes. No lee imágenes.
+     */
+    public void cargar() {
+        Map<ElementoBuscable, String> textos = new NegocioModel().readTextosBusqueda();
+        if (textos != null) {
+            textos.forEach(this::actualizar);
+        }
+        textos = new ProtectoraModel().readTextosBusqueda();
+        if (textos != null) {
+            textos.forEach(this::actualizar);
+        }
+        List<Reporte> reportes = new ReporteModel().readReportesParaBuscar();
+        if (reportes != null) {
+            for (Reporte reporte : reportes) {
+                actualizarReporte(reporte);
+            }
+        }
+    }
+
+    /**
+     * Indexa un negocio o una protectora, o actualiza sus textos.
+     *
+     * @param elemento El elemento, con su nombre como título.
+     * @param descripcion Su descripción.
+     */
+    public void actualizar(ElementoBuscable elemento, String descripcion) {
+        indice.actualizar(elemento, elemento.getTitulo(), descripcion);
+    }
+
+    /**
+     * Quita un negocio o una protectora del índice.
+     *
+     * @param elemento El elemento.
+     */
+    public void eliminar(ElementoBuscable elemento) {
+        indice.eliminar(elemento);
+    }
+
+    /**
+     * Indexa un reporte por la descripción de su animal, o la actualiza.
+     *
+     * @param reporte El reporte, con su ID y su animal (ID y descripción).
+     */
+    public synchronized void actualizarReporte(Reporte reporte) {
+        eliminarReporte(reporte.getId());
+        String descripcion = reporte.getAnimal().getDescripción();
+        indice.actualizar(new ElementoBuscable(ElementoBuscable.Categoria.REPORTE, reporte.getId(), descripcion), descripcion, null);
+        reportesPorAnimal.computeIfAbsent(reporte.getAnimal().getId(), k -> new HashSet<>()).add(reporte.getId());
+        animalPorReporte.put(reporte.getId(), reporte.getAnimal().getId());
+    }
+
+    /**
+     * Quita un reporte del índice.
+     *
+     * @param idReporte El ID del reporte.
+     */
+    public synchronized void eliminarReporte(int idReporte) {
+        indice.eliminar(new ElementoBuscable(ElementoBuscable.Categoria.REPORTE, idReporte, null));
+        Integer idAnimal = animalPorReporte.remove(idReporte);
+        if (idAnimal != null) {
+            Set<Integer> reportes = reportesPorAnimal.get(idAnimal);
+            reportes.remove(idReporte);
+            if (reportes.isEmpty()) {
+                reportesPorAnimal.remove(idAnimal);
+            }
+        }
+    }
+
+    /**
+     * Vuelve a indexar los reportes de un animal cuya descripción ha cambiado.
+     *
+     * @param animal El animal con sus datos actuales.
+     */
+    public synchronized void actualizarAnimal(Animal animal) {
+        Set<Integer> reportes = reportesPorAnimal.get(animal.getId());
+        if (reportes == null) {
+            return;
+        }
+        String descripcion = animal.getDescripción();
+        for (int idReporte : reportes) {
+            indice.actualizar(new ElementoBuscable(ElementoBuscable.Categoria.REPORTE, idReporte, descripcion), descripcion, null);
+        }
+    }
+
+    /**
+     * Busca los elementos que contienen todas las palabras de un texto (la última puede estar a medias).
+     *
+     * @param texto El texto escrito por el usuario.
+     * @param max Número máximo de resultados.
+     * @param categorias Categorías en las que buscar; si no se indica ninguna se busca en todas.
+     * @return Los elementos encontrados, de mejor a peor coincidencia.
+     */
+    public List<IndiceTexto.Resultado<ElementoBuscable>> buscar(String texto, int max, ElementoBuscable.Categoria... categorias) {
+        if (categorias.length == 0) {
+            return indice.buscar(texto, max, null);
+        }
+        Set<ElementoBuscable.Categoria> buscadas = EnumSet.of(categorias[0], categorias);
+        return indice.buscar(texto, max, e -> buscadas.contains(e.getCategoria()));
+    }
+
+    /**
+     * Igual que {@link #buscar(String, int, ElementoBuscable.Categoria...)}, pero solo devuelve los IDs,
+     * para leer después los registros de la base de datos.
+     *
+     * @param texto El texto escrito por el usuario.
+     * @param max Número máximo de resultados.
+     * @param categorias Categorías en las que buscar; si no se indica ninguna se busca en todas.
+     * @return Los IDs de los elementos encontrados, de mejor a peor coincidencia.
+     */
+    public List<Integer> buscarIds(String texto, int max, ElementoBuscable.Categoria... categorias) {
+        List<Integer> ids = new ArrayList<>();
+        for (IndiceTexto.Resultado<ElementoBuscable> r : buscar(texto, max, categorias)) {
+            ids.add(r.getValor().getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Número de elementos indexados.
+     *
+     * @return El número de negocios, protectoras y reportes en el índice.
+     */
+    public int size() {
+        return indice.size();
+    }
+}
@@ -0,0 +1,905 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Caché en memoria de los resultados de las consultas, compartida por todos los modelos.
+ * <p>
+ * {@link DBUtil} envuelve cada conexión con {@link #envolver(Connection)}: las consultas
+ * {@code SELECT} de una {@link PreparedStatement} se guardan por texto de la sentencia y valores de
+ * sus parámetros, y la siguiente vez que un modelo ejecuta la misma consulta con los mismos
+ * parámetros recibe un {@link ResultSet} leído de memoria, sin ir al servidor. Así, volver a abrir
+ * un listado o el mapa, o rellenar otra vez los desplegables, no repite las consultas.
+ * </p>
+ * <p>
+ * Cada resultado se asocia a las tablas de su {@code FROM} y sus {@code JOIN}. Cualquier
+ * {@code INSERT}, {@code UPDATE} o {@code DELETE} hecho por esta aplicación descarta los resultados
+ * que dependen de su tabla (y de las que cambian con ella por disparadores o claves ajenas en
+ * cascada, ver {@link #EFECTOS}), así que quien guarda algo lo ve en la siguiente lectura. Lo que
+ * cambien otras aplicaciones se ve como mucho al caducar el resultado.
+ * </p>
+ * <p>
+ * No se guardan:
+ * </p>
+ * <ul>
+ *     <li>las consultas dentro de una transacción ({@code setAutoCommit(false)}), que pueden ver
+ *     cambios todavía sin confirmar;</li>
+ *     <li>las de las tablas de {@link #SIN_CACHE}, que se consultan precisamente para ver lo que han
+ *     hecho otras aplicaciones;</li>
+ *     <li>los resultados con alguna columna de {@link #COLUMNAS_SIN_CACHE} (las contraseñas del
+ *     inicio de sesión), que no deben quedarse en memoria;</li>
+ *     <li>las que dependen del momento en que se ejecutan ({@code NOW()}, {@code RAND()}...);</li>
+ *     <li>las del hilo de sincronización de {@link ReplicaLocal} ({@link DBUtil#leerDelPrincipal(boolean)});</li>
+ *     <li>las que leen en streaming ({@code setFetchSize(Integer.MIN_VALUE)}) o con un
+ *     {@link Statement} sin preparar, como {@link ExportadorDatos};</li>
+ *     <li>los resultados que ocupan más de la cuarta parte de la memoria de la caché: se empiezan a
+ *     leer en memoria y el resto de filas se sigue leyendo del servidor como siempre.</li>
+ * </ul>
+ * <p>
+ * Se configura con {@code cacheConsultas.ttl} (segundos que dura un resultado, 60 por defecto) y
+ * {@code cacheConsultas.memoria} (megabytes como máximo, 32 por defecto) en
+ * {@code database.properties} o como propiedades del sistema con el prefijo {@code petsafe.}; con
+ * cualquiera de los dos a 0 la caché queda desactivada. Cuando se llena se descartan primero los
+ * resultados usados hace más tiempo.
+ * </p>
+ */
+public final class CacheConsultas {
+
+    /**
+     * Tiempo que dura un resultado en la caché, en milisegundos (0 si está desactivada).
+     */
+    static final long TTL_MS = (long) (1000 * Double.parseDouble(propiedad("cacheConsultas.ttl", "60")));
+
+    /**
+     * Memoria máxima que ocupan los resultados guardados, en bytes aproximados (0 si está desactivada).
+     */
+    static final long MEMORIA_MAXIMA = (long) (1024 * 1024 * Double.parseDouble(propiedad("cacheConsultas.memoria", "32")));
+
+    /**
+     * Tablas cuyas consultas no se guardan nunca: el registro de cambios y los marcadores del mapa,
+     * de los que se piden solo las filas nuevas, las notificaciones que generan otros usuarios y la
+     * tabla de control de las migraciones.
+     */
+    private static final Set<String> SIN_CACHE = Set.of("cambio", "marcador_mapa", "notificacion", "schema_migraciones");
+
+    /**
+     * Columnas cuyos resultados no se guardan nunca, en minúsculas: las credenciales de los usuarios.
+     * Se comprueban en las columnas del resultado, así que también cubren los {@code SELECT *}.
+     */
+    private static final Set<String> COLUMNAS_SIN_CACHE = Set.of("contraseña");
+
+    /**
+     * Tablas que cambian cuando se escribe en otra, por disparadores ({@code trigger.sql}) o por
+     * claves ajenas {@code ON DELETE CASCADE}/{@code SET NULL}.
+     */
+    private static final Map<String, List<String>> EFECTOS = Map.of(
+            "animal", List.of("auditoriaanimal", "animal_imagen_backup"),
+            "usuario", List.of("citas", "suscripcion", "notificacion"),
+            "reporte", List.of("notificacion"));
+
+    /**
+     * Principio de una lista de tablas de una consulta.
+     */
+    private static final Pattern ORIGEN = Pattern.compile("\\b(?:FROM|JOIN)\\s+", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Una tabla de la lista, con su alias opcional y la coma que la separa de la siguiente.
+     */
+    private static final Pattern TABLA = Pattern.compile(
+            "\\G`?(?:\\w+`?\\.`?)?(\\w+)`?(?:\\s+(?:AS\\s+)?(?!(?:WHERE|JOIN|ON|USING|ORDER|GROUP|LIMIT|INNER|LEFT|RIGHT"
+                    + "|CROSS|NATURAL|STRAIGHT_JOIN|HAVING|UNION|FOR|LOCK|USE|FORCE|IGNORE)\\b)\\w+)?\\s*(,\\s*)?",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Tabla en la que escribe una sentencia.
+     */
+    private static final Pattern ESCRITURA = Pattern.compile(
+            "^\\s*(?:INSERT\\s+(?:IGNORE\\s+)?(?:INTO\\s+)?|REPLACE\\s+(?:INTO\\s+)?|UPDATE\\s+(?:IGNORE\\s+)?|DELETE\\s+FROM\\s+)"
+                    + "`?(?:\\w+`?\\.`?)?(\\w+)",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Funciones cuyo resultado depende del momento o de la sesión.
+     */
+    private static final Pattern NO_DETERMINISTA = Pattern.compile(
+            "\\b(?:NOW|CURDATE|CURTIME|CURRENT_DATE|CURRENT_TIME|CURRENT_TIMESTAMP|SYSDATE|UTC_DATE|UTC_TIMESTAMP"
+                    + "|RAND|UUID|LAST_INSERT_ID|FOUND_ROWS|ROW_COUNT|CONNECTION_ID|GET_LOCK|RELEASE_LOCK|IS_FREE_LOCK)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Valor de un parámetro {@code NULL} en la clave.
+     */
+    private static final Object NULO = new Object() {
+        @Override
+        public String toString() {
+            return "NULL";
+        }
+    };
+
+    /**
+     * Resultados guardados, en orden de uso (el primero es el que se usó hace más tiempo).
+     */
+    private static final LinkedHashMap<Clave, Resultado> RESULTADOS = new LinkedHashMap<>(64, 0.75f, true);
+
+    /**
+     * Dependencias de cada consulta, para no volver a analizar su texto cada vez.
+     */
+    private static final Map<String, Set<String>> TABLAS = new HashMap<>();
+
+    /**
+     * Generación en la que se invalidó por última vez cada tabla.
+     */
+    private static final Map<String, Long> INVALIDADA = new HashMap<>();
+
+    /**
+     * Contador de invalidaciones; una consulta empezada antes de una invalidación de alguna de sus
+     * tablas no guarda su resultado, que podría ser anterior a la escritura.
+     */
+    private static long generacion = 0;
+
+    /**
+     * Generación de la última invalidación completa.
+     */
+    private static long todoInvalidado = 0;
+
+    private static long ocupado = 0;
+
+    private CacheConsultas() {
+    }
+
+    /**
+     * Consulta con los valores de sus parámetros, en orden.
+     */
+    private record Clave(String sql, List<Object> parametros) {
+    }
+
+    /**
+     * Resultado de una consulta leído en memoria.
+     */
+    private static final class Resultado {
+        final String[] columnas;
+        final int[] tipos;
+        final ResultSetMetaData meta;
+        final List<Object[]> filas;
+        final Set<String> tablas;
+        long bytes;
+        long caduca;
+
+        Resultado(String[] columnas, int[] tipos, ResultSetMetaData meta, Set<String> tablas) {
+            this.columnas = columnas;
+            this.tipos = tipos;
+            this.meta = meta;
+            this.filas = new ArrayList<>();
+            this.tablas = tablas;
+        }
+    }
+
+    /**
+     * Indica si la caché está activada.
+     */
+    public static boolean activa() {
+        return TTL_MS > 0 && MEMORIA_MAXIMA > 0;
+    }
+
+    /**
+     * Envuelve una conexión para que sus consultas usen la caché y sus escrituras la invaliden.
+     *
+     * @param c La conexión, que puede ser {@code null}.
+     * @return La conexión envuelta, o la misma si es {@code null} o la caché está desactivada.
+     */
+    static Connection envolver(Connection c) {
+        if (c == null || !activa()) {
+            return c;
+        }
+        return (Connection) Proxy.newProxyInstance(CacheConsultas.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new Conexion(c));
+    }
+
+    /**
+     * Descarta todos los resultados guardados.
+     */
+    public static synchronized void invalidarTodo() {
+        generacion++;
+        todoInvalidado = generacion;
+        RESULTADOS.clear();
+        ocupado = 0;
+    }
+
+    /**
+     * Descarta los resultados que dependen de la tabla en la que escribe una sentencia, o todos si
+     * no se sabe en qué tabla escribe.
+     *
+     * @param sql La sentencia de escritura.
+     */
+    static void invalidar(String sql) {
+        Matcher m = ESCRITURA.matcher(sql);
+        if (!m.find()) {
+            invalidarTodo();
+            return;
+        }
+        String tabla = m.group(1).toLowerCase(Locale.ROOT);
+        Set<String> tablas = new HashSet<>(EFECTOS.getOrDefault(tabla, List.of()));
+        tablas.add(tabla);
+        invalidar(tablas);
+    }
+
+    private static synchronized void invalidar(Set<String> tablas) {
+        generacion++;
+        for (String tabla : tablas) {
+            INVALIDADA.put(tabla, generacion);
+        }
+        Iterator<Resultado> it = RESULTADOS.values().iterator();
+        while (it.hasNext()) {
+            Resultado r = it.next();
+            for (String tabla : r.tablas) {
+                if (tablas.contains(tabla)) {
+                    ocupado -= r.bytes;
+                    it.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Devuelve las tablas de las que lee una consulta, o {@code null} si su resultado no se puede
+     * guardar.
+     */
+    private static synchronized Set<String> tablas(String sql) {
+        Set<String> res = TABLAS.get(sql);
+        if (res == null && !TABLAS.containsKey(sql)) {
+            res = analizar(sql);
+            if (TABLAS.size() >= 1000) {
+                TABLAS.clear();
+            }
+            TABLAS.put(sql, res);
+        }
+        return res;
+    }
+
+    /**
+     * Analiza el texto de una consulta.
+     *
+     * @param sql La consulta.
+     * @return Las tablas de sus {@code FROM} y {@code JOIN} (también los de las subconsultas), en
+     *         minúsculas, o {@code null} si su resultado no se puede guardar.
+     */
+    static Set<String> analizar(String sql) {
+        if (!DBUtil.esLectura(sql) || !sql.stripLeading().regionMatches(true, 0, "SELECT", 0, 6)
+                || NO_DETERMINISTA.matcher(sql).find()) {
+            return null;
+        }
+        Set<String> res = new HashSet<>();
+        Matcher origen = ORIGEN.matcher(sql);
+        Matcher tabla = TABLA.matcher(sql);
+        while (origen.find()) {
+            tabla.region(origen.end(), sql.length());
+            while (tabla.find()) {
+                String nombre = tabla.group(1).toLowerCase(Locale.ROOT);
+                if (SIN_CACHE.contains(nombre)) {
+                    return null;
+                }
+                res.add(nombre);
+                if (tabla.group(2) == null) {
+                    break;
+                }
+            }
+        }
+        return res.isEmpty() ? null : Set.copyOf(res);
+    }
+
+    private static synchronized Resultado buscar(Clave clave) {
+        Resultado r = RESULTADOS.get(clave);
+        if (r != null && r.caduca < System.currentTimeMillis()) {
+            RESULTADOS.remove(clave);
+            ocupado -= r.bytes;
+            return null;
+        }
+        return r;
+    }
+
+    private static synchronized long generacionActual() {
+        return generacion;
+    }
+
+    /**
+     * Guarda un resultado, salvo que alguna de sus tablas se haya invalidado mientras se leía.
+     */
+    private static synchronized void guardar(Clave clave, Resultado r, long leidoEn) {
+        if (todoInvalidado > leidoEn) {
+            return;
+        }
+        for (String tabla : r.tablas) {
+            if (INVALIDADA.getOrDefault(tabla, 0L) > leidoEn) {
+                return;
+            }
+        }
+        r.caduca = System.currentTimeMillis() + TTL_MS;
+        Resultado anterior = RESULTADOS.put(clave, r);
+        if (anterior != null) {
+            ocupado -= anterior.bytes;
+        }
+        ocupado += r.bytes;
+        Iterator<Resultado> it = RESULTADOS.values().iterator();
+        while (ocupado > MEMORIA_MAXIMA && it.hasNext()) {
+            ocupado -= it.next().bytes;
+            it.remove();
+        }
+    }
+
+    /**
+     * Ejecuta una consulta leyendo su resultado de la caché, o del servidor guardándolo después.
+     */
+    private static ResultSet consultar(PreparedStatement ps, Statement envoltorio, Clave clave, Set<String> tablas) throws SQLException {
+        Resultado r = buscar(clave);
+        if (r != null) {
+            return filas(envoltorio, r, null);
+        }
+
+        long leidoEn = generacionActual();
+        ResultSet rs = ps.executeQuery();
+        boolean completo = false;
+        try {
+            ResultSetMetaData meta = rs.getMetaData();
+            int n = meta.getColumnCount();
+            String[] columnas = new String[n];
+            int[] tipos = new int[n];
+            for (int i = 0; i < n; i++) {
+                columnas[i] = meta.getColumnLabel(i + 1);
+                tipos[i] = meta.getColumnType(i + 1);
+            }
+            r = new Resultado(columnas, tipos, meta, tablas);
+            r.bytes = 200L + 64L * n;
+            for (String columna : columnas) {
+                if (COLUMNAS_SIN_CACHE.contains(columna.toLowerCase(Locale.ROOT))) {
+                    // Todas las filas se leen del servidor, sin pasar por la caché
+                    return filas(envoltorio, r, rs);
+                }
+            }
+            long limite = MEMORIA_MAXIMA / 4;
+            while (r.bytes <= limite) {
+                if (!rs.next()) {
+                    completo = true;
+                    break;
+                }
+                Object[] fila = new Object[n];
+                r.bytes += 16L + 8L * n;
+                for (int i = 0; i < n; i++) {
+                    fila[i] = leer(rs, i + 1, tipos[i]);
+                    r.bytes += tamano(fila[i]);
+                }
+                r.filas.add(fila);
+            }
+        } catch (SQLException | RuntimeException e) {
+            rs.close();
+            throw e;
+        }
+        if (completo) {
+            rs.close();
+            guardar(clave, r, leidoEn);
+            return filas(envoltorio, r, null);
+        }
+        // Demasiado grande para guardarlo: lo ya leído se devuelve de memoria y el resto del servidor
+        return filas(envoltorio, r, rs);
+    }
+
+    private static Object leer(ResultSet rs, int columna, int tipo) throws SQLException {
+        switch (tipo) {
+            case Types.BLOB:
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return rs.getBytes(columna);
+            case Types.DATE:
+                return rs.getDate(columna);
+            case Types.TIME:
+                return rs.getTime(columna);
+            case Types.TIMESTAMP:
+                return rs.getTimestamp(columna);
+            default:
+                return rs.getObject(columna);
+        }
+    }
+
+    private static long tamano(Object valor) {
+        if (valor instanceof byte[] bytes) {
+            return 16L + bytes.length;
+        }
+        if (valor instanceof String texto) {
+            return 40L + 2L * texto.length();
+        }
+        return 24;
+    }
+
+    private static ResultSet filas(Statement envoltorio, Resultado r, ResultSet resto) {
+        return (ResultSet) Proxy.newProxyInstance(CacheConsultas.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                new Filas(envoltorio, r, resto));
+    }
+
+    private static String propiedad(String clave, String porDefecto) {
+        String valor = DBUtil.getPropiedad(clave);
+        return valor != null && !valor.isBlank() ? valor.trim() : porDefecto;
+    }
+
+    private static Object invocar(Object destino, Method metodo, Object[] args) throws Throwable {
+        try {
+            return metodo.invoke(destino, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Conexión envuelta: lleva la cuenta de si hay una transacción abierta y de las tablas en las
+     * que se ha escrito dentro de ella, que se vuelven a invalidar al confirmarla.
+     */
+    private static final class Conexion implements InvocationHandler {
+        final Connection c;
+        boolean transaccion;
+        final Set<String> pendientes = new HashSet<>();
+
+        Conexion(Connection c) {
+            this.c = c;
+            try {
+                transaccion = !c.getAutoCommit();
+            } catch (SQLException e) {
+                transaccion = true;
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+            String nombre = metodo.getName();
+            Object res = invocar(c, metodo, args);
+            switch (nombre) {
+                case "prepareStatement":
+                case "prepareCall":
+                    Class<?> tipo = nombre.equals("prepareCall") ? CallableStatement.class : PreparedStatement.class;
+                    return Proxy.newProxyInstance(CacheConsultas.class.getClassLoader(), new Class<?>[]{tipo},
+                            new Sentencia(this, (PreparedStatement) res, (String) args[0]));
+                case "createStatement":
+                    return Proxy.newProxyInstance(CacheConsultas.class.getClassLoader(), new Class<?>[]{Statement.class},
+                            new Sentencia(this, (Statement) res, null));
+                case "setAutoCommit":
+                    if ((Boolean) args[0]) {
+                        confirmar();
+                    }
+                    transaccion = !(Boolean) args[0];
+                    return res;
+                case "commit":
+                case "rollback":
+                    confirmar();
+                    return res;
+                default:
+                    return res;
+            }
+        }
+
+        /**
+         * Anota una escritura ya ejecutada e invalida sus tablas.
+         */
+        void escrito(String sql) {
+            if (transaccion) {
+                pendientes.add(sql);
+            }
+            invalidar(sql);
+        }
+
+        /**
+         * Al terminar una transacción, vuelve a invalidar lo que se escribió en ella: otra conexión
+         * pudo guardar la versión anterior a la escritura mientras esta no estaba confirmada.
+         */
+        void confirmar() {
+            for (String sql : pendientes) {
+                invalidar(sql);
+            }
+            pendientes.clear();
+        }
+    }
+
+    /**
+     * Sentencia envuelta. Si es una consulta preparada, anota los valores de sus parámetros para la
+     * clave de la caché; si escribe, invalida sus tablas después de ejecutarse.
+     */
+    private static final class Sentencia implements InvocationHandler {
+        final Conexion conexion;
+        final Statement st;
+        /**
+         * Texto de la sentencia preparada, o {@code null} si no está preparada.
+         */
+        final String sql;
+        final Set<String> tablas;
+        final TreeMap<Integer, Object> parametros = new TreeMap<>();
+        final List<String> lote = new ArrayList<>();
+        /**
+         * Si algún parámetro no se puede comparar (un stream, por ejemplo) o se lee en streaming.
+         */
+        boolean sinCache;
+
+        Sentencia(Conexion conexion, Statement st, String sql) {
+            this.conexion = conexion;
+            this.st = st;
+            this.sql = sql;
+            this.tablas = sql != null ? tablas(sql) : null;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+            String nombre = metodo.getName();
+            int n = args == null ? 0 : args.length;
+
+            if (n >= 2 && nombre.startsWith("set") && args[0] instanceof Integer indice) {
+                anotar(nombre, indice, args[1]);
+            } else if (nombre.equals("clearParameters")) {
+                parametros.clear();
+                sinCache = false;
+            } else if ((nombre.equals("setFetchSize") && (Integer) args[0] == Integer.MIN_VALUE)
+                    || (nombre.startsWith("set") && nombre.endsWith("MaxRows") && ((Number) args[0]).longValue() != 0)) {
+                sinCache = true;
+            } else if (nombre.equals("executeQuery") && n == 0 && tablas != null && !sinCache
+                    && !conexion.transaccion && !DBUtil.leeDelPrincipal()) {
+                return consultar((PreparedStatement) st, (Statement) proxy, new Clave(sql, new ArrayList<>(parametros.values())), tablas);
+            }
+
+            if (nombre.equals("addBatch") && n == 1 && args[0] instanceof String otra) {
+                lote.add(otra);
+            }
+
+            String escritura = null;
+            if (nombre.startsWith("execute") && !nombre.equals("executeQuery")) {
+                escritura = n > 0 && args[0] instanceof String otra ? otra : sql;
+                if (escritura != null && DBUtil.esLectura(escritura)) {
+                    escritura = null;
+                }
+            }
+            try {
+                return invocar(st, metodo, args);
+            } finally {
+                if (escritura != null) {
+                    conexion.escrito(escritura);
+                }
+                if (nombre.startsWith("executeBatch") || nombre.startsWith("executeLargeBatch")) {
+                    for (String otra : lote) {
+                        conexion.escrito(otra);
+                    }
+                    lote.clear();
+                }
+            }
+        }
+
+        private void anotar(String metodo, int indice, Object valor) {
+            if (metodo.equals("setNull") || valor == null) {
+                parametros.put(indice, NULO);
+            } else if (valor instanceof byte[] bytes) {
+                parametros.put(indice, ByteBuffer.wrap(bytes.clone()));
+            } else if (valor instanceof String || valor instanceof Number || valor instanceof Boolean
+                    || valor instanceof java.util.Date || valor instanceof LocalDate
+                    || valor instanceof LocalTime || valor instanceof LocalDateTime) {
+                // Se distingue el tipo: setInt(1, 1) y setString(1, "1") no tienen por qué dar lo mismo
+                parametros.put(indice, List.of(valor.getClass(), valor));
+            } else {
+                sinCache = true;
+            }
+        }
+    }
+
+    /**
+     * {@link ResultSet} de solo avance sobre un resultado en memoria. Si el resultado no se leyó
+     * entero, al acabar las filas en memoria sigue con el {@link ResultSet} original.
+     */
+    private static final class Filas implements InvocationHandler {
+        final Statement st;
+        final Resultado r;
+        ResultSet resto;
+        int fila = -1;
+        boolean enResto;
+        boolean nulo;
+        boolean cerrado;
+
+        Filas(Statement st, Resultado r, ResultSet resto) {
+            this.st = st;
+            this.r = r;
+            this.resto = resto;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+            String nombre = metodo.getName();
+            switch (nombre) {
+                case "close":
+                    cerrado = true;
+                    if (resto != null) {
+                        resto.close();
+                    }
+                    return null;
+                case "isClosed":
+                    return cerrado;
+                case "getStatement":
+                    return st;
+                case "getMetaData":
+                    return r.meta;
+                case "findColumn":
+                    return columna(args[0]);
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    throw new SQLException("No es un " + args[0]);
+                case "isWrapperFor":
+                    return ((Class<?>) args[0]).isInstance(proxy);
+                case "toString":
+                    return "CacheConsultas.Filas" + r.tablas;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    break;
+            }
+            if (cerrado) {
+                throw new SQLException("ResultSet cerrado");
+            }
+            if (enResto) {
+                return invocar(resto, metodo, args);
+            }
+            if (nombre.equals("next")) {
+                if (fila + 1 < r.filas.size()) {
+                    fila++;
+                    return true;
+                }
+                fila = r.filas.size();
+                if (resto != null) {
+                    enResto = true;
+                    return resto.next();
+                }
+                return false;
+            }
+            switch (nombre) {
+                case "wasNull":
+                    return nulo;
+                case "getRow":
+                    return fila >= 0 && fila < r.filas.size() ? fila + 1 : 0;
+                case "isBeforeFirst":
+                    return fila < 0 && (!r.filas.isEmpty() || resto != null);
+                case "isFirst":
+                    return fila == 0;
+                case "isAfterLast":
+                    return fila >= r.filas.size() && resto == null && !r.filas.isEmpty();
+                case "getType":
+                    return ResultSet.TYPE_FORWARD_ONLY;
+                case "getConcurrency":
+                    return ResultSet.CONCUR_READ_ONLY;
+                case "getHoldability":
+                    return ResultSet.CLOSE_CURSORS_AT_COMMIT;
+                case "getFetchDirection":
+                    return ResultSet.FETCH_FORWARD;
+                case "getFetchSize":
+                    return 0;
+                case "setFetchSize":
+                case "setFetchDirection":
+                case "clearWarnings":
+                    return null;
+                case "getWarnings":
+                    return null;
+                default:
+                    break;
+            }
+            if (!nombre.startsWith("get") || args == null || args.length < 1 || args.length > 2) {
+                throw new SQLFeatureNotSupportedException(nombre + " no está disponible en un resultado de la caché");
+            }
+            if (fila < 0 || fila >= r.filas.size()) {
+                throw new SQLException("No hay ninguna fila actual");
+            }
+            Object valor = r.filas.get(fila)[columna(args[0]) - 1];
+            nulo = valor == null;
+            if (args.length == 1) {
+                return convertir(nombre, valor);
+            }
+            return convertir(nombre, valor, args[1]);
+        }
+
+        /**
+         * Convierte un valor guardado para los métodos {@code get...} con un segundo argumento: la
+         * clase de {@code getObject(columna, tipo)}, el mapa de tipos de {@code getObject(columna, mapa)},
+         * el calendario de {@code getDate}, {@code getTime} y {@code getTimestamp}, y la escala de
+         * {@code getBigDecimal}.
+         */
+        private static Object convertir(String metodo, Object valor, Object extra) throws SQLException {
+            if (metodo.equals("getObject") && extra instanceof Class<?> tipo) {
+                return convertirA(tipo, valor);
+            }
+            if (metodo.equals("getObject") && (extra == null || extra instanceof Map)) {
+                return convertir("getObject", valor);
+            }
+            if (metodo.equals("getBigDecimal") && extra instanceof Integer escala) {
+                BigDecimal d = (BigDecimal) convertir("getBigDecimal", valor);
+                return d == null ? null : d.setScale(escala, RoundingMode.HALF_UP);
+            }
+            if (extra instanceof Calendar calendario && valor != null) {
+                // El valor guardado es la hora local leída del servidor; con un calendario se interpreta en su zona
+                ZoneId zona = calendario.getTimeZone().toZoneId();
+                switch (metodo) {
+                    case "getDate":
+                        LocalDate fecha = ((java.sql.Date) convertir("getDate", valor)).toLocalDate();
+                        return new java.sql.Date(fecha.atStartOfDay(zona).toInstant().toEpochMilli());
+                    case "getTime":
+                        LocalTime hora = ((Time) convertir("getTime", valor)).toLocalTime();
+                        return new Time(hora.atDate(LocalDate.of(1970, 1, 1)).atZone(zona).toInstant().toEpochMilli());
+                    case "getTimestamp":
+                        LocalDateTime momento = ((Timestamp) convertir("getTimestamp", valor)).toLocalDateTime();
+                        return Timestamp.from(momento.atZone(zona).toInstant());
+                    default:
+                        break;
+                }
+            }
+            if (extra instanceof Calendar) {
+                return convertir(metodo, valor);
+            }
+            throw new SQLFeatureNotSupportedException(metodo + " no está disponible en un resultado de la caché");
+        }
+
+        /**
+         * Convierte un valor guardado a la clase que pide {@code getObject(columna, tipo)}.
+         */
+        private static Object convertirA(Class<?> tipo, Object valor) throws SQLException {
+            if (valor == null) {
+                return null;
+            }
+            if (tipo == String.class) return convertir("getString", valor);
+            if (tipo == Integer.class) return convertir("getInt", valor);
+            if (tipo == Long.class) return convertir("getLong", valor);
+            if (tipo == Short.class) return convertir("getShort", valor);
+            if (tipo == Byte.class) return convertir("getByte", valor);
+            if (tipo == Double.class) return convertir("getDouble", valor);
+            if (tipo == Float.class) return convertir("getFloat", valor);
+            if (tipo == Boolean.class) return convertir("getBoolean", valor);
+            if (tipo == BigDecimal.class) return convertir("getBigDecimal", valor);
+            if (tipo == byte[].class) return convertir("getBytes", valor);
+            if (tipo == java.sql.Date.class) return convertir("getDate", valor);
+            if (tipo == Time.class) return convertir("getTime", valor);
+            if (tipo == Timestamp.class) return convertir("getTimestamp", valor);
+            if (tipo == LocalDate.class) return ((java.sql.Date) convertir("getDate", valor)).toLocalDate();
+            if (tipo == LocalTime.class) return ((Time) convertir("getTime", valor)).toLocalTime();
+            if (tipo == LocalDateTime.class) return ((Timestamp) convertir("getTimestamp", valor)).toLocalDateTime();
+            if (tipo.isInstance(valor)) {
+                return valor instanceof byte[] bytes ? bytes.clone() : valor;
+            }
+            throw new SQLException("No se puede convertir " + valor.getClass().getSimpleName() + " a " + tipo.getSimpleName(), "22018");
+        }
+
+        private int columna(Object columna) throws SQLException {
+            if (columna instanceof Integer indice) {
+                if (indice < 1 || indice > r.columnas.length) {
+                    throw new SQLException("Columna fuera de rango: " + indice);
+                }
+                return indice;
+            }
+            String etiqueta = (String) columna;
+            for (int i = 0; i < r.columnas.length; i++) {
+                if (r.columnas[i].equalsIgnoreCase(etiqueta)) {
+                    return i + 1;
+                }
+            }
+            throw new SQLException("Columna '" + etiqueta + "' no encontrada", "S0022");
+        }
+
+        /**
+         * Convierte un valor guardado al tipo que pide el método {@code get...}, como lo haría el
+         * driver con el valor leído del servidor.
+         */
+        private static Object convertir(String metodo, Object valor) throws SQLException {
+            switch (metodo) {
+                case "getObject":
+                    return valor instanceof byte[] bytes ? bytes.clone() : valor;
+                case "getString":
+                case "getNString":
+                    if (valor == null) return null;
+                    return valor instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : valor.toString();
+                case "getInt":
+                    return (int) entero(valor);
+                case "getLong":
+                    return entero(valor);
+                case "getShort":
+                    return (short) entero(valor);
+                case "getByte":
+                    return (byte) entero(valor);
+                case "getDouble":
+                    return numero(valor);
+                case "getFloat":
+                    return (float) numero(valor);
+                case "getBoolean":
+                    return valor instanceof Boolean b ? b : numero(valor) != 0;
+                case "getBigDecimal":
+                    return valor == null ? null : valor instanceof BigDecimal d ? d : new BigDecimal(valor.toString());
+                case "getBytes":
+                    if (valor == null) return null;
+                    return valor instanceof byte[] bytes ? bytes.clone() : valor.toString().getBytes(StandardCharsets.UTF_8);
+                case "getBinaryStream":
+                case "getAsciiStream":
+                    if (valor == null) return null;
+                    return new ByteArrayInputStream(valor instanceof byte[] bytes ? bytes : valor.toString().getBytes(StandardCharsets.UTF_8));
+                case "getCharacterStream":
+                case "getNCharacterStream":
+                    if (valor == null) return null;
+                    return new StringReader((String) convertir("getString", valor));
+                case "getDate":
+                    if (valor == null || valor instanceof java.sql.Date) return valor;
+                    if (valor instanceof LocalDate fecha) return java.sql.Date.valueOf(fecha);
+                    if (valor instanceof java.util.Date fecha) return new java.sql.Date(fecha.getTime());
+                    return java.sql.Date.valueOf(valor.toString());
+                case "getTime":
+                    if (valor == null || valor instanceof Time) return valor;
+                    if (valor instanceof LocalTime hora) return Time.valueOf(hora);
+                    return Time.valueOf(valor.toString());
+                case "getTimestamp":
+                    if (valor == null || valor instanceof Timestamp) return valor;
+                    if (valor instanceof LocalDateTime momento) return Timestamp.valueOf(momento);
+                    if (valor instanceof java.util.Date fecha) return new Timestamp(fecha.getTime());
+                    return Timestamp.valueOf(valor.toString());
+                default:
+                    throw new SQLFeatureNotSupportedException(metodo + " no está disponible en un resultado de la caché");
+            }
+        }
+
+        private static long entero(Object valor) throws SQLException {
+            if (valor instanceof Number n && !(valor instanceof Double || valor instanceof Float || valor instanceof BigDecimal)) {
+                return n.longValue();
+            }
+            return (long) numero(valor);
+        }
+
+        private static double numero(Object valor) throws SQLException {
+            if (valor == null) {
+                return 0;
+            }
+            if (valor instanceof Number n) {
+                return n.doubleValue();
+            }
+            if (valor instanceof Boolean b) {
+                return b ? 1 : 0;
+            }
+            try {
+                return Double.parseDouble(valor.toString().trim());
+            } catch (NumberFormatException e) {
+                throw new SQLException("No es un número: " + valor, "22018");
+            }
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+
+/**
+ * Lectura del registro de cambios (tabla {@code cambio}), que los disparadores de
+ * {@code V006__registro_cambios.sql} rellenan con cada alta, modificación o baja de las tablas que
+ * {@link ReplicaLocal} copia en local.
+ * <p>
+ * A diferencia del resto de modelos, los errores no se imprimen y se devuelve {@code null}, sino que
+ * se lanzan: la sincronización necesita saber si ha fallado la conexión para reintentarlo más tarde.
+ * </p>
+ */
+public class CambioModel extends DBUtil {
+
+    /**
+     * Tablas del registro de cambios.
+     */
+    public static final String CITAS = "citas";
+    public static final String NEGOCIO = "negocio";
+    public static final String PROTECTORAS = "protectoras";
+    public static final String REPORTE = "reporte";
+    public static final String TIPO = "tipo";
+    public static final String SITUACION = "situacion";
+    public static final String TIPO_NEGOCIO = "tiponegocio";
+
+    /**
+     * Un cambio del registro: el registro {@code registro} de la tabla {@code tabla} se ha creado,
+     * modificado o borrado. Para saber cuál de las tres cosas hay que volver a leerlo.
+     *
+     * @param version Versión del cambio, creciente.
+     * @param tabla Nombre de la tabla, una de las constantes de esta clase.
+     * @param registro Clave primaria del registro.
+     */
+    public record Cambio(long version, String tabla, int registro) {
+    }
+
+    /**
+     * Devuelve la última versión del registro de cambios.
+     *
+     * @return La versión del último cambio, o 0 si no hay ninguno.
+     * @throws SQLException Si no se puede leer.
+     */
+    public long readUltimaVersion() throws SQLException {
+        try {
+            String sql = "SELECT COALESCE(MAX(version), 0) FROM cambio";
+            PreparedStatement ps = this.abrirConexion().prepareStatement(sql);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        } finally {
+            this.cerrarConexion();
+        }
+    }
+
+    /**
+     * Devuelve la primera versión que queda en el registro de cambios: las anteriores las ha borrado
+     * {@link MantenimientoCambios}.
+     *
+     * @return La versión del primer cambio, o 0 si no hay ninguno.
+     * @throws SQLException Si no se puede leer.
+     */
+    public long readPrimeraVersion() throws SQLException {
+        try {
+            String sql = "SELECT COALESCE(MIN(version), 0) FROM cambio";
+            PreparedStatement ps = this.abrirConexion().prepareStatement(sql);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        } finally {
+            this.cerrarConexion();
+        }
+    }
+
+    /**
+     * Borra los cambios anteriores a un momento, por lotes para no bloquear la tabla mientras la
+     * usan los disparadores. Primero se busca la primera versión que se conserva, recorriendo la
+     * clave primaria desde el principio: solo se leen las filas que se van a borrar.
+     *
+     * @param limite Se borran los cambios anteriores a este momento.
+     * @param lote Número máximo de filas de cada {@code DELETE}.
+     * @return El número de cambios borrados.
+     * @throws SQLException Si no se pueden borrar.
+     */
+    public long deleteCambiosAnteriores(LocalDateTime limite, int lote) throws SQLException {
+        long borrados = 0;
+        try {
+            Connection con = this.abrirConexion();
+            long hasta;
+            PreparedStatement primera = con.prepareStatement(
+                    "SELECT version FROM cambio WHERE fecha >= ? ORDER BY version LIMIT 1");
+            primera.setTimestamp(1, Timestamp.valueOf(limite));
+            try (ResultSet rs = primera.executeQuery()) {
+                // Si no queda ninguno posterior, se conserva el último: las copias al día lo necesitan
+                // para saber que no se han perdido cambios
+                hasta = rs.next() ? rs.getLong(1) : readUltimaVersion(con);
+            }
+            PreparedStatement ps = con.prepareStatement("DELETE FROM cambio WHERE version < ? LIMIT ?");
+            ps.setLong(1, hasta);
+            ps.setInt(2, lote);
+            int n;
+            do {
+                n = ps.executeUpdate();
+                borrados += n;
+            } while (n == lote);
+        } finally {
+            this.cerrarConexion();
+        }
+        return borrados;
+    }
+
+    private static long readUltimaVersion(Connection con) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement("SELECT COALESCE(MAX(version), 0) FROM cambio");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Lee los cambios posteriores a una versión que interesan a un usuario: los de las tablas
+     * compartidas y los de sus propias citas.
+     *
+     * @param desde Última versión que ya se tiene.
+     * @param idUsuario El ID del usuario.
+     * @param limite Número máximo de cambios.
+     * @return Los cambios, en orden de versión.
+     * @throws SQLException Si no se pueden leer.
+     */
+    public ArrayList<Cambio> readCambios(long desde, int idUsuario, int limite) throws SQLException {
+        ArrayList<Cambio> cambios = new ArrayList<>();
+        try {
+            // Se lee del principal: una réplica retrasada podría saltarse cambios ya confirmados
+            String sql = "SELECT version, tabla, registro FROM cambio " +
+                    "WHERE version > ? AND (usuario IS NULL OR usuario = ?) ORDER BY version LIMIT ?";
+            PreparedStatement ps = this.abrirConexion().prepareStatement(sql);
+            ps.setLong(1, desde);
+            ps.setInt(2, idUsuario);
+            ps.setInt(3, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    cambios.add(new Cambio(rs.getLong("version"), rs.getString("tabla"), rs.getInt("registro")));
+                }
+            }
+        } finally {
+            this.cerrarConexion();
+        }
+        return cambios;
+    }
+}
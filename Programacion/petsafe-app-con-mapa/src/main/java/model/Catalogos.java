@@ -0,0 +1,103 @@
+package model;
+
+import com.example.petsafeapp.Situacion;
+import com.example.petsafeapp.TipoAnimal;
+import com.example.petsafeapp.TipoNegocio;
+
+import java.util.ArrayList;
+
+/**
+ * Caché de las tablas de referencia (tipos de animal, situaciones y tipos de negocio), que casi
+ * nunca cambian y se usan para rellenar los desplegables de varias pantallas.
+ * <p>
+ * Cada catálogo se lee de la base de datos la primera vez que se pide (o al llamar a {@link #cargar()}
+ * durante el precalentamiento) y después se sirve de memoria. Los modelos de cada tabla llaman a
+ * {@link #invalidar()} al modificarla, de modo que la siguiente petición vuelve a leerla.
+ * Cada llamada devuelve una copia de la lista, que se puede modificar sin afectar a la caché.
+ * En el modo local los catálogos se leen de {@link ReplicaLocal}, que también llama a
+ * {@link #invalidar()} cuando la sincronización trae cambios.
+ * </p>
+ */
+public class Catalogos {
+
+    private static volatile ArrayList<TipoAnimal> tiposAnimal;
+
+    private static volatile ArrayList<Situacion> situaciones;
+
+    private static volatile ArrayList<TipoNegocio> tiposNegocio;
+
+    private Catalogos() {
+    }
+
+    /**
+     * Devuelve los tipos de animal.
+     *
+     * @return Una copia de la lista de tipos de animal, o {@code null} si no se pudo leer.
+     */
+    public static ArrayList<TipoAnimal> getTiposAnimal() {
+        ArrayList<TipoAnimal> res = tiposAnimal;
+        if (res == null) {
+            ReplicaLocal replica = ReplicaLocal.getActiva();
+            res = replica != null ? replica.readTiposAnimal() : new TipoAnimalModel().readTipoAnimales();
+            if (res == null) {
+                return null;
+            }
+            tiposAnimal = res;
+        }
+        return new ArrayList<>(res);
+    }
+
+    /**
+     * Devuelve las situaciones de los animales.
+     *
+     * @return Una copia de la lista de situaciones, o {@code null} si no se pudo leer.
+     */
+    public static ArrayList<Situacion> getSituaciones() {
+        ArrayList<Situacion> res = situaciones;
+        if (res == null) {
+            ReplicaLocal replica = ReplicaLocal.getActiva();
+            res = replica != null ? replica.readSituaciones() : new SituacionModel().readSituaciones();
+            if (res == null) {
+                return null;
+            }
+            situaciones = res;
+        }
+        return new ArrayList<>(res);
+    }
+
+    /**
+     * Devuelve los tipos de negocio.
+     *
+     * @return Una copia de la lista de tipos de negocio, o {@code null} si no se pudo leer.
+     */
+    public static ArrayList<TipoNegocio> getTiposNegocio() {
+        ArrayList<TipoNegocio> res = tiposNegocio;
+        if (res == null) {
+            ReplicaLocal replica = ReplicaLocal.getActiva();
+            res = replica != null ? replica.readTiposNegocio() : new TipoNegocioModel().readTipoNegocio();
+            if (res == null) {
+                return null;
+            }
+            tiposNegocio = res;
+        }
+        return new ArrayList<>(res);
+    }
+
+    /**
+     * Lee todos los catálogos que todavía no estén en memoria.
+     *
+     * @return {@code true} si todos se han podido leer.
+     */
+    public static boolean cargar() {
+        return getTiposAnimal() != null & getSituaciones() != null & getTiposNegocio() != null;
+    }
+
+    /**
+     * Descarta los catálogos en memoria para que se vuelvan a leer en la siguiente petición.
+     */
+    public static void invalidar() {
+        tiposAnimal = null;
+        situaciones = null;
+        tiposNegocio = null;
+    }
+}
@@ -7,6 +7,9 @@ import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * Clase {@code CitaModel} que gestiona las interacciones con la base de datos
@@ -14,6 +17,10 @@ import java.util.ArrayList;
  * Proporciona métodos para crear, leer, actualizar y eliminar registros de citas.
  * Esta clase extiende {@link DBUtil} para utilizar sus funcionalidades de conexión
  * a la base de datos.
+ * <p>
+ * En el modo local ({@link ReplicaLocal}) las citas del usuario se leen de la copia local, y las
+ * altas, modificaciones y bajas se guardan en ella y se suben al servidor en segundo plano.
+ * </p>
  */
 public class CitaModel extends DBUtil {
 
@@ -29,6 +36,10 @@ public class CitaModel extends DBUtil {
      *         a la base de datos se cierra siempre en el bloque {@code finally}.
      */
     public boolean createCita(Cita cita) {
+        ReplicaLocal replica = ReplicaLocal.getActiva();
+        if (replica != null && replica.getIdUsuario() == cita.getIdUsuario()) {
+            return replica.crearCita(cita);
+        }
         boolean res = false;
 
         int idUsuario = cita.getIdUsuario();
@@ -122,6 +133,10 @@ public class CitaModel extends DBUtil {
      *         La conexión a la base de datos se cierra siempre en el bloque {@code finally}.
      */
     public ArrayList<Cita> readCitas(int idUsuarioIntroducido) {
+        ReplicaLocal replica = ReplicaLocal.getActiva();
+        if (replica != null && replica.getIdUsuario() == idUsuarioIntroducido) {
+            return replica.readCitas(null);
+        }
         ArrayList<Cita> citas = new ArrayList<Cita>();
 
         try {
@@ -165,6 +180,10 @@ public class CitaModel extends DBUtil {
      *         La conexión a la base de datos se cierra siempre en el bloque {@code finally}.
      */
     public ArrayList<Cita> readCitasDia(Usuario usuario, LocalDate fechaIntroducida) {
+        ReplicaLocal replica = ReplicaLocal.getActiva();
+        if (replica != null && replica.getIdUsuario() == usuario.getId()) {
+            return replica.readCitas(fechaIntroducida);
+        }
         ArrayList<Cita> citas = new ArrayList<Cita>();
 
         try {
@@ -212,6 +231,10 @@ public class CitaModel extends DBUtil {
      *         inicial de {@code res} (que es 0). La conexión se cierra siempre en el bloque {@code finally}.
      */
     public int updateCita(Cita cita) {
+        ReplicaLocal replica = ReplicaLocal.getActiva();
+        if (replica != null && replica.getIdUsuario() == cita.getIdUsuario()) {
+            return replica.modificarCita(cita);
+        }
         int res = 0;
 
         try {
@@ -245,6 +268,10 @@ public class CitaModel extends DBUtil {
      *         en el bloque {@code finally}.
      */
     public boolean deleteCita(Cita cita) {
+       ReplicaLocal replica = ReplicaLocal.getActiva();
+       if (replica != null && replica.getIdUsuario() == cita.getIdUsuario()) {
+           return replica.borrarCita(cita);
+       }
        boolean res = false;
 
        try {
@@ -265,6 +292,146 @@ public class CitaModel extends DBUtil {
            return res;
        }
     }
+
+    /**
+     * Lee las citas de un usuario con su versión, para la copia local.
+     *
+     * @param idUsuario El ID del usuario.
+     * @param ids Los IDs de las citas que se quieren leer, o {@code null} para leerlas todas.
+     *            Las que no se devuelven han sido borradas o son de otro usuario.
+     * @param versiones Mapa en el que se guarda la versión de cada cita leída.
+     * @return Las citas encontradas.
+     * @throws SQLException Si no se pueden leer.
+     */
+    ArrayList<Cita> readCitasSincronizar(int idUsuario, Collection<Integer> ids, Map<Integer, Integer> versiones) throws SQLException {
+        ArrayList<Cita> citas = new ArrayList<Cita>();
+        if (ids != null && ids.isEmpty()) {
+            return citas;
+        }
+        String sql = ids == null
+                ? "SELECT Id, Id_Usuario, Fecha, Hora, Nombre_Animal, Motivo, version FROM Citas WHERE Id_Usuario = ?"
+                : "SELECT Id, Id_Usuario, Fecha, Hora, Nombre_Animal, Motivo, version FROM Citas WHERE Id_Usuario = ? " +
+                        "AND Id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        try {
+            PreparedStatement ps = this.abrirConexion().prepareStatement(sql);
+            int i = 1;
+            ps.setInt(i++, idUsuario);
+            if (ids != null) {
+                for (int id : ids) {
+                    ps.setInt(i++, id);
+                }
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Cita c = new Cita(rs.getInt("Id"), rs.getDate("Fecha").toLocalDate(),
+                            rs.getTime("Hora").toLocalTime(), rs.getString("Nombre_Animal"),
+                            rs.getString("Motivo"), rs.getInt("Id_Usuario"));
+                    citas.add(c);
+                    versiones.put(c.getIdCita(), rs.getInt("version"));
+                }
+            }
+        } finally {
+            this.cerrarConexion();
+        }
+        return citas;
+    }
+
+    /**
+     * Cita del servidor creada desde la copia local.
+     *
+     * @param id ID de la cita en el servidor.
+     * @param version Versión de la cita en el servidor.
+     */
+    record CitaSubida(int id, int version) {
+    }
+
+    /**
+     * Sube al servidor una cita creada en la copia local. La cita lleva una clave generada en local
+     * (columna {@code clave_cliente}, con índice único): si ya se subió en un intento anterior cuya
+     * respuesta no llegó, el {@code INSERT IGNORE} no la crea otra vez y se devuelve la existente.
+     *
+     * @param cita La cita.
+     * @param clave La clave de la cita, la misma en todos los intentos.
+     * @return El ID y la versión de la cita en la base de datos.
+     * @throws SQLException Si no se puede crear.
+     */
+    CitaSubida insertCitaSincronizar(Cita cita, String clave) throws SQLException {
+        try {
+            String sql = "INSERT IGNORE INTO Citas (id_usuario, fecha, hora, Nombre_Animal, motivo, clave_cliente) VALUES (?, ?, ?, ?, ?, ?)";
+            PreparedStatement ps = this.abrirConexion().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            ps.setInt(1, cita.getIdUsuario());
+            ps.setDate(2, Date.valueOf(cita.getFecha()));
+            ps.setTime(3, Time.valueOf(cita.getHora()));
+            ps.setString(4, cita.getNombreAnimal());
+            ps.setString(5, cita.getMotivo());
+            ps.setString(6, clave);
+            if (ps.executeUpdate() > 0) {
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    if (!rs.next()) {
+                        throw new SQLException("La base de datos no ha devuelto el ID de la cita");
+                    }
+                    return new CitaSubida(rs.getInt(1), 0);
+                }
+            }
+            // No se ha insertado: o ya estaba, o IGNORE ha ocultado otro error (una clave ajena, por ejemplo)
+            PreparedStatement existente = this.conexion.prepareStatement("SELECT Id, version FROM Citas WHERE clave_cliente = ?");
+            existente.setString(1, clave);
+            try (ResultSet rs = existente.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("El servidor no ha guardado la cita " + clave);
+                }
+                return new CitaSubida(rs.getInt("Id"), rs.getInt("version"));
+            }
+        } finally {
+            this.cerrarConexion();
+        }
+    }
+
+    /**
+     * Sube al servidor la modificación de una cita hecha en la copia local, solo si la cita sigue
+     * en la versión sobre la que se hizo (si no, alguien la ha cambiado antes y hay un conflicto).
+     *
+     * @param cita La cita con sus datos nuevos.
+     * @param version La versión de la cita sobre la que se hizo la modificación.
+     * @return 1 si se ha modificado, 0 si la cita ya no existe o ha cambiado de versión.
+     * @throws SQLException Si no se puede modificar.
+     */
+    int updateCitaSincronizar(Cita cita, int version) throws SQLException {
+        try {
+            String sql = "UPDATE Citas SET Fecha = ?, Hora = ?, Nombre_Animal = ?, Motivo = ? WHERE Id = ? AND version = ?";
+            PreparedStatement ps = this.abrirConexion().prepareStatement(sql);
+            ps.setDate(1, Date.valueOf(cita.getFecha()));
+            ps.setTime(2, Time.valueOf(cita.getHora()));
+            ps.setString(3, cita.getNombreAnimal());
+            ps.setString(4, cita.getMotivo());
+            ps.setInt(5, cita.getIdCita());
+            ps.setInt(6, version);
+            return ps.executeUpdate();
+        } finally {
+            this.cerrarConexion();
+        }
+    }
+
+    /**
+     * Sube al servidor el borrado de una cita hecho en la copia local, solo si la cita sigue en la
+     * versión sobre la que se hizo.
+     *
+     * @param idCita El ID de la cita.
+     * @param version La versión de la cita sobre la que se hizo el borrado.
+     * @return 1 si se ha borrado, 0 si la cita ya no existe o ha cambiado de versión.
+     * @throws SQLException Si no se puede borrar.
+     */
+    int deleteCitaSincronizar(int idCita, int version) throws SQLException {
+        try {
+            String sql = "DELETE FROM Citas WHERE Id = ? AND version = ?";
+            PreparedStatement ps = this.abrirConexion().prepareStatement(sql);
+            ps.setInt(1, idCita);
+            ps.setInt(2, version);
+            return ps.executeUpdate();
+        } finally {
+            this.cerrarConexion();
+        }
+    }
 }
 
 
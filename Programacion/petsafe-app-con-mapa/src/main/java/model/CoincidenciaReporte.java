@@ -0,0 +1,113 @@
+package model;
+
+import java.time.LocalDate;
+
+/**
+ * Posible coincidencia entre un reporte de animal perdido y uno de animal encontrado
+ * (o al revés), con la distancia y los días que los separan.
+ */
+public class CoincidenciaReporte {
+
+    /**
+     * ID del reporte candidato.
+     */
+    private final int idReporte;
+
+    /**
+     * ID del animal del reporte candidato.
+     */
+    private final int idAnimal;
+
+    /**
+     * Descripción del animal del reporte candidato.
+     */
+    private final String descripcion;
+
+    /**
+     * Ubicación del reporte candidato.
+     */
+    private final String ubicacion;
+
+    /**
+     * Fecha del reporte candidato.
+     */
+    private final LocalDate fecha;
+
+    /**
+     * Distancia en kilómetros entre los dos reportes.
+     */
+    private final double distanciaKm;
+
+    /**
+     * Días de diferencia entre las fechas de los dos reportes (valor absoluto).
+     */
+    private final long dias;
+
+    /**
+     * Puntuación de la coincidencia: cuanto menor, más probable. Combina la distancia y los días
+     * de diferencia, cada uno relativo al máximo permitido, de modo que 0 es el mismo sitio el mismo día.
+     */
+    private final double puntuacion;
+
+    /**
+     * Constructor con todos los datos de la coincidencia.
+     *
+     * @param idReporte ID del reporte candidato.
+     * @param idAnimal ID del animal del reporte candidato.
+     * @param descripcion Descripción del animal.
+     * @param ubicacion Ubicación del reporte candidato.
+     * @param fecha Fecha del reporte candidato.
+     * @param distanciaKm Distancia en kilómetros entre los reportes.
+     * @param dias Días de diferencia entre los reportes.
+     * @param puntuacion Puntuación de la coincidencia (menor es mejor).
+     */
+    public CoincidenciaReporte(int idReporte, int idAnimal, String descripcion, String ubicacion, LocalDate fecha,
+                               double distanciaKm, long dias, double puntuacion) {
+        this.idReporte = idReporte;
+        this.idAnimal = idAnimal;
+        this.descripcion = descripcion;
+        this.ubicacion = ubicacion;
+        this.fecha = fecha;
+        this.distanciaKm = distanciaKm;
+        this.dias = dias;
+        this.puntuacion = puntuacion;
+    }
+
+    public int getIdReporte() {
+        return idReporte;
+    }
+
+    public int getIdAnimal() {
+        return idAnimal;
+    }
+
+    public String getDescripcion() {
+        return descripcion;
+    }
+
+    public String getUbicacion() {
+        return ubicacion;
+    }
+
+    public LocalDate getFecha() {
+        return fecha;
+    }
+
+    public double getDistanciaKm() {
+        return distanciaKm;
+    }
+
+    public long getDias() {
+        return dias;
+    }
+
+    public double getPuntuacion() {
+        return puntuacion;
+    }
+
+    @Override
+    public String toString() {
+        return descripcion + " - " + ubicacion + " (" + String.format("%.1f", distanciaKm) + " km, "
+                + dias + (dias == 1 ? " día)" : " días)");
+    }
+}
@@ -1,44 +1,179 @@
 package model;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
 
 /**
  * Clase de utilidad para gestionar la conexión a la base de datos.
- * Proporciona métodos para obtener y cerrar la conexión a una base de datos MySQL
- * localizada en localhost.
+ * Proporciona métodos para obtener y cerrar la conexión a una base de datos MySQL.
+ * <p>
+ * Los datos de conexión se leen de {@code database.properties} ({@code db.url}, {@code db.user} y
+ * {@code db.password}). Cada uno se puede sustituir con la propiedad del sistema del mismo nombre
+ * precedida de {@code petsafe.} (por ejemplo {@code -Dpetsafe.db.url=jdbc:mysql://localhost/petsafe}),
+ * para trabajar contra una base de datos local sin tocar el fichero.
+ * </p>
+ * <p>
+ * Además del servidor principal se pueden configurar réplicas de lectura en {@code db.replicas}
+ * (URLs JDBC separadas por comas, con el mismo usuario y contraseña). Los listados que solo leen
+ * usan {@link #getConexionLectura()}, que elige la réplica con menos conexiones abiertas por la
+ * aplicación; todo lo demás, y en particular las escrituras, usa {@link #getConexion()} y va al
+ * principal. Para no mostrar datos desactualizados:
+ * </p>
+ * <ul>
+ *     <li>cada réplica comprueba su retraso ({@code Seconds_Behind_Master}) como mucho cada
+ *     {@value #INTERVALO_COMPROBACION_MS} ms, y si pasa de {@code db.replicas.retrasoMaximo} segundos
+ *     (5 por defecto), si la replicación está parada o si no se puede conectar, se deja de usar hasta
+ *     la siguiente comprobación. {@code SHOW SLAVE STATUS} necesita el privilegio
+ *     {@code REPLICATION CLIENT} ({@code SLAVE MONITOR} en MariaDB 10.5 o posterior); si el usuario
+ *     no lo tiene, la réplica no se usa, porque no se puede saber cuánto va retrasada;</li>
+ *     <li>después de una escritura en el principal, las lecturas del mismo hilo también van al
+ *     principal durante ese mismo retraso máximo, así que quien acaba de guardar algo lo ve en el
+ *     siguiente listado. Las tareas que leen en segundo plano para ese hilo (las páginas de los
+ *     listados, los marcadores del mapa) se envuelven con {@link #conEscriturasDelHilo(Runnable)}
+ *     para llevarse esa marca; las escrituras de los procesos de fondo (la sincronización de
+ *     {@link ReplicaLocal}, las importaciones...) no mandan al principal las lecturas de la interfaz.
+ *     Solo cuentan como escrituras las sentencias preparadas que no leen y las sentencias normales
+ *     que ejecutan algo que no es una lectura.</li>
+ * </ul>
+ * <p>
+ * Sin réplicas configuradas todo va al principal como siempre. Para probarlo basta con dos MariaDB
+ * locales, la segunda como réplica de la primera, y
+ * {@code -Dpetsafe.db.url=jdbc:mysql://localhost:3306/petsafe -Dpetsafe.db.replicas=jdbc:mysql://localhost:3307/petsafe}.
+ * </p>
+ * <p>
+ * Todas las conexiones pasan además por {@link CacheConsultas}, que guarda en memoria el resultado
+ * de las consultas repetidas y lo descarta cuando esta aplicación escribe en alguna de sus tablas.
+ * </p>
  */
 public class DBUtil {
 
+    /**
+     * Cada cuánto se vuelve a comprobar el retraso de una réplica, o si se puede volver a usar una
+     * que falló, en milisegundos.
+     */
+    public static final long INTERVALO_COMPROBACION_MS = 5000;
+
+    /**
+     * Datos de conexión leídos de {@code database.properties}.
+     */
+    private static final Properties CONFIGURACION = leerConfiguracion();
+
+    /**
+     * Réplicas de lectura de {@code db.replicas}; vacía si no hay ninguna.
+     */
+    private static final List<Replica> REPLICAS = leerReplicas();
+
+    /**
+     * Retraso máximo admitido en una réplica, y tiempo durante el que las lecturas van al principal
+     * después de una escritura, en milisegundos.
+     */
+    private static final long RETRASO_MAXIMO_MS = (long) (1000 * Double.parseDouble(
+            getPropiedad("db.replicas.retrasoMaximo") != null ? getPropiedad("db.replicas.retrasoMaximo") : "5"));
+
+    /**
+     * Momento ({@link System#currentTimeMillis()}) de la última escritura del hilo actual en el
+     * principal, o 0 si no ha escrito.
+     */
+    private static final ThreadLocal<Long> ULTIMA_ESCRITURA = ThreadLocal.withInitial(() -> 0L);
+
+    /**
+     * Error de MySQL de falta de privilegios para una operación ({@code ER_SPECIFIC_ACCESS_DENIED_ERROR}).
+     */
+    private static final int ERROR_SIN_PRIVILEGIO = 1227;
+
+    /**
+     * Si las lecturas del hilo actual deben ir siempre al principal (ver {@link #leerDelPrincipal(boolean)}).
+     */
+    private static final ThreadLocal<Boolean> SOLO_PRINCIPAL = ThreadLocal.withInitial(() -> false);
+
     /**
      * Campo que almacena la conexión activa a la base de datos.
      * Es {@code null} si no hay una conexión establecida o si la conexión ha sido cerrada.
      */
     Connection conexion = null;
 
+    /**
+     * Conexión abierta por adelantado con {@link #precalentarConexion()} y que todavía no ha usado
+     * ningún modelo, o {@code null} si no hay ninguna.
+     */
+    private static Connection reserva = null;
+
+    /**
+     * Réplica de la conexión activa, o {@code null} si es del principal.
+     */
+    private Replica replica = null;
+
+    /**
+     * Réplica de lectura, con lo que sabe la aplicación de su estado.
+     */
+    private static final class Replica {
+        final String url;
+        /**
+         * Conexiones de la aplicación abiertas ahora mismo contra la réplica.
+         */
+        int enUso = 0;
+        /**
+         * Momento de la última comprobación, o 0 si no se ha comprobado nunca.
+         */
+        long comprobada = 0;
+        boolean disponible = true;
+        /**
+         * Si ya se ha avisado de que el usuario no puede consultar el estado de la replicación.
+         */
+        boolean avisadoPrivilegio = false;
+
+        Replica(String url) {
+            this.url = url;
+        }
+    }
+
     /**
      * Establece y devuelve una conexión a la base de datos MySQL especificada.
-     * Utiliza una URL de conexión, usuario y contraseña predefinidos.
+     * Utiliza la URL de conexión, usuario y contraseña de la configuración.
      * Si ya existe una conexión activa en el campo {@code conexion}, este método la
      * reemplazará por una nueva conexión sin cerrar la anterior, lo cual podría
      * llevar a fugas de recursos si no se gestiona externamente.
      *
+     * Si hay una conexión abierta por adelantado con {@link #precalentarConexion()} y sigue siendo
+     * válida, se usa esa en lugar de abrir una nueva.
+     *
      * @return Un objeto {@link Connection} si la conexión se estableció correctamente.
      *         Si ocurre una {@link SQLException} durante el proceso de conexión,
      *         se imprime la traza del error y se retorna {@code null}.
      */
     public Connection getConexion() {
 
-        String cadenaConexion = "jdbc:mysql://proxy052.r3proxy.com:30740/petsafe";
-        String usuario = "root";
-        String password = "root";
+        cerrarReplica();
+        Connection precalentada = tomarReserva();
+        if (precalentada != null) {
+            this.conexion = precalentada; // ya la abrió getConexion()
+            return conexion;
+        }
+
+        String cadenaConexion = getPropiedad("db.url");
+        String usuario = getPropiedad("db.user");
+        String password = getPropiedad("db.password");
 
         try {
             // Registra el driver JDBC para MySQL si no está registrado.
             DriverManager.registerDriver(new com.mysql.cj.jdbc.Driver());
             // Establece una nueva conexión y la asigna al campo 'conexion'.
-            this.conexion = DriverManager.getConnection(cadenaConexion, usuario, password);
+            this.conexion = vigilarEscrituras(CacheConsultas.envolver(DriverManager.getConnection(cadenaConexion, usuario, password)));
 
         } catch (SQLException e) {
             // En caso de error SQL durante la conexión, imprime la traza.
@@ -50,6 +185,397 @@ public class DBUtil {
 
     }
 
+    /**
+     * Como {@link #getConexion()}, pero si no se puede conectar lanza una excepción en vez de
+     * devolver {@code null}. La usan los procesos que reintentan más tarde, como la sincronización
+     * de {@link ReplicaLocal}, para distinguir un fallo de conexión de un error en la consulta.
+     *
+     * @return La conexión.
+     * @throws SQLException Con {@code SQLState} {@code 08001} si no se pudo abrir.
+     */
+    protected Connection abrirConexion() throws SQLException {
+        Connection c = getConexion();
+        if (c == null) {
+            throw new SQLException("No se pudo conectar con la base de datos", "08001");
+        }
+        return c;
+    }
+
+    /**
+     * Abre una conexión nueva para escrituras masivas, con {@code rewriteBatchedStatements=true}: el
+     * driver convierte cada lote de {@link PreparedStatement#addBatch()} de un {@code INSERT} en
+     * sentencias de varias filas, en lugar de enviar las filas una a una. Nunca usa la conexión
+     * reservada, y se cierra igualmente con {@link #cerrarConexion()}.
+     *
+     * @return La conexión, o {@code null} si no se pudo abrir.
+     */
+    public Connection getConexionPorLotes() {
+        String cadenaConexion = getPropiedad("db.url");
+        cadenaConexion += (cadenaConexion.contains("?") ? "&" : "?") + "rewriteBatchedStatements=true";
+
+        cerrarReplica();
+        ULTIMA_ESCRITURA.set(System.currentTimeMillis());
+        try {
+            DriverManager.registerDriver(new com.mysql.cj.jdbc.Driver());
+            this.conexion = CacheConsultas.envolver(DriverManager.getConnection(cadenaConexion, getPropiedad("db.user"), getPropiedad("db.password")));
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        return conexion;
+    }
+
+    /**
+     * Abre una conexión para consultas que solo leen, como los listados del mapa y de las pantallas.
+     * Si hay réplicas disponibles y el hilo no ha escrito hace poco, la conexión es de solo
+     * lectura y va a la réplica con menos conexiones abiertas; si no, se usa {@link #getConexion()}.
+     * Se cierra igualmente con {@link #cerrarConexion()}.
+     *
+     * @return La conexión, o {@code null} si no se pudo abrir ninguna.
+     */
+    public Connection getConexionLectura() {
+        if (REPLICAS.isEmpty() || SOLO_PRINCIPAL.get() || System.currentTimeMillis() - ULTIMA_ESCRITURA.get() < RETRASO_MAXIMO_MS) {
+            return getConexion();
+        }
+        cerrarReplica();
+        for (Replica candidata : replicasPorCarga()) {
+            Connection c = abrirReplica(candidata);
+            if (c != null) {
+                this.conexion = c;
+                this.replica = candidata;
+                return c;
+            }
+        }
+        return getConexion();
+    }
+
+    /**
+     * Hace que las lecturas del hilo actual vayan al principal aunque haya réplicas. Lo usa la
+     * sincronización de {@link ReplicaLocal}: el registro de cambios se lee del principal, y una
+     * réplica retrasada podría devolver la versión anterior de un registro que ya ha cambiado. Por
+     * el mismo motivo, esas lecturas tampoco usan {@link CacheConsultas}.
+     *
+     * @param activar {@code true} para leer del principal, {@code false} para volver a lo normal.
+     */
+    static void leerDelPrincipal(boolean activar) {
+        SOLO_PRINCIPAL.set(activar);
+    }
+
+    /**
+     * Indica si las lecturas del hilo actual van al principal (ver {@link #leerDelPrincipal(boolean)}).
+     */
+    static boolean leeDelPrincipal() {
+        return SOLO_PRINCIPAL.get();
+    }
+
+    /**
+     * Prepara una tarea que va a leer en otro hilo para el hilo actual: mientras se ejecuta, sus
+     * lecturas van al principal si este hilo ha escrito hace poco, igual que irían las suyas.
+     *
+     * @param tarea La tarea.
+     * @return La tarea envuelta.
+     */
+    public static Runnable conEscriturasDelHilo(Runnable tarea) {
+        long escritura = ULTIMA_ESCRITURA.get();
+        return () -> {
+            long propia = ULTIMA_ESCRITURA.get();
+            long heredada = Math.max(propia, escritura);
+            ULTIMA_ESCRITURA.set(heredada);
+            try {
+                tarea.run();
+            } finally {
+                // Si la tarea no ha escrito, el hilo vuelve a su propia marca
+                if (ULTIMA_ESCRITURA.get() == heredada) {
+                    ULTIMA_ESCRITURA.set(propia);
+                }
+            }
+        };
+    }
+
+    /**
+     * Prepara una tarea que va a seguir en otro hilo lo que este ha guardado (normalmente en el de la
+     * interfaz con {@code Platform.runLater}, después de guardar en segundo plano): a diferencia de
+     * {@link #conEscriturasDelHilo(Runnable)}, el otro hilo se queda con la marca de escritura, así que
+     * sus lecturas siguientes van al principal como irían las de este hilo.
+     *
+     * @param tarea La tarea.
+     * @return La tarea envuelta.
+     */
+    public static Runnable trasEscriturasDelHilo(Runnable tarea) {
+        long escritura = ULTIMA_ESCRITURA.get();
+        return () -> {
+            ULTIMA_ESCRITURA.set(Math.max(ULTIMA_ESCRITURA.get(), escritura));
+            tarea.run();
+        };
+    }
+
+    /**
+     * Devuelve las réplicas que se pueden usar, de menos a más conexiones abiertas.
+     */
+    private static List<Replica> replicasPorCarga() {
+        long ahora = System.currentTimeMillis();
+        List<Replica> res = new ArrayList<>();
+        synchronized (REPLICAS) {
+            for (Replica r : REPLICAS) {
+                if (r.disponible || ahora - r.comprobada >= INTERVALO_COMPROBACION_MS) {
+                    res.add(r);
+                }
+            }
+            res.sort(Comparator.comparingInt(r -> r.enUso));
+        }
+        return res;
+    }
+
+    /**
+     * Abre una conexión de solo lectura a una réplica y, si toca, comprueba su retraso.
+     *
+     * @return La conexión, o {@code null} si no se puede conectar o la réplica va demasiado retrasada.
+     */
+    private static Connection abrirReplica(Replica r) {
+        Connection c = null;
+        try {
+            DriverManager.registerDriver(new com.mysql.cj.jdbc.Driver());
+            c = DriverManager.getConnection(r.url, getPropiedad("db.user"), getPropiedad("db.password"));
+            c.setReadOnly(true);
+
+            boolean comprobar;
+            synchronized (REPLICAS) {
+                comprobar = System.currentTimeMillis() - r.comprobada >= INTERVALO_COMPROBACION_MS;
+            }
+            if (comprobar) {
+                long retraso = retrasoMs(c);
+                boolean disponible = retraso >= 0 && retraso <= RETRASO_MAXIMO_MS;
+                synchronized (REPLICAS) {
+                    r.comprobada = System.currentTimeMillis();
+                    r.disponible = disponible;
+                }
+                if (!disponible) {
+                    System.err.println("Réplica " + r.url + (retraso < 0 ? " sin replicación activa" : " retrasada " + retraso + " ms"));
+                    cerrar(c);
+                    return null;
+                }
+            }
+            synchronized (REPLICAS) {
+                r.enUso++;
+            }
+            return CacheConsultas.envolver(c);
+        } catch (SQLException e) {
+            boolean avisar;
+            synchronized (REPLICAS) {
+                r.comprobada = System.currentTimeMillis();
+                r.disponible = false;
+                avisar = e.getErrorCode() != ERROR_SIN_PRIVILEGIO || !r.avisadoPrivilegio;
+                r.avisadoPrivilegio |= e.getErrorCode() == ERROR_SIN_PRIVILEGIO;
+            }
+            if (e.getErrorCode() == ERROR_SIN_PRIVILEGIO) {
+                // Se avisa una sola vez: sin el privilegio, la réplica no se usará nunca
+                if (avisar) {
+                    System.err.println("Réplica " + r.url + " sin usar: " + e.getMessage());
+                }
+            } else {
+                e.printStackTrace();
+            }
+            cerrar(c);
+            return null;
+        }
+    }
+
+    /**
+     * Lee el retraso de replicación de un servidor réplica.
+     *
+     * @param c Una conexión a la réplica.
+     * @return El retraso en milisegundos, o -1 si el servidor no replica o la replicación está parada.
+     * @throws SQLException Si falla la consulta; con el código {@value #ERROR_SIN_PRIVILEGIO} si el
+     *         usuario no tiene el privilegio necesario para consultar el estado de la replicación.
+     */
+    static long retrasoMs(Connection c) throws SQLException {
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SHOW SLAVE STATUS")) {
+            if (!rs.next()) {
+                return -1;
+            }
+            long segundos = rs.getLong("Seconds_Behind_Master");
+            return rs.wasNull() ? -1 : segundos * 1000;
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ERROR_SIN_PRIVILEGIO) {
+                throw e;
+            }
+            throw new SQLException("el usuario " + getPropiedad("db.user") + " no tiene el privilegio REPLICATION CLIENT "
+                    + "(SLAVE MONITOR en MariaDB) para comprobar el retraso de la réplica", e.getSQLState(), e.getErrorCode(), e);
+        }
+    }
+
+    /**
+     * Si hay réplicas, envuelve una conexión al principal para anotar en el hilo actual cuándo se
+     * prepara en ella una sentencia que no es de lectura, o cuándo se ejecuta una escritura con una
+     * sentencia normal ({@link #ULTIMA_ESCRITURA}).
+     */
+    private static Connection vigilarEscrituras(Connection c) {
+        if (c == null || REPLICAS.isEmpty()) {
+            return c;
+        }
+        return (Connection) Proxy.newProxyInstance(DBUtil.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, metodo, args) -> {
+                    String nombre = metodo.getName();
+                    if ((nombre.equals("prepareStatement") || nombre.equals("prepareCall")) && !esLectura((String) args[0])) {
+                        ULTIMA_ESCRITURA.set(System.currentTimeMillis());
+                    }
+                    Object res = invocar(c, metodo, args);
+                    if (nombre.equals("createStatement")) {
+                        return vigilarEscrituras((Statement) res);
+                    }
+                    return res;
+                });
+    }
+
+    /**
+     * Envuelve una sentencia normal para anotar una escritura cuando ejecuta algo que no es de
+     * lectura: el texto no se conoce hasta entonces.
+     */
+    private static Statement vigilarEscrituras(Statement st) {
+        return (Statement) Proxy.newProxyInstance(DBUtil.class.getClassLoader(), new Class<?>[]{Statement.class},
+                (proxy, metodo, args) -> {
+                    String nombre = metodo.getName();
+                    if ((nombre.startsWith("execute") || nombre.equals("addBatch"))
+                            && args != null && args.length > 0 && args[0] instanceof String sql && !esLectura(sql)) {
+                        ULTIMA_ESCRITURA.set(System.currentTimeMillis());
+                    }
+                    return invocar(st, metodo, args);
+                });
+    }
+
+    private static Object invocar(Object destino, Method metodo, Object[] args) throws Throwable {
+        try {
+            return metodo.invoke(destino, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Indica si una sentencia SQL solo lee datos.
+     */
+    static boolean esLectura(String sql) {
+        String inicio = sql.stripLeading();
+        int fin = 0;
+        while (fin < inicio.length() && Character.isLetter(inicio.charAt(fin))) {
+            fin++;
+        }
+        switch (inicio.substring(0, fin).toUpperCase(Locale.ROOT)) {
+            case "SELECT":
+            case "SHOW":
+            case "EXPLAIN":
+            case "DESCRIBE":
+                return !inicio.toUpperCase(Locale.ROOT).contains("FOR UPDATE");
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Descuenta la conexión activa de su réplica, si es de una réplica.
+     */
+    private void cerrarReplica() {
+        if (replica != null) {
+            synchronized (REPLICAS) {
+                replica.enUso--;
+            }
+            replica = null;
+        }
+    }
+
+    /**
+     * Devuelve un dato de conexión, dando prioridad a la propiedad del sistema {@code petsafe.<clave>}.
+     *
+     * @param clave La clave en {@code database.properties}.
+     * @return El valor, o {@code null} si no está definido.
+     */
+    static String getPropiedad(String clave) {
+        return System.getProperty("petsafe." + clave, CONFIGURACION.getProperty(clave));
+    }
+
+    private static List<Replica> leerReplicas() {
+        List<Replica> res = new ArrayList<>();
+        String urls = getPropiedad("db.replicas");
+        if (urls != null) {
+            for (String url : urls.split(",")) {
+                if (!url.isBlank()) {
+                    res.add(new Replica(url.trim()));
+                }
+            }
+        }
+        return res;
+    }
+
+    private static Properties leerConfiguracion() {
+        Properties res = new Properties();
+        try (InputStream is = DBUtil.class.getResourceAsStream("/database.properties")) {
+            if (is != null) {
+                res.load(is);
+            } else {
+                System.err.println("No se encuentra database.properties");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return res;
+    }
+
+    /**
+     * Abre una conexión y la deja reservada para la siguiente llamada a {@link #getConexion()}, de modo
+     * que esa llamada no tenga que esperar a cargar el driver ni a negociar la conexión con el servidor.
+     * Se usa para precalentar la aplicación mientras el usuario escribe sus credenciales.
+     *
+     * @return {@code true} si la conexión se abrió correctamente.
+     */
+    public static boolean precalentarConexion() {
+        synchronized (DBUtil.class) {
+            if (reserva != null) {
+                return true;
+            }
+        }
+        Connection nueva = new DBUtil().getConexion();
+        if (nueva == null) {
+            return false;
+        }
+        synchronized (DBUtil.class) {
+            if (reserva == null) {
+                reserva = nueva;
+                return true;
+            }
+        }
+        // Otro hilo ya dejó una conexión reservada mientras se abría esta
+        cerrar(nueva);
+        return true;
+    }
+
+    /**
+     * Devuelve la conexión reservada si sigue siendo válida, dejando la reserva vacía.
+     */
+    private static Connection tomarReserva() {
+        Connection res;
+        synchronized (DBUtil.class) {
+            res = reserva;
+            reserva = null;
+        }
+        try {
+            if (res != null && res.isValid(2)) {
+                return res;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+        cerrar(res);
+        return null;
+    }
+
+    private static void cerrar(Connection c) {
+        try {
+            if (c != null && !c.isClosed())
+                c.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
     /**
      * Cierra la conexión a la base de datos si está abierta y no es {@code null}.
      * Este método verifica si el campo {@code conexion} no es {@code null} y si la conexión
@@ -65,6 +591,39 @@ public class DBUtil {
             // En caso de error al cerrar la conexión, imprime la traza.
             e.printStackTrace();
         }
+        cerrarReplica();
+    }
+
+    /**
+     * Asigna una pareja de coordenadas (latitud, longitud) a dos parámetros consecutivos de una
+     * sentencia, o {@code NULL} a ambos si las coordenadas no se conocen.
+     *
+     * @param ps La sentencia preparada.
+     * @param indice Posición del parámetro de la latitud; la longitud va en {@code indice + 1}.
+     * @param coordenadas Array {latitud, longitud}, o {@code null}.
+     * @throws SQLException Si ocurre un error al asignar los parámetros.
+     */
+    protected static void setCoordenadas(PreparedStatement ps, int indice, double[] coordenadas) throws SQLException {
+        if (coordenadas == null) {
+            ps.setNull(indice, Types.DOUBLE);
+            ps.setNull(indice + 1, Types.DOUBLE);
+        } else {
+            ps.setDouble(indice, coordenadas[0]);
+            ps.setDouble(indice + 1, coordenadas[1]);
+        }
+    }
+
+    /**
+     * Lee una columna de coordenadas que puede ser {@code NULL}.
+     *
+     * @param rs El resultado de la consulta.
+     * @param columna Nombre de la columna.
+     * @return El valor de la columna, o {@link Double#NaN} si es {@code NULL}.
+     * @throws SQLException Si ocurre un error al leer la columna.
+     */
+    protected static double getCoordenada(ResultSet rs, String columna) throws SQLException {
+        double valor = rs.getDouble(columna);
+        return rs.wasNull() ? Double.NaN : valor;
     }
 
 }
@@ -0,0 +1,103 @@
+package model;
+
+import java.util.Objects;
+
+/**
+ * Negocio, protectora o reporte en el buscador de texto ({@link BuscadorTexto}).
+ * Solo guarda lo necesario para identificarlo y mostrarlo en una lista de sugerencias.
+ */
+public class ElementoBuscable {
+
+    /**
+     * Tipo de elemento que se puede buscar.
+     */
+    public enum Categoria {
+        /** Negocio de tipo veterinario ({@link NegocioModel#TIPO_VETERINARIA}). */
+        VETERINARIO,
+        /** Cualquier otro negocio. */
+        LOCAL,
+        /** Protectora de animales. */
+        PROTECTORA,
+        /** Reporte de un animal, que se busca por la descripción del animal. */
+        REPORTE
+    }
+
+    /**
+     * Tipo de elemento.
+     */
+    private final Categoria categoria;
+
+    /**
+     * idNegocio, idProtectora o id del reporte, según la categoría.
+     */
+    private final int id;
+
+    /**
+     * Nombre del negocio o de la protectora, o descripción del animal del reporte.
+     */
+    private final String titulo;
+
+    /**
+     * Constructor con todos los datos del elemento.
+     *
+     * @param categoria Tipo de elemento.
+     * @param id idNegocio, idProtectora o id del reporte.
+     * @param titulo Nombre o descripción que se muestra en los resultados.
+     */
+    public ElementoBuscable(Categoria categoria, int id, String titulo) {
+        this.categoria = categoria;
+        this.id = id;
+        this.titulo = titulo;
+    }
+
+    /**
+     * Categoría de un negocio según su tipo.
+     *
+     * @param tipoNegocioId El id del tipo de negocio.
+     * @return {@link Categoria#VETERINARIO} para las veterinarias y {@link Categoria#LOCAL} para el resto.
+     */
+    public static Categoria categoriaNegocio(int tipoNegocioId) {
+        return tipoNegocioId == NegocioModel.TIPO_VETERINARIA ? Categoria.VETERINARIO : Categoria.LOCAL;
+    }
+
+    public Categoria getCategoria() {
+        return categoria;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getTitulo() {
+        return titulo;
+    }
+
+    /**
+     * Dos elementos son iguales si son el mismo registro (los negocios se comparan solo por id,
+     * porque pueden cambiar de tipo).
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ElementoBuscable)) return false;
+        ElementoBuscable otro = (ElementoBuscable) o;
+        return id == otro.id && tabla() == otro.tabla();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, tabla());
+    }
+
+    /**
+     * Categoría que identifica la tabla del registro: los veterinarios cuentan como locales.
+     */
+    private Categoria tabla() {
+        return categoria == Categoria.VETERINARIO ? Categoria.LOCAL : categoria;
+    }
+
+    @Override
+    public String toString() {
+        return titulo;
+    }
+}
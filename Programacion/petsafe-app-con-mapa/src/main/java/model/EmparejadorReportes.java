@@ -0,0 +1,152 @@
+package model;
+
+import com.example.petsafeapp.Animal;
+import com.example.petsafeapp.Reporte;
+
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Motor de emparejamiento de reportes de animales perdidos y encontrados.
+ * <p>
+ * Para cada reporte nuevo busca reportes de la situación contraria (un perdido frente a
+ * encontrados y viceversa) del mismo tipo de animal, a menos de una distancia y dentro de una
+ * ventana de días configurables, y los devuelve ordenados de más a menos probable.
+ * </p>
+ * <p>
+ * Los candidatos se leen de la base de datos en cada búsqueda con
+ * {@link ReporteModel#readCandidatosEmparejamiento(Reporte, int, double, int)}, que recorre solo un
+ * rango de los índices de las coordenadas o del tipo, situación y fecha: se tienen en cuenta los
+ * reportes creados o modificados desde cualquier equipo sin mantener una copia en memoria. Como
+ * hace consultas, no se debe llamar desde el hilo de la interfaz.
+ * </p>
+ * <p>
+ * Configuración mediante propiedades del sistema:
+ * {@value #PROPIEDAD_RADIO} (kilómetros, por defecto {@value #RADIO_POR_DEFECTO_KM}) y
+ * {@value #PROPIEDAD_DIAS} (días, por defecto {@value #DIAS_POR_DEFECTO}).
+ * </p>
+ */
+public class EmparejadorReportes {
+
+    /**
+     * Propiedad del sistema con el radio máximo de búsqueda en kilómetros.
+     */
+    public static final String PROPIEDAD_RADIO = "petsafe.emparejador.radioKm";
+
+    /**
+     * Propiedad del sistema con la diferencia máxima de días entre dos reportes.
+     */
+    public static final String PROPIEDAD_DIAS = "petsafe.emparejador.dias";
+
+    /**
+     * Radio de búsqueda por defecto, en kilómetros.
+     */
+    public static final double RADIO_POR_DEFECTO_KM = 5;
+
+    /**
+     * Ventana de días por defecto.
+     */
+    public static final int DIAS_POR_DEFECTO = 30;
+
+    /**
+     * Número máximo de coincidencias que se devuelven.
+     */
+    public static final int MAX_COINCIDENCIAS = 10;
+
+    /**
+     * ID de la situación "Encontrado".
+     */
+    public static final int SITUACION_ENCONTRADO = 1;
+
+    /**
+     * ID de la situación "Perdido".
+     */
+    public static final int SITUACION_PERDIDO = 2;
+
+    private EmparejadorReportes() {
+    }
+
+    /**
+     * Busca los reportes que pueden corresponder al mismo animal que el reporte indicado.
+     *
+     * @param reporte El reporte de referencia, con su animal y sus coordenadas.
+     * @return Las coincidencias ordenadas de más a menos probable (como mucho {@value #MAX_COINCIDENCIAS}),
+     *         o una lista vacía si el reporte no es de un animal perdido o encontrado, no tiene
+     *         coordenadas o no se han podido leer los candidatos.
+     */
+    public static List<CoincidenciaReporte> buscarCoincidencias(Reporte reporte) {
+        if (!esEmparejable(reporte)) {
+            return new ArrayList<>();
+        }
+        double radioKm = leerPropiedad(PROPIEDAD_RADIO, RADIO_POR_DEFECTO_KM);
+        int ventanaDias = (int) leerPropiedad(PROPIEDAD_DIAS, DIAS_POR_DEFECTO);
+        int situacion = reporte.getAnimal().getSituacion().getId();
+        ArrayList<Reporte> candidatos = new ReporteModel().readCandidatosEmparejamiento(reporte,
+                situacion == SITUACION_PERDIDO ? SITUACION_ENCONTRADO : SITUACION_PERDIDO, radioKm, ventanaDias);
+        if (candidatos == null) {
+            return new ArrayList<>();
+        }
+        return puntuar(reporte, candidatos, radioKm, ventanaDias);
+    }
+
+    /**
+     * Calcula la distancia y los días entre el reporte y cada candidato y se queda con los que están
+     * dentro del radio y de la ventana de días, ordenados por puntuación (cuanto menor, más probable).
+     *
+     * @param reporte El reporte de referencia, con su animal y sus coordenadas.
+     * @param candidatos Los reportes de la situación contraria y el mismo tipo de animal.
+     * @param radioKm Radio máximo de búsqueda, en kilómetros.
+     * @param ventanaDias Diferencia máxima de días entre dos reportes.
+     * @return Como mucho {@value #MAX_COINCIDENCIAS} coincidencias.
+     */
+    static List<CoincidenciaReporte> puntuar(Reporte reporte, List<Reporte> candidatos, double radioKm, int ventanaDias) {
+        List<CoincidenciaReporte> res = new ArrayList<>();
+        Animal animal = reporte.getAnimal();
+        for (Reporte r : candidatos) {
+            Animal candidato = r.getAnimal();
+            if (!esEmparejable(r) || candidato.getId() == animal.getId()) {
+                continue;
+            }
+            double distanciaKm = IndiceEspacial.distanciaKm(reporte.getLatitud(), reporte.getLongitud(),
+                    r.getLatitud(), r.getLongitud());
+            long dias = Math.abs(ChronoUnit.DAYS.between(animal.getDate(), candidato.getDate()));
+            if (distanciaKm > radioKm || dias > ventanaDias) {
+                continue;
+            }
+            double puntuacion = distanciaKm / Math.max(radioKm, 1e-9) + (double) dias / Math.max(ventanaDias, 1);
+            res.add(new CoincidenciaReporte(r.getId(), candidato.getId(), candidato.getDescripción(), r.getUbicacion(),
+                    candidato.getDate(), distanciaKm, dias, puntuacion));
+        }
+
+        res.sort(Comparator.comparingDouble(CoincidenciaReporte::getPuntuacion));
+        return res.size() > MAX_COINCIDENCIAS ? new ArrayList<>(res.subList(0, MAX_COINCIDENCIAS)) : res;
+    }
+
+    /**
+     * Indica si un reporte se puede emparejar: animal perdido o encontrado, con tipo, fecha y coordenadas.
+     */
+    private static boolean esEmparejable(Reporte reporte) {
+        Animal animal = reporte.getAnimal();
+        if (animal == null || animal.getTipo() == null || animal.getSituacion() == null || animal.getDate() == null) {
+            return false;
+        }
+        int situacion = animal.getSituacion().getId();
+        return (situacion == SITUACION_PERDIDO || situacion == SITUACION_ENCONTRADO)
+                && !Double.isNaN(reporte.getLatitud()) && !Double.isNaN(reporte.getLongitud());
+    }
+
+    private static double leerPropiedad(String nombre, double porDefecto) {
+        String valor = System.getProperty(nombre);
+        if (valor == null) {
+            return porDefecto;
+        }
+        try {
+            return Double.parseDouble(valor);
+        } catch (NumberFormatException e) {
+            System.err.println("Valor no válido para " + nombre + ": " + valor);
+            return porDefecto;
+        }
+    }
+}
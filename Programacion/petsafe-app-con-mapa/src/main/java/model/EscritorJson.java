@@ -0,0 +1,227 @@
+package model;
+
+/**
+ * Escritor de JSON en streaming sobre un búfer reutilizable.
+ * <p>
+ * A diferencia de {@code org.json}, no construye un árbol de objetos: cada llamada añade el texto
+ * directamente al búfer, y {@link #reiniciar()} lo vacía sin liberar su capacidad, así que generar
+ * muchos lotes del mismo tamaño no vuelve a reservar memoria. Las comas entre elementos se ponen
+ * solas; el que llama solo tiene que abrir y cerrar arrays y objetos en orden.
+ * </p>
+ * <pre>
+ * EscritorJson json = new EscritorJson();
+ * json.inicioArray().inicioObjeto().campo("id", 1).campo("nombre", "Toby").finObjeto().finArray();
+ * json.toString(); // [{"id":1,"nombre":"Toby"}]
+ * </pre>
+ */
+public class EscritorJson {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder buffer;
+
+    /**
+     * Por cada nivel abierto, si todavía no tiene ningún elemento (y el siguiente no lleva coma).
+     */
+    private boolean[] vacio = new boolean[8];
+    private int nivel = 0;
+
+    /**
+     * Crea un escritor con un búfer de capacidad inicial por defecto.
+     */
+    public EscritorJson() {
+        this(1024);
+    }
+
+    /**
+     * Crea un escritor con un búfer de la capacidad indicada.
+     *
+     * @param capacidad Capacidad inicial del búfer, en caracteres.
+     */
+    public EscritorJson(int capacidad) {
+        buffer = new StringBuilder(capacidad);
+    }
+
+    /**
+     * Vacía el búfer para escribir un documento nuevo, conservando su capacidad.
+     *
+     * @return Este escritor.
+     */
+    public EscritorJson reiniciar() {
+        buffer.setLength(0);
+        nivel = 0;
+        return this;
+    }
+
+    public EscritorJson inicioArray() {
+        separar();
+        buffer.append('[');
+        abrir();
+        return this;
+    }
+
+    public EscritorJson finArray() {
+        nivel--;
+        buffer.append(']');
+        return this;
+    }
+
+    public EscritorJson inicioObjeto() {
+        separar();
+        buffer.append('{');
+        abrir();
+        return this;
+    }
+
+    public EscritorJson finObjeto() {
+        nivel--;
+        buffer.append('}');
+        return this;
+    }
+
+    /**
+     * Escribe un campo de texto de un objeto; un valor {@code null} se escribe como {@code null}.
+     */
+    public EscritorJson campo(String nombre, String valor) {
+        nombre(nombre);
+        escribirTexto(valor);
+        return this;
+    }
+
+    public EscritorJson campo(String nombre, long valor) {
+        nombre(nombre);
+        buffer.append(valor);
+        return this;
+    }
+
+    /**
+     * Escribe un campo numérico de un objeto; los valores no finitos, que JSON no admite, se
+     * escriben como {@code null}.
+     */
+    public EscritorJson campo(String nombre, double valor) {
+        nombre(nombre);
+        escribirNumero(valor);
+        return this;
+    }
+
+    public EscritorJson campo(String nombre, boolean valor) {
+        nombre(nombre);
+        buffer.append(valor);
+        return this;
+    }
+
+    /**
+     * Escribe un elemento de texto de un array.
+     */
+    public EscritorJson valor(String valor) {
+        separar();
+        escribirTexto(valor);
+        return this;
+    }
+
+    /**
+     * Escribe un elemento numérico de un array.
+     */
+    public EscritorJson valor(double valor) {
+        separar();
+        escribirNumero(valor);
+        return this;
+    }
+
+    /**
+     * Añade texto tal cual, sin comas ni comillas, por ejemplo el nombre de la función de un
+     * script ({@code procesarReportes(}). No cuenta como elemento.
+     *
+     * @param texto El texto.
+     * @return Este escritor.
+     */
+    public EscritorJson crudo(String texto) {
+        buffer.append(texto);
+        return this;
+    }
+
+    /**
+     * Número de caracteres escritos desde el último {@link #reiniciar()}.
+     *
+     * @return La longitud del texto.
+     */
+    public int length() {
+        return buffer.length();
+    }
+
+    /**
+     * Devuelve el texto escrito.
+     */
+    @Override
+    public String toString() {
+        return buffer.toString();
+    }
+
+    private void abrir() {
+        if (nivel == vacio.length) {
+            boolean[] mayor = new boolean[nivel * 2];
+            System.arraycopy(vacio, 0, mayor, 0, nivel);
+            vacio = mayor;
+        }
+        vacio[nivel++] = true;
+    }
+
+    /**
+     * Pone una coma si el elemento que se va a escribir no es el primero de su array u objeto.
+     */
+    private void separar() {
+        if (nivel > 0) {
+            if (vacio[nivel - 1]) {
+                vacio[nivel - 1] = false;
+            } else {
+                buffer.append(',');
+            }
+        }
+    }
+
+    private void nombre(String nombre) {
+        separar();
+        escribirTexto(nombre);
+        buffer.append(':');
+    }
+
+    private void escribirNumero(double valor) {
+        if (!Double.isFinite(valor)) {
+            buffer.append("null");
+        } else if (valor == Math.rint(valor) && Math.abs(valor) < 1e15) {
+            buffer.append((long) valor);
+        } else {
+            buffer.append(valor);
+        }
+    }
+
+    private void escribirTexto(String texto) {
+        if (texto == null) {
+            buffer.append("null");
+            return;
+        }
+        buffer.append('"');
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '"': buffer.append("\\\""); break;
+                case '\\': buffer.append("\\\\"); break;
+                case '\n': buffer.append("\\n"); break;
+                case '\r': buffer.append("\\r"); break;
+                case '\t': buffer.append("\\t"); break;
+                case '\b': buffer.append("\\b"); break;
+                case '\f': buffer.append("\\f"); break;
+                default:
+                    // Los separadores de línea de Unicode son válidos en JSON pero no en JavaScript
+                    // anterior a ES2019, y '</' cerraría un <script> si el JSON acabara en HTML
+                    if (c < 0x20 || c == 0x2028 || c == 0x2029 || (c == '/' && i > 0 && texto.charAt(i - 1) == '<')) {
+                        buffer.append("\\u").append(HEX[c >> 12 & 0xF]).append(HEX[c >> 8 & 0xF])
+                                .append(HEX[c >> 4 & 0xF]).append(HEX[c & 0xF]);
+                    } else {
+                        buffer.append(c);
+                    }
+            }
+        }
+        buffer.append('"');
+    }
+}
@@ -0,0 +1,278 @@
+package model;
+
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exportación de reportes, negocios y citas para entregar a otras entidades.
+ * <p>
+ * A diferencia de los métodos {@code read...} de los modelos, que devuelven listas completas y
+ * guardan cada imagen en un fichero temporal, aquí las filas se leen de una en una con un
+ * {@link ResultSet} de solo avance en modo streaming ({@code setFetchSize(Integer.MIN_VALUE)} en el
+ * driver de MySQL) y se escriben directamente en el fichero de destino a través de un
+ * {@link FileChannel}. La memoria usada no depende del número de filas.
+ * </p>
+ * <p>
+ * Formatos ({@link Formato}):
+ * </p>
+ * <ul>
+ *     <li>{@code CSV}: separado por {@code ;}, con cabecera y sin las imágenes.</li>
+ *     <li>{@code NDJSON}: un objeto JSON por línea, sin las imágenes.</li>
+ *     <li>{@code ZIP}: el CSV y una carpeta {@code imagenes/} con la imagen de cada fila, con el ID
+ *     como nombre. Un ZIP solo puede escribir una entrada a la vez, así que se recorren los datos dos
+ *     veces: una para el CSV y otra para las imágenes, que se copian del BLOB a la entrada sin
+ *     comprimir (ya son PNG o JPEG).</li>
+ * </ul>
+ * <p>
+ * Uso: {@code ExportadorDatos <reportes|negocios|citas> <csv|ndjson|zip> <destino>}.
+ * </p>
+ */
+public class ExportadorDatos extends DBUtil {
+
+    /**
+     * Datos que se pueden exportar.
+     */
+    public enum Conjunto {
+        /**
+         * Reportes con los datos de su animal; la imagen es la del animal.
+         */
+        REPORTES("SELECT r.id, r.ubicacion, r.latitud, r.longitud, r.Usuario AS usuario_id, " +
+                "a.id AS animal_id, a.descripcion, t.nombre AS tipo, s.nombre AS situacion, a.fecha " +
+                "FROM reporte r JOIN animal a ON r.animal = a.id " +
+                "LEFT JOIN tipo t ON a.tipo = t.id LEFT JOIN situacion s ON a.situacion = s.id ORDER BY r.id",
+                "SELECT r.id, a.imagen FROM reporte r JOIN animal a ON r.animal = a.id " +
+                        "WHERE a.imagen IS NOT NULL ORDER BY r.id"),
+        /**
+         * Negocios con el nombre de su tipo; la imagen es la foto del negocio.
+         */
+        NEGOCIOS("SELECT n.idNegocio AS id, n.nombreNegocio AS nombre, n.direccion, n.descripcion, " +
+                "n.puntuacion, tn.nombre AS tipo, n.Usuario_id AS usuario_id, n.latitud, n.longitud " +
+                "FROM negocio n LEFT JOIN tiponegocio tn ON n.tipoNegocio_id = tn.id ORDER BY n.idNegocio",
+                "SELECT idNegocio, fotos FROM negocio WHERE fotos IS NOT NULL ORDER BY idNegocio"),
+        /**
+         * Citas; no tienen imágenes.
+         */
+        CITAS("SELECT id, Id_Usuario AS usuario_id, Fecha AS fecha, Hora AS hora, " +
+                "Nombre_Animal AS nombre_animal, Motivo AS motivo FROM citas ORDER BY id",
+                null);
+
+        private final String consultaDatos;
+        private final String consultaImagenes;
+
+        Conjunto(String consultaDatos, String consultaImagenes) {
+            this.consultaDatos = consultaDatos;
+            this.consultaImagenes = consultaImagenes;
+        }
+    }
+
+    /**
+     * Formatos de exportación.
+     */
+    public enum Formato {
+        CSV, NDJSON, ZIP
+    }
+
+    /**
+     * Tamaño del búfer entre el fichero de destino y el escritor.
+     */
+    private static final int TAMANO_BUFER = 64 * 1024;
+
+    private static final char SEPARADOR = ';';
+
+    /**
+     * Exporta un conjunto de datos a un fichero, que se sobrescribe si ya existe.
+     *
+     * @param conjunto Los datos a exportar.
+     * @param formato El formato del fichero.
+     * @param destino El fichero de destino.
+     * @return El número de filas exportadas, o -1 si ocurre un error de base de datos.
+     * @throws IOException Si no se puede escribir el fichero.
+     */
+    public long exportar(Conjunto conjunto, Formato formato, Path destino) throws IOException {
+        try (FileChannel canal = FileChannel.open(destino, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream salida = new BufferedOutputStream(Channels.newOutputStream(canal), TAMANO_BUFER)) {
+
+            Connection con = this.getConexion();
+            if (con == null) {
+                return -1;
+            }
+
+            if (formato != Formato.ZIP) {
+                Writer escritor = new OutputStreamWriter(salida, StandardCharsets.UTF_8);
+                long filas = escribirDatos(con, conjunto, formato, escritor);
+                escritor.flush();
+                return filas;
+            }
+
+            ZipOutputStream zip = new ZipOutputStream(salida, StandardCharsets.UTF_8);
+            zip.putNextEntry(new ZipEntry(conjunto.name().toLowerCase(Locale.ROOT) + ".csv"));
+            // Sin cerrar: cerrarlo cerraría también el ZIP
+            Writer escritor = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), TAMANO_BUFER);
+            long filas = escribirDatos(con, conjunto, Formato.CSV, escritor);
+            escritor.flush();
+            zip.closeEntry();
+
+            if (conjunto.consultaImagenes != null) {
+                escribirImagenes(con, conjunto.consultaImagenes, zip);
+            }
+            zip.finish();
+            return filas;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        } finally {
+            this.cerrarConexion();
+        }
+    }
+
+    /**
+     * Escribe las filas de datos en CSV o en NDJSON a medida que se leen.
+     */
+    private long escribirDatos(Connection con, Conjunto conjunto, Formato formato, Writer escritor) throws SQLException, IOException {
+        long filas = 0;
+        try (Statement st = abrirStreaming(con); ResultSet rs = st.executeQuery(conjunto.consultaDatos)) {
+            ResultSetMetaData meta = rs.getMetaData();
+            int columnas = meta.getColumnCount();
+            String[] nombres = new String[columnas];
+            for (int i = 0; i < columnas; i++) {
+                nombres[i] = meta.getColumnLabel(i + 1);
+            }
+
+            if (formato == Formato.CSV) {
+                for (int i = 0; i < columnas; i++) {
+                    if (i > 0) escritor.write(SEPARADOR);
+                    escritor.write(campoCsv(nombres[i]));
+                }
+                escritor.write('\n');
+            }
+
+            while (rs.next()) {
+                if (formato == Formato.CSV) {
+                    for (int i = 0; i < columnas; i++) {
+                        if (i > 0) escritor.write(SEPARADOR);
+                        escritor.write(campoCsv(rs.getString(i + 1)));
+                    }
+                } else {
+                    JSONObject obj = new JSONObject();
+                    for (int i = 0; i < columnas; i++) {
+                        Object valor = rs.getObject(i + 1);
+                        obj.put(nombres[i], valor == null ? JSONObject.NULL
+                                : valor instanceof Number || valor instanceof Boolean ? valor : valor.toString());
+                    }
+                    escritor.write(obj.toString());
+                }
+                escritor.write('\n');
+                filas++;
+            }
+        }
+        return filas;
+    }
+
+    /**
+     * Copia cada imagen de su BLOB a una entrada {@code imagenes/<id>.<extensión>} del ZIP.
+     */
+    private void escribirImagenes(Connection con, String sql, ZipOutputStream zip) throws SQLException, IOException {
+        zip.setLevel(Deflater.NO_COMPRESSION);
+        try (Statement st = abrirStreaming(con); ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                int id = rs.getInt(1);
+                try (InputStream blob = new BufferedInputStream(rs.getBinaryStream(2))) {
+                    zip.putNextEntry(new ZipEntry("imagenes/" + id + "." + extension(blob)));
+                    blob.transferTo(zip);
+                    zip.closeEntry();
+                }
+            }
+        } finally {
+            zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+        }
+    }
+
+    /**
+     * Crea una sentencia de solo avance que el driver de MySQL lee fila a fila, sin cargar el
+     * resultado completo en memoria.
+     */
+    private static Statement abrirStreaming(Connection con) throws SQLException {
+        Statement st = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        st.setFetchSize(Integer.MIN_VALUE);
+        return st;
+    }
+
+    /**
+     * Deduce la extensión de una imagen por sus primeros bytes, sin consumirlos.
+     */
+    static String extension(InputStream imagen) throws IOException {
+        imagen.mark(4);
+        byte[] cabecera = imagen.readNBytes(4);
+        imagen.reset();
+        if (cabecera.length >= 4 && (cabecera[0] & 0xFF) == 0x89 && cabecera[1] == 'P' && cabecera[2] == 'N' && cabecera[3] == 'G') {
+            return "png";
+        }
+        if (cabecera.length >= 2 && (cabecera[0] & 0xFF) == 0xFF && (cabecera[1] & 0xFF) == 0xD8) {
+            return "jpg";
+        }
+        if (cabecera.length >= 3 && cabecera[0] == 'G' && cabecera[1] == 'I' && cabecera[2] == 'F') {
+            return "gif";
+        }
+        return "bin";
+    }
+
+    /**
+     * Escapa un valor para el CSV: entre comillas si contiene el separador, comillas o saltos de línea.
+     */
+    static String campoCsv(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        if (valor.indexOf(SEPARADOR) < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            return valor;
+        }
+        return '"' + valor.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Exporta desde la línea de comandos.
+     *
+     * @param args El conjunto, el formato y el fichero de destino.
+     * @throws IOException Si no se puede escribir el fichero.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Uso: ExportadorDatos <reportes|negocios|citas> <csv|ndjson|zip> <destino>");
+            System.exit(2);
+        }
+        Conjunto conjunto = Conjunto.valueOf(args[0].toUpperCase(Locale.ROOT));
+        Formato formato = Formato.valueOf(args[1].toUpperCase(Locale.ROOT));
+
+        long inicio = System.nanoTime();
+        long filas = new ExportadorDatos().exportar(conjunto, formato, Paths.get(args[2]));
+        if (filas < 0) {
+            System.err.println("Error al exportar");
+            System.exit(1);
+        }
+        System.out.println("Filas exportadas: " + filas + " en " + (System.nanoTime() - inicio) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,18 @@
+package model;
+
+/**
+ * Fila de las listas de veterinarios, locales y protectoras: solo las columnas de la tabla.
+ * <p>
+ * La leen {@link NegocioModel#readPaginaNegocios(int, int, int, boolean)} y
+ * {@link ProtectoraModel#readPaginaProtectoras(int, int)} (y sus versiones por IDs) con una consulta
+ * que no lee imágenes ni el resto de datos del usuario. La ficha completa se carga al abrirla, por
+ * su ID.
+ * </p>
+ *
+ * @param id ID del negocio o de la protectora.
+ * @param nombre Nombre del negocio o de la protectora.
+ * @param direccion Dirección postal.
+ * @param contacto Email de contacto del usuario del negocio o de la protectora.
+ */
+public record FilaListado(int id, String nombre, String direccion, String contacto) {
+}
@@ -0,0 +1,601 @@
+package model;
+
+import com.example.petsafeapp.Situacion;
+import com.example.petsafeapp.TipoAnimal;
+import com.example.petsafeapp.TipoNegocio;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generador de datos sintéticos para pruebas de carga y de escala.
+ * <p>
+ * Rellena la base de datos con {@code usuarios} usuarios (repartidos entre personas, negocios y
+ * protectoras), {@code animales} animales, {@code reportes} reportes y {@code citas} citas. Las
+ * direcciones se reparten alrededor de barrios de Valencia y de su área metropolitana, con más peso
+ * en el centro, y tienen el formato que entiende {@link GeocodificadorLocal}. Las fotos de los animales
+ * son PNG pequeños completados con bytes aleatorios hasta el tamaño indicado.
+ * </p>
+ * <p>
+ * Los datos se insertan a continuación de los que ya hay, con identificadores explícitos, en lotes de
+ * {@value #FILAS_LOTE} filas. Cada lote se escribe con su propia conexión y en su propia transacción,
+ * con sentencias {@code INSERT} de varias filas, y varios hilos escriben lotes a la vez. Cada lote
+ * genera sus filas con un generador aleatorio que depende solo de la semilla, la tabla y el número de
+ * lote, así que con la misma semilla y la misma base de datos de partida el resultado es el mismo,
+ * sea cual sea el número de hilos.
+ * </p>
+ * <p>
+ * Uso: {@code GeneradorDatos [--usuarios=N] [--animales=N] [--reportes=N] [--citas=N]
+ * [--bytes-imagen=N] [--bytes-logo=N] [--semilla=N] [--hilos=N]}. Antes de generar se aplican las
+ * migraciones pendientes, porque se rellenan columnas que añaden ellas (las coordenadas).
+ * </p>
+ */
+public class GeneradorDatos {
+
+    /**
+     * Filas de cada lote (y de cada transacción).
+     */
+    static final int FILAS_LOTE = 2000;
+
+    /**
+     * Máximo de filas por sentencia {@code INSERT}.
+     */
+    private static final int FILAS_SENTENCIA = 500;
+
+    /**
+     * Tamaño aproximado máximo de cada sentencia, por debajo del {@code max_allowed_packet}
+     * por defecto del servidor.
+     */
+    private static final int BYTES_SENTENCIA = 4 * 1024 * 1024;
+
+    /**
+     * Contraseña de todos los usuarios generados.
+     */
+    public static final String CONTRASENA = "petsafe";
+
+    /**
+     * Dominio de los correos de los usuarios generados ({@code usuario<id>@}{@value #DOMINIO}).
+     */
+    public static final String DOMINIO = "petsafe.test";
+
+    private static final int TABLA_USUARIO = 1;
+    private static final int TABLA_ANIMAL = 2;
+    private static final int TABLA_REPORTE = 3;
+    private static final int TABLA_CITA = 4;
+
+    /**
+     * Zonas en las que se reparten las direcciones: barrio o municipio, código postal, latitud y
+     * longitud del centro, radio en km y peso relativo.
+     */
+    private static final Zona[] ZONAS = {
+            new Zona("Valencia", "46001", 39.4747, -0.3763, 0.6, 10, "Calle de la Paz", "Calle de Caballeros", "Calle de San Vicente Mártir"),
+            new Zona("Valencia", "46006", 39.4627, -0.3734, 0.7, 10, "Calle de Sueca", "Calle de Cádiz", "Calle del Literato Azorín"),
+            new Zona("Valencia", "46005", 39.4668, -0.3689, 0.6, 8, "Gran Vía del Marqués del Turia", "Calle de Colón", "Calle de Cirilo Amorós"),
+            new Zona("Valencia", "46020", 39.4862, -0.3597, 0.7, 7, "Calle de Emilio Baró", "Avenida de Valladolid", "Calle de Murta"),
+            new Zona("Valencia", "46015", 39.4823, -0.3985, 0.8, 7, "Avenida de Pío XII", "Calle de Campanar", "Avenida de Maestro Rodrigo"),
+            new Zona("Valencia", "46018", 39.4598, -0.3990, 0.8, 6, "Calle de Patraix", "Calle del Beato Nicolás Factor", "Calle de Tres Forques"),
+            new Zona("Valencia", "46011", 39.4685, -0.3300, 0.7, 6, "Calle de la Reina", "Calle de José Benlliure", "Calle de la Barraca"),
+            new Zona("Valencia", "46025", 39.4930, -0.3921, 0.7, 5, "Calle de Luis Crumiere", "Avenida de Burjassot", "Calle de Ángel Villena"),
+            new Zona("Valencia", "46013", 39.4520, -0.3620, 0.9, 6, "Avenida de la Plata", "Calle de Castell de Pop", "Avenida de Ausiàs March"),
+            new Zona("Torrent", "46900", 39.4370, -0.4655, 1.2, 4, "Avenida al Vedat", "Calle de Valencia", "Calle de Ramón y Cajal"),
+            new Zona("Paterna", "46980", 39.5025, -0.4407, 1.2, 4, "Calle Mayor", "Avenida de Vicente Mortes", "Calle de Valencia"),
+            new Zona("Burjassot", "46100", 39.5096, -0.4138, 0.8, 3, "Calle de Jorge Juan", "Avenida de la Constitución", "Calle de Valencia"),
+            new Zona("Mislata", "46920", 39.4753, -0.4177, 0.6, 3, "Avenida de Gregorio Gea", "Calle Mayor", "Calle de Felipe Bellver"),
+            new Zona("Sagunt", "46500", 39.6797, -0.2784, 1.5, 1, "Avenida del País Valencià", "Calle de Camí Real", "Avenida de Italia")
+    };
+
+    private static final String[] NOMBRES = {"Lucía", "Hugo", "Martina", "Mateo", "Sofía", "Leo", "María",
+            "Pablo", "Julia", "Daniel", "Paula", "Álvaro", "Carmen", "Vicent", "Laura", "Javier", "Marta", "Pau"};
+
+    private static final String[] APELLIDOS = {"García", "Martínez", "López", "Sánchez", "Pérez", "Gómez",
+            "Ferrer", "Navarro", "Ruiz", "Soler", "Puig", "Romero", "Torres", "Vidal", "Castillo", "Blasco"};
+
+    private static final String[] MASCOTAS = {"Luna", "Toby", "Coco", "Nala", "Rocky", "Kira", "Simba",
+            "Lola", "Thor", "Mia", "Bruno", "Canela", "Max", "Frida", "Chispa", "Rufo"};
+
+    private static final String[] DESCRIPCIONES = {"pelo corto", "pelo largo", "collar rojo", "collar azul",
+            "sin collar", "muy asustadizo", "cariñoso", "cojea de una pata", "con chip", "mancha en el ojo",
+            "cola cortada", "tamaño pequeño", "tamaño grande", "cachorro", "edad avanzada"};
+
+    private static final String[] COLORES = {"negro", "blanco", "marrón", "gris", "canela", "atigrado",
+            "blanco y negro", "tricolor"};
+
+    private static final String[] MOTIVOS = {"Vacunación", "Revisión anual", "Desparasitación", "Peluquería",
+            "Consulta por cojera", "Esterilización", "Análisis de sangre", "Limpieza dental", "Implantación de chip"};
+
+    private static final String[] NEGOCIOS = {"Clínica Veterinaria", "Centro Veterinario", "Tienda Animal",
+            "Peluquería Canina", "Mascotas", "Hospital Veterinario"};
+
+    private static final String[] PROTECTORAS = {"Protectora", "Asociación Amigos de los Animales",
+            "Refugio", "Albergue"};
+
+    private final long semilla;
+    private final int hilos;
+    private final int bytesImagen;
+    private final int bytesLogo;
+
+    private final Map<String, AtomicLong> filas = new LinkedHashMap<>();
+
+    /**
+     * Crea un generador.
+     *
+     * @param semilla Semilla de la que dependen todos los datos.
+     * @param hilos Número de hilos que escriben lotes a la vez.
+     * @param bytesImagen Tamaño de la foto de cada animal, o 0 para dejarla vacía.
+     * @param bytesLogo Tamaño de la foto de cada usuario, negocio y protectora, o 0 para dejarla vacía.
+     */
+    public GeneradorDatos(long semilla, int hilos, int bytesImagen, int bytesLogo) {
+        this.semilla = semilla;
+        this.hilos = Math.max(1, hilos);
+        this.bytesImagen = Math.max(0, bytesImagen);
+        this.bytesLogo = Math.max(0, bytesLogo);
+        for (String tabla : new String[]{"usuario", "persona", "negocio", "protectoras", "animal", "reporte", "citas"}) {
+            filas.put(tabla, new AtomicLong());
+        }
+    }
+
+    /**
+     * Genera los datos. Primero se escriben a la vez los usuarios y los animales, y después los
+     * reportes y las citas, que hacen referencia a ellos.
+     *
+     * @param usuarios Número de usuarios.
+     * @param animales Número de animales.
+     * @param reportes Número de reportes; cada uno es de un animal distinto mientras haya animales.
+     * @param citas Número de citas.
+     * @return Las filas insertadas en cada tabla, o {@code null} si no se pudo leer el estado inicial.
+     */
+    public Map<String, Long> generar(int usuarios, int animales, int reportes, int citas) {
+        long baseUsuario;
+        long baseAnimal;
+        long baseReporte;
+        long baseCita;
+        int[] tipos = Catalogos.getTiposAnimal().stream().mapToInt(TipoAnimal::getId).toArray();
+        int[] situaciones = Catalogos.getSituaciones().stream().mapToInt(Situacion::getId).toArray();
+        int[] tiposNegocio = Catalogos.getTiposNegocio().stream().mapToInt(TipoNegocio::getId).toArray();
+
+        DBUtil db = new DBUtil();
+        try {
+            Connection con = db.getConexion();
+            if (con == null) {
+                return null;
+            }
+            baseUsuario = maximo(con, "SELECT COALESCE(MAX(id), 0) FROM usuario");
+            baseAnimal = maximo(con, "SELECT COALESCE(MAX(id), 0) FROM animal");
+            baseReporte = maximo(con, "SELECT COALESCE(MAX(id), 0) FROM reporte");
+            baseCita = maximo(con, "SELECT COALESCE(MAX(id), 0) FROM citas");
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            db.cerrarConexion();
+        }
+        if (tipos.length == 0 || situaciones.length == 0 || tiposNegocio.length == 0) {
+            System.err.println("Faltan los catálogos de tipos y situaciones");
+            return null;
+        }
+
+        List<Lote> fase = new ArrayList<>();
+        for (int i = 0; i * FILAS_LOTE < usuarios; i++) {
+            int n = i;
+            fase.add(con -> escribirUsuarios(con, n, baseUsuario, usuarios, tiposNegocio));
+        }
+        for (int i = 0; i * FILAS_LOTE < animales; i++) {
+            int n = i;
+            fase.add(con -> escribirAnimales(con, n, baseAnimal, animales, tipos, situaciones));
+        }
+        ejecutar(fase);
+
+        fase.clear();
+        if (animales > 0 && usuarios > 0) {
+            for (int i = 0; i * FILAS_LOTE < reportes; i++) {
+                int n = i;
+                fase.add(con -> escribirReportes(con, n, baseReporte, reportes, baseAnimal, animales, baseUsuario, usuarios));
+            }
+        }
+        if (usuarios > 0) {
+            for (int i = 0; i * FILAS_LOTE < citas; i++) {
+                int n = i;
+                fase.add(con -> escribirCitas(con, n, baseCita, citas, baseUsuario, usuarios));
+            }
+        }
+        ejecutar(fase);
+
+        Map<String, Long> res = new LinkedHashMap<>();
+        filas.forEach((tabla, total) -> res.put(tabla, total.get()));
+        return res;
+    }
+
+    /**
+     * Escritura de un lote con una conexión ya abierta.
+     */
+    private interface Lote {
+        void escribir(Connection con) throws SQLException;
+    }
+
+    /**
+     * Ejecuta los lotes en paralelo, cada uno con su conexión y su transacción, y espera a que terminen.
+     */
+    private void ejecutar(List<Lote> lotes) {
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (Lote lote : lotes) {
+            tareas.add(pool.submit(() -> {
+                DBUtil db = new DBUtil();
+                try {
+                    Connection con = db.getConexion();
+                    if (con == null) {
+                        return;
+                    }
+                    // Los identificadores son coherentes por construcción y los lotes de reportes y
+                    // citas pueden escribirse antes que otros de usuarios o animales.
+                    try (Statement st = con.createStatement()) {
+                        st.execute("SET SESSION foreign_key_checks = 0, unique_checks = 0");
+                    }
+                    con.setAutoCommit(false);
+                    try {
+                        lote.escribir(con);
+                        con.commit();
+                    } catch (SQLException e) {
+                        con.rollback();
+                        throw e;
+                    }
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                } finally {
+                    db.cerrarConexion();
+                }
+            }));
+        }
+        pool.shutdown();
+        for (Future<?> tarea : tareas) {
+            try {
+                tarea.get();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void escribirUsuarios(Connection con, int lote, long base, int total, int[] tiposNegocio) throws SQLException {
+        SplittableRandom rnd = aleatorio(TABLA_USUARIO, lote);
+        List<Object[]> usuarios = new ArrayList<>();
+        List<Object[]> personas = new ArrayList<>();
+        List<Object[]> negocios = new ArrayList<>();
+        List<Object[]> protectoras = new ArrayList<>();
+
+        for (long i = (long) lote * FILAS_LOTE; i < Math.min(total, (long) (lote + 1) * FILAS_LOTE); i++) {
+            long id = base + i + 1;
+            String nombre = elegir(rnd, NOMBRES);
+            String apellido = elegir(rnd, APELLIDOS);
+            usuarios.add(new Object[]{id, (nombre + "." + apellido + id).toLowerCase(), CONTRASENA,
+                    "usuario" + id + "@" + DOMINIO, String.format("6%08d", rnd.nextInt(100_000_000)),
+                    bytes(rnd, bytesLogo)});
+
+            // 80 % personas, 12 % negocios y 8 % protectoras
+            int tipo = rnd.nextInt(100);
+            if (tipo < 80) {
+                personas.add(new Object[]{Date.valueOf(LocalDate.of(1950, 1, 1).plusDays(rnd.nextInt(20_000))),
+                        nombre, apellido + " " + elegir(rnd, APELLIDOS), id});
+            } else {
+                Zona zona = elegirZona(rnd);
+                double[] coordenadas = zona.coordenadas(rnd);
+                if (tipo < 92) {
+                    negocios.add(new Object[]{elegir(rnd, NEGOCIOS) + " " + apellido, zona.direccion(rnd),
+                            "Negocio de prueba " + id, bytes(rnd, bytesLogo), 1 + rnd.nextInt(41) / 10.0,
+                            elegir(rnd, tiposNegocio), id, coordenadas[0], coordenadas[1]});
+                } else {
+                    protectoras.add(new Object[]{elegir(rnd, PROTECTORAS) + " " + zona.ciudad + " " + id,
+                            zona.direccion(rnd), "Protectora de prueba " + id, bytes(rnd, bytesLogo), id,
+                            coordenadas[0], coordenadas[1]});
+                }
+            }
+        }
+
+        insertar(con, "usuario", usuarios, bytesLogo,
+                "id", "nombreUser", "contraseña", "email", "telefonoContacto", "logoImagen");
+        insertar(con, "persona", personas, 0,
+                "fechaNacimiento", "nombre", "apellidos", "Usuario_id");
+        insertar(con, "negocio", negocios, bytesLogo,
+                "nombreNegocio", "direccion", "descripcion", "fotos", "puntuacion", "tipoNegocio_id", "Usuario_id", "latitud", "longitud");
+        insertar(con, "protectoras", protectoras, bytesLogo,
+                "nombreProtectora", "direccion", "descripcion", "fotos", "Usuario_id", "latitud", "longitud");
+    }
+
+    private void escribirAnimales(Connection con, int lote, long base, int total, int[] tipos, int[] situaciones) throws SQLException {
+        SplittableRandom rnd = aleatorio(TABLA_ANIMAL, lote);
+        List<Object[]> animales = new ArrayList<>();
+        // Fecha fija, para que los datos no dependan del día en que se generan
+        LocalDate hoy = LocalDate.of(2025, 6, 1);
+
+        for (long i = (long) lote * FILAS_LOTE; i < Math.min(total, (long) (lote + 1) * FILAS_LOTE); i++) {
+            String descripcion = elegir(rnd, MASCOTAS) + ", " + elegir(rnd, COLORES) + ", " + elegir(rnd, DESCRIPCIONES);
+            animales.add(new Object[]{base + i + 1, descripcion, elegir(rnd, tipos), elegir(rnd, situaciones),
+                    Date.valueOf(hoy.minusDays(rnd.nextInt(730))), imagen(rnd, bytesImagen)});
+        }
+
+        insertar(con, "animal", animales, bytesImagen, "id", "descripcion", "tipo", "situacion", "fecha", "imagen");
+    }
+
+    private void escribirReportes(Connection con, int lote, long base, int total, long baseAnimal, int animales,
+                                  long baseUsuario, int usuarios) throws SQLException {
+        SplittableRandom rnd = aleatorio(TABLA_REPORTE, lote);
+        List<Object[]> reportes = new ArrayList<>();
+
+        for (long i = (long) lote * FILAS_LOTE; i < Math.min(total, (long) (lote + 1) * FILAS_LOTE); i++) {
+            Zona zona = elegirZona(rnd);
+            double[] coordenadas = zona.coordenadas(rnd);
+            reportes.add(new Object[]{base + i + 1, baseAnimal + i % animales + 1, baseUsuario + rnd.nextInt(usuarios) + 1,
+                    zona.direccion(rnd), coordenadas[0], coordenadas[1]});
+        }
+
+        insertar(con, "reporte", reportes, 0, "id", "animal", "Usuario", "ubicacion", "latitud", "longitud");
+    }
+
+    private void escribirCitas(Connection con, int lote, long base, int total, long baseUsuario, int usuarios) throws SQLException {
+        SplittableRandom rnd = aleatorio(TABLA_CITA, lote);
+        List<Object[]> citas = new ArrayList<>();
+        LocalDate inicio = LocalDate.of(2024, 6, 1);
+
+        for (long i = (long) lote * FILAS_LOTE; i < Math.min(total, (long) (lote + 1) * FILAS_LOTE); i++) {
+            // De 9:00 a 19:45, cada cuarto de hora
+            int minutos = 9 * 60 + rnd.nextInt(44) * 15;
+            citas.add(new Object[]{base + i + 1, baseUsuario + rnd.nextInt(usuarios) + 1,
+                    Date.valueOf(inicio.plusDays(rnd.nextInt(730))), Time.valueOf(LocalTime.of(minutos / 60, minutos % 60)),
+                    elegir(rnd, MASCOTAS), elegir(rnd, MOTIVOS)});
+        }
+
+        insertar(con, "citas", citas, 0, "id", "Id_Usuario", "Fecha", "Hora", "Nombre_Animal", "Motivo");
+    }
+
+    /**
+     * Inserta las filas con sentencias de varias filas, sin pasar de {@value #FILAS_SENTENCIA} filas
+     * ni de unos {@value #BYTES_SENTENCIA} bytes por sentencia.
+     *
+     * @param bytesFila Bytes binarios de cada fila, para limitar el tamaño de la sentencia.
+     */
+    private void insertar(Connection con, String tabla, List<Object[]> datos, int bytesFila, String... columnas) throws SQLException {
+        if (datos.isEmpty()) {
+            return;
+        }
+        int porSentencia = Math.max(1, Math.min(FILAS_SENTENCIA, BYTES_SENTENCIA / (bytesFila + 200)));
+
+        PreparedStatement completa = null;
+        try {
+            for (int i = 0; i < datos.size(); i += porSentencia) {
+                List<Object[]> grupo = datos.subList(i, Math.min(datos.size(), i + porSentencia));
+                PreparedStatement ps;
+                if (grupo.size() == porSentencia) {
+                    if (completa == null) {
+                        completa = con.prepareStatement(sentencia(tabla, columnas, porSentencia));
+                    }
+                    ps = completa;
+                } else {
+                    ps = con.prepareStatement(sentencia(tabla, columnas, grupo.size()));
+                }
+                int indice = 1;
+                for (Object[] fila : grupo) {
+                    for (Object valor : fila) {
+                        if (valor == null) {
+                            ps.setNull(indice++, Types.NULL);
+                        } else {
+                            ps.setObject(indice++, valor);
+                        }
+                    }
+                }
+                ps.executeUpdate();
+                if (ps != completa) {
+                    ps.close();
+                }
+            }
+        } finally {
+            if (completa != null) {
+                completa.close();
+            }
+        }
+        filas.get(tabla).addAndGet(datos.size());
+    }
+
+    /**
+     * Construye una sentencia {@code INSERT} de varias filas.
+     */
+    static String sentencia(String tabla, String[] columnas, int numFilas) {
+        String fila = "(" + String.join(", ", Collections.nCopies(columnas.length, "?")) + ")";
+        return "INSERT INTO " + tabla + " (" + String.join(", ", columnas) + ") VALUES " +
+                String.join(", ", Collections.nCopies(numFilas, fila));
+    }
+
+    private static long maximo(Connection con, String sql) throws SQLException {
+        try (Statement st = con.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Generador aleatorio de un lote, que depende solo de la semilla, la tabla y el número de lote.
+     */
+    SplittableRandom aleatorio(int tabla, int lote) {
+        long x = semilla * 0x9E3779B97F4A7C15L + tabla;
+        return new SplittableRandom(x * 0xBF58476D1CE4E5B9L + lote);
+    }
+
+    private static String elegir(SplittableRandom rnd, String[] opciones) {
+        return opciones[rnd.nextInt(opciones.length)];
+    }
+
+    private static int elegir(SplittableRandom rnd, int[] opciones) {
+        return opciones[rnd.nextInt(opciones.length)];
+    }
+
+    private static Zona elegirZona(SplittableRandom rnd) {
+        int pesoTotal = 0;
+        for (Zona z : ZONAS) {
+            pesoTotal += z.peso;
+        }
+        int r = rnd.nextInt(pesoTotal);
+        for (Zona z : ZONAS) {
+            r -= z.peso;
+            if (r < 0) {
+                return z;
+            }
+        }
+        return ZONAS[0];
+    }
+
+    private static byte[] bytes(SplittableRandom rnd, int tamano) {
+        if (tamano == 0) {
+            return null;
+        }
+        byte[] res = new byte[tamano];
+        rnd.nextBytes(res);
+        return res;
+    }
+
+    /**
+     * Genera una imagen PNG pequeña de un color al azar, completada con bytes aleatorios después del
+     * final de la imagen (que los lectores de PNG ignoran) hasta ocupar {@code tamano} bytes.
+     */
+    static byte[] imagen(SplittableRandom rnd, int tamano) {
+        if (tamano == 0) {
+            return null;
+        }
+        BufferedImage img = new BufferedImage(32, 32, BufferedImage.TYPE_INT_RGB);
+        int color = rnd.nextInt(0x1000000);
+        int mancha = rnd.nextInt(0x1000000);
+        int mx = rnd.nextInt(24);
+        int my = rnd.nextInt(24);
+        for (int y = 0; y < 32; y++) {
+            for (int x = 0; x < 32; x++) {
+                boolean enMancha = x >= mx && x < mx + 8 && y >= my && y < my + 8;
+                img.setRGB(x, y, enMancha ? mancha : color);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(tamano, 256));
+        try {
+            ImageIO.write(img, "png", out);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        byte[] png = out.toByteArray();
+        if (png.length >= tamano) {
+            return png;
+        }
+        byte[] res = Arrays.copyOf(png, tamano);
+        byte[] relleno = new byte[tamano - png.length];
+        rnd.nextBytes(relleno);
+        System.arraycopy(relleno, 0, res, png.length, relleno.length);
+        return res;
+    }
+
+    /**
+     * Zona alrededor de la que se generan direcciones y coordenadas.
+     */
+    private static final class Zona {
+        final String ciudad;
+        final String codigoPostal;
+        final double latitud;
+        final double longitud;
+        final double radioKm;
+        final int peso;
+        final String[] calles;
+
+        Zona(String ciudad, String codigoPostal, double latitud, double longitud, double radioKm, int peso, String... calles) {
+            this.ciudad = ciudad;
+            this.codigoPostal = codigoPostal;
+            this.latitud = latitud;
+            this.longitud = longitud;
+            this.radioKm = radioKm;
+            this.peso = peso;
+            this.calles = calles;
+        }
+
+        /**
+         * Punto al azar con distribución normal alrededor del centro.
+         */
+        double[] coordenadas(SplittableRandom rnd) {
+            double lat = latitud + gauss(rnd) * radioKm / 111.0;
+            double lng = longitud + gauss(rnd) * radioKm / (111.0 * Math.cos(Math.toRadians(latitud)));
+            return new double[]{lat, lng};
+        }
+
+        String direccion(SplittableRandom rnd) {
+            return elegir(rnd, calles) + ", " + (1 + rnd.nextInt(150)) + ", " + codigoPostal + " " + ciudad;
+        }
+
+        private static double gauss(SplittableRandom rnd) {
+            // Box-Muller
+            double u = 1 - rnd.nextDouble();
+            return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * rnd.nextDouble());
+        }
+    }
+
+    /**
+     * Ejecuta el generador desde la línea de comandos.
+     *
+     * @param args Opciones {@code --nombre=valor}; ver la descripción de la clase.
+     */
+    public static void main(String[] args) {
+        Map<String, Long> opciones = new LinkedHashMap<>();
+        opciones.put("usuarios", 100_000L);
+        opciones.put("animales", 500_000L);
+        opciones.put("reportes", 250_000L);
+        opciones.put("citas", 1_000_000L);
+        opciones.put("bytes-imagen", 4096L);
+        opciones.put("bytes-logo", 0L);
+        opciones.put("semilla", 42L);
+        opciones.put("hilos", (long) Runtime.getRuntime().availableProcessors());
+        for (String arg : args) {
+            int igual = arg.indexOf('=');
+            String nombre = arg.startsWith("--") && igual > 0 ? arg.substring(2, igual) : null;
+            if (nombre == null || !opciones.containsKey(nombre)) {
+                System.err.println("Opción desconocida: " + arg + ". Opciones: " + opciones.keySet());
+                System.exit(2);
+            }
+            opciones.put(nombre, Long.parseLong(arg.substring(igual + 1)));
+        }
+
+        if (new Migraciones().aplicar() < 0) {
+            System.err.println("Error al aplicar las migraciones");
+            System.exit(1);
+        }
+
+        GeneradorDatos generador = new GeneradorDatos(opciones.get("semilla"), opciones.get("hilos").intValue(),
+                opciones.get("bytes-imagen").intValue(), opciones.get("bytes-logo").intValue());
+        long inicio = System.nanoTime();
+        Map<String, Long> res = generador.generar(opciones.get("usuarios").intValue(), opciones.get("animales").intValue(),
+                opciones.get("reportes").intValue(), opciones.get("citas").intValue());
+        if (res == null) {
+            System.exit(1);
+        }
+        long ms = (System.nanoTime() - inicio) / 1_000_000;
+        long total = 0;
+        for (Map.Entry<String, Long> e : res.entrySet()) {
+            System.out.printf("%-12s %,12d%n", e.getKey(), e.getValue());
+            total += e.getValue();
+        }
+        System.out.printf("%-12s %,12d filas en %,d ms (%,d filas/s) con %s hilos%n",
+                "Total", total, ms, ms > 0 ? total * 1000 / ms : total, opciones.get("hilos"));
+    }
+}
@@ -0,0 +1,105 @@
+package model;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Interfaz para los servicios que convierten una dirección postal en coordenadas geográficas.
+ * Permite sustituir el servicio en línea de Nominatim por un índice local sin tocar
+ * los controladores que necesitan coordenadas (mapa, registro de animales, etc.).
+ */
+public interface Geocodificador {
+
+    /**
+     * Propiedad del sistema con la ruta del índice local del callejero.
+     * Si no se indica, se busca el fichero {@code ~/.petsafe/callejero.idx}.
+     */
+    String PROPIEDAD_INDICE = "petsafe.geocodificador.indice";
+
+    /**
+     * Propiedad del sistema que, con el valor {@code false}, impide recurrir a Nominatim
+     * cuando una dirección no está en el índice local (modo completamente sin red).
+     */
+    String PROPIEDAD_RED = "petsafe.geocodificador.red";
+
+    /**
+     * Obtiene las coordenadas de una dirección.
+     *
+     * @param direccion La dirección a geocodificar.
+     * @return Un array de doubles con la latitud en la posición 0 y la longitud en la posición 1,
+     *         o {@code null} si no se encuentran coordenadas para la dirección.
+     */
+    double[] obtenerCoordenadas(String direccion);
+
+    /**
+     * Obtiene las coordenadas de varias direcciones a la vez, geocodificando una sola vez cada
+     * dirección distinta. Por defecto se consultan una a una, en orden; las implementaciones que
+     * pueden resolverlas de forma más eficiente lo sobrescriben.
+     *
+     * @param direcciones Las direcciones a geocodificar.
+     * @return Las coordenadas de cada dirección encontrada; las que no se encuentran no aparecen.
+     */
+    default Map<String, double[]> obtenerCoordenadasLote(Collection<String> direcciones) {
+        Map<String, double[]> res = new HashMap<>();
+        for (String direccion : new LinkedHashSet<>(direcciones)) {
+            double[] coord = obtenerCoordenadas(direccion);
+            if (coord != null) {
+                res.put(direccion, coord);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Devuelve el geocodificador que debe usar la aplicación.
+     * Si existe un índice local se usa en primer lugar y Nominatim queda como respaldo
+     * (salvo que se haya desactivado con {@link #PROPIEDAD_RED}); si no existe, se usa Nominatim.
+     *
+     * @return El geocodificador compartido por toda la aplicación.
+     */
+    static Geocodificador getPredeterminado() {
+        return Predeterminado.INSTANCIA;
+    }
+
+    /**
+     * Construye el geocodificador predeterminado a partir de la configuración del sistema.
+     *
+     * @return El geocodificador configurado.
+     */
+    static Geocodificador crearPredeterminado() {
+        boolean usarRed = !"false".equalsIgnoreCase(System.getProperty(PROPIEDAD_RED));
+        Geocodificador enLinea = usarRed ? new GeocodificadorNominatim() : null;
+
+        String ruta = System.getProperty(PROPIEDAD_INDICE);
+        Path indice = ruta != null
+                ? Paths.get(ruta)
+                : Paths.get(System.getProperty("user.home"), ".petsafe", "callejero.idx");
+
+        if (Files.isRegularFile(indice)) {
+            try {
+                return new GeocodificadorLocal(indice, enLinea);
+            } catch (Exception e) {
+                System.err.println("No se pudo abrir el índice del callejero: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+
+        return enLinea != null ? enLinea : direccion -> null;
+    }
+
+    /**
+     * Contenedor del geocodificador compartido. Se inicializa la primera vez que se usa,
+     * de modo que el índice local solo se abre si la aplicación necesita geocodificar.
+     */
+    final class Predeterminado {
+        static final Geocodificador INSTANCIA = crearPredeterminado();
+
+        private Predeterminado() {
+        }
+    }
+}
@@ -0,0 +1,484 @@
+package model;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Geocodificador sin red basado en un índice local del callejero.
+ * <p>
+ * El índice se construye una sola vez con {@link #construirIndice(Path, Path)} a partir de un
+ * extracto de direcciones (por ejemplo, exportado de OpenStreetMap) en formato CSV
+ * {@code calle;numero;ciudad;latitud;longitud}. Cada dirección se guarda con una clave normalizada
+ * {@code ciudad|calle|numero}; las claves se ordenan byte a byte, de modo que todas las direcciones
+ * de una misma calle quedan contiguas y comparten prefijo.
+ * </p>
+ * <p>
+ * Formato del fichero (big-endian):
+ * {@code MAGIA, n, desplazamientos[n+1], latitudes[n], longitudes[n], claves UTF-8}.
+ * El fichero se abre mapeado en memoria, así que la búsqueda (binaria sobre las claves) no
+ * copia datos al heap y tarda microsegundos.
+ * </p>
+ * <p>
+ * Si la dirección no aparece en el índice se intenta una aproximación a nivel de calle
+ * (el portal con el número más cercano) y, si tampoco hay suerte, se delega en el
+ * geocodificador de respaldo, si se ha indicado alguno.
+ * </p>
+ */
+public class GeocodificadorLocal implements Geocodificador {
+
+    /**
+     * Identificador del formato del fichero de índice ("PSG1").
+     */
+    private static final int MAGIA = 0x50534731;
+
+    /**
+     * Separador entre ciudad, calle y número dentro de una clave.
+     */
+    private static final char SEPARADOR = '|';
+
+    /**
+     * Palabras que indican el tipo de vía y que se ignoran al comparar calles,
+     * para que "Calle Colón" y "Colón" sean la misma calle.
+     */
+    private static final Set<String> TIPOS_VIA = Set.of(
+            "calle", "c", "cl", "carrer", "avenida", "avda", "av", "avinguda",
+            "plaza", "pl", "placa", "paseo", "pg", "passeig", "camino", "cami", "ronda");
+
+    /**
+     * Partículas que suelen seguir al tipo de vía ("Calle de Colón", "Plaza del Ayuntamiento")
+     * y que tampoco se tienen en cuenta.
+     */
+    private static final Set<String> PARTICULAS = Set.of("de", "del", "la", "las", "los", "el", "d", "dels");
+
+    /**
+     * Número de portal: dígitos seguidos opcionalmente de una letra (12, 12B...).
+     */
+    private static final Pattern NUMERO = Pattern.compile("^(\\d{1,4})\\s*([a-z]?)$");
+
+    /**
+     * Número de portal al final de la calle ("Colón 12").
+     */
+    private static final Pattern CALLE_CON_NUMERO = Pattern.compile("^(.*\\D)\\s+(\\d{1,4}\\s*[a-z]?)$");
+
+    /**
+     * Código postal al principio de la ciudad ("46001 Valencia").
+     */
+    private static final Pattern CODIGO_POSTAL = Pattern.compile("^\\d{5}\\s+");
+
+    /**
+     * Índice mapeado en memoria.
+     */
+    private final MappedByteBuffer indice;
+
+    /**
+     * Número de direcciones del índice.
+     */
+    private final int total;
+
+    /**
+     * Posición de la tabla de desplazamientos de las claves.
+     */
+    private final int inicioDesplazamientos;
+
+    /**
+     * Posición del array de latitudes.
+     */
+    private final int inicioLatitudes;
+
+    /**
+     * Posición del array de longitudes.
+     */
+    private final int inicioLongitudes;
+
+    /**
+     * Posición del bloque con los bytes de las claves.
+     */
+    private final int inicioClaves;
+
+    /**
+     * Geocodificador al que se recurre si la dirección no está en el índice. Puede ser {@code null}.
+     */
+    private final Geocodificador respaldo;
+
+    /**
+     * Abre un índice local ya construido.
+     *
+     * @param ficheroIndice Ruta del fichero generado por {@link #construirIndice(Path, Path)}.
+     * @param respaldo Geocodificador al que delegar las direcciones desconocidas, o {@code null}.
+     * @throws IOException Si el fichero no existe, no se puede mapear o no tiene el formato esperado.
+     */
+    public GeocodificadorLocal(Path ficheroIndice, Geocodificador respaldo) throws IOException {
+        try (FileChannel canal = FileChannel.open(ficheroIndice, StandardOpenOption.READ)) {
+            this.indice = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+        this.indice.order(ByteOrder.BIG_ENDIAN);
+
+        if (indice.getInt(0) != MAGIA) {
+            throw new IOException("El fichero " + ficheroIndice + " no es un índice de callejero");
+        }
+        this.total = indice.getInt(4);
+        this.inicioDesplazamientos = 8;
+        this.inicioLatitudes = inicioDesplazamientos + (total + 1) * Integer.BYTES;
+        this.inicioLongitudes = inicioLatitudes + total * Double.BYTES;
+        this.inicioClaves = inicioLongitudes + total * Double.BYTES;
+        this.respaldo = respaldo;
+    }
+
+    /**
+     * Obtiene las coordenadas de una dirección buscando primero en el índice local.
+     *
+     * @param direccion La dirección a geocodificar, por ejemplo "Calle Colón, 12, Valencia".
+     * @return Un array {latitud, longitud}, o {@code null} si no se encuentra ni en el índice
+     *         ni en el geocodificador de respaldo.
+     */
+    @Override
+    public double[] obtenerCoordenadas(String direccion) {
+        String[] partes = separarDireccion(direccion);
+        if (partes != null) {
+            double[] coord = buscar(partes[0], partes[1], partes[2]);
+            if (coord != null) {
+                return coord;
+            }
+        }
+        return respaldo != null ? respaldo.obtenerCoordenadas(direccion) : null;
+    }
+
+    /**
+     * Obtiene las coordenadas de varias direcciones. Las del índice local se buscan en paralelo (el
+     * índice solo se lee, así que puede consultarse desde varios hilos) y las que no están se pasan
+     * todas juntas al geocodificador de respaldo.
+     *
+     * @param direcciones Las direcciones a geocodificar.
+     * @return Las coordenadas de cada dirección encontrada; las que no se encuentran no aparecen.
+     */
+    @Override
+    public Map<String, double[]> obtenerCoordenadasLote(Collection<String> direcciones) {
+        Map<String, double[]> res = new HashMap<>();
+        List<String> pendientes = new ArrayList<>();
+        new ArrayList<>(new LinkedHashSet<>(direcciones)).parallelStream()
+                .forEach(direccion -> {
+                    String[] partes = separarDireccion(direccion);
+                    double[] coord = partes != null ? buscar(partes[0], partes[1], partes[2]) : null;
+                    synchronized (res) {
+                        if (coord != null) {
+                            res.put(direccion, coord);
+                        } else {
+                            pendientes.add(direccion);
+                        }
+                    }
+                });
+        if (respaldo != null && !pendientes.isEmpty()) {
+            res.putAll(respaldo.obtenerCoordenadasLote(pendientes));
+        }
+        return res;
+    }
+
+    /**
+     * Busca una dirección ya separada en calle, número y ciudad.
+     *
+     * @param calle La calle (con o sin tipo de vía).
+     * @param numero El número del portal; puede ser vacío.
+     * @param ciudad La ciudad.
+     * @return Un array {latitud, longitud}, o {@code null} si la calle no está en el índice.
+     */
+    public double[] buscar(String calle, String numero, String ciudad) {
+        String prefijo = normalizarCiudad(ciudad) + SEPARADOR + normalizarCalle(calle) + SEPARADOR;
+        String num = normalizarNumero(numero);
+
+        // 1. Coincidencia exacta
+        if (!num.isEmpty()) {
+            byte[] exacta = (prefijo + num).getBytes(StandardCharsets.UTF_8);
+            int pos = buscarPrimeraMayorOIgual(exacta);
+            if (pos < total && compararClave(pos, exacta) == 0) {
+                return coordenadas(pos);
+            }
+        }
+
+        // 2. Aproximación a nivel de calle: el portal con el número más cercano
+        byte[] bytesPrefijo = prefijo.getBytes(StandardCharsets.UTF_8);
+        int i = buscarPrimeraMayorOIgual(bytesPrefijo);
+        int mejor = -1;
+        int mejorDiferencia = Integer.MAX_VALUE;
+        int buscado = valorNumerico(num);
+        while (i < total && empiezaPor(i, bytesPrefijo)) {
+            int diferencia = Math.abs(valorNumerico(numeroDeClave(i, bytesPrefijo.length)) - buscado);
+            if (diferencia < mejorDiferencia) {
+                mejor = i;
+                mejorDiferencia = diferencia;
+            }
+            i++;
+        }
+        return mejor >= 0 ? coordenadas(mejor) : null;
+    }
+
+    /**
+     * Número de direcciones contenidas en el índice.
+     *
+     * @return El número de direcciones.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Devuelve la posición de la primera clave mayor o igual que la indicada.
+     */
+    private int buscarPrimeraMayorOIgual(byte[] clave) {
+        int bajo = 0;
+        int alto = total;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (compararClave(medio, clave) < 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    /**
+     * Compara byte a byte (sin signo) la clave de la posición indicada con otra clave.
+     */
+    private int compararClave(int posicion, byte[] clave) {
+        int inicio = inicioClaves + indice.getInt(inicioDesplazamientos + posicion * Integer.BYTES);
+        int fin = inicioClaves + indice.getInt(inicioDesplazamientos + (posicion + 1) * Integer.BYTES);
+        int longitud = fin - inicio;
+        int comunes = Math.min(longitud, clave.length);
+        for (int j = 0; j < comunes; j++) {
+            int diferencia = Byte.toUnsignedInt(indice.get(inicio + j)) - Byte.toUnsignedInt(clave[j]);
+            if (diferencia != 0) {
+                return diferencia;
+            }
+        }
+        return longitud - clave.length;
+    }
+
+    /**
+     * Indica si la clave de la posición indicada empieza por el prefijo dado.
+     */
+    private boolean empiezaPor(int posicion, byte[] prefijo) {
+        int inicio = inicioClaves + indice.getInt(inicioDesplazamientos + posicion * Integer.BYTES);
+        int fin = inicioClaves + indice.getInt(inicioDesplazamientos + (posicion + 1) * Integer.BYTES);
+        if (fin - inicio < prefijo.length) {
+            return false;
+        }
+        for (int j = 0; j < prefijo.length; j++) {
+            if (indice.get(inicio + j) != prefijo[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Extrae el número de portal (la parte tras el prefijo) de la clave de la posición indicada.
+     */
+    private String numeroDeClave(int posicion, int longitudPrefijo) {
+        int inicio = inicioClaves + indice.getInt(inicioDesplazamientos + posicion * Integer.BYTES) + longitudPrefijo;
+        int fin = inicioClaves + indice.getInt(inicioDesplazamientos + (posicion + 1) * Integer.BYTES);
+        byte[] bytes = new byte[Math.max(0, fin - inicio)];
+        indice.get(inicio, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lee las coordenadas de la posición indicada.
+     */
+    private double[] coordenadas(int posicion) {
+        double lat = indice.getDouble(inicioLatitudes + posicion * Double.BYTES);
+        double lon = indice.getDouble(inicioLongitudes + posicion * Double.BYTES);
+        return new double[]{lat, lon};
+    }
+
+    /**
+     * Separa una dirección libre en {calle, número, ciudad}.
+     * Acepta el formato "calle, número, ciudad" que usa el registro de animales y también
+     * "calle número, ciudad". La última parte separada por comas se toma como ciudad.
+     *
+     * @param direccion La dirección completa.
+     * @return Un array {calle, número, ciudad} (el número puede ser vacío), o {@code null}
+     *         si la dirección no indica ciudad.
+     */
+    static String[] separarDireccion(String direccion) {
+        if (direccion == null) {
+            return null;
+        }
+        List<String> partes = new ArrayList<>();
+        for (String parte : direccion.split(",")) {
+            if (!parte.isBlank()) {
+                partes.add(parte.trim());
+            }
+        }
+        if (partes.size() < 2) {
+            return null;
+        }
+
+        String ciudad = CODIGO_POSTAL.matcher(partes.remove(partes.size() - 1)).replaceFirst("");
+        String numero = "";
+        StringBuilder calle = new StringBuilder();
+        for (String parte : partes) {
+            String minusculas = parte.toLowerCase();
+            if (numero.isEmpty() && NUMERO.matcher(minusculas).matches()) {
+                numero = minusculas;
+            } else if (!parte.matches("\\d{5}")) {
+                if (calle.length() > 0) {
+                    calle.append(' ');
+                }
+                calle.append(parte);
+            }
+        }
+        if (numero.isEmpty()) {
+            Matcher m = CALLE_CON_NUMERO.matcher(calle.toString().toLowerCase());
+            if (m.matches()) {
+                numero = m.group(2);
+                calle.setLength(m.group(1).length());
+            }
+        }
+        return new String[]{calle.toString(), numero, ciudad};
+    }
+
+    /**
+     * Normaliza el nombre de una ciudad para formar la clave.
+     */
+    static String normalizarCiudad(String ciudad) {
+        return Normalizador.normalizar(ciudad);
+    }
+
+    /**
+     * Normaliza el nombre de una calle para formar la clave, quitando el tipo de vía inicial
+     * y las partículas que lo acompañan.
+     */
+    static String normalizarCalle(String calle) {
+        String[] palabras = Normalizador.normalizar(calle).split(" ");
+        int inicio = 0;
+        if (palabras.length > 1 && TIPOS_VIA.contains(palabras[0])) {
+            inicio = 1;
+        }
+        while (palabras.length - inicio > 1 && PARTICULAS.contains(palabras[inicio])) {
+            inicio++;
+        }
+        return String.join(" ", Arrays.copyOfRange(palabras, inicio, palabras.length));
+    }
+
+    /**
+     * Normaliza un número de portal ("12 B" pasa a "12b").
+     */
+    static String normalizarNumero(String numero) {
+        return Normalizador.normalizar(numero).replace(" ", "");
+    }
+
+    /**
+     * Parte numérica de un número de portal, o 0 si no tiene.
+     */
+    private static int valorNumerico(String numero) {
+        int valor = 0;
+        for (int i = 0; i < numero.length() && Character.isDigit(numero.charAt(i)); i++) {
+            valor = valor * 10 + (numero.charAt(i) - '0');
+        }
+        return valor;
+    }
+
+    /**
+     * Construye el fichero de índice a partir de un CSV {@code calle;numero;ciudad;latitud;longitud}.
+     * Las líneas mal formadas se ignoran y, si una dirección aparece varias veces, se conserva la primera.
+     *
+     * @param csv Fichero CSV de origen (UTF-8). Puede tener una línea de cabecera.
+     * @param destino Fichero de índice que se va a generar.
+     * @return El número de direcciones escritas en el índice.
+     * @throws IOException Si ocurre un error de lectura o escritura.
+     */
+    public static int construirIndice(Path csv, Path destino) throws IOException {
+        Map<String, double[]> direcciones = new LinkedHashMap<>();
+        try (BufferedReader br = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            String linea;
+            while ((linea = br.readLine()) != null) {
+                String[] campos = linea.split(";");
+                if (campos.length < 5) {
+                    continue;
+                }
+                try {
+                    double lat = Double.parseDouble(campos[3].trim());
+                    double lon = Double.parseDouble(campos[4].trim());
+                    String clave = normalizarCiudad(campos[2]) + SEPARADOR + normalizarCalle(campos[0])
+                            + SEPARADOR + normalizarNumero(campos[1]);
+                    direcciones.putIfAbsent(clave, new double[]{lat, lon});
+                } catch (NumberFormatException e) {
+                    // Cabecera u otra línea sin coordenadas válidas
+                }
+            }
+        }
+
+        byte[][] claves = new byte[direcciones.size()][];
+        int n = 0;
+        for (String clave : direcciones.keySet()) {
+            claves[n++] = clave.getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(claves, Arrays::compareUnsigned);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(destino)))) {
+            out.writeInt(MAGIA);
+            out.writeInt(n);
+            int desplazamiento = 0;
+            for (byte[] clave : claves) {
+                out.writeInt(desplazamiento);
+                desplazamiento += clave.length;
+            }
+            out.writeInt(desplazamiento);
+            for (byte[] clave : claves) {
+                out.writeDouble(direcciones.get(new String(clave, StandardCharsets.UTF_8))[0]);
+            }
+            for (byte[] clave : claves) {
+                out.writeDouble(direcciones.get(new String(clave, StandardCharsets.UTF_8))[1]);
+            }
+            for (byte[] clave : claves) {
+                out.write(clave);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Genera el índice del callejero desde la línea de comandos.
+     * Uso: {@code GeocodificadorLocal <direcciones.csv> [indice]}. Si no se indica el destino,
+     * se escribe en {@code ~/.petsafe/callejero.idx}, que es donde lo busca la aplicación.
+     *
+     * @param args Ruta del CSV y, opcionalmente, ruta del índice de salida.
+     * @throws IOException Si ocurre un error de lectura o escritura.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Uso: GeocodificadorLocal <direcciones.csv> [indice]");
+            return;
+        }
+        Path destino = args.length > 1
+                ? Paths.get(args[1])
+                : Paths.get(System.getProperty("user.home"), ".petsafe", "callejero.idx");
+        if (destino.getParent() != null) {
+            Files.createDirectories(destino.getParent());
+        }
+        int total = construirIndice(Paths.get(args[0]), destino);
+        System.out.println("Índice generado con " + total + " direcciones en " + destino);
+    }
+}
@@ -0,0 +1,49 @@
+package model;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Scanner;
+
+/**
+ * Geocodificador que consulta el servicio en línea Nominatim de OpenStreetMap.
+ * Es la implementación que usaban originalmente los controladores del mapa y del registro de animales.
+ */
+public class GeocodificadorNominatim implements Geocodificador {
+
+    /**
+     * Obtiene las coordenadas de latitud y longitud para una dirección dada utilizando Nominatim.
+     *
+     * @param direccion La dirección de la cual obtener las coordenadas.
+     * @return Un array de doubles donde el primer elemento es la latitud y el segundo es la longitud,
+     *         o {@code null} si no se encuentran coordenadas o si ocurre un error de red.
+     */
+    @Override
+    public double[] obtenerCoordenadas(String direccion) {
+        try {
+            String query = URLEncoder.encode(direccion, "UTF-8");
+            String urlStr = "https://nominatim.openstreetmap.org/search?q=" + query + "&format=json&limit=1";
+            HttpURLConnection conn = (HttpURLConnection) new URL(urlStr).openConnection();
+            conn.setRequestProperty("User-Agent", "PetSafe");
+
+            Scanner scanner = new Scanner(conn.getInputStream());
+            String json = scanner.useDelimiter("\\A").next();
+            scanner.close();
+
+            JSONArray array = new JSONArray(json);
+            if (array.isEmpty()) return null;
+
+            JSONObject obj = array.getJSONObject(0);
+            double lat = obj.getDouble("lat");
+            double lon = obj.getDouble("lon");
+
+            return new double[]{lat, lon};
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package model;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Cálculo de hashes perceptuales de imágenes (dHash de 64 bits).
+ * <p>
+ * La imagen se reduce a 9x8 píxeles en escala de grises promediando bloques y cada bit indica si
+ * un píxel es más oscuro que su vecino de la derecha. Dos fotos del mismo animal recortadas,
+ * reescaladas o recomprimidas dan hashes que difieren en pocos bits, así que la similitud se mide
+ * con la distancia de Hamming ({@link #distancia(long, long)}).
+ * </p>
+ */
+public final class HashPerceptual {
+
+    /**
+     * Distancia de Hamming por debajo de la cual dos imágenes se consideran parecidas.
+     */
+    public static final int DISTANCIA_SIMILAR = 10;
+
+    private static final int ANCHO = 9;
+    private static final int ALTO = 8;
+
+    private HashPerceptual() {
+    }
+
+    /**
+     * Calcula el hash de una imagen guardada en un fichero.
+     *
+     * @param imagen El fichero de imagen (JPEG, PNG, BMP o GIF).
+     * @return El hash, o {@code null} si el fichero no existe o no es una imagen legible.
+     */
+    public static Long calcular(File imagen) {
+        if (imagen == null || !imagen.isFile()) {
+            return null;
+        }
+        try {
+            return calcular(ImageIO.read(imagen));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Calcula el hash de una imagen leída de un flujo (por ejemplo, un BLOB de la base de datos).
+     *
+     * @param imagen El flujo con los bytes de la imagen. No se cierra.
+     * @return El hash, o {@code null} si los bytes no son una imagen legible.
+     */
+    public static Long calcular(InputStream imagen) {
+        if (imagen == null) {
+            return null;
+        }
+        try {
+            return calcular(ImageIO.read(imagen));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Calcula el dHash de una imagen ya decodificada.
+     *
+     * @param imagen La imagen.
+     * @return El hash, o {@code null} si la imagen es {@code null} o está vacía.
+     */
+    public static Long calcular(BufferedImage imagen) {
+        if (imagen == null || imagen.getWidth() == 0 || imagen.getHeight() == 0) {
+            return null;
+        }
+        double[][] gris = reducir(imagen);
+
+        long hash = 0;
+        for (int y = 0; y < ALTO; y++) {
+            for (int x = 0; x < ANCHO - 1; x++) {
+                hash <<= 1;
+                if (gris[y][x] < gris[y][x + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Distancia de Hamming entre dos hashes: el número de bits distintos (0 = idénticas, 64 = opuestas).
+     *
+     * @param a Primer hash.
+     * @param b Segundo hash.
+     * @return El número de bits en que difieren.
+     */
+    public static int distancia(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * Reduce la imagen a {@value #ANCHO}x{@value #ALTO} valores de luminancia promediando todos los
+     * píxeles de cada bloque. Se lee fila a fila para no copiar la imagen entera en memoria.
+     */
+    private static double[][] reducir(BufferedImage imagen) {
+        int w = imagen.getWidth();
+        int h = imagen.getHeight();
+        double[][] suma = new double[ALTO][ANCHO];
+        long[][] cuenta = new long[ALTO][ANCHO];
+
+        int[] columnaBloque = new int[w];
+        for (int x = 0; x < w; x++) {
+            columnaBloque[x] = Math.min(ANCHO - 1, (int) ((long) x * ANCHO / w));
+        }
+
+        int[] fila = new int[w];
+        for (int y = 0; y < h; y++) {
+            int by = Math.min(ALTO - 1, (int) ((long) y * ALTO / h));
+            imagen.getRGB(0, y, w, 1, fila, 0, w);
+            for (int x = 0; x < w; x++) {
+                int rgb = fila[x];
+                int r = (rgb >> 16) & 0xFF;
+                int g = (rgb >> 8) & 0xFF;
+                int b = rgb & 0xFF;
+                int bx = columnaBloque[x];
+                suma[by][bx] += 0.299 * r + 0.587 * g + 0.114 * b;
+                cuenta[by][bx]++;
+            }
+        }
+
+        for (int y = 0; y < ALTO; y++) {
+            for (int x = 0; x < ANCHO; x++) {
+                suma[y][x] = cuenta[y][x] > 0 ? suma[y][x] / cuenta[y][x] : 0;
+            }
+        }
+        return suma;
+    }
+}
@@ -0,0 +1,64 @@
+package model;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Lectura de las imágenes guardadas como BLOB, de una en una y sin pasar por archivos temporales.
+ * La usa {@link ServidorImagenes} para servir las fotos del mapa cuando el usuario abre un popup.
+ */
+public class ImagenModel extends DBUtil {
+
+    /**
+     * Tipos de registro con imagen, tal como aparecen en las URLs de {@link ServidorImagenes}.
+     */
+    public static final String ANIMAL = "animal";
+    public static final String USUARIO = "usuario";
+    public static final String NEGOCIO = "negocio";
+    public static final String PROTECTORA = "protectora";
+
+    /**
+     * Lee la imagen de un registro.
+     *
+     * @param entidad El tipo de registro: {@link #ANIMAL}, {@link #USUARIO}, {@link #NEGOCIO} o {@link #PROTECTORA}.
+     * @param id El ID del registro (el del animal, el usuario, el negocio o la protectora).
+     * @return Los bytes de la imagen, o {@code null} si el tipo no existe, el registro no tiene
+     *         imagen o ocurre un error.
+     */
+    public byte[] readImagen(String entidad, int id) {
+        String sql;
+        switch (entidad) {
+            case ANIMAL:
+                sql = "SELECT imagen FROM animal WHERE id = ?";
+                break;
+            case USUARIO:
+                sql = "SELECT logoImagen FROM Usuario WHERE id = ?";
+                break;
+            case NEGOCIO:
+                sql = "SELECT fotos FROM Negocio WHERE idNegocio = ?";
+                break;
+            case PROTECTORA:
+                sql = "SELECT fotos FROM protectoras WHERE idProtectora = ?";
+                break;
+            default:
+                return null;
+        }
+
+        byte[] res = null;
+        try {
+            PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    res = rs.getBytes(1);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            this.cerrarConexion();
+        }
+        return res;
+    }
+}
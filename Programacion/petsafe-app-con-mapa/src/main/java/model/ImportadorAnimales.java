@@ -0,0 +1,550 @@
+package model;
+
+import com.example.petsafeapp.Animal;
+import com.example.petsafeapp.Reporte;
+import com.example.petsafeapp.Situacion;
+import com.example.petsafeapp.TipoAnimal;
+import com.example.petsafeapp.Usuario;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Importación masiva de animales y de sus reportes desde un fichero CSV o JSON, para las protectoras
+ * que nos pasan sus listados en una hoja de cálculo.
+ * <p>
+ * Cada fila es un animal con su reporte, con los mismos datos que pide la pantalla de registro:
+ * {@code descripcion}, {@code tipo} y {@code situacion} (por nombre o por ID), {@code fecha}
+ * ({@code aaaa-mm-dd} o {@code dd/mm/aaaa}), {@code imagen} (ruta relativa a la carpeta del fichero) y
+ * {@code direccion}; opcionalmente {@code latitud} y {@code longitud}, que evitan geocodificar la
+ * dirección. El CSV necesita una línea de cabecera con esos nombres y puede separarse con {@code ;} o
+ * con {@code ,}; el JSON es un array de objetos con esas claves.
+ * </p>
+ * <p>
+ * A diferencia de la pantalla de registro, que abre una conexión por cada inserción y busca después
+ * el animal recién creado:
+ * </p>
+ * <ol>
+ *     <li>todas las direcciones distintas se geocodifican de una vez con
+ *     {@link Geocodificador#obtenerCoordenadasLote};</li>
+ *     <li>las filas se insertan en bloques de {@value #TAMANO_BLOQUE}, cada bloque en una transacción
+ *     y con una ejecución por lotes por tabla sobre una sola conexión con
+ *     {@code rewriteBatchedStatements} ({@link DBUtil#getConexionPorLotes()}), y los IDs de los
+ *     animales se toman de las claves generadas;</li>
+ *     <li>mientras se inserta un bloque, varios hilos leen las fotos del siguiente y calculan su hash
+ *     perceptual.</li>
+ * </ol>
+ * <p>
+ * Las filas con datos incorrectos se descartan y se anotan en el {@link Informe}, junto con las de los
+ * bloques que no se pudieron guardar; el resto se importa igualmente.
+ * </p>
+ * <p>
+ * Uso: {@code ImportadorAnimales <fichero.csv|fichero.json> <id de usuario> [hilos]}.
+ * </p>
+ */
+public class ImportadorAnimales extends DBUtil {
+
+    /**
+     * Filas que se insertan en cada transacción.
+     */
+    static final int TAMANO_BLOQUE = 500;
+
+    private static final DateTimeFormatter FECHA_ESPANOLA = DateTimeFormatter.ofPattern("d/M/yyyy");
+
+    /**
+     * Resultado de una importación.
+     */
+    public static class Informe {
+        private int total;
+        private int importados;
+        private final List<String> errores = new ArrayList<>();
+        private long milisegundos;
+
+        /**
+         * @return El número de filas leídas del fichero.
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * @return El número de animales (con su reporte) guardados.
+         */
+        public int getImportados() {
+            return importados;
+        }
+
+        /**
+         * @return Los errores, uno por fila descartada, con el número de línea o de elemento.
+         */
+        public List<String> getErrores() {
+            return errores;
+        }
+
+        /**
+         * @return La duración total de la importación.
+         */
+        public long getMilisegundos() {
+            return milisegundos;
+        }
+
+        synchronized void error(Fila fila, String mensaje) {
+            errores.add("Fila " + fila.numero + ": " + mensaje);
+        }
+
+        @Override
+        public String toString() {
+            return "Importados " + importados + " de " + total + " en " + milisegundos + " ms, " + errores.size() + " errores";
+        }
+    }
+
+    /**
+     * Fila del fichero, con los datos ya comprobados y, una vez preparada, la foto leída.
+     */
+    static class Fila {
+        final int numero;
+        String descripcion;
+        TipoAnimal tipo;
+        Situacion situacion;
+        LocalDate fecha;
+        Path imagen;
+        String direccion;
+        double latitud = Double.NaN;
+        double longitud = Double.NaN;
+
+        byte[] bytesImagen;
+        Long hash;
+
+        Fila(int numero) {
+            this.numero = numero;
+        }
+    }
+
+    private final int hilos;
+
+    /**
+     * Hash de la foto de cada animal guardado, hasta avisar al índice de imágenes.
+     */
+    private final Map<Integer, Long> hashes = new HashMap<>();
+
+    /**
+     * Crea un importador.
+     *
+     * @param hilos Número de hilos que leen las fotos y calculan sus hashes.
+     */
+    public ImportadorAnimales(int hilos) {
+        this.hilos = Math.max(1, hilos);
+    }
+
+    /**
+     * Importa un fichero.
+     *
+     * @param fichero El fichero CSV o JSON (según su extensión).
+     * @param idUsuario El ID del usuario (normalmente la protectora) al que se asignan los reportes.
+     * @param progreso Recibe el número de filas procesadas y el total después de cada bloque; puede ser
+     *                 {@code null}.
+     * @return El informe de la importación.
+     * @throws IOException Si no se puede leer el fichero.
+     */
+    public Informe importar(Path fichero, int idUsuario, BiConsumer<Integer, Integer> progreso) throws IOException {
+        long inicio = System.nanoTime();
+        Informe informe = new Informe();
+
+        String contenido = Files.readString(fichero, StandardCharsets.UTF_8);
+        List<Map<String, String>> registros = fichero.toString().toLowerCase(Locale.ROOT).endsWith(".json")
+                ? leerJson(contenido)
+                : leerCsv(contenido);
+        informe.total = registros.size();
+
+        Path carpeta = fichero.toAbsolutePath().getParent();
+        List<Fila> filas = new ArrayList<>();
+        for (int i = 0; i < registros.size(); i++) {
+            Fila fila = comprobar(registros.get(i), i + 1, carpeta, informe);
+            if (fila != null) {
+                filas.add(fila);
+            }
+        }
+        filas = geocodificar(filas, informe);
+
+        Usuario usuario = new Usuario();
+        usuario.setId(idUsuario);
+
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        List<Reporte> guardados = new ArrayList<>();
+        try {
+            Connection con = this.getConexionPorLotes();
+            if (con == null) {
+                for (Fila fila : filas) {
+                    informe.error(fila, "no se pudo conectar con la base de datos");
+                }
+                return informe;
+            }
+            con.setAutoCommit(false);
+
+            List<List<Fila>> bloques = new ArrayList<>();
+            for (int i = 0; i < filas.size(); i += TAMANO_BLOQUE) {
+                bloques.add(filas.subList(i, Math.min(filas.size(), i + TAMANO_BLOQUE)));
+            }
+            CompletableFuture<List<Fila>> siguiente = bloques.isEmpty() ? null : preparar(bloques.get(0), pool, informe);
+            int procesadas = informe.total - filas.size();
+            for (int b = 0; b < bloques.size(); b++) {
+                List<Fila> bloque = siguiente.join();
+                siguiente = b + 1 < bloques.size() ? preparar(bloques.get(b + 1), pool, informe) : null;
+
+                guardados.addAll(guardar(con, bloque, usuario, informe));
+                procesadas += bloques.get(b).size();
+                if (progreso != null) {
+                    progreso.accept(procesadas, informe.total);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            pool.shutdown();
+            this.cerrarConexion();
+        }
+
+        // Una vez confirmados, los animales y reportes nuevos se avisan como los de la pantalla de registro
+        for (Reporte reporte : guardados) {
+            int idAnimal = reporte.getAnimal().getId();
+            IndiceImagenes.registrarCambio(idAnimal, hashes.remove(idAnimal));
+            BuscadorTexto.registrarCambio(reporte);
+        }
+        informe.importados = guardados.size();
+        informe.milisegundos = (System.nanoTime() - inicio) / 1_000_000;
+        return informe;
+    }
+
+    /**
+     * Inserta un bloque de filas ya preparadas en una transacción, junto con los avisos a los usuarios
+     * que vigilan la zona de cada reporte.
+     *
+     * @return Los reportes guardados, o ninguno si el bloque no se pudo guardar.
+     */
+    private List<Reporte> guardar(Connection con, List<Fila> bloque, Usuario usuario, Informe informe) throws SQLException {
+        if (bloque.isEmpty()) {
+            return List.of();
+        }
+        List<Animal> animales = new ArrayList<>();
+        List<byte[]> imagenes = new ArrayList<>();
+        List<Long> hashesBloque = new ArrayList<>();
+        for (Fila fila : bloque) {
+            animales.add(new Animal(fila.imagen.toFile(), fila.fecha, fila.tipo, fila.descripcion, fila.situacion));
+            imagenes.add(fila.bytesImagen);
+            hashesBloque.add(fila.hash);
+        }
+
+        List<Reporte> reportes = new ArrayList<>();
+        try {
+            new AnimalModel().insertarAnimales(con, animales, imagenes, hashesBloque);
+            for (int i = 0; i < bloque.size(); i++) {
+                Reporte reporte = new Reporte(bloque.get(i).direccion, animales.get(i), usuario);
+                reporte.setLatitud(bloque.get(i).latitud);
+                reporte.setLongitud(bloque.get(i).longitud);
+                reportes.add(reporte);
+            }
+            new ReporteModel().insertarReportes(con, reportes);
+            for (Reporte reporte : reportes) {
+                ServicioNotificaciones.notificarReporte(con, reporte);
+            }
+            con.commit();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            con.rollback();
+            for (Fila fila : bloque) {
+                informe.error(fila, "no se pudo guardar el bloque: " + e.getMessage());
+            }
+            return List.of();
+        }
+
+        for (int i = 0; i < bloque.size(); i++) {
+            hashes.put(animales.get(i).getId(), bloque.get(i).hash);
+            // Libera la foto en cuanto está guardada
+            bloque.get(i).bytesImagen = null;
+        }
+        return reportes;
+    }
+
+    /**
+     * Lee en paralelo las fotos de un bloque y calcula sus hashes.
+     *
+     * @return Las filas del bloque cuya foto se pudo leer.
+     */
+    private CompletableFuture<List<Fila>> preparar(List<Fila> bloque, ExecutorService pool, Informe informe) {
+        List<CompletableFuture<Fila>> tareas = new ArrayList<>();
+        for (Fila fila : bloque) {
+            tareas.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    fila.bytesImagen = Files.readAllBytes(fila.imagen);
+                    fila.hash = HashPerceptual.calcular(new ByteArrayInputStream(fila.bytesImagen));
+                    return fila;
+                } catch (IOException e) {
+                    informe.error(fila, "no se puede leer la imagen " + fila.imagen);
+                    return null;
+                }
+            }, pool));
+        }
+        return CompletableFuture.allOf(tareas.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<Fila> res = new ArrayList<>();
+            for (CompletableFuture<Fila> tarea : tareas) {
+                Fila fila = tarea.join();
+                if (fila != null) {
+                    res.add(fila);
+                }
+            }
+            return res;
+        });
+    }
+
+    /**
+     * Geocodifica de una vez las direcciones de las filas que no traen coordenadas.
+     *
+     * @return Las filas con coordenadas.
+     */
+    private List<Fila> geocodificar(List<Fila> filas, Informe informe) {
+        Set<String> direcciones = new LinkedHashSet<>();
+        for (Fila fila : filas) {
+            if (Double.isNaN(fila.latitud)) {
+                direcciones.add(fila.direccion);
+            }
+        }
+        Map<String, double[]> coordenadas = direcciones.isEmpty()
+                ? Map.of()
+                : Geocodificador.getPredeterminado().obtenerCoordenadasLote(direcciones);
+
+        List<Fila> res = new ArrayList<>();
+        for (Fila fila : filas) {
+            if (Double.isNaN(fila.latitud)) {
+                double[] coord = coordenadas.get(fila.direccion);
+                if (coord == null) {
+                    informe.error(fila, "no se encuentra la dirección " + fila.direccion);
+                    continue;
+                }
+                fila.latitud = coord[0];
+                fila.longitud = coord[1];
+            }
+            res.add(fila);
+        }
+        return res;
+    }
+
+    /**
+     * Comprueba los datos de un registro, con las mismas reglas que la pantalla de registro.
+     *
+     * @return La fila, o {@code null} si tiene algún error (que se anota en el informe).
+     */
+    Fila comprobar(Map<String, String> registro, int numero, Path carpeta, Informe informe) {
+        Fila fila = new Fila(numero);
+        List<String> errores = new ArrayList<>();
+
+        fila.descripcion = valor(registro, "descripcion");
+        if (fila.descripcion.isEmpty()) {
+            errores.add("falta la descripción");
+        }
+
+        fila.tipo = buscar(Catalogos.getTiposAnimal(), valor(registro, "tipo"), TipoAnimal::getId, TipoAnimal::getNombre);
+        if (fila.tipo == null) {
+            errores.add("tipo de animal desconocido '" + valor(registro, "tipo") + "'");
+        }
+        fila.situacion = buscar(Catalogos.getSituaciones(), valor(registro, "situacion"), Situacion::getId, Situacion::getNombre);
+        if (fila.situacion == null) {
+            errores.add("situación desconocida '" + valor(registro, "situacion") + "'");
+        }
+
+        String fecha = valor(registro, "fecha");
+        try {
+            fila.fecha = fecha.contains("/") ? LocalDate.parse(fecha, FECHA_ESPANOLA) : LocalDate.parse(fecha);
+            if (fila.fecha.isAfter(LocalDate.now())) {
+                errores.add("fecha en el futuro");
+            }
+        } catch (DateTimeParseException e) {
+            errores.add("fecha incorrecta '" + fecha + "'");
+        }
+
+        String imagen = valor(registro, "imagen");
+        if (imagen.isEmpty()) {
+            errores.add("falta la imagen");
+        } else {
+            fila.imagen = carpeta != null ? carpeta.resolve(imagen) : Paths.get(imagen);
+            if (!Files.isRegularFile(fila.imagen)) {
+                errores.add("no existe la imagen " + imagen);
+            }
+        }
+
+        fila.direccion = valor(registro, "direccion");
+        if (fila.direccion.isEmpty()) {
+            errores.add("falta la dirección");
+        }
+        String latitud = valor(registro, "latitud");
+        String longitud = valor(registro, "longitud");
+        if (!latitud.isEmpty() && !longitud.isEmpty()) {
+            try {
+                fila.latitud = Double.parseDouble(latitud.replace(',', '.'));
+                fila.longitud = Double.parseDouble(longitud.replace(',', '.'));
+            } catch (NumberFormatException e) {
+                errores.add("coordenadas incorrectas");
+            }
+        }
+
+        if (!errores.isEmpty()) {
+            informe.error(fila, String.join(", ", errores));
+            return null;
+        }
+        return fila;
+    }
+
+    private static String valor(Map<String, String> registro, String clave) {
+        String valor = registro.get(clave);
+        return valor != null ? valor.trim() : "";
+    }
+
+    /**
+     * Busca un elemento de un catálogo por su ID o por su nombre (sin tener en cuenta mayúsculas ni tildes).
+     */
+    private static <T> T buscar(List<T> catalogo, String valor, ToIntFunction<T> id, Function<T, String> nombre) {
+        if (valor.isEmpty()) {
+            return null;
+        }
+        String buscado = Normalizador.normalizar(valor);
+        for (T elemento : catalogo) {
+            if (String.valueOf(id.applyAsInt(elemento)).equals(valor)
+                    || Normalizador.normalizar(nombre.apply(elemento)).equals(buscado)) {
+                return elemento;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lee un array JSON de objetos.
+     */
+    static List<Map<String, String>> leerJson(String contenido) {
+        List<Map<String, String>> res = new ArrayList<>();
+        JSONArray array = new JSONArray(contenido);
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject obj = array.getJSONObject(i);
+            Map<String, String> registro = new HashMap<>();
+            for (String clave : obj.keySet()) {
+                registro.put(Normalizador.normalizar(clave), obj.isNull(clave) ? "" : String.valueOf(obj.get(clave)));
+            }
+            res.add(registro);
+        }
+        return res;
+    }
+
+    /**
+     * Lee un CSV con cabecera, separado por {@code ;} o por {@code ,} (el que aparezca en la cabecera),
+     * con campos opcionalmente entre comillas dobles.
+     */
+    static List<Map<String, String>> leerCsv(String contenido) {
+        if (contenido.startsWith("\uFEFF")) {
+            contenido = contenido.substring(1);
+        }
+        int finCabecera = contenido.indexOf('\n');
+        String cabecera = finCabecera >= 0 ? contenido.substring(0, finCabecera) : contenido;
+        char separador = cabecera.indexOf(';') >= 0 ? ';' : ',';
+
+        List<List<String>> lineas = separarCsv(contenido, separador);
+        List<Map<String, String>> res = new ArrayList<>();
+        if (lineas.isEmpty()) {
+            return res;
+        }
+        List<String> columnas = new ArrayList<>();
+        for (String columna : lineas.get(0)) {
+            columnas.add(Normalizador.normalizar(columna));
+        }
+        for (List<String> campos : lineas.subList(1, lineas.size())) {
+            if (campos.size() == 1 && campos.get(0).isBlank()) {
+                continue;
+            }
+            Map<String, String> registro = new HashMap<>();
+            for (int i = 0; i < columnas.size() && i < campos.size(); i++) {
+                registro.put(columnas.get(i), campos.get(i));
+            }
+            res.add(registro);
+        }
+        return res;
+    }
+
+    private static List<List<String>> separarCsv(String contenido, char separador) {
+        List<List<String>> res = new ArrayList<>();
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean comillas = false;
+        for (int i = 0; i < contenido.length(); i++) {
+            char c = contenido.charAt(i);
+            if (comillas) {
+                if (c == '"' && i + 1 < contenido.length() && contenido.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else if (c == '"') {
+                    comillas = false;
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"') {
+                comillas = true;
+            } else if (c == separador) {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else if (c == '\n') {
+                campos.add(campo.toString());
+                campo.setLength(0);
+                res.add(campos);
+                campos = new ArrayList<>();
+            } else if (c != '\r') {
+                campo.append(c);
+            }
+        }
+        if (campo.length() > 0 || !campos.isEmpty()) {
+            campos.add(campo.toString());
+            res.add(campos);
+        }
+        return res;
+    }
+
+    /**
+     * Importa un fichero desde la línea de comandos y muestra el progreso y los errores.
+     *
+     * @param args El fichero, el ID del usuario y, opcionalmente, el número de hilos.
+     * @throws IOException Si no se puede leer el fichero.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Uso: ImportadorAnimales <fichero.csv|fichero.json> <id de usuario> [hilos]");
+            System.exit(2);
+        }
+        int hilos = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Informe informe = new ImportadorAnimales(hilos).importar(Paths.get(args[0]), Integer.parseInt(args[1]),
+                (hechas, total) -> System.out.println("Procesadas " + hechas + " de " + total));
+
+        for (String error : informe.getErrores()) {
+            System.out.println(error);
+        }
+        System.out.println(informe);
+    }
+}
@@ -0,0 +1,409 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * Índice espacial en memoria para buscar los elementos más cercanos a un punto geográfico.
+ * <p>
+ * Es un árbol KD de tres dimensiones: cada coordenada (latitud, longitud) se convierte en un
+ * vector unitario sobre la esfera terrestre, de modo que la distancia euclídea entre vectores
+ * (la cuerda) crece igual que la distancia real sobre la superficie y el árbol funciona sin
+ * distorsiones cerca de los polos ni del antimeridiano.
+ * </p>
+ * <p>
+ * Las altas se insertan directamente en el árbol y las bajas se marcan como borradas; cuando el
+ * árbol acumula demasiados nodos borrados o demasiadas inserciones desde la última construcción,
+ * se reconstruye equilibrado. Con cientos de miles de elementos una búsqueda visita solo unas
+ * decenas de nodos.
+ * </p>
+ * <p>
+ * Los elementos se identifican por {@code equals}/{@code hashCode}: insertar un elemento que ya
+ * existe actualiza su posición.
+ * </p>
+ *
+ * @param <T> Tipo de los elementos indexados.
+ */
+public class IndiceEspacial<T> {
+
+    /**
+     * Radio medio de la Tierra en kilómetros.
+     */
+    public static final double RADIO_TIERRA_KM = 6371.0088;
+
+    /**
+     * Nodo del árbol KD.
+     */
+    private static final class Nodo<T> {
+        final T valor;
+        final double latitud;
+        final double longitud;
+        final double[] punto;
+        final int eje;
+        Nodo<T> izquierdo;
+        Nodo<T> derecho;
+        boolean borrado;
+
+        Nodo(T valor, double latitud, double longitud, double[] punto, int eje) {
+            this.valor = valor;
+            this.latitud = latitud;
+            this.longitud = longitud;
+            this.punto = punto;
+            this.eje = eje;
+        }
+    }
+
+    /**
+     * Resultado de una búsqueda: el elemento encontrado y su distancia al punto de consulta.
+     *
+     * @param <T> Tipo del elemento.
+     */
+    public static final class Resultado<T> {
+        private final T valor;
+        private final double distanciaKm;
+
+        Resultado(T valor, double distanciaKm) {
+            this.valor = valor;
+            this.distanciaKm = distanciaKm;
+        }
+
+        /**
+         * @return El elemento encontrado.
+         */
+        public T getValor() {
+            return valor;
+        }
+
+        /**
+         * @return La distancia en kilómetros desde el punto de consulta.
+         */
+        public double getDistanciaKm() {
+            return distanciaKm;
+        }
+
+        @Override
+        public String toString() {
+            return valor + " (" + String.format("%.2f", distanciaKm) + " km)";
+        }
+    }
+
+    /**
+     * Raíz del árbol.
+     */
+    private Nodo<T> raiz;
+
+    /**
+     * Nodo vivo de cada elemento, para poder borrarlo o moverlo.
+     */
+    private final Map<T, Nodo<T>> nodos = new HashMap<>();
+
+    /**
+     * Nodos marcados como borrados que siguen dentro del árbol.
+     */
+    private int borrados;
+
+    /**
+     * Inserciones realizadas desde la última reconstrucción.
+     */
+    private int insercionesSinReconstruir;
+
+    /**
+     * Número de elementos vivos tras la última reconstrucción.
+     */
+    private int tamanoConstruido;
+
+    /**
+     * Crea un índice vacío.
+     */
+    public IndiceEspacial() {
+    }
+
+    /**
+     * Sustituye todo el contenido del índice y lo construye equilibrado de una vez.
+     * Es más rápido que insertar los elementos uno a uno.
+     *
+     * @param valores Elementos a indexar.
+     * @param latitudes Latitud de cada elemento, en grados.
+     * @param longitudes Longitud de cada elemento, en grados.
+     */
+    public synchronized void cargar(List<T> valores, double[] latitudes, double[] longitudes) {
+        nodos.clear();
+        for (int i = 0; i < valores.size(); i++) {
+            nodos.put(valores.get(i), new Nodo<>(valores.get(i), latitudes[i], longitudes[i], aVector(latitudes[i], longitudes[i]), 0));
+        }
+        reconstruir();
+    }
+
+    /**
+     * Inserta un elemento o, si ya estaba en el índice, actualiza su posición.
+     *
+     * @param valor El elemento.
+     * @param latitud Latitud en grados.
+     * @param longitud Longitud en grados.
+     */
+    public synchronized void insertar(T valor, double latitud, double longitud) {
+        eliminar(valor);
+
+        double[] punto = aVector(latitud, longitud);
+        if (raiz == null) {
+            raiz = new Nodo<>(valor, latitud, longitud, punto, 0);
+            nodos.put(valor, raiz);
+        } else {
+            Nodo<T> actual = raiz;
+            while (true) {
+                boolean izquierda = punto[actual.eje] < actual.punto[actual.eje];
+                Nodo<T> siguiente = izquierda ? actual.izquierdo : actual.derecho;
+                if (siguiente == null) {
+                    Nodo<T> nuevo = new Nodo<>(valor, latitud, longitud, punto, (actual.eje + 1) % 3);
+                    if (izquierda) {
+                        actual.izquierdo = nuevo;
+                    } else {
+                        actual.derecho = nuevo;
+                    }
+                    nodos.put(valor, nuevo);
+                    break;
+                }
+                actual = siguiente;
+            }
+        }
+
+        insercionesSinReconstruir++;
+        if (insercionesSinReconstruir > Math.max(64, tamanoConstruido)) {
+            reconstruir();
+        }
+    }
+
+    /**
+     * Elimina un elemento del índice.
+     *
+     * @param valor El elemento a eliminar.
+     * @return {@code true} si el elemento estaba en el índice.
+     */
+    public synchronized boolean eliminar(T valor) {
+        Nodo<T> nodo = nodos.remove(valor);
+        if (nodo == null) {
+            return false;
+        }
+        nodo.borrado = true;
+        borrados++;
+        if (borrados > 64 && borrados > nodos.size()) {
+            reconstruir();
+        }
+        return true;
+    }
+
+    /**
+     * Número de elementos del índice.
+     *
+     * @return El número de elementos vivos.
+     */
+    public synchronized int size() {
+        return nodos.size();
+    }
+
+    /**
+     * Busca los {@code k} elementos más cercanos a un punto que cumplen un filtro.
+     *
+     * @param latitud Latitud del punto de consulta, en grados.
+     * @param longitud Longitud del punto de consulta, en grados.
+     * @param k Número máximo de resultados.
+     * @param filtro Condición que deben cumplir los elementos, o {@code null} para aceptarlos todos.
+     * @return Los elementos encontrados, ordenados de más cercano a más lejano.
+     */
+    public synchronized List<Resultado<T>> cercanos(double latitud, double longitud, int k, Predicate<? super T> filtro) {
+        if (k <= 0 || raiz == null) {
+            return new ArrayList<>();
+        }
+        double[] punto = aVector(latitud, longitud);
+        // Montículo de máximos: en la cabeza está el peor de los k mejores candidatos
+        PriorityQueue<Candidato<T>> mejores = new PriorityQueue<>(k + 1, Comparator.comparingDouble((Candidato<T> c) -> c.cuerda2).reversed());
+        buscarCercanos(raiz, punto, k, filtro, mejores);
+
+        List<Resultado<T>> resultado = new ArrayList<>(mejores.size());
+        for (Candidato<T> c : mejores) {
+            resultado.add(new Resultado<>(c.nodo.valor, cuerdaAKm(Math.sqrt(c.cuerda2))));
+        }
+        resultado.sort(Comparator.comparingDouble(Resultado::getDistanciaKm));
+        return resultado;
+    }
+
+    /**
+     * Busca todos los elementos que están a menos de una distancia de un punto y cumplen un filtro.
+     *
+     * @param latitud Latitud del punto de consulta, en grados.
+     * @param longitud Longitud del punto de consulta, en grados.
+     * @param radioKm Distancia máxima en kilómetros.
+     * @param filtro Condición que deben cumplir los elementos, o {@code null} para aceptarlos todos.
+     * @return Los elementos encontrados, ordenados de más cercano a más lejano.
+     */
+    public synchronized List<Resultado<T>> enRadio(double latitud, double longitud, double radioKm, Predicate<? super T> filtro) {
+        List<Resultado<T>> resultado = new ArrayList<>();
+        if (raiz == null || radioKm < 0) {
+            return resultado;
+        }
+        double cuerdaMaxima = 2 * Math.sin(Math.min(radioKm / RADIO_TIERRA_KM, Math.PI) / 2);
+        buscarEnRadio(raiz, aVector(latitud, longitud), cuerdaMaxima * cuerdaMaxima, filtro, resultado);
+        resultado.sort(Comparator.comparingDouble(Resultado::getDistanciaKm));
+        return resultado;
+    }
+
+    /**
+     * Distancia en kilómetros entre dos puntos según la fórmula del haversine.
+     *
+     * @param lat1 Latitud del primer punto, en grados.
+     * @param lon1 Longitud del primer punto, en grados.
+     * @param lat2 Latitud del segundo punto, en grados.
+     * @param lon2 Longitud del segundo punto, en grados.
+     * @return La distancia sobre la superficie terrestre, en kilómetros.
+     */
+    public static double distanciaKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * RADIO_TIERRA_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Candidato a resultado durante la búsqueda de los k más cercanos.
+     */
+    private static final class Candidato<T> {
+        final Nodo<T> nodo;
+        final double cuerda2;
+
+        Candidato(Nodo<T> nodo, double cuerda2) {
+            this.nodo = nodo;
+            this.cuerda2 = cuerda2;
+        }
+    }
+
+    private void buscarCercanos(Nodo<T> nodo, double[] punto, int k, Predicate<? super T> filtro, PriorityQueue<Candidato<T>> mejores) {
+        while (nodo != null) {
+            if (!nodo.borrado && (filtro == null || filtro.test(nodo.valor))) {
+                double d2 = distancia2(punto, nodo.punto);
+                if (mejores.size() < k) {
+                    mejores.add(new Candidato<>(nodo, d2));
+                } else if (d2 < mejores.peek().cuerda2) {
+                    mejores.poll();
+                    mejores.add(new Candidato<>(nodo, d2));
+                }
+            }
+
+            double diferencia = punto[nodo.eje] - nodo.punto[nodo.eje];
+            Nodo<T> cercano = diferencia < 0 ? nodo.izquierdo : nodo.derecho;
+            Nodo<T> lejano = diferencia < 0 ? nodo.derecho : nodo.izquierdo;
+
+            // Primero se baja por el lado del punto; el otro lado solo si puede contener algo mejor
+            buscarCercanos(cercano, punto, k, filtro, mejores);
+            if (mejores.size() < k || diferencia * diferencia < mejores.peek().cuerda2) {
+                nodo = lejano;
+            } else {
+                nodo = null;
+            }
+        }
+    }
+
+    private void buscarEnRadio(Nodo<T> nodo, double[] punto, double cuerda2Maxima, Predicate<? super T> filtro, List<Resultado<T>> resultado) {
+        while (nodo != null) {
+            if (!nodo.borrado) {
+                double d2 = distancia2(punto, nodo.punto);
+                if (d2 <= cuerda2Maxima && (filtro == null || filtro.test(nodo.valor))) {
+                    resultado.add(new Resultado<>(nodo.valor, cuerdaAKm(Math.sqrt(d2))));
+                }
+            }
+
+            double diferencia = punto[nodo.eje] - nodo.punto[nodo.eje];
+            Nodo<T> cercano = diferencia < 0 ? nodo.izquierdo : nodo.derecho;
+            Nodo<T> lejano = diferencia < 0 ? nodo.derecho : nodo.izquierdo;
+
+            buscarEnRadio(cercano, punto, cuerda2Maxima, filtro, resultado);
+            nodo = diferencia * diferencia <= cuerda2Maxima ? lejano : null;
+        }
+    }
+
+    /**
+     * Vuelve a construir el árbol equilibrado con los elementos vivos.
+     */
+    private void reconstruir() {
+        @SuppressWarnings("unchecked")
+        Nodo<T>[] array = (Nodo<T>[]) nodos.values().toArray(new Nodo<?>[0]);
+        raiz = construir(array, 0, array.length, 0);
+        borrados = 0;
+        insercionesSinReconstruir = 0;
+        tamanoConstruido = array.length;
+    }
+
+    /**
+     * Construye recursivamente el subárbol de {@code array[desde, hasta)} partiendo por la mediana del eje.
+     * Los nodos se copian porque el eje de cada uno depende de su profundidad en el árbol nuevo.
+     */
+    private Nodo<T> construir(Nodo<T>[] array, int desde, int hasta, int eje) {
+        if (desde >= hasta) {
+            return null;
+        }
+        int medio = (desde + hasta) >>> 1;
+        seleccionar(array, desde, hasta - 1, medio, eje);
+
+        Nodo<T> original = array[medio];
+        Nodo<T> nodo = new Nodo<>(original.valor, original.latitud, original.longitud, original.punto, eje);
+        nodos.put(nodo.valor, nodo);
+        int siguienteEje = (eje + 1) % 3;
+        nodo.izquierdo = construir(array, desde, medio, siguienteEje);
+        nodo.derecho = construir(array, medio + 1, hasta, siguienteEje);
+        return nodo;
+    }
+
+    /**
+     * Deja en {@code array[k]} el elemento que ocuparía esa posición si el tramo estuviera ordenado
+     * por el eje indicado, con los menores o iguales a su izquierda y los mayores o iguales a su derecha
+     * (quickselect). La poda de la búsqueda sigue siendo correcta aunque haya valores iguales a ambos lados.
+     */
+    private static <T> void seleccionar(Nodo<T>[] array, int izquierda, int derecha, int k, int eje) {
+        while (izquierda < derecha) {
+            double pivote = array[(izquierda + derecha) >>> 1].punto[eje];
+            int i = izquierda;
+            int j = derecha;
+            while (i <= j) {
+                while (array[i].punto[eje] < pivote) i++;
+                while (array[j].punto[eje] > pivote) j--;
+                if (i <= j) {
+                    Nodo<T> tmp = array[i];
+                    array[i] = array[j];
+                    array[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                derecha = j;
+            } else if (k >= i) {
+                izquierda = i;
+            } else {
+                break;
+            }
+        }
+    }
+
+    private static double[] aVector(double latitud, double longitud) {
+        double lat = Math.toRadians(latitud);
+        double lon = Math.toRadians(longitud);
+        double cosLat = Math.cos(lat);
+        return new double[]{cosLat * Math.cos(lon), cosLat * Math.sin(lon), Math.sin(lat)};
+    }
+
+    private static double distancia2(double[] a, double[] b) {
+        double dx = a[0] - b[0];
+        double dy = a[1] - b[1];
+        double dz = a[2] - b[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static double cuerdaAKm(double cuerda) {
+        return 2 * RADIO_TIERRA_KM * Math.asin(Math.min(1, cuerda / 2));
+    }
+}
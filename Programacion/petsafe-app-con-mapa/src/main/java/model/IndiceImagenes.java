@@ -0,0 +1,135 @@
+package model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice en memoria de los hashes perceptuales de las fotos de los animales, para encontrar
+ * fotos parecidas a una dada sin comparar imágenes ni recorrer la tabla {@code animal}.
+ * <p>
+ * Se carga la primera vez que se usa con los hashes guardados en la columna {@code hash_imagen}
+ * y {@link AnimalModel} lo mantiene al día en cada alta, modificación o baja.
+ * </p>
+ */
+public class IndiceImagenes {
+
+    /**
+     * Instancia compartida; es {@code null} hasta la primera búsqueda.
+     */
+    private static volatile IndiceImagenes instancia;
+
+    /**
+     * Árbol BK con el ID de cada animal colgando de su hash.
+     */
+    private final ArbolBK<Integer> arbol = new ArbolBK<>();
+
+    /**
+     * Hash actual de cada animal, para poder quitarlo del árbol al modificarlo o eliminarlo.
+     */
+    private final Map<Integer, Long> hashes = new HashMap<>();
+
+    private IndiceImagenes() {
+    }
+
+    /**
+     * Devuelve el índice compartido, cargándolo desde la base de datos la primera vez.
+     *
+     * @return La instancia compartida.
+     */
+    public static IndiceImagenes getInstancia() {
+        IndiceImagenes res = instancia;
+        if (res == null) {
+            synchronized (IndiceImagenes.class) {
+                res = instancia;
+                if (res == null) {
+                    res = new IndiceImagenes();
+                    Map<Integer, Long> leidos = new AnimalModel().readHashesImagen();
+                    if (leidos != null) {
+                        for (Map.Entry<Integer, Long> e : leidos.entrySet()) {
+                            res.actualizar(e.getKey(), e.getValue());
+                        }
+                    }
+                    instancia = res;
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Notifica el nuevo hash de un animal si el índice ya está cargado.
+     *
+     * @param idAnimal El ID del animal.
+     * @param hash El hash de su foto, o {@code null} si no tiene foto legible.
+     */
+    static void registrarCambio(int idAnimal, Long hash) {
+        IndiceImagenes res = instancia;
+        if (res != null) {
+            res.actualizar(idAnimal, hash);
+        }
+    }
+
+    /**
+     * Notifica la baja de un animal si el índice ya está cargado.
+     *
+     * @param idAnimal El ID del animal eliminado.
+     */
+    static void registrarBaja(int idAnimal) {
+        IndiceImagenes res = instancia;
+        if (res != null) {
+            res.actualizar(idAnimal, null);
+        }
+    }
+
+    /**
+     * Añade, cambia o (con {@code hash == null}) quita el hash de un animal.
+     *
+     * @param idAnimal El ID del animal.
+     * @param hash El hash de su foto, o {@code null} para quitarlo del índice.
+     */
+    public synchronized void actualizar(int idAnimal, Long hash) {
+        Long anterior = hash != null ? hashes.put(idAnimal, hash) : hashes.remove(idAnimal);
+        if (anterior != null) {
+            arbol.eliminar(anterior, idAnimal);
+        }
+        if (hash != null) {
+            arbol.insertar(hash, idAnimal);
+        }
+    }
+
+    /**
+     * Busca los animales cuya foto se parece a una imagen.
+     *
+     * @param imagen El fichero de la imagen de referencia.
+     * @param maxDistancia Número máximo de bits distintos entre hashes (por ejemplo, {@link HashPerceptual#DISTANCIA_SIMILAR}).
+     * @return Los IDs de los animales encontrados con su distancia, de más a menos parecido,
+     *         o una lista vacía si la imagen no se puede leer.
+     */
+    public List<ArbolBK.Resultado<Integer>> buscarSimilares(File imagen, int maxDistancia) {
+        Long hash = HashPerceptual.calcular(imagen);
+        return hash != null ? buscarSimilares(hash, maxDistancia) : new ArrayList<>();
+    }
+
+    /**
+     * Busca los animales cuya foto tiene un hash cercano al indicado.
+     *
+     * @param hash El hash de referencia.
+     * @param maxDistancia Número máximo de bits distintos.
+     * @return Los IDs de los animales encontrados con su distancia, de más a menos parecido.
+     */
+    public List<ArbolBK.Resultado<Integer>> buscarSimilares(long hash, int maxDistancia) {
+        return arbol.buscar(hash, maxDistancia);
+    }
+
+    /**
+     * Número de animales indexados.
+     *
+     * @return El número de animales con hash.
+     */
+    public synchronized int size() {
+        return hashes.size();
+    }
+}
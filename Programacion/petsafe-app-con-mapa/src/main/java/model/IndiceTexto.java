@@ -0,0 +1,502 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Índice invertido en memoria para buscar textos mientras el usuario escribe.
+ * <p>
+ * Cada elemento se indexa con un título y un texto. Ambos se normalizan con {@link Normalizador}
+ * (sin tildes y en minúsculas), se dividen en palabras y se descartan las palabras vacías del
+ * español ({@code de}, {@code la}, {@code con}...). Las palabras del título pesan el doble que las
+ * del texto.
+ * </p>
+ * <p>
+ * Cada palabra de la consulta tiene que aparecer en el elemento, de una de estas formas, de más a
+ * menos puntuación:
+ * </p>
+ * <ul>
+ *     <li>Igual.</li>
+ *     <li>Como prefijo ({@code "vete"} encuentra {@code "veterinaria"}). Las palabras se guardan
+ *     en un {@link TreeMap} por longitud, así que las que empiezan por un prefijo son un rango de
+ *     cada mapa y se pueden recorrer de la más corta a la más larga.</li>
+ *     <li>Dentro de otra palabra ({@code "pelu"} encuentra {@code "superpeluqueria"}) o con alguna
+ *     errata ({@code "veterniaria"}). Para eso se guardan los trigramas de cada palabra; solo se
+ *     usa con palabras de la consulta de al menos {@value #LONGITUD_MINIMA_NGRAMAS} letras.</li>
+ * </ul>
+ * <p>
+ * La búsqueda parte de la palabra de la consulta que aparece en menos elementos y comprueba el
+ * resto de palabras solo en los elementos encontrados con ella. Las altas,
+ * modificaciones y bajas actualizan el índice sin reconstruirlo.
+ * </p>
+ * <p>
+ * Los elementos se identifican por {@code equals}/{@code hashCode}: indexar un elemento que ya
+ * existe sustituye sus textos.
+ * </p>
+ *
+ * @param <T> Tipo de los elementos indexados.
+ */
+public class IndiceTexto<T> {
+
+    /**
+     * Longitud mínima de una palabra de la consulta para buscarla también por trigramas.
+     */
+    public static final int LONGITUD_MINIMA_NGRAMAS = 3;
+
+    /**
+     * Número máximo de candidatos que se puntúan en cada búsqueda.
+     */
+    private static final int MAX_CANDIDATOS = 2000;
+
+    /**
+     * Parecido mínimo (coeficiente de Dice entre trigramas) para aceptar una palabra con erratas.
+     */
+    private static final double PARECIDO_MINIMO = 0.5;
+
+    private static final float PESO_TITULO = 2f;
+    private static final float PESO_TEXTO = 1f;
+
+    /**
+     * Palabras vacías del español que no se indexan.
+     */
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "a", "al", "con", "de", "del", "e", "el", "en", "la", "las", "lo", "los", "o",
+            "para", "por", "que", "se", "su", "sus", "u", "un", "una", "unas", "unos", "y");
+
+    /**
+     * Elemento encontrado con su puntuación.
+     *
+     * @param <T> Tipo del elemento.
+     */
+    public static final class Resultado<T> {
+        private final T valor;
+        private final double puntuacion;
+
+        Resultado(T valor, double puntuacion) {
+            this.valor = valor;
+            this.puntuacion = puntuacion;
+        }
+
+        /**
+         * @return El elemento encontrado.
+         */
+        public T getValor() {
+            return valor;
+        }
+
+        /**
+         * @return La puntuación; cuanto mayor, mejor coincide con la consulta.
+         */
+        public double getPuntuacion() {
+            return puntuacion;
+        }
+
+        @Override
+        public String toString() {
+            return valor + " (" + String.format("%.2f", puntuacion) + ")";
+        }
+    }
+
+    /**
+     * Palabras de un elemento con su peso.
+     */
+    private static final class Palabras {
+        final String[] palabras;
+        final float[] pesos;
+
+        Palabras(String[] palabras, float[] pesos) {
+            this.palabras = palabras;
+            this.pesos = pesos;
+        }
+    }
+
+    /**
+     * Elementos que contienen cada palabra, en un mapa por cada longitud de palabra.
+     */
+    private final List<TreeMap<String, Set<T>>> palabrasPorLongitud = new ArrayList<>();
+
+    /**
+     * Palabras de cada elemento, para puntuar los candidatos y para poder quitar el elemento.
+     */
+    private final Map<T, Palabras> elementos = new HashMap<>();
+
+    /**
+     * Palabras indexadas que contienen cada trigrama.
+     */
+    private final Map<String, Set<String>> trigramas = new HashMap<>();
+
+    /**
+     * Indexa un elemento o sustituye sus textos.
+     *
+     * @param valor El elemento.
+     * @param titulo Su título (por ejemplo, el nombre). Puede ser {@code null}.
+     * @param texto Su texto (por ejemplo, la descripción). Puede ser {@code null}.
+     */
+    public synchronized void actualizar(T valor, String titulo, String texto) {
+        eliminar(valor);
+        Map<String, Float> pesos = new LinkedHashMap<>();
+        for (String palabra : palabras(titulo)) {
+            pesos.put(palabra, PESO_TITULO);
+        }
+        for (String palabra : palabras(texto)) {
+            pesos.putIfAbsent(palabra, PESO_TEXTO);
+        }
+        if (pesos.isEmpty()) {
+            return;
+        }
+
+        String[] lista = new String[pesos.size()];
+        float[] listaPesos = new float[pesos.size()];
+        int i = 0;
+        for (Map.Entry<String, Float> e : pesos.entrySet()) {
+            String palabra = e.getKey();
+            while (palabrasPorLongitud.size() <= palabra.length()) {
+                palabrasPorLongitud.add(new TreeMap<>());
+            }
+            Set<T> conPalabra = palabrasPorLongitud.get(palabra.length()).get(palabra);
+            if (conPalabra == null) {
+                conPalabra = new HashSet<>();
+                palabrasPorLongitud.get(palabra.length()).put(palabra, conPalabra);
+                for (String trigrama : trigramas(palabra)) {
+                    trigramas.computeIfAbsent(trigrama, k -> new HashSet<>()).add(palabra);
+                }
+            }
+            conPalabra.add(valor);
+            lista[i] = palabra;
+            listaPesos[i++] = e.getValue();
+        }
+        elementos.put(valor, new Palabras(lista, listaPesos));
+    }
+
+    /**
+     * Quita un elemento del índice.
+     *
+     * @param valor El elemento.
+     */
+    public synchronized void eliminar(T valor) {
+        Palabras anteriores = elementos.remove(valor);
+        if (anteriores == null) {
+            return;
+        }
+        for (String palabra : anteriores.palabras) {
+            Set<T> conPalabra = palabrasPorLongitud.get(palabra.length()).get(palabra);
+            conPalabra.remove(valor);
+            if (conPalabra.isEmpty()) {
+                palabrasPorLongitud.get(palabra.length()).remove(palabra);
+                for (String trigrama : trigramas(palabra)) {
+                    Set<String> conTrigrama = trigramas.get(trigrama);
+                    conTrigrama.remove(palabra);
+                    if (conTrigrama.isEmpty()) {
+                        trigramas.remove(trigrama);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Busca los elementos que contienen todas las palabras de una consulta.
+     * <p>
+     * Los candidatos salen de las palabras que coinciden con el término que aparece en menos
+     * elementos, de mejor a peor coincidencia (la palabra igual, los prefijos de más corto a más
+     * largo y las parecidas), y se dejan de buscar después de puntuar {@value #MAX_CANDIDATOS}: con una o dos letras casi todos
+     * los elementos coinciden, y puntuarlos todos no cabría en el tiempo de un fotograma.
+     * </p>
+     *
+     * @param consulta El texto escrito por el usuario; la última palabra puede estar a medias.
+     * @param max Número máximo de resultados.
+     * @param filtro Condición que deben cumplir los elementos, o {@code null} para no filtrar.
+     * @return Los elementos encontrados, de mayor a menor puntuación. Vacía si la consulta no tiene palabras.
+     */
+    public synchronized List<Resultado<T>> buscar(String consulta, int max, Predicate<T> filtro) {
+        List<String> textos = palabras(consulta);
+        if (textos.isEmpty()) {
+            // Si solo hay palabras vacías (por ejemplo, "la" mientras se escribe "laura") se buscan tal cual
+            String normalizada = Normalizador.normalizar(consulta);
+            if (!normalizada.isEmpty()) {
+                textos = new ArrayList<>(new LinkedHashSet<>(List.of(normalizada.split(" "))));
+            }
+        }
+        if (textos.isEmpty() || max <= 0) {
+            return new ArrayList<>();
+        }
+
+        // El primer término, del que salen los candidatos, es el que aparece en menos elementos
+        List<Termino> terminos = new ArrayList<>();
+        Termino primero = null;
+        int menosElementos = Integer.MAX_VALUE;
+        for (String texto : textos) {
+            Termino termino = new Termino(texto);
+            terminos.add(termino);
+            int elementosTermino = contarElementos(texto, menosElementos);
+            if (elementosTermino < menosElementos || primero == null) {
+                primero = termino;
+                menosElementos = elementosTermino;
+            }
+        }
+
+        Busqueda busqueda = new Busqueda(terminos, max, filtro);
+        String texto = primero.texto;
+        boolean seguir = true;
+        for (int longitud = texto.length(); seguir && longitud < palabrasPorLongitud.size(); longitud++) {
+            for (Set<T> conPalabra : palabrasPorLongitud.get(longitud).subMap(texto, true, texto + Character.MAX_VALUE, false).values()) {
+                if (!(seguir = busqueda.puntuar(conPalabra))) {
+                    break;
+                }
+            }
+        }
+        // Las palabras parecidas puntúan menos que los prefijos: solo hacen falta si no hay bastantes resultados
+        if (seguir && busqueda.mejores.size() < max) {
+            for (String palabra : primero.parecidas()) {
+                if (!busqueda.puntuar(palabrasPorLongitud.get(palabra.length()).get(palabra))) {
+                    break;
+                }
+            }
+        }
+        return busqueda.resultados();
+    }
+
+    /**
+     * Cuenta, con repeticiones, los elementos que tienen alguna palabra que empieza por un texto,
+     * dejando de contar al pasar de un límite.
+     *
+     * @return El número de elementos, o un valor mayor que {@code limite} si lo supera.
+     */
+    private int contarElementos(String texto, int limite) {
+        int res = 0;
+        for (int longitud = texto.length(); longitud < palabrasPorLongitud.size(); longitud++) {
+            for (Set<T> conPalabra : palabrasPorLongitud.get(longitud).subMap(texto, true, texto + Character.MAX_VALUE, false).values()) {
+                res += conPalabra.size();
+                if (res > limite) {
+                    return res;
+                }
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Número de elementos indexados.
+     *
+     * @return El número de elementos.
+     */
+    public synchronized int size() {
+        return elementos.size();
+    }
+
+    /**
+     * Estado de una búsqueda: los candidatos ya vistos y los mejores resultados hasta el momento.
+     */
+    private final class Busqueda {
+        final List<Termino> terminos;
+        final int max;
+        final Predicate<T> filtro;
+        final Set<T> vistos = new HashSet<>();
+        final PriorityQueue<Resultado<T>> mejores = new PriorityQueue<>(Comparator.comparingDouble(Resultado::getPuntuacion));
+        int puntuados;
+
+        Busqueda(List<Termino> terminos, int max, Predicate<T> filtro) {
+            this.terminos = terminos;
+            this.max = max;
+            this.filtro = filtro;
+        }
+
+        /**
+         * Puntúa los elementos de una palabra que no se hayan visto ya y guarda los mejores.
+         *
+         * @return {@code false} si ya se han puntuado {@value #MAX_CANDIDATOS} candidatos.
+         */
+        boolean puntuar(Set<T> candidatos) {
+            for (T candidato : candidatos) {
+                if (!vistos.add(candidato) || (filtro != null && !filtro.test(candidato))) {
+                    continue;
+                }
+                double puntuacion = puntuacion(elementos.get(candidato));
+                if (puntuacion > 0) {
+                    if (mejores.size() < max) {
+                        mejores.add(new Resultado<>(candidato, puntuacion));
+                    } else if (puntuacion > mejores.peek().getPuntuacion()) {
+                        mejores.poll();
+                        mejores.add(new Resultado<>(candidato, puntuacion));
+                    }
+                }
+                if (++puntuados >= MAX_CANDIDATOS) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Puntuación de un elemento: la suma, para cada término, de su mejor coincidencia con las
+         * palabras del elemento por el peso de la palabra, o 0 si algún término no coincide con ninguna.
+         * Las palabras que contienen el término o se le parecen solo se miran si ninguna es igual ni
+         * empieza por él.
+         */
+        double puntuacion(Palabras elemento) {
+            double res = 0;
+            for (Termino termino : terminos) {
+                float mejor = 0;
+                for (int i = 0; i < elemento.palabras.length; i++) {
+                    mejor = Math.max(mejor, termino.factorPrefijo(elemento.palabras[i]) * elemento.pesos[i]);
+                }
+                for (int i = 0; mejor == 0 && i < elemento.palabras.length; i++) {
+                    mejor = Math.max(mejor, termino.factor(elemento.palabras[i]) * elemento.pesos[i]);
+                }
+                if (mejor == 0) {
+                    return 0;
+                }
+                res += mejor;
+            }
+            return res;
+        }
+
+        List<Resultado<T>> resultados() {
+            List<Resultado<T>> res = new ArrayList<>(mejores);
+            res.sort(Comparator.comparingDouble((Resultado<T> r) -> r.getPuntuacion()).reversed());
+            return res;
+        }
+    }
+
+    /**
+     * Palabra de la consulta. Calcula el factor de coincidencia de cada palabra del índice con la
+     * que se compara una sola vez.
+     */
+    private final class Termino {
+        final String texto;
+        final Set<String> trigramasTexto;
+
+        /**
+         * Factor de las palabras comparadas que no son iguales ni empiezan por el término.
+         */
+        final Map<String, Float> otras = new HashMap<>();
+
+        Termino(String texto) {
+            this.texto = texto;
+            this.trigramasTexto = trigramas(texto);
+        }
+
+        /**
+         * Factor de coincidencia de una palabra del índice si es igual al término (1) o empieza
+         * por él (entre 0,5 y 0,9, más cuanto más se parecen las longitudes); si no, 0.
+         */
+        float factorPrefijo(String palabra) {
+            if (palabra.equals(texto)) {
+                return 1f;
+            }
+            if (palabra.startsWith(texto)) {
+                return 0.5f + 0.4f * texto.length() / palabra.length();
+            }
+            return 0f;
+        }
+
+        /**
+         * Factor de coincidencia entre 0 (no coincide) y 1 (igual) de una palabra del índice.
+         */
+        float factor(String palabra) {
+            float prefijo = factorPrefijo(palabra);
+            if (prefijo > 0 || texto.length() < LONGITUD_MINIMA_NGRAMAS) {
+                return prefijo;
+            }
+            Float factor = otras.get(palabra);
+            if (factor == null) {
+                int comunes = 0;
+                for (String trigrama : trigramas(palabra)) {
+                    if (trigramasTexto.contains(trigrama)) {
+                        comunes++;
+                    }
+                }
+                factor = factorParecida(palabra, comunes);
+                otras.put(palabra, factor);
+            }
+            return factor;
+        }
+
+        /**
+         * Factor de una palabra que no empieza por el término, según los trigramas que comparten:
+         * si la contiene, algo menos que un prefijo; si se le parece, según el parecido; si no, 0.
+         */
+        float factorParecida(String palabra, int comunes) {
+            // Una palabra que contiene el término comparte al menos sus trigramas interiores
+            if (comunes >= texto.length() - 2 && palabra.contains(texto)) {
+                return 0.3f + 0.4f * texto.length() / palabra.length();
+            }
+            double parecido = 2.0 * comunes / (trigramasTexto.size() + palabra.length());
+            return parecido >= PARECIDO_MINIMO ? (float) (0.5 * parecido) : 0f;
+        }
+
+        /**
+         * Palabras del índice que contienen el término sin empezar por él, o que se le parecen,
+         * de mejor a peor factor. Se buscan con el índice de trigramas.
+         */
+        List<String> parecidas() {
+            if (texto.length() < LONGITUD_MINIMA_NGRAMAS) {
+                return Collections.emptyList();
+            }
+            Map<String, Integer> comunes = new HashMap<>();
+            for (String trigrama : trigramasTexto) {
+                for (String palabra : trigramas.getOrDefault(trigrama, Collections.emptySet())) {
+                    comunes.merge(palabra, 1, Integer::sum);
+                }
+            }
+            List<String> res = new ArrayList<>();
+            for (Map.Entry<String, Integer> e : comunes.entrySet()) {
+                String palabra = e.getKey();
+                if (palabra.startsWith(texto)) {
+                    continue;
+                }
+                float factor = factorParecida(palabra, e.getValue());
+                if (factor > 0) {
+                    otras.put(palabra, factor);
+                    res.add(palabra);
+                }
+            }
+            res.sort(Comparator.comparing((String p) -> otras.get(p)).reversed());
+            return res;
+        }
+    }
+
+    /**
+     * Divide un texto en palabras normalizadas y sin repetir, sin las palabras vacías.
+     *
+     * @param texto El texto. Puede ser {@code null}.
+     * @return Las palabras, en el orden en que aparecen.
+     */
+    static List<String> palabras(String texto) {
+        String normalizado = Normalizador.normalizar(texto);
+        if (normalizado.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<String> res = new LinkedHashSet<>();
+        for (String palabra : normalizado.split(" ")) {
+            if (!PALABRAS_VACIAS.contains(palabra)) {
+                res.add(palabra);
+            }
+        }
+        return new ArrayList<>(res);
+    }
+
+    /**
+     * Trigramas de una palabra rodeada de espacios, de modo que el principio y el final de la
+     * palabra también cuentan: {@code "gato"} da {@code " ga"}, {@code "gat"}, {@code "ato"} y {@code "to "}.
+     */
+    private static Set<String> trigramas(String palabra) {
+        String conBordes = ' ' + palabra + ' ';
+        Set<String> res = new HashSet<>();
+        for (int i = 0; i + 3 <= conBordes.length(); i++) {
+            res.add(conBordes.substring(i, i + 3));
+        }
+        return res;
+    }
+}
@@ -0,0 +1,390 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Mantenimiento de las tablas de auditoría de animales, particionadas por meses en
+ * {@code V007__auditoria_particionada.sql}.
+ * <p>
+ * En cada ejecución, para {@code auditoriaanimal} y {@code animal_imagen_backup}:
+ * </p>
+ * <ol>
+ *     <li>Crea las particiones de los próximos {@value #MESES_ADELANTADOS} meses dividiendo
+ *     {@code p_futuro}. La primera vez, la partición del primer mes que se conserva se queda también
+ *     con las filas anteriores.</li>
+ *     <li>Archiva en la carpeta fría cada mes que supera la retención y después borra su partición
+ *     con {@code DROP PARTITION}, que no recorre el resto de la tabla. La auditoría se guarda en
+ *     {@code auditoriaanimal-AAAAMM.csv.gz} y las copias de las imágenes en
+ *     {@code animal_imagen_backup-AAAAMM.zip}, con una entrada
+ *     {@code <animal>/<id>_<fecha>.<extensión>} por copia. La partición solo se borra si el
+ *     fichero tiene todas sus filas.</li>
+ * </ol>
+ * <p>
+ * La retención se configura en meses con {@code petsafe.auditoria.retencionMeses} (por defecto
+ * {@value #RETENCION_AUDITORIA}) y {@code petsafe.auditoria.imagenesMeses} (por defecto
+ * {@value #RETENCION_IMAGENES}); 0 conserva la tabla entera. La carpeta fría es
+ * {@code petsafe.auditoria.archivo}, o {@code ~/.petsafe/archivo} si no se indica.
+ * </p>
+ * <p>
+ * Uso: {@code MantenimientoAuditoria [carpeta]}. Lo ejecuta {@code ScriptBackup.sh} antes de cada
+ * copia de seguridad.
+ * </p>
+ */
+public class MantenimientoAuditoria extends DBUtil {
+
+    /**
+     * Meses que se conserva la auditoría textual en la base de datos.
+     */
+    public static final String PROPIEDAD_RETENCION = "auditoria.retencionMeses";
+
+    /**
+     * Meses que se conservan las copias de las imágenes en la base de datos.
+     */
+    public static final String PROPIEDAD_IMAGENES = "auditoria.imagenesMeses";
+
+    /**
+     * Carpeta en la que se archivan los meses borrados.
+     */
+    public static final String PROPIEDAD_CARPETA = "auditoria.archivo";
+
+    private static final int RETENCION_AUDITORIA = 24;
+
+    private static final int RETENCION_IMAGENES = 3;
+
+    /**
+     * Meses posteriores al actual que ya tienen su partición creada.
+     */
+    private static final int MESES_ADELANTADOS = 2;
+
+    /**
+     * Partición en la que caen las filas posteriores a la última partición mensual.
+     */
+    private static final String PARTICION_FUTURO = "p_futuro";
+
+    private static final DateTimeFormatter FORMATO_MES = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private static final int TAMANO_BUFER = 64 * 1024;
+
+    /**
+     * Tablas particionadas, con la columna de la partición.
+     */
+    private enum Tabla {
+        AUDITORIA("auditoriaanimal", "fecha_hora"),
+        IMAGENES("animal_imagen_backup", "fecha_copia");
+
+        private final String nombre;
+        private final String columnaFecha;
+
+        Tabla(String nombre, String columnaFecha) {
+            this.nombre = nombre;
+            this.columnaFecha = columnaFecha;
+        }
+    }
+
+    private final Path carpeta;
+
+    /**
+     * @param carpeta Carpeta fría en la que se archivan los meses borrados.
+     */
+    public MantenimientoAuditoria(Path carpeta) {
+        this.carpeta = carpeta;
+    }
+
+    /**
+     * Crea las particiones de los próximos meses y archiva y borra las que superan la retención.
+     *
+     * @return El número de meses archivados, o -1 si ocurre un error.
+     */
+    public int ejecutar() {
+        int archivados = 0;
+        // Lo que se lee aquí cambia con cada ALTER TABLE: ni réplicas ni caché
+        leerDelPrincipal(true);
+        try {
+            Connection con = this.abrirConexion();
+            Files.createDirectories(carpeta);
+            archivados += mantener(con, Tabla.AUDITORIA, retencion(PROPIEDAD_RETENCION, RETENCION_AUDITORIA));
+            archivados += mantener(con, Tabla.IMAGENES, retencion(PROPIEDAD_IMAGENES, RETENCION_IMAGENES));
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+            return -1;
+        } finally {
+            leerDelPrincipal(false);
+            this.cerrarConexion();
+        }
+        return archivados;
+    }
+
+    /**
+     * Mantiene las particiones de una tabla.
+     *
+     * @param retencion Meses que se conservan, o 0 para no borrar ninguno.
+     * @return El número de meses archivados.
+     */
+    private int mantener(Connection con, Tabla tabla, int retencion) throws SQLException, IOException {
+        List<String> particiones = leerParticiones(con, tabla);
+        if (particiones.isEmpty()) {
+            System.err.println("La tabla " + tabla.nombre + " no está particionada; falta aplicar la migración V007");
+            return 0;
+        }
+
+        YearMonth actual = YearMonth.now();
+        YearMonth limite = retencion > 0 ? actual.minusMonths(retencion) : null;
+
+        YearMonth ultima = null;
+        for (String particion : particiones) {
+            YearMonth mes = mes(particion);
+            if (mes != null) {
+                ultima = mes;
+            }
+        }
+        YearMonth desde;
+        if (ultima != null) {
+            desde = ultima.plusMonths(1);
+        } else {
+            desde = primerMes(con, tabla);
+            if (desde == null || desde.isAfter(actual)) {
+                desde = actual;
+            }
+            if (limite != null && desde.isBefore(limite)) {
+                desde = limite;
+            }
+        }
+        crearParticiones(con, tabla, desde, actual.plusMonths(MESES_ADELANTADOS));
+
+        int archivados = 0;
+        if (limite != null) {
+            for (String particion : particiones) {
+                YearMonth mes = mes(particion);
+                if (mes != null && mes.isBefore(limite) && archivar(con, tabla, particion)) {
+                    archivados++;
+                }
+            }
+        }
+        return archivados;
+    }
+
+    /**
+     * Divide {@code p_futuro} en una partición por mes, de {@code desde} a {@code hasta}.
+     */
+    private static void crearParticiones(Connection con, Tabla tabla, YearMonth desde, YearMonth hasta) throws SQLException {
+        if (desde.isAfter(hasta)) {
+            return;
+        }
+        StringBuilder sql = new StringBuilder("ALTER TABLE " + tabla.nombre + " REORGANIZE PARTITION " + PARTICION_FUTURO + " INTO (");
+        for (YearMonth mes = desde; !mes.isAfter(hasta); mes = mes.plusMonths(1)) {
+            sql.append("PARTITION p").append(mes.format(FORMATO_MES))
+                    .append(" VALUES LESS THAN (TO_DAYS('").append(mes.plusMonths(1).atDay(1)).append("')), ");
+        }
+        sql.append("PARTITION ").append(PARTICION_FUTURO).append(" VALUES LESS THAN MAXVALUE)");
+        try (Statement st = con.createStatement()) {
+            st.execute(sql.toString());
+        }
+        System.out.println(tabla.nombre + ": particiones creadas de " + desde + " a " + hasta);
+    }
+
+    /**
+     * Archiva una partición y, si el fichero tiene todas sus filas, la borra.
+     *
+     * @return {@code true} si se ha borrado.
+     */
+    private boolean archivar(Connection con, Tabla tabla, String particion) throws SQLException, IOException {
+        String extension = tabla == Tabla.AUDITORIA ? ".csv.gz" : ".zip";
+        Path destino = carpeta.resolve(tabla.nombre + "-" + particion.substring(1) + extension);
+        Path temporal = carpeta.resolve(destino.getFileName() + ".parcial");
+
+        long escritas;
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream salida = new BufferedOutputStream(Channels.newOutputStream(canal), TAMANO_BUFER);
+            escritas = tabla == Tabla.AUDITORIA
+                    ? escribirAuditoria(con, particion, salida)
+                    : escribirImagenes(con, particion, salida);
+            salida.flush();
+            canal.force(true);
+        }
+
+        long filas;
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + tabla.nombre + " PARTITION (" + particion + ")")) {
+            filas = rs.next() ? rs.getLong(1) : -1;
+        }
+        if (filas != escritas) {
+            System.err.println(tabla.nombre + ": la partición " + particion + " tiene " + filas +
+                    " filas y se han archivado " + escritas + "; no se borra");
+            Files.deleteIfExists(temporal);
+            return false;
+        }
+
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        try (Statement st = con.createStatement()) {
+            st.execute("ALTER TABLE " + tabla.nombre + " DROP PARTITION " + particion);
+        }
+        System.out.println(tabla.nombre + ": " + escritas + " filas de " + particion + " archivadas en " + destino);
+        return true;
+    }
+
+    /**
+     * Escribe la auditoría de una partición en CSV comprimido.
+     */
+    private static long escribirAuditoria(Connection con, String particion, OutputStream salida) throws SQLException, IOException {
+        long filas = 0;
+        GZIPOutputStream gzip = new GZIPOutputStream(salida, TAMANO_BUFER);
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), TAMANO_BUFER);
+        escritor.write("id;animal_id;operacion;fecha_hora;datos_antiguos;datos_nuevos\n");
+        String sql = "SELECT id, animal_id, operacion, fecha_hora, datos_antiguos, datos_nuevos " +
+                "FROM auditoriaanimal PARTITION (" + particion + ") ORDER BY id";
+        try (Statement st = abrirStreaming(con); ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                for (int i = 1; i <= 6; i++) {
+                    if (i > 1) escritor.write(';');
+                    escritor.write(ExportadorDatos.campoCsv(rs.getString(i)));
+                }
+                escritor.write('\n');
+                filas++;
+            }
+        }
+        escritor.flush();
+        gzip.finish();
+        return filas;
+    }
+
+    /**
+     * Escribe las copias de las imágenes de una partición en un ZIP, sin comprimir (ya son PNG o JPEG).
+     */
+    private static long escribirImagenes(Connection con, String particion, OutputStream salida) throws SQLException, IOException {
+        long filas = 0;
+        ZipOutputStream zip = new ZipOutputStream(salida, StandardCharsets.UTF_8);
+        zip.setLevel(Deflater.NO_COMPRESSION);
+        String sql = "SELECT id, animal_id, fecha_copia, imagen FROM animal_imagen_backup PARTITION (" + particion + ") ORDER BY id";
+        try (Statement st = abrirStreaming(con); ResultSet rs = st.executeQuery(sql)) {
+            while (rs.next()) {
+                Timestamp fecha = rs.getTimestamp("fecha_copia");
+                String nombre = rs.getInt("animal_id") + "/" + rs.getInt("id") + "_" + fecha.toLocalDateTime().format(FORMATO_FECHA);
+                InputStream blob = rs.getBinaryStream("imagen");
+                if (blob == null) {
+                    // Animal sin foto: la entrada vacía deja constancia de la copia
+                    zip.putNextEntry(new ZipEntry(nombre));
+                } else {
+                    try (InputStream imagen = new BufferedInputStream(blob)) {
+                        zip.putNextEntry(new ZipEntry(nombre + "." + ExportadorDatos.extension(imagen)));
+                        imagen.transferTo(zip);
+                    }
+                }
+                zip.closeEntry();
+                filas++;
+            }
+        }
+        zip.finish();
+        return filas;
+    }
+
+    /**
+     * Nombres de las particiones de una tabla, en orden; vacío si no está particionada.
+     */
+    private static List<String> leerParticiones(Connection con, Tabla tabla) throws SQLException {
+        List<String> particiones = new ArrayList<>();
+        String sql = "SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL " +
+                "ORDER BY PARTITION_ORDINAL_POSITION";
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setString(1, tabla.nombre);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    particiones.add(rs.getString(1));
+                }
+            }
+        }
+        return particiones;
+    }
+
+    /**
+     * Mes de la fila más antigua de una tabla, o {@code null} si está vacía.
+     */
+    private static YearMonth primerMes(Connection con, Tabla tabla) throws SQLException {
+        try (Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MIN(" + tabla.columnaFecha + ") FROM " + tabla.nombre)) {
+            Timestamp primera = rs.next() ? rs.getTimestamp(1) : null;
+            return primera == null ? null : YearMonth.from(primera.toLocalDateTime());
+        }
+    }
+
+    /**
+     * Mes de una partición mensual ({@code p202601}), o {@code null} si es otra.
+     */
+    private static YearMonth mes(String particion) {
+        if (particion.length() != 7 || particion.charAt(0) != 'p') {
+            return null;
+        }
+        try {
+            return YearMonth.parse(particion.substring(1), FORMATO_MES);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Crea una sentencia de solo avance que el driver de MySQL lee fila a fila.
+     */
+    private static Statement abrirStreaming(Connection con) throws SQLException {
+        Statement st = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        st.setFetchSize(Integer.MIN_VALUE);
+        return st;
+    }
+
+    private static int retencion(String clave, int porDefecto) {
+        String valor = getPropiedad(clave);
+        return valor != null && !valor.isBlank() ? Integer.parseInt(valor.trim()) : porDefecto;
+    }
+
+    /**
+     * Ejecuta el mantenimiento desde la línea de comandos.
+     *
+     * @param args Opcionalmente, la carpeta fría.
+     */
+    public static void main(String[] args) {
+        String carpeta = args.length > 0 ? args[0] : getPropiedad(PROPIEDAD_CARPETA);
+        Path destino = carpeta != null && !carpeta.isBlank()
+                ? Paths.get(carpeta)
+                : Paths.get(System.getProperty("user.home"), ".petsafe", "archivo");
+
+        long inicio = System.nanoTime();
+        int archivados = new MantenimientoAuditoria(destino).ejecutar();
+        if (archivados < 0) {
+            System.err.println("Error en el mantenimiento de la auditoría");
+            System.exit(1);
+        }
+        System.out.println("Meses archivados: " + archivados + " en " + (System.nanoTime() - inicio) / 1_000_000 + " ms");
+    }
+}
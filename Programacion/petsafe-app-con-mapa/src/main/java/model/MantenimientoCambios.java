@@ -0,0 +1,70 @@
+package model;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Retención del registro de cambios del modo local (tabla {@code cambio}, de
+ * {@code V006__registro_cambios.sql}), que crece con cada escritura en las tablas que copia
+ * {@link ReplicaLocal}.
+ * <p>
+ * Borra los cambios de hace más de {@code petsafe.cambios.retencionDias} días (por defecto
+ * {@value #RETENCION_DIAS}; 0 conserva el registro entero). Una aplicación que lleva más tiempo sin
+ * sincronizar ya no puede saber qué ha cambiado y vuelve a cargar su copia entera.
+ * </p>
+ * <p>
+ * Uso: {@code MantenimientoCambios}. Lo ejecuta {@code ScriptBackup.sh} antes de cada copia de
+ * seguridad, junto con {@link MantenimientoAuditoria}.
+ * </p>
+ */
+public class MantenimientoCambios extends DBUtil {
+
+    /**
+     * Días que se conservan los cambios.
+     */
+    public static final String PROPIEDAD_RETENCION = "cambios.retencionDias";
+
+    private static final int RETENCION_DIAS = 30;
+
+    /**
+     * Filas de cada {@code DELETE}.
+     */
+    private static final int LOTE = 10000;
+
+    /**
+     * Borra los cambios que superan la retención.
+     *
+     * @return El número de cambios borrados, o -1 si ocurre un error.
+     */
+    public long ejecutar() {
+        String valor = getPropiedad(PROPIEDAD_RETENCION);
+        int dias = valor != null && !valor.isBlank() ? Integer.parseInt(valor.trim()) : RETENCION_DIAS;
+        if (dias <= 0) {
+            return 0;
+        }
+        leerDelPrincipal(true);
+        try {
+            return new CambioModel().deleteCambiosAnteriores(LocalDateTime.now().minusDays(dias), LOTE);
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        } finally {
+            leerDelPrincipal(false);
+        }
+    }
+
+    /**
+     * Ejecuta el mantenimiento desde la línea de comandos.
+     *
+     * @param args No se usan.
+     */
+    public static void main(String[] args) {
+        long inicio = System.nanoTime();
+        long borrados = new MantenimientoCambios().ejecutar();
+        if (borrados < 0) {
+            System.err.println("Error en el mantenimiento del registro de cambios");
+            System.exit(1);
+        }
+        System.out.println("Cambios borrados: " + borrados + " en " + (System.nanoTime() - inicio) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,58 @@
+package model;
+
+/**
+ * Datos de un marcador del mapa: un reporte, un local, un veterinario o una protectora.
+ * <p>
+ * Es lo único que necesita el mapa para pintar el marcador y su popup, y se lee de la tabla
+ * {@code marcador_mapa} con {@link MarcadorMapaModel}, sin tocar las imágenes ni los datos del
+ * usuario. La foto del popup no viaja en el marcador: {@link #urlImagen(int)} devuelve la URL con
+ * la que {@link ServidorImagenes} la lee cuando el usuario abre el popup.
+ * </p>
+ *
+ * @param categoria Tipo de marcador.
+ * @param id ID del reporte, del negocio o de la protectora.
+ * @param latitud Latitud en grados, o {@link Double#NaN} si todavía no se ha geocodificado.
+ * @param longitud Longitud en grados, o {@link Double#NaN} si todavía no se ha geocodificado.
+ * @param nombre Nombre del negocio o de la protectora, o del usuario que hizo el reporte.
+ * @param descripcion Descripción del negocio, de la protectora o del animal.
+ * @param direccion Dirección postal o ubicación del reporte, para geocodificarla si no hay coordenadas.
+ * @param tipo Tipo del animal en los reportes y tipo de negocio en los locales y veterinarios; 0 en las protectoras.
+ * @param enAdopcion Si el animal del reporte está en adopción.
+ * @param idImagen ID del registro de la foto: el animal en los reportes y el usuario en el resto.
+ */
+public record MarcadorMapa(Categoria categoria, int id, double latitud, double longitud, String nombre,
+                           String descripcion, String direccion, int tipo, boolean enAdopcion, int idImagen) {
+
+    /**
+     * Tipo de marcador.
+     */
+    public enum Categoria {
+        /** Reporte de un animal perdido, encontrado o en adopción. */
+        REPORTE,
+        /** Negocio de tipo veterinario. */
+        VETERINARIO,
+        /** Cualquier otro negocio. */
+        LOCAL,
+        /** Protectora de animales. */
+        PROTECTORA
+    }
+
+    /**
+     * Indica si el marcador tiene coordenadas guardadas.
+     *
+     * @return {@code false} si hay que geocodificar la dirección para situarlo.
+     */
+    public boolean tieneCoordenadas() {
+        return !Double.isNaN(latitud) && !Double.isNaN(longitud);
+    }
+
+    /**
+     * Devuelve la URL de la foto del popup.
+     *
+     * @param tamano Lado mayor en píxeles al que se reduce la imagen, o 0 para no reducirla.
+     * @return La URL de {@link ServidorImagenes}.
+     */
+    public String urlImagen(int tamano) {
+        return ServidorImagenes.url(categoria == Categoria.REPORTE ? ImagenModel.ANIMAL : ImagenModel.USUARIO, idImagen, tamano);
+    }
+}
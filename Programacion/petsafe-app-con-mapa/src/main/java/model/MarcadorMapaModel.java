@@ -0,0 +1,170 @@
+package model;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lectura de los marcadores del mapa de la tabla {@code marcador_mapa}, que los disparadores de
+ * {@code V008__marcador_mapa.sql} mantienen al día con cada escritura en los reportes, sus animales
+ * y usuarios, los negocios y las protectoras.
+ * <p>
+ * La primera lectura carga todos los marcadores visibles con una sola consulta. Las siguientes piden
+ * solo las filas cuya {@code version} (de la secuencia {@code seq_marcador_mapa} del servidor) es
+ * mayor que la última leída y las aplican sobre la copia en memoria, que comparten todas las
+ * instancias: las filas ocultas (bajas y reportes de animales ya encontrados) se quitan y el resto se
+ * añade o se sustituye. Como dos transacciones pueden confirmarse en distinto orden que el de sus
+ * versiones, igual que en el registro de cambios de {@link ReplicaLocal} se vuelven a pedir siempre
+ * las últimas {@value #SOLAPE_VERSIONES} versiones; aplicar dos veces la misma fila no cambia nada.
+ * </p>
+ * <p>
+ * Si la tabla no existe (las migraciones están desactivadas o fallaron), los marcadores se leen con
+ * {@code readMarcadoresMapa()} de {@link ReporteModel}, {@link NegocioModel} y {@link ProtectoraModel}.
+ * </p>
+ */
+public class MarcadorMapaModel extends DBUtil {
+
+    /**
+     * Un cambio de un marcador.
+     *
+     * @param entidad Tabla del registro: {@code reporte}, {@code negocio} o {@code protectora}.
+     * @param marcador Datos del marcador.
+     * @param visible {@code false} si hay que quitarlo del mapa.
+     * @param version Versión del cambio.
+     */
+    private record Cambio(String entidad, MarcadorMapa marcador, boolean visible, long version) {
+    }
+
+    /**
+     * Versiones anteriores a la última leída que se vuelven a pedir.
+     */
+    static final int SOLAPE_VERSIONES = 100;
+
+    /**
+     * Error de MySQL de tabla inexistente.
+     */
+    private static final int ERROR_TABLA_NO_EXISTE = 1146;
+
+    /**
+     * Marcadores visibles leídos hasta ahora, por entidad e ID.
+     */
+    private static final Map<String, MarcadorMapa> MARCADORES = new LinkedHashMap<>();
+
+    /**
+     * Versión más alta leída, o -1 si todavía no se ha hecho la carga completa.
+     */
+    private static long ultimaVersion = -1;
+
+    /**
+     * Devuelve los marcadores visibles, leyendo de la base de datos solo lo que ha cambiado desde la
+     * lectura anterior.
+     *
+     * @return Los marcadores, o {@code null} si ocurre un error.
+     */
+    public ArrayList<MarcadorMapa> readMarcadores() {
+        synchronized (MARCADORES) {
+            try {
+                if (ultimaVersion < 0) {
+                    List<Cambio> todos = leerVisibles();
+                    MARCADORES.clear();
+                    ultimaVersion = 0;
+                    todos.forEach(MarcadorMapaModel::aplicar);
+                } else {
+                    leerDesde(Math.max(0, ultimaVersion - SOLAPE_VERSIONES)).forEach(MarcadorMapaModel::aplicar);
+                }
+                return new ArrayList<>(MARCADORES.values());
+            } catch (SQLException e) {
+                if (e.getErrorCode() == ERROR_TABLA_NO_EXISTE) {
+                    return leerSinTabla();
+                }
+                e.printStackTrace();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Lee todos los marcadores visibles.
+     */
+    private ArrayList<Cambio> leerVisibles() throws SQLException {
+        return leer("SELECT entidad, entidad_id, categoria, latitud, longitud, nombre, descripcion, direccion, " +
+                "tipo, en_adopcion, id_imagen, visible, version FROM marcador_mapa WHERE visible = 1", -1);
+    }
+
+    /**
+     * Lee las filas con una versión mayor que la indicada, con el índice de {@code version}.
+     */
+    private ArrayList<Cambio> leerDesde(long desde) throws SQLException {
+        return leer("SELECT entidad, entidad_id, categoria, latitud, longitud, nombre, descripcion, direccion, " +
+                "tipo, en_adopcion, id_imagen, visible, version FROM marcador_mapa " +
+                "WHERE version > ? ORDER BY version", desde);
+    }
+
+    /**
+     * Lee filas de la tabla de marcadores.
+     *
+     * @param sql La consulta, con un parámetro de versión como mucho.
+     * @param desde Valor del parámetro, o -1 si la consulta no lo tiene.
+     */
+    private ArrayList<Cambio> leer(String sql, long desde) throws SQLException {
+        ArrayList<Cambio> cambios = new ArrayList<>();
+        try (PreparedStatement ps = this.getConexionLectura().prepareStatement(sql)) {
+            if (desde >= 0) {
+                ps.setLong(1, desde);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    MarcadorMapa marcador = new MarcadorMapa(
+                            MarcadorMapa.Categoria.valueOf(rs.getString("categoria")),
+                            rs.getInt("entidad_id"),
+                            getCoordenada(rs, "latitud"),
+                            getCoordenada(rs, "longitud"),
+                            rs.getString("nombre"),
+                            rs.getString("descripcion"),
+                            rs.getString("direccion"),
+                            rs.getInt("tipo"),
+                            rs.getBoolean("en_adopcion"),
+                            rs.getInt("id_imagen"));
+                    cambios.add(new Cambio(rs.getString("entidad"), marcador, rs.getBoolean("visible"),
+                            rs.getLong("version")));
+                }
+            }
+        } finally {
+            this.cerrarConexion();
+        }
+        return cambios;
+    }
+
+    /**
+     * Aplica un cambio a la copia en memoria.
+     */
+    private static void aplicar(Cambio cambio) {
+        String clave = cambio.entidad() + ":" + cambio.marcador().id();
+        if (cambio.visible()) {
+            MARCADORES.put(clave, cambio.marcador());
+        } else {
+            MARCADORES.remove(clave);
+        }
+        ultimaVersion = Math.max(ultimaVersion, cambio.version());
+    }
+
+    /**
+     * Lee los marcadores de sus tablas de origen, como antes de existir {@code marcador_mapa}.
+     */
+    private static ArrayList<MarcadorMapa> leerSinTabla() {
+        List<MarcadorMapa> reportes = new ReporteModel().readMarcadoresMapa();
+        List<MarcadorMapa> negocios = new NegocioModel().readMarcadoresMapa();
+        List<MarcadorMapa> protectoras = new ProtectoraModel().readMarcadoresMapa();
+        if (reportes == null || negocios == null || protectoras == null) {
+            return null;
+        }
+        ArrayList<MarcadorMapa> marcadores = new ArrayList<>(reportes);
+        marcadores.addAll(negocios);
+        marcadores.addAll(protectoras);
+        return marcadores;
+    }
+}
@@ -0,0 +1,424 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Aplica los cambios de esquema pendientes, para que la base de datos esté al día con la versión de
+ * la aplicación sin tener que ejecutar scripts a mano.
+ * <p>
+ * Cada migración es un script SQL en {@code /db/migraciones} con nombre {@code V<versión>__<descripción>.sql},
+ * y se aplican en el orden de {@link #MIGRACIONES}. Las ya aplicadas se anotan en la tabla
+ * {@code schema_migraciones} junto con el SHA-256 de su contenido: si un script ya aplicado cambia,
+ * no se aplica nada más y se avisa, porque las migraciones publicadas no se deben modificar
+ * (los cambios van en una migración nueva).
+ * </p>
+ * <p>
+ * Los scripts pueden cambiar el delimitador con {@code DELIMITER}, como en el cliente de MySQL.
+ * Los errores de "ya existe" (tabla, columna o índice) se ignoran en las sentencias que crean un solo
+ * objeto, para poder adoptar bases de datos a las que se aplicaron a mano estos mismos scripts.
+ * Un {@code ALTER TABLE} de varias cláusulas que falla por eso se repite cláusula a cláusula, para
+ * no perder las que todavía faltaban.
+ * </p>
+ * <p>
+ * Aplicarlas es un paso del despliegue, con una cuenta que pueda cambiar el esquema:
+ * {@code mvn -Pmigraciones verify}, o desde la línea de comandos {@code Migraciones [--medir]}; con
+ * {@code --medir} se cronometran las consultas que aprovechan los índices antes y después de aplicar
+ * las migraciones. La aplicación no las aplica: al arrancar solo comprueba con
+ * {@link #comprobarVersion()} que no falta ninguna y, si falta alguna, avisa y se cierra.
+ * </p>
+ */
+public class Migraciones extends DBUtil {
+
+    /**
+     * Scripts de migración, en orden de aplicación. Una vez publicados no se modifican.
+     */
+    static final String[] MIGRACIONES = {
+            "V001__indices_rendimiento.sql",
+            "V002__coordenadas.sql",
+            "V003__emparejamiento.sql",
+            "V004__hash_imagen.sql",
+            "V005__suscripciones.sql",
+            "V006__registro_cambios.sql",
+            "V007__auditoria_particionada.sql",
+            "V008__marcador_mapa.sql",
+            "V009__idempotencia_y_retencion_cambios.sql",
+            "V010__suscripciones_por_zona.sql",
+            "V011__marcador_mapa_por_clave.sql"
+    };
+
+    /**
+     * Errores de MySQL que indican que el objeto ya existe: tabla (1050), columna (1060),
+     * índice (1061), clave primaria (1068), procedimiento (1304) y disparador (1359).
+     */
+    private static final int[] ERRORES_YA_EXISTE = {1050, 1060, 1061, 1068, 1304, 1359};
+
+    /**
+     * Inicio de un {@code ALTER TABLE}, hasta el nombre de la tabla, y sus cláusulas.
+     */
+    private static final Pattern ALTER_TABLE = Pattern.compile("(?is)^(ALTER\\s+(?:IGNORE\\s+)?TABLE\\s+\\S+)\\s+(.*)$");
+
+    /**
+     * Error de MySQL de tabla inexistente.
+     */
+    private static final int ERROR_NO_EXISTE_TABLA = 1146;
+
+    /**
+     * Veces que se repite cada consulta al medir.
+     */
+    private static final int REPETICIONES_MEDIDA = 21;
+
+    /**
+     * Consultas que se miden con {@code --medir}: nombre y SQL, con valores fijos que existan en una
+     * base de datos de prueba.
+     */
+    private static final String[][] CONSULTAS_MEDIDAS = {
+            {"login por email", "SELECT id, nombreUser, contraseña, email, telefonoContacto FROM Usuario WHERE email = 'usuario1@email.com' LIMIT 1"},
+            {"citas de un usuario y día", "SELECT Id, Id_Usuario, Fecha, Hora, Nombre_Animal, Motivo FROM Citas WHERE Id_Usuario = 1 AND Fecha = CURDATE()"},
+            {"animal por descripción y tipo", "SELECT id FROM animal WHERE descripcion = 'Golden Retriever joven y amigable' AND tipo = 1"},
+            {"negocios de un tipo", "SELECT idNegocio, nombreNegocio FROM Negocio WHERE tipoNegocio_id = 1 ORDER BY idNegocio"},
+            {"auditoría de un animal", "SELECT id, operacion, fecha_hora FROM auditoriaanimal WHERE animal_id = 1 ORDER BY fecha_hora DESC, id DESC LIMIT 50"}
+    };
+
+    /**
+     * Comprueba que la base de datos tiene aplicadas todas las migraciones de esta versión de la
+     * aplicación. Solo lee {@code schema_migraciones}, sin cambiar nada ni esperar a ningún bloqueo,
+     * así que sirve con la cuenta de los usuarios.
+     *
+     * @return Los nombres de las migraciones que faltan, en orden; vacía si está al día.
+     * @throws SQLException Si no se puede conectar o leer la tabla.
+     */
+    public List<String> comprobarVersion() throws SQLException {
+        List<String> pendientes = new ArrayList<>(List.of(MIGRACIONES));
+        // Sin CacheConsultas: otra instancia puede haber migrado mientras tanto
+        leerDelPrincipal(true);
+        try (Statement st = abrirConexion().createStatement();
+             ResultSet rs = st.executeQuery("SELECT version FROM schema_migraciones")) {
+            while (rs.next()) {
+                int version = rs.getInt("version");
+                pendientes.removeIf(nombre -> getVersion(nombre) == version);
+            }
+        } catch (SQLException e) {
+            if (e.getErrorCode() != ERROR_NO_EXISTE_TABLA) {
+                throw e;
+            }
+        } finally {
+            leerDelPrincipal(false);
+            this.cerrarConexion();
+        }
+        return pendientes;
+    }
+
+    /**
+     * Aplica las migraciones pendientes.
+     *
+     * @return El número de migraciones aplicadas, o -1 si alguna falló o si una ya aplicada ha cambiado.
+     */
+    public int aplicar() {
+        int aplicadas = 0;
+
+        try {
+            Connection con = this.getConexion();
+            if (con == null) {
+                return -1;
+            }
+            // Si se lanzan dos despliegues a la vez, el segundo espera a que el primero termine.
+            // El bloqueo se libera al cerrar la conexión.
+            try (Statement st = con.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT GET_LOCK('petsafe_migraciones', 300)")) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    System.err.println("No se pudo obtener el bloqueo de las migraciones");
+                    return -1;
+                }
+            }
+            try (Statement st = con.createStatement()) {
+                st.execute("CREATE TABLE IF NOT EXISTS schema_migraciones (" +
+                        "version INT NOT NULL PRIMARY KEY, " +
+                        "nombre VARCHAR(200) NOT NULL, " +
+                        "checksum CHAR(64) NOT NULL, " +
+                        "aplicada DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                        "duracion_ms INT NOT NULL)");
+            }
+
+            Map<Integer, String> checksums = new HashMap<>();
+            try (Statement st = con.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT version, checksum FROM schema_migraciones")) {
+                while (rs.next()) {
+                    checksums.put(rs.getInt("version"), rs.getString("checksum"));
+                }
+            }
+
+            for (String nombre : MIGRACIONES) {
+                int version = getVersion(nombre);
+                String script = leerScript(nombre);
+                String checksum = sha256(script);
+
+                String anterior = checksums.get(version);
+                if (anterior != null) {
+                    if (!anterior.equals(checksum)) {
+                        System.err.println("La migración " + nombre + " ha cambiado desde que se aplicó; no se aplican las siguientes");
+                        return -1;
+                    }
+                    continue;
+                }
+
+                long inicio = System.nanoTime();
+                for (String sentencia : separarSentencias(script)) {
+                    ejecutar(con, nombre, sentencia);
+                }
+                long ms = (System.nanoTime() - inicio) / 1_000_000;
+
+                try (PreparedStatement ps = con.prepareStatement(
+                        "INSERT INTO schema_migraciones (version, nombre, checksum, duracion_ms) VALUES (?, ?, ?, ?)")) {
+                    ps.setInt(1, version);
+                    ps.setString(2, nombre);
+                    ps.setString(3, checksum);
+                    ps.setLong(4, ms);
+                    ps.executeUpdate();
+                }
+                System.out.println("Migración aplicada: " + nombre + " (" + ms + " ms)");
+                aplicadas++;
+            }
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+            return -1;
+        } finally {
+            this.cerrarConexion();
+        }
+        return aplicadas;
+    }
+
+    /**
+     * Ejecuta una sentencia de una migración. Si falla porque el objeto ya existe, el error se ignora
+     * cuando la sentencia crea un solo objeto; si es un {@code ALTER TABLE} de varias cláusulas, se
+     * ejecutan una a una con el mismo criterio.
+     */
+    private static void ejecutar(Connection con, String nombre, String sentencia) throws SQLException {
+        try (Statement st = con.createStatement()) {
+            st.execute(sentencia);
+        } catch (SQLException e) {
+            if (!esYaExiste(e)) {
+                throw e;
+            }
+            List<String> clausulas = separarClausulas(sentencia);
+            if (clausulas.size() > 1) {
+                for (String clausula : clausulas) {
+                    ejecutar(con, nombre, clausula);
+                }
+            } else if (creaUnObjeto(sentencia)) {
+                System.out.println("Migración " + nombre + ": ya existía (" + e.getMessage() + ")");
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    private static boolean esYaExiste(SQLException e) {
+        for (int codigo : ERRORES_YA_EXISTE) {
+            if (e.getErrorCode() == codigo) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indica si una sentencia crea un solo objeto: un {@code CREATE} o un {@code ALTER TABLE} con una
+     * única cláusula {@code ADD}.
+     */
+    static boolean creaUnObjeto(String sentencia) {
+        String mayusculas = sentencia.stripLeading().toUpperCase(Locale.ROOT);
+        if (mayusculas.startsWith("CREATE ")) {
+            return true;
+        }
+        Matcher m = ALTER_TABLE.matcher(sentencia.strip());
+        return m.matches() && separarClausulas(sentencia).size() == 1
+                && m.group(2).toUpperCase(Locale.ROOT).startsWith("ADD ");
+    }
+
+    /**
+     * Separa un {@code ALTER TABLE} en una sentencia por cláusula ({@code ALTER TABLE t ADD a, ADD b}
+     * da {@code ALTER TABLE t ADD a} y {@code ALTER TABLE t ADD b}). Las comas entre paréntesis o
+     * comillas no separan cláusulas.
+     *
+     * @param sentencia La sentencia.
+     * @return Las sentencias de cada cláusula, o la propia sentencia si no es un {@code ALTER TABLE}.
+     */
+    static List<String> separarClausulas(String sentencia) {
+        Matcher m = ALTER_TABLE.matcher(sentencia.strip());
+        if (!m.matches()) {
+            return List.of(sentencia);
+        }
+        List<String> res = new ArrayList<>();
+        String clausulas = m.group(2);
+        int profundidad = 0;
+        char comilla = 0;
+        int inicio = 0;
+        for (int i = 0; i < clausulas.length(); i++) {
+            char c = clausulas.charAt(i);
+            if (comilla != 0) {
+                if (c == comilla) {
+                    comilla = 0;
+                }
+            } else if (c == '\'' || c == '"' || c == '`') {
+                comilla = c;
+            } else if (c == '(') {
+                profundidad++;
+            } else if (c == ')') {
+                profundidad--;
+            } else if (c == ',' && profundidad == 0) {
+                res.add(m.group(1) + " " + clausulas.substring(inicio, i).strip());
+                inicio = i + 1;
+            }
+        }
+        res.add(m.group(1) + " " + clausulas.substring(inicio).strip());
+        return res;
+    }
+
+    /**
+     * Separa un script en sentencias. Las líneas de comentario ({@code --}) se descartan y una
+     * sentencia termina en la línea que acaba con el delimitador actual ({@code ;} salvo que se
+     * cambie con {@code DELIMITER}).
+     *
+     * @param script El contenido del script.
+     * @return Las sentencias, sin el delimitador final.
+     */
+    static List<String> separarSentencias(String script) {
+        List<String> res = new ArrayList<>();
+        String delimitador = ";";
+        StringBuilder actual = new StringBuilder();
+
+        for (String linea : script.split("\r?\n")) {
+            String limpia = linea.trim();
+            if (actual.length() == 0 && (limpia.isEmpty() || limpia.startsWith("--"))) {
+                continue;
+            }
+            if (limpia.toUpperCase().startsWith("DELIMITER ")) {
+                delimitador = limpia.substring("DELIMITER ".length()).trim();
+                continue;
+            }
+            if (limpia.startsWith("--")) {
+                continue;
+            }
+            if (limpia.endsWith(delimitador)) {
+                actual.append(linea, 0, linea.lastIndexOf(delimitador));
+                String sentencia = actual.toString().trim();
+                if (!sentencia.isEmpty()) {
+                    res.add(sentencia);
+                }
+                actual.setLength(0);
+            } else {
+                actual.append(linea).append('\n');
+            }
+        }
+        if (!actual.toString().trim().isEmpty()) {
+            res.add(actual.toString().trim());
+        }
+        return res;
+    }
+
+    /**
+     * Número de versión de una migración a partir de su nombre ({@code V012__algo.sql} es la 12).
+     */
+    static int getVersion(String nombre) {
+        return Integer.parseInt(nombre.substring(1, nombre.indexOf("__")));
+    }
+
+    private static String leerScript(String nombre) throws IOException {
+        try (InputStream is = Migraciones.class.getResourceAsStream("/db/migraciones/" + nombre)) {
+            if (is == null) {
+                throw new IOException("No se encuentra la migración " + nombre);
+            }
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String sha256(String texto) {
+        try {
+            // Se normalizan los saltos de línea para que el checksum no dependa del sistema operativo
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest(texto.replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Cronometra las consultas que aprovechan los índices de {@code V001__indices_rendimiento.sql}.
+     * Cada consulta se repite varias veces y se muestra la mediana, en microsegundos. Se leen del
+     * principal y sin {@link CacheConsultas}, para medir la consulta y no la copia en memoria.
+     *
+     * @return Los microsegundos de cada consulta, en el orden de {@link #CONSULTAS_MEDIDAS}.
+     */
+    long[] medirConsultas() {
+        long[] res = new long[CONSULTAS_MEDIDAS.length];
+        leerDelPrincipal(true);
+        try {
+            Connection con = this.getConexion();
+            for (int i = 0; i < CONSULTAS_MEDIDAS.length; i++) {
+                long[] tiempos = new long[REPETICIONES_MEDIDA];
+                try (PreparedStatement ps = con.prepareStatement(CONSULTAS_MEDIDAS[i][1])) {
+                    for (int r = 0; r < REPETICIONES_MEDIDA; r++) {
+                        long inicio = System.nanoTime();
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                // se recorre el resultado para medir también la transferencia
+                            }
+                        }
+                        tiempos[r] = (System.nanoTime() - inicio) / 1_000;
+                    }
+                }
+                Arrays.sort(tiempos);
+                res[i] = tiempos[REPETICIONES_MEDIDA / 2];
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            leerDelPrincipal(false);
+            this.cerrarConexion();
+        }
+        return res;
+    }
+
+    /**
+     * Aplica las migraciones pendientes desde la línea de comandos.
+     *
+     * @param args {@code --medir} para cronometrar las consultas antes y después.
+     */
+    public static void main(String[] args) {
+        boolean medir = args.length > 0 && args[0].equals("--medir");
+        long[] antes = medir ? new Migraciones().medirConsultas() : null;
+
+        int aplicadas = new Migraciones().aplicar();
+        System.out.println(aplicadas >= 0 ? "Migraciones aplicadas: " + aplicadas : "Error al aplicar las migraciones");
+        if (aplicadas < 0) {
+            System.exit(1);
+        }
+
+        if (medir) {
+            long[] despues = new Migraciones().medirConsultas();
+            System.out.printf("%-32s %12s %12s%n", "Consulta", "Antes (µs)", "Después (µs)");
+            for (int i = 0; i < CONSULTAS_MEDIDAS.length; i++) {
+                System.out.printf("%-32s %12d %12d%n", CONSULTAS_MEDIDAS[i][0], antes[i], despues[i]);
+            }
+        }
+    }
+}
@@ -6,7 +6,12 @@ import java.io.*;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Clase modelo para interactuar con la tabla 'negocio' en la base de datos.
@@ -14,8 +19,15 @@ import java.util.ArrayList;
  * Hereda funcionalidades de conexión a base de datos de DBUtil.
  */
 public class NegocioModel extends DBUtil{
+
+  /**
+  * ID del tipo de negocio de las clínicas veterinarias, que tienen su propio listado.
+  */
+  public static final int TIPO_VETERINARIA = 1;
   /**
   * Inserta un nuevo registro de negocio en la base de datos.
+  * El negocio se guarda sin coordenadas; la dirección se geocodifica después en segundo plano para guardarlas
+  * y añadir el negocio a la búsqueda de servicios cercanos.
   * @param negocio El objeto Negocio a insertar.
   * @return true si la inserción fue exitosa, false en caso contrario.
   * @throws FileNotFoundException Si el archivo de la foto no se encuentra.
@@ -33,8 +45,8 @@ public class NegocioModel extends DBUtil{
     int usuario_id = negocio.getId(); // Asume que Negocio hereda el ID de Usuario
 
     try {
-      String sql = "INSERT INTO Negocio (nombreNegocio, direccion, descripcion, fotos, puntuacion, tipoNegocio_id, Usuario_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
-      PreparedStatement ps = this.getConexion().prepareStatement(sql);
+      String sql = "INSERT INTO Negocio (nombreNegocio, direccion, descripcion, fotos, puntuacion, tipoNegocio_id, Usuario_id, latitud, longitud) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+      PreparedStatement ps = this.getConexion().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
 
       ps.setString(1, nombreNegocio);
       ps.setString(2, direccion);
@@ -43,10 +55,18 @@ public class NegocioModel extends DBUtil{
       ps.setDouble(5, puntuacion);
       ps.setInt(6, tipoNegocio_id);
       ps.setInt(7, usuario_id);
+      setCoordenadas(ps, 8, null);
 
       int filasAfectadas = ps.executeUpdate();
-      if (filasAfectadas > 0)
+      if (filasAfectadas > 0) {
         res = true;
+        ResultSet claves = ps.getGeneratedKeys();
+        if (claves.next()) {
+          negocio.setIdNegocio(claves.getInt(1));
+          ServiciosCercanos.geocodificar(servicioCercano(negocio, null));
+          BuscadorTexto.registrarCambio(elementoBuscable(negocio), descripcion);
+        }
+      }
 
     } catch (SQLException e) {
       e.printStackTrace();
@@ -86,7 +106,7 @@ public class NegocioModel extends DBUtil{
           "INNER JOIN Usuario u ON n.Usuario_id = u.id " +
           "ORDER BY n.idNegocio ASC";
 
-      PreparedStatement ps = this.getConexion().prepareStatement(sql);
+      PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
       ResultSet rs = ps.executeQuery();
 
       while (rs.next()) {
@@ -179,6 +199,119 @@ public class NegocioModel extends DBUtil{
     }
   }
 
+  /**
+  * Lee una página de negocios para los listados, paginando por clave: devuelve los siguientes
+  * {@code limite} negocios con ID mayor que {@code despuesDe}, ordenados por ID. Cada página cuesta
+  * lo mismo sea cual sea su posición, a diferencia de {@code OFFSET}, y solo se leen las columnas
+  * de la tabla (la ficha del negocio carga el resto con {@link #getNegocioById(int)}).
+  * @param despuesDe ID del último negocio de la página anterior, o 0 para la primera página.
+  * @param limite Número máximo de negocios de la página.
+  * @param idTipo Tipo de negocio por el que se filtra.
+  * @param excluirTipo {@code true} para devolver los negocios de cualquier tipo salvo {@code idTipo}.
+  * @return Las filas de la página (menos de {@code limite} si es la última), o null si ocurre un error.
+  */
+  public ArrayList<FilaListado> readPaginaNegocios(int despuesDe, int limite, int idTipo, boolean excluirTipo) {
+    String sql = excluirTipo
+        ? "SELECT n.idNegocio, n.nombreNegocio, n.direccion, u.email " +
+          "FROM negocio n INNER JOIN usuario u ON n.Usuario_id = u.id " +
+          "WHERE n.idNegocio > ? AND n.tipoNegocio_id <> ? ORDER BY n.idNegocio LIMIT ?"
+        : "SELECT n.idNegocio, n.nombreNegocio, n.direccion, u.email " +
+          "FROM negocio n INNER JOIN usuario u ON n.Usuario_id = u.id " +
+          "WHERE n.idNegocio > ? AND n.tipoNegocio_id = ? ORDER BY n.idNegocio LIMIT ?";
+    try {
+      PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
+      ps.setInt(1, despuesDe);
+      ps.setInt(2, idTipo);
+      ps.setInt(3, limite);
+      return leerListado(ps);
+    } catch (SQLException e) {
+      e.printStackTrace();
+      return null;
+    } finally {
+      this.cerrarConexion();
+    }
+  }
+
+  /**
+  * Lee los negocios con los IDs indicados, con los mismos datos que {@link #readPaginaNegocios}.
+  * Se usa para mostrar los resultados de la búsqueda por cercanía sin cargar el listado completo.
+  * @param ids Los IDs de los negocios.
+  * @return Las filas de los negocios encontrados, en orden de ID, o null si ocurre un error.
+  */
+  public ArrayList<FilaListado> readNegociosPorIds(Collection<Integer> ids) {
+    if (ids.isEmpty()) {
+      return new ArrayList<>();
+    }
+    String sql = "SELECT n.idNegocio, n.nombreNegocio, n.direccion, u.email " +
+        "FROM negocio n INNER JOIN usuario u ON n.Usuario_id = u.id " +
+        "WHERE n.idNegocio IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ") ORDER BY n.idNegocio";
+    try {
+      PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
+      int i = 1;
+      for (int id : ids) {
+        ps.setInt(i++, id);
+      }
+      return leerListado(ps);
+    } catch (SQLException e) {
+      e.printStackTrace();
+      return null;
+    } finally {
+      this.cerrarConexion();
+    }
+  }
+
+  /**
+  * Ejecuta una consulta de listado y construye sus filas.
+  */
+  private static ArrayList<FilaListado> leerListado(PreparedStatement ps) throws SQLException {
+    ArrayList<FilaListado> filas = new ArrayList<>();
+    try (ResultSet rs = ps.executeQuery()) {
+      while (rs.next()) {
+        filas.add(new FilaListado(rs.getInt("idNegocio"), rs.getString("nombreNegocio"),
+            rs.getString("direccion"), rs.getString("email")));
+      }
+    }
+    return filas;
+  }
+
+  /**
+  * Lee los marcadores del mapa de todos los negocios, veterinarios y locales. Solo lee las columnas
+  * del marcador, sin imágenes ni datos del usuario: la foto del popup se pide por el ID del usuario
+  * ({@link MarcadorMapa#urlImagen(int)}) cuando se abre.
+  * @return Los marcadores, en orden de ID, o null si ocurre un error.
+  */
+  public ArrayList<MarcadorMapa> readMarcadoresMapa() {
+    ArrayList<MarcadorMapa> marcadores = new ArrayList<>();
+    try {
+      String sql = "SELECT idNegocio, nombreNegocio, descripcion, direccion, tipoNegocio_id, Usuario_id, latitud, longitud " +
+          "FROM Negocio ORDER BY idNegocio";
+      PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
+      try (ResultSet rs = ps.executeQuery()) {
+        while (rs.next()) {
+          int tipo = rs.getInt("tipoNegocio_id");
+          marcadores.add(new MarcadorMapa(
+              tipo == TIPO_VETERINARIA ? MarcadorMapa.Categoria.VETERINARIO : MarcadorMapa.Categoria.LOCAL,
+              rs.getInt("idNegocio"),
+              getCoordenada(rs, "latitud"),
+              getCoordenada(rs, "longitud"),
+              rs.getString("nombreNegocio"),
+              rs.getString("descripcion"),
+              rs.getString("direccion"),
+              tipo,
+              false,
+              rs.getInt("Usuario_id")
+          ));
+        }
+      }
+      return marcadores;
+    } catch (SQLException e) {
+      e.printStackTrace();
+      return null;
+    } finally {
+      this.cerrarConexion();
+    }
+  }
+
   /**
   * Recupera un registro de negocio de la base de datos por su ID específico de negocio.
   * Construye un objeto Negocio a partir de los datos recuperados, incluyendo la imagen.
@@ -293,6 +426,8 @@ public class NegocioModel extends DBUtil{
 
   /**
   * Actualiza un registro de negocio existente en la base de datos.
+  * Si cambia la dirección se borran las coordenadas guardadas. En ambos casos la dirección se vuelve a geocodificar
+  * en segundo plano y el negocio vuelve a la búsqueda de servicios cercanos cuando termina.
   * @param negocio El objeto Negocio con los datos actualizados.
   * @return El número de filas afectadas por la operación de actualización.
   * @throws FileNotFoundException Si el archivo de la foto no se encuentra.
@@ -303,28 +438,39 @@ public class NegocioModel extends DBUtil{
     FileInputStream fis = new FileInputStream(negocio.getFoto());
 
     try {
+      // MySQL asigna las columnas de izquierda a derecha: las coordenadas se comparan con la dirección anterior
       String sql = "UPDATE Negocio SET " +
-          "nombreNegocio = ?, " +   // 1
-          "direccion = ?, " +     // 2
-          "descripcion = ?, " +    // 3
-          "fotos = ?, " +       // 4
-          "puntuacion = ?, " +    // 5
-          "tipoNegocio_id = ?, " +  // 6
-          "Usuario_id = ? " +     // 7
-          "WHERE idNegocio = ?";       // 8
+          "latitud = IF(direccion <=> ?, latitud, NULL), " +   // 1
+          "longitud = IF(direccion <=> ?, longitud, NULL), " + // 2
+          "nombreNegocio = ?, " +   // 3
+          "direccion = ?, " +     // 4
+          "descripcion = ?, " +    // 5
+          "fotos = ?, " +       // 6
+          "puntuacion = ?, " +    // 7
+          "tipoNegocio_id = ?, " +  // 8
+          "Usuario_id = ? " +     // 9
+          "WHERE idNegocio = ?";       // 10
 
       PreparedStatement ps = this.getConexion().prepareStatement(sql);
 
-      ps.setString(1, negocio.getNombre()); // POSIBLE ERROR: Parece que debería usar getNombreNegocio() en lugar de getNombre()
+      ps.setString(1, negocio.getDireccion());
       ps.setString(2, negocio.getDireccion());
-      ps.setString(3, negocio.getDescripcion());
-      ps.setBinaryStream(4,fis, (int) negocio.getFoto().length());
-      ps.setDouble(5, negocio.getPuntuacion());
-      ps.setInt(6, negocio.getTipo().getId());
-      ps.setInt(7, negocio.getId());    // este es el ID del usuario heredado
-      ps.setInt(8, negocio.getIdNegocio());    // este es el ID del negocio (clave primaria de la tabla)
+      ps.setString(3, negocio.getNombre()); // POSIBLE ERROR: Parece que debería usar getNombreNegocio() en lugar de getNombre()
+      ps.setString(4, negocio.getDireccion());
+      ps.setString(5, negocio.getDescripcion());
+      ps.setBinaryStream(6,fis, (int) negocio.getFoto().length());
+      ps.setDouble(7, negocio.getPuntuacion());
+      ps.setInt(8, negocio.getTipo().getId());
+      ps.setInt(9, negocio.getId());    // este es el ID del usuario heredado
+      ps.setInt(10, negocio.getIdNegocio());    // este es el ID del negocio (clave primaria de la tabla)
 
       res = ps.executeUpdate();
+      if (res > 0) {
+        ServiciosCercanos.registrarCambio(servicioCercano(negocio, null));
+        ServiciosCercanos.geocodificar(servicioCercano(negocio, null));
+        BuscadorTexto.registrarCambio(elementoBuscable(negocio), negocio.getDescripcion());
+        ServidorImagenes.registrarCambio(ImagenModel.NEGOCIO, negocio.getIdNegocio());
+      }
     } catch (SQLException e) {
       e.printStackTrace();
     } finally {
@@ -353,14 +499,18 @@ public class NegocioModel extends DBUtil{
     boolean res = false;
 
     try {
-      String sql = "DELETE FROM Negocio WHERE id = ?"; // POSIBLE ERROR: El campo de la clave primaria debería ser idNegocio, no id.
+      String sql = "DELETE FROM Negocio WHERE idNegocio = ?";
       PreparedStatement ps = this.getConexion().prepareStatement(sql);
 
       ps.setInt(1, idNegocio);
 
       int filasAfectadas = ps.executeUpdate();
-      if (filasAfectadas > 0)
+      if (filasAfectadas > 0) {
         res = true;
+        ServiciosCercanos.registrarBaja(new ServicioCercano(ServicioCercano.Categoria.LOCAL, idNegocio, null, null, Double.NaN, Double.NaN));
+        BuscadorTexto.registrarBaja(new ElementoBuscable(ElementoBuscable.Categoria.LOCAL, idNegocio, null));
+        ServidorImagenes.registrarCambio(ImagenModel.NEGOCIO, idNegocio);
+      }
 
     } catch (SQLException e) {
       e.printStackTrace();
@@ -495,6 +645,140 @@ public class NegocioModel extends DBUtil{
     }
   }
 
+  /**
+  * Recupera los datos mínimos de todos los negocios para el índice de servicios cercanos.
+  * No lee las imágenes ni los datos del usuario, así que es mucho más ligera que {@link #readNegocios()}.
+  * En el modo local se leen de {@link ReplicaLocal}.
+  * @return Una lista de servicios (con coordenadas {@code NaN} si el negocio no está geocodificado), o null si ocurre un error.
+  */
+  public ArrayList<ServicioCercano> readServiciosCercanos() {
+    ReplicaLocal replica = ReplicaLocal.getActiva();
+    if (replica != null) {
+      return replica.readServiciosNegocios();
+    }
+    return readServiciosCercanos(null);
+  }
+
+  /**
+  * Recupera los datos mínimos de algunos negocios, o de todos, para el índice de servicios cercanos.
+  * @param ids Los IDs de los negocios, o null para leerlos todos.
+  * @return Una lista de servicios, o null si ocurre un error.
+  */
+  ArrayList<ServicioCercano> readServiciosCercanos(Collection<Integer> ids) {
+    ArrayList<ServicioCercano> servicios = new ArrayList<>();
+    if (ids != null && ids.isEmpty()) {
+      return servicios;
+    }
+
+    try {
+      String sql = ids == null
+          ? "SELECT idNegocio, nombreNegocio, direccion, tipoNegocio_id, latitud, longitud FROM Negocio"
+          : "SELECT idNegocio, nombreNegocio, direccion, tipoNegocio_id, latitud, longitud FROM Negocio " +
+              "WHERE idNegocio IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+      PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
+      if (ids != null) {
+        int i = 1;
+        for (int id : ids) {
+          ps.setInt(i++, id);
+        }
+      }
+      ResultSet rs = ps.executeQuery();
+
+      while (rs.next()) {
+        servicios.add(new ServicioCercano(
+            ServicioCercano.categoriaNegocio(rs.getInt("tipoNegocio_id")),
+            rs.getInt("idNegocio"),
+            rs.getString("nombreNegocio"),
+            rs.getString("direccion"),
+            getCoordenada(rs, "latitud"),
+            getCoordenada(rs, "longitud")
+        ));
+      }
+      return servicios;
+    } catch (SQLException e) {
+      e.printStackTrace();
+      return null;
+    } finally {
+      // Cerramos conexión
+      this.cerrarConexion();
+    }
+  }
+
+  /**
+  * Recupera el nombre y la descripción de todos los negocios para el buscador de texto.
+  * No lee las imágenes ni los datos del usuario.
+  * @return Cada negocio (con su nombre como título) con su descripción, o null si ocurre un error.
+  */
+  public Map<ElementoBuscable, String> readTextosBusqueda() {
+    Map<ElementoBuscable, String> textos = new LinkedHashMap<>();
+
+    try {
+      String sql = "SELECT idNegocio, nombreNegocio, descripcion, tipoNegocio_id FROM Negocio";
+      PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
+      ResultSet rs = ps.executeQuery();
+
+      while (rs.next()) {
+        textos.put(new ElementoBuscable(
+            ElementoBuscable.categoriaNegocio(rs.getInt("tipoNegocio_id")),
+            rs.getInt("idNegocio"),
+            rs.getString("nombreNegocio")
+        ), rs.getString("descripcion"));
+      }
+      return textos;
+    } catch (SQLException e) {
+      e.printStackTrace();
+      return null;
+    } finally {
+      // Cerramos conexión
+      this.cerrarConexion();
+    }
+  }
+
+  /**
+  * Guarda las coordenadas de un negocio sin modificar el resto de sus datos.
+  * @param idNegocio El ID específico del negocio.
+  * @param latitud La latitud en grados.
+  * @param longitud La longitud en grados.
+  * @return true si se actualizó el negocio, false en caso contrario.
+  */
+  public boolean updateCoordenadas(int idNegocio, double latitud, double longitud) {
+    boolean res = false;
+
+    try {
+      String sql = "UPDATE Negocio SET latitud = ?, longitud = ? WHERE idNegocio = ?";
+      PreparedStatement ps = this.getConexion().prepareStatement(sql);
+      ps.setDouble(1, latitud);
+      ps.setDouble(2, longitud);
+      ps.setInt(3, idNegocio);
+
+      res = ps.executeUpdate() > 0;
+    } catch (SQLException e) {
+      e.printStackTrace();
+    } finally {
+      this.cerrarConexion();
+    }
+    return res;
+  }
+
+  /**
+  * Construye el punto del índice de servicios cercanos correspondiente a un negocio.
+  */
+  private static ServicioCercano servicioCercano(Negocio negocio, double[] coordenadas) {
+    int tipo = negocio.getTipo() != null ? negocio.getTipo().getId() : 0;
+    return new ServicioCercano(ServicioCercano.categoriaNegocio(tipo), negocio.getIdNegocio(),
+        negocio.getNombreNegocio(), negocio.getDireccion(),
+        coordenadas != null ? coordenadas[0] : Double.NaN,
+        coordenadas != null ? coordenadas[1] : Double.NaN);
+  }
+
+  /**
+  * Construye el elemento del buscador de texto correspondiente a un negocio.
+  */
+  private static ElementoBuscable elementoBuscable(Negocio negocio) {
+    int tipo = negocio.getTipo() != null ? negocio.getTipo().getId() : 0;
+    return new ElementoBuscable(ElementoBuscable.categoriaNegocio(tipo), negocio.getIdNegocio(), negocio.getNombreNegocio());
+  }
+
 //  public Image getNegocioImageFromId(int idNegocio) {
 //    Image img = null;
 //
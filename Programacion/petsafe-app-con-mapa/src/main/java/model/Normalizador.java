@@ -0,0 +1,101 @@
+package model;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Utilidades para normalizar textos en español antes de compararlos o indexarlos:
+ * elimina tildes y diéresis, pasa a minúsculas y reduce los separadores a un único espacio.
+ */
+public final class Normalizador {
+
+    /**
+     * Marcas diacríticas que quedan separadas tras la descomposición NFD.
+     */
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+
+    /**
+     * Cualquier secuencia de caracteres que no sean letras o dígitos.
+     */
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    /**
+     * Primer carácter que no cubre la tabla {@link #LATINOS} (fin de los bloques latinos de Unicode).
+     */
+    private static final int LIMITE_LATINOS = 0x250;
+
+    /**
+     * Forma normalizada de cada carácter latino, calculada con la normalización general: la letra
+     * sin tilde y en minúsculas, o una cadena vacía si es un separador.
+     */
+    private static final String[] LATINOS = new String[LIMITE_LATINOS];
+
+    static {
+        for (char c = 0; c < LIMITE_LATINOS; c++) {
+            LATINOS[c] = normalizarCompleto(String.valueOf(c));
+        }
+    }
+
+    private Normalizador() {
+    }
+
+    /**
+     * Normaliza un texto: sin tildes, en minúsculas y con las palabras separadas por un único espacio.
+     * Por ejemplo, {@code "Avda. Blasco Ibáñez, 12"} se convierte en {@code "avda blasco ibanez 12"}.
+     *
+     * @param texto El texto a normalizar. Puede ser {@code null}.
+     * @return El texto normalizado, o una cadena vacía si {@code texto} es {@code null}.
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String rapido = normalizarLatino(texto);
+        if (rapido != null) {
+            return rapido;
+        }
+        return normalizarCompleto(texto);
+    }
+
+    /**
+     * Normalización general: descompone el texto, quita las marcas diacríticas, lo pasa a
+     * minúsculas y cambia los separadores por espacios.
+     */
+    private static String normalizarCompleto(String texto) {
+        String sinTildes = DIACRITICOS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARADORES.matcher(sinTildes.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    /**
+     * Camino rápido de {@link #normalizar(String)} para los textos que solo tienen caracteres
+     * latinos (menores que {@value #LIMITE_LATINOS}), que son casi todos: recorre el texto una vez
+     * y sustituye cada carácter por su forma normalizada de {@link #LATINOS}, sin descomponer el
+     * texto ni usar expresiones regulares. Los buscadores normalizan miles de textos al cargarse.
+     *
+     * @param texto El texto.
+     * @return El texto normalizado, o {@code null} si contiene algún carácter no latino (por
+     *         ejemplo, una marca diacrítica suelta) y hay que usar la normalización general.
+     */
+    private static String normalizarLatino(String texto) {
+        StringBuilder res = new StringBuilder(texto.length());
+        boolean separador = false;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c >= LIMITE_LATINOS) {
+                return null;
+            }
+            String normalizado = LATINOS[c];
+            if (normalizado.isEmpty()) {
+                separador = true;
+                continue;
+            }
+            if (separador && res.length() > 0) {
+                res.append(' ');
+            }
+            separador = false;
+            res.append(normalizado);
+        }
+        return res.toString();
+    }
+}
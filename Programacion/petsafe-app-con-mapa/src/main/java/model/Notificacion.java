@@ -0,0 +1,80 @@
+package model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Aviso para un usuario, generado al crearse un reporte dentro de una de sus zonas vigiladas.
+ */
+public class Notificacion {
+
+    /**
+     * ID de la notificación en la base de datos (0 si todavía no está guardada).
+     */
+    private int id;
+
+    /**
+     * ID del usuario al que va dirigida.
+     */
+    private final int idUsuario;
+
+    /**
+     * ID del reporte que la ha generado.
+     */
+    private final int idReporte;
+
+    /**
+     * Texto que se muestra al usuario.
+     */
+    private final String mensaje;
+
+    /**
+     * Momento en que se generó.
+     */
+    private final LocalDateTime fecha;
+
+    /**
+     * Constructor con todos los datos de la notificación.
+     *
+     * @param id ID de la notificación (0 si todavía no está guardada).
+     * @param idUsuario ID del usuario al que va dirigida.
+     * @param idReporte ID del reporte que la ha generado.
+     * @param mensaje Texto que se muestra al usuario.
+     * @param fecha Momento en que se generó.
+     */
+    public Notificacion(int id, int idUsuario, int idReporte, String mensaje, LocalDateTime fecha) {
+        this.id = id;
+        this.idUsuario = idUsuario;
+        this.idReporte = idReporte;
+        this.mensaje = mensaje;
+        this.fecha = fecha;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getIdUsuario() {
+        return idUsuario;
+    }
+
+    public int getIdReporte() {
+        return idReporte;
+    }
+
+    public String getMensaje() {
+        return mensaje;
+    }
+
+    public LocalDateTime getFecha() {
+        return fecha;
+    }
+
+    @Override
+    public String toString() {
+        return mensaje;
+    }
+}
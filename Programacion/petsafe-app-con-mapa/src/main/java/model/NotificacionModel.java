@@ -0,0 +1,100 @@
+package model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clase modelo para gestionar las notificaciones de los usuarios en la base de datos (tabla {@code notificacion}).
+ Las notificaciones se guardan en la misma transacción que el reporte que las genera (ver
+ * {@link ServicioNotificaciones}) y la aplicación las consulta periódicamente mientras el usuario
+ * tiene la sesión abierta.
+ * Extiende {@link DBUtil} para utilizar sus funcionalidades de conexión a la base de datos.
+ */
+public class NotificacionModel extends DBUtil {
+
+    /**
+     * Guarda varias notificaciones con una sola ejecución por lotes, usando la conexión indicada sin
+     * confirmar la transacción ni cerrar la conexión (de eso se encarga quien llama).
+     *
+     * @param con La conexión, con la transacción abierta.
+     * @param notificaciones Las notificaciones a guardar.
+     * @throws SQLException Si ocurre un error al insertar.
+     */
+    void insertarNotificaciones(Connection con, List<Notificacion> notificaciones) throws SQLException {
+        if (notificaciones.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO notificacion (usuario, reporte, mensaje, fecha) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            for (Notificacion n : notificaciones) {
+                ps.setInt(1, n.getIdUsuario());
+                ps.setInt(2, n.getIdReporte());
+                ps.setString(3, n.getMensaje());
+                ps.setTimestamp(4, Timestamp.valueOf(n.getFecha()));
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Lee las notificaciones que un usuario todavía no ha leído.
+     *
+     * @param idUsuario El ID del usuario.
+     * @return Un {@link ArrayList} con las notificaciones de más antigua a más reciente,
+     *         o {@code null} si ocurre un error.
+     */
+    public ArrayList<Notificacion> readNotificacionesNoLeidas(int idUsuario) {
+        ArrayList<Notificacion> notificaciones = new ArrayList<Notificacion>();
+
+        try {
+            String sql = "SELECT id, reporte, mensaje, fecha FROM notificacion WHERE usuario = ? AND leida = 0 ORDER BY fecha, id";
+            PreparedStatement ps = this.getConexion().prepareStatement(sql);
+            ps.setInt(1, idUsuario);
+            ResultSet rs = ps.executeQuery();
+
+            while (rs.next()) {
+                notificaciones.add(new Notificacion(rs.getInt("id"), idUsuario, rs.getInt("reporte"),
+                        rs.getString("mensaje"), rs.getTimestamp("fecha").toLocalDateTime()));
+            }
+
+            return notificaciones;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            this.cerrarConexion();
+        }
+    }
+
+    /**
+     * Marca como leídas las notificaciones de un usuario hasta la indicada, para no marcar las que
+     * se hayan guardado después de leerlas.
+     *
+     * @param idUsuario El ID del usuario.
+     * @param hastaId El ID de la última notificación mostrada.
+     * @return {@code true} si la operación se ha realizado, {@code false} si ocurre un error.
+     */
+    public boolean marcarLeidas(int idUsuario, int hastaId) {
+        boolean res = false;
+
+        try {
+            String sql = "UPDATE notificacion SET leida = 1 WHERE usuario = ? AND leida = 0 AND id <= ?";
+            PreparedStatement ps = this.getConexion().prepareStatement(sql);
+            ps.setInt(1, idUsuario);
+            ps.setInt(2, hastaId);
+            ps.executeUpdate();
+            res = true;
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            this.cerrarConexion();
+        }
+        return res;
+    }
+}
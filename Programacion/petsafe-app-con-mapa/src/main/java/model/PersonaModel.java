@@ -249,7 +249,7 @@ public class PersonaModel extends DBUtil {
     public Persona getPersonaFromIdUsuario(int idUsuarioIntroducido) {
         Persona persona = null;
         String sql = "SELECT p.idPersona, p.Usuario_id, p.fechaNacimiento, p.nombre, p.apellidos, " +
-                "u.nombreUser, u.contraseña, u.email, u.telefonoContacto, u.logoImagen FROM Persona p, Usuario u WHERE p.Usuario_id = ?;";
+                "u.nombreUser, u.contraseña, u.email, u.telefonoContacto, u.logoImagen FROM Persona p, Usuario u WHERE p.Usuario_id = ? AND u.id = p.Usuario_id;";
 
         try {
             PreparedStatement ps = this.getConexion().prepareStatement(sql);
@@ -8,7 +8,12 @@ import java.io.*;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Clase modelo para interactuar con la tabla 'Protectoras' en la base de datos.
@@ -16,30 +21,40 @@ import java.util.ArrayList;
  * Hereda funcionalidades de conexión a base de datos de DBUtil.
  */
 public class ProtectoraModel extends DBUtil {
+
   /**
   * Inserta un nuevo registro de protectora en la base de datos.
+  * La protectora se guarda sin coordenadas; la dirección se geocodifica después en segundo plano para guardarlas
+  * y añadir la protectora a la búsqueda de servicios cercanos.
   * @param protectora El objeto Protectora a insertar.
   * @return true si la inserción fue exitosa, false en caso contrario.
   * @throws FileNotFoundException Si el archivo de la foto no se encuentra.
   */
   public boolean createProtectora(Protectora protectora) throws FileNotFoundException {
     boolean res = false;
-    String sql = "INSERT INTO protectoras (nombreProtectora, direccion, descripcion, fotos, Usuario_id) " +
-        "VALUES (?, ?, ?, ?, ?)";
+    String sql = "INSERT INTO protectoras (nombreProtectora, direccion, descripcion, fotos, Usuario_id, latitud, longitud) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?)";
     FileInputStream fis = new FileInputStream(protectora.getFoto()); // Usa getFoto() heredado de Usuario
 
     try {
-      PreparedStatement ps = this.getConexion().prepareStatement(sql);
+      PreparedStatement ps = this.getConexion().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
 
       ps.setString(1, protectora.getNombre()); // POSIBLE ERROR: Parece que debería usar getNombreProtectora() en lugar de getNombre()
       ps.setString(2, protectora.getDireccion());
       ps.setString(3, protectora.getDescripcion());
       ps.setBinaryStream(4,fis, (int) protectora.getFoto().length()); // Usa getFoto() heredado de Usuario
       ps.setInt(5, protectora.getId()); // Usa getId() heredado de Usuario
+      setCoordenadas(ps, 6, null);
 
       int filasAfectadas = ps.executeUpdate();
       if (filasAfectadas > 0) {
         res = true;
+        ResultSet claves = ps.getGeneratedKeys();
+        if (claves.next()) {
+          protectora.setIdProtectora(claves.getInt(1));
+          ServiciosCercanos.geocodificar(servicioCercano(protectora, null));
+          BuscadorTexto.registrarCambio(elementoBuscable(protectora), protectora.getDescripcion());
+        }
       }
 
     } catch (SQLException e) {
@@ -63,7 +78,7 @@ public class ProtectoraModel extends DBUtil {
         "p.Usuario_id, u.nombreUser, u.contraseña, u.email, u.telefonoContacto, u.logoImagen FROM protectoras p INNER join Usuario u ON p.Usuario_id = u.id;";
 
     try {
-      PreparedStatement ps = this.getConexion().prepareStatement(sql);
+      PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
       ResultSet rs = ps.executeQuery();
 
       while (rs.next()) {
@@ -128,6 +143,111 @@ public class ProtectoraModel extends DBUtil {
     return protectoras;
   }
 
+  /**
+  * Lee una página de protectoras para los listados, paginando por clave: devuelve las siguientes
+  * {@code limite} protectoras con ID mayor que {@code despuesDe}, ordenadas por ID. Cada página
+  * cuesta lo mismo sea cual sea su posición y solo se leen las columnas de la tabla (la ficha de la
+  * protectora carga el resto con {@link #getProtectoraById(int)}).
+  * @param despuesDe ID de la última protectora de la página anterior, o 0 para la primera página.
+  * @param limite Número máximo de protectoras de la página.
+  * @return Las filas de la página (menos de {@code limite} si es la última), o null si ocurre un error.
+  */
+  public ArrayList<FilaListado> readPaginaProtectoras(int despuesDe, int limite) {
+    String sql = "SELECT p.idProtectora, p.nombreProtectora, p.direccion, u.email " +
+        "FROM protectoras p INNER JOIN usuario u ON p.Usuario_id = u.id " +
+        "WHERE p.idProtectora > ? ORDER BY p.idProtectora LIMIT ?";
+    try {
+      PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
+      ps.setInt(1, despuesDe);
+      ps.setInt(2, limite);
+      return leerListado(ps);
+    } catch (SQLException e) {
+      e.printStackTrace();
+      return null;
+    } finally {
+      this.cerrarConexion();
+    }
+  }
+
+  /**
+  * Lee las protectoras con los IDs indicados, con los mismos datos que {@link #readPaginaProtectoras}.
+  * Se usa para mostrar los resultados de la búsqueda por cercanía sin cargar el listado completo.
+  * @param ids Los IDs de las protectoras.
+  * @return Las filas de las protectoras encontradas, en orden de ID, o null si ocurre un error.
+  */
+  public ArrayList<FilaListado> readProtectorasPorIds(Collection<Integer> ids) {
+    if (ids.isEmpty()) {
+      return new ArrayList<>();
+    }
+    String sql = "SELECT p.idProtectora, p.nombreProtectora, p.direccion, u.email " +
+        "FROM protectoras p INNER JOIN usuario u ON p.Usuario_id = u.id " +
+        "WHERE p.idProtectora IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ") ORDER BY p.idProtectora";
+    try {
+      PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
+      int i = 1;
+      for (int id : ids) {
+        ps.setInt(i++, id);
+      }
+      return leerListado(ps);
+    } catch (SQLException e) {
+      e.printStackTrace();
+      return null;
+    } finally {
+      this.cerrarConexion();
+    }
+  }
+
+  /**
+  * Ejecuta una consulta de listado y construye sus filas.
+  */
+  private static ArrayList<FilaListado> leerListado(PreparedStatement ps) throws SQLException {
+    ArrayList<FilaListado> filas = new ArrayList<>();
+    try (ResultSet rs = ps.executeQuery()) {
+      while (rs.next()) {
+        filas.add(new FilaListado(rs.getInt("idProtectora"), rs.getString("nombreProtectora"),
+            rs.getString("direccion"), rs.getString("email")));
+      }
+    }
+    return filas;
+  }
+
+  /**
+  * Lee los marcadores del mapa de todas las protectoras. Solo lee las columnas del marcador, sin
+  * imágenes ni datos del usuario: la foto del popup se pide por el ID del usuario
+  * ({@link MarcadorMapa#urlImagen(int)}) cuando se abre.
+  * @return Los marcadores, en orden de ID, o null si ocurre un error.
+  */
+  public ArrayList<MarcadorMapa> readMarcadoresMapa() {
+    ArrayList<MarcadorMapa> marcadores = new ArrayList<>();
+    try {
+      String sql = "SELECT idProtectora, nombreProtectora, descripcion, direccion, Usuario_id, latitud, longitud " +
+          "FROM protectoras ORDER BY idProtectora";
+      PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
+      try (ResultSet rs = ps.executeQuery()) {
+        while (rs.next()) {
+          marcadores.add(new MarcadorMapa(
+              MarcadorMapa.Categoria.PROTECTORA,
+              rs.getInt("idProtectora"),
+              getCoordenada(rs, "latitud"),
+              getCoordenada(rs, "longitud"),
+              rs.getString("nombreProtectora"),
+              rs.getString("descripcion"),
+              rs.getString("direccion"),
+              0,
+              false,
+              rs.getInt("Usuario_id")
+          ));
+        }
+      }
+      return marcadores;
+    } catch (SQLException e) {
+      e.printStackTrace();
+      return null;
+    } finally {
+      this.cerrarConexion();
+    }
+  }
+
     /**
     * Recupera un registro de protectora de la base de datos por su ID específico de protectora.
     * Construye un objeto Protectora a partir de los datos recuperados, guardando las imágenes en archivos temporales.
@@ -206,26 +326,38 @@ public class ProtectoraModel extends DBUtil {
 
   /**
   * Actualiza un registro de protectora existente en la base de datos.
+  * Si cambia la dirección se borran las coordenadas guardadas. En ambos casos la dirección se vuelve a geocodificar
+  * en segundo plano y la protectora vuelve a la búsqueda de servicios cercanos cuando termina.
   * @param protectora El objeto Protectora con los datos actualizados.
   * @return El número de filas afectadas por la operación de actualización.
   * @throws FileNotFoundException Si el archivo de la foto no se encuentra.
   */
   public int updateProtectora(Protectora protectora) throws FileNotFoundException {
     int res = 0;
-    String sql = "UPDATE protectoras SET nombreProtectora = ?, direccion = ?, descripcion = ?, fotos = ?, Usuario_id = ? " +
-        "WHERE idProtectora = ?";
+    // MySQL asigna las columnas de izquierda a derecha: las coordenadas se comparan con la dirección anterior
+    String sql = "UPDATE protectoras SET latitud = IF(direccion <=> ?, latitud, NULL), " +
+        "longitud = IF(direccion <=> ?, longitud, NULL), nombreProtectora = ?, direccion = ?, descripcion = ?, " +
+        "fotos = ?, Usuario_id = ? WHERE idProtectora = ?";
     FileInputStream fis = new FileInputStream(protectora.getFoto()); // Usa getFoto() heredado de Usuario
     try {
       PreparedStatement ps = this.getConexion().prepareStatement(sql);
 
-      ps.setString(1, protectora.getNombre()); // POSIBLE ERROR: Parece que debería usar getNombreProtectora() en lugar de getNombre()
+      ps.setString(1, protectora.getDireccion());
       ps.setString(2, protectora.getDireccion());
-      ps.setString(3, protectora.getDescripcion());
-      ps.setBinaryStream(4,fis, (int) protectora.getFoto().length()); // Usa getFoto() heredado de Usuario
-      ps.setInt(5, protectora.getId()); // Usa getId() heredado de Usuario
-      ps.setInt(6, protectora.getIdProtectora()); // Usa el ID específico de la protectora
+      ps.setString(3, protectora.getNombre()); // POSIBLE ERROR: Parece que debería usar getNombreProtectora() en lugar de getNombre()
+      ps.setString(4, protectora.getDireccion());
+      ps.setString(5, protectora.getDescripcion());
+      ps.setBinaryStream(6,fis, (int) protectora.getFoto().length()); // Usa getFoto() heredado de Usuario
+      ps.setInt(7, protectora.getId()); // Usa getId() heredado de Usuario
+      ps.setInt(8, protectora.getIdProtectora()); // Usa el ID específico de la protectora
 
       res = ps.executeUpdate();
+      if (res > 0) {
+        ServiciosCercanos.registrarCambio(servicioCercano(protectora, null));
+        ServiciosCercanos.geocodificar(servicioCercano(protectora, null));
+        BuscadorTexto.registrarCambio(elementoBuscable(protectora), protectora.getDescripcion());
+        ServidorImagenes.registrarCambio(ImagenModel.PROTECTORA, protectora.getIdProtectora());
+      }
 
     } catch (SQLException e) {
       System.err.println("Error al actualizar Protectora: " + e.getMessage());
@@ -262,6 +394,9 @@ public class ProtectoraModel extends DBUtil {
       int filasAfectadas = ps.executeUpdate();
       if (filasAfectadas > 0) {
         res = true;
+        ServiciosCercanos.registrarBaja(new ServicioCercano(ServicioCercano.Categoria.PROTECTORA, idProtectora, null, null, Double.NaN, Double.NaN));
+        BuscadorTexto.registrarBaja(new ElementoBuscable(ElementoBuscable.Categoria.PROTECTORA, idProtectora, null));
+        ServidorImagenes.registrarCambio(ImagenModel.PROTECTORA, idProtectora);
       }
 
     } catch (SQLException e) {
@@ -282,14 +417,13 @@ public class ProtectoraModel extends DBUtil {
   */
   public Protectora getProtectoraFromIdUsuario(int idUsuarioIntroducido) {
     Protectora protectoraRes = null;
-    // Consulta SQL (parece que falta la cláusula WHERE para filtrar por Usuario_id)
     String sql = "SELECT p.idProtectora, p.nombreProtectora, p.descripcion, p.fotos, p.direccion, p.Usuario_id, " +
-        "u.nombreUser, u.contraseña, u.email, u.telefonoContacto, u.logoImagen FROM protectoras p, Usuario u;";
+        "u.nombreUser, u.contraseña, u.email, u.telefonoContacto, u.logoImagen FROM protectoras p, Usuario u " +
+        "WHERE p.Usuario_id = ? AND u.id = p.Usuario_id;";
 
     try {
-            // POSIBLE ERROR: Falta establecer el parámetro idUsuarioIntroducido en el PreparedStatement
       PreparedStatement ps = this.getConexion().prepareStatement(sql);
-//      ps.setInt(?, idUsuarioIntroducido); // Línea que podría faltar para el filtro
+      ps.setInt(1, idUsuarioIntroducido);
 
       ResultSet rs = ps.executeQuery();
 
@@ -360,6 +494,136 @@ public class ProtectoraModel extends DBUtil {
 //  * @param idProtectora El ID de la protectora.
 //  * @return Un objeto Image, o null si no se encuentra o hay un error.
 //  */
+  /**
+  * Recupera los datos mínimos de todas las protectoras para el índice de servicios cercanos.
+  * No lee las imágenes ni los datos del usuario, así que es mucho más ligera que {@link #readProtectoras()}.
+  * En el modo local se leen de {@link ReplicaLocal}.
+  * @return Una lista de servicios (con coordenadas {@code NaN} si la protectora no está geocodificada), o null si ocurre un error.
+  */
+  public ArrayList<ServicioCercano> readServiciosCercanos() {
+    ReplicaLocal replica = ReplicaLocal.getActiva();
+    if (replica != null) {
+      return replica.readServiciosProtectoras();
+    }
+    return readServiciosCercanos(null);
+  }
+
+  /**
+  * Recupera los datos mínimos de algunas protectoras, o de todas, para el índice de servicios cercanos.
+  * @param ids Los IDs de las protectoras, o null para leerlas todas.
+  * @return Una lista de servicios, o null si ocurre un error.
+  */
+  ArrayList<ServicioCercano> readServiciosCercanos(Collection<Integer> ids) {
+    ArrayList<ServicioCercano> servicios = new ArrayList<>();
+    if (ids != null && ids.isEmpty()) {
+      return servicios;
+    }
+    String sql = ids == null
+        ? "SELECT idProtectora, nombreProtectora, direccion, latitud, longitud FROM protectoras"
+        : "SELECT idProtectora, nombreProtectora, direccion, latitud, longitud FROM protectoras " +
+            "WHERE idProtectora IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+
+    try {
+      PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
+      if (ids != null) {
+        int i = 1;
+        for (int id : ids) {
+          ps.setInt(i++, id);
+        }
+      }
+      ResultSet rs = ps.executeQuery();
+
+      while (rs.next()) {
+        servicios.add(new ServicioCercano(
+            ServicioCercano.Categoria.PROTECTORA,
+            rs.getInt("idProtectora"),
+            rs.getString("nombreProtectora"),
+            rs.getString("direccion"),
+            getCoordenada(rs, "latitud"),
+            getCoordenada(rs, "longitud")
+        ));
+      }
+    } catch (SQLException e) {
+      System.err.println("Error al leer Protectoras: " + e.getMessage());
+      e.printStackTrace();
+      return null;
+    } finally {
+      this.cerrarConexion();
+    }
+    return servicios;
+  }
+
+  /**
+  * Recupera el nombre y la descripción de todas las protectoras para el buscador de texto.
+  * No lee las imágenes ni los datos del usuario.
+  * @return Cada protectora (con su nombre como título) con su descripción, o null si ocurre un error.
+  */
+  public Map<ElementoBuscable, String> readTextosBusqueda() {
+    Map<ElementoBuscable, String> textos = new LinkedHashMap<>();
+    String sql = "SELECT idProtectora, nombreProtectora, descripcion FROM protectoras";
+
+    try {
+      PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
+      ResultSet rs = ps.executeQuery();
+
+      while (rs.next()) {
+        textos.put(new ElementoBuscable(ElementoBuscable.Categoria.PROTECTORA,
+            rs.getInt("idProtectora"), rs.getString("nombreProtectora")), rs.getString("descripcion"));
+      }
+    } catch (SQLException e) {
+      System.err.println("Error al leer Protectoras: " + e.getMessage());
+      e.printStackTrace();
+      return null;
+    } finally {
+      this.cerrarConexion();
+    }
+    return textos;
+  }
+
+  /**
+  * Guarda las coordenadas de una protectora sin modificar el resto de sus datos.
+  * @param idProtectora El ID específico de la protectora.
+  * @param latitud La latitud en grados.
+  * @param longitud La longitud en grados.
+  * @return true si se actualizó la protectora, false en caso contrario.
+  */
+  public boolean updateCoordenadas(int idProtectora, double latitud, double longitud) {
+    boolean res = false;
+    String sql = "UPDATE protectoras SET latitud = ?, longitud = ? WHERE idProtectora = ?";
+
+    try {
+      PreparedStatement ps = this.getConexion().prepareStatement(sql);
+      ps.setDouble(1, latitud);
+      ps.setDouble(2, longitud);
+      ps.setInt(3, idProtectora);
+
+      res = ps.executeUpdate() > 0;
+    } catch (SQLException e) {
+      System.err.println("Error al actualizar Protectora: " + e.getMessage());
+      e.printStackTrace();
+    } finally {
+      this.cerrarConexion();
+    }
+    return res;
+  }
+
+  /**
+  * Construye el punto del índice de servicios cercanos correspondiente a una protectora.
+  */
+  private static ServicioCercano servicioCercano(Protectora protectora, double[] coordenadas) {
+    return new ServicioCercano(ServicioCercano.Categoria.PROTECTORA, protectora.getIdProtectora(),
+        protectora.getNombreProtectora(), protectora.getDireccion(),
+        coordenadas != null ? coordenadas[0] : Double.NaN,
+        coordenadas != null ? coordenadas[1] : Double.NaN);
+  }
+
+  /**
+  * Construye el elemento del buscador de texto correspondiente a una protectora.
+  */
+  private static ElementoBuscable elementoBuscable(Protectora protectora) {
+    return new ElementoBuscable(ElementoBuscable.Categoria.PROTECTORA, protectora.getIdProtectora(), protectora.getNombreProtectora());
+  }
+
 //  public Image getProtectoraImageFromId(int idProtectora) {
 //    Image img = null;
 //
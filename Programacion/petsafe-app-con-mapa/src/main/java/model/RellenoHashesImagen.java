@@ -0,0 +1,70 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Proceso que calcula el hash perceptual de las fotos de los animales que todavía no lo tienen
+ * (los registrados antes de existir la columna {@code hash_imagen}).
+ * <p>
+ * Los animales pendientes se reparten en lotes de {@value #TAMANO_LOTE} que procesan varios hilos
+ * en paralelo; cada lote usa su propia conexión y guarda sus hashes con una sola ejecución por lotes.
+ * Decodificar las imágenes es lo más costoso, así que por defecto se usa un hilo por procesador.
+ * </p>
+ * <p>
+ * Uso: {@code RellenoHashesImagen [hilos]}.
+ * </p>
+ */
+public class RellenoHashesImagen {
+
+    /**
+     * Número de animales que procesa cada tarea.
+     */
+    private static final int TAMANO_LOTE = 50;
+
+    /**
+     * Calcula y guarda los hashes pendientes.
+     *
+     * @param hilos Número de hilos que procesan lotes a la vez.
+     * @return El número de animales actualizados.
+     */
+    public static int rellenar(int hilos) {
+        ArrayList<Integer> ids = new AnimalModel().readIdsSinHashImagen();
+        if (ids == null || ids.isEmpty()) {
+            return 0;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, hilos));
+        List<Future<Integer>> tareas = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += TAMANO_LOTE) {
+            List<Integer> lote = ids.subList(i, Math.min(ids.size(), i + TAMANO_LOTE));
+            tareas.add(pool.submit(() -> new AnimalModel().rellenarHashesImagen(lote)));
+        }
+        pool.shutdown();
+
+        int total = 0;
+        for (Future<Integer> tarea : tareas) {
+            try {
+                total += tarea.get();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Ejecuta el proceso desde la línea de comandos.
+     *
+     * @param args Opcionalmente, el número de hilos.
+     */
+    public static void main(String[] args) {
+        int hilos = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        long inicio = System.nanoTime();
+        int total = rellenar(hilos);
+        System.out.println("Hashes calculados: " + total + " en " + (System.nanoTime() - inicio) / 1_000_000 + " ms con " + hilos + " hilos");
+    }
+}
@@ -0,0 +1,1117 @@
+package model;
+
+import com.example.petsafeapp.Animal;
+import com.example.petsafeapp.Cita;
+import com.example.petsafeapp.Reporte;
+import com.example.petsafeapp.Situacion;
+import com.example.petsafeapp.TipoAnimal;
+import com.example.petsafeapp.TipoNegocio;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Modo local: copia en disco de los datos que la aplicación consulta más a menudo, para que las
+ * pantallas no tengan que esperar al servidor en cada clic.
+ * <p>
+ * Se activa con {@code -D}{@value #PROPIEDAD_ACTIVA}{@code =true}. Al iniciar sesión se carga la copia
+ * guardada en {@code ~/.petsafe/local} (o en la carpeta de {@value #PROPIEDAD_CARPETA}) y un hilo en
+ * segundo plano la mantiene al día cada {@value #INTERVALO_POR_DEFECTO} segundos (o los indicados en
+ * {@value #PROPIEDAD_INTERVALO}). La copia incluye los catálogos, los negocios y protectoras del buscador
+ * de servicios cercanos, los reportes de animales perdidos y encontrados del emparejador y las citas
+ * del usuario, y mientras está cargada los modelos leen todo eso de aquí en vez del servidor.
+ * </p>
+ * <p>
+ * La sincronización es incremental: los disparadores de {@code V006__registro_cambios.sql} anotan cada
+ * cambio en la tabla {@code cambio} con una versión creciente, y en cada ciclo solo se vuelven a leer
+ * los registros que han cambiado desde la última versión aplicada. Como dos transacciones pueden
+ * confirmarse en distinto orden que el de sus versiones, se vuelven a pedir siempre las últimas
+ * {@value #SOLAPE_VERSIONES} versiones y se aplican las que todavía no se habían visto. Los cambios
+ * recibidos se pasan también a {@link ServiciosCercanos}; los reportes se guardan para que
+ * {@link EmparejadorReportes} busque coincidencias sin conexión.
+ * </p>
+ * <p>
+ * Las altas, modificaciones y bajas de citas se aplican en la copia y se anotan en una cola de
+ * operaciones pendientes, que se guarda en disco antes de devolver el control: no se pierden aunque
+ * no haya conexión o se cierre la aplicación. El hilo de sincronización las sube en orden. Cada
+ * modificación o baja lleva la versión de la cita sobre la que se hizo, y si en el servidor ha
+ * cambiado desde entonces (porque se modificó desde otro equipo) hay un conflicto: el cambio local
+ * se descarta, se queda el del servidor y el cambio descartado se guarda en una lista que la
+ * aplicación muestra al usuario ({@link #recogerRechazados()}). Las citas creadas en local tienen un ID negativo hasta
+ * que se suben, y una clave (un UUID) que se envía con el alta: si la conexión se corta después de
+ * que el servidor la guarde, al reintentar no se crea dos veces.
+ * </p>
+ * <p>
+ * {@link MantenimientoCambios} borra los cambios más antiguos del registro. Si desde la última
+ * sincronización se ha borrado alguno que no se había aplicado (la aplicación ha estado sin conexión
+ * más tiempo que la retención), la copia se vuelve a cargar entera.
+ * </p>
+ * <p>
+ * El resto de escrituras (usuarios, animales, negocios...) van directamente al servidor, como sin el
+ * modo local, porque llevan imágenes y son poco frecuentes.
+ * </p>
+ */
+public class ReplicaLocal {
+
+    /**
+     * Propiedad del sistema que, con valor {@code true}, activa el modo local.
+     */
+    public static final String PROPIEDAD_ACTIVA = "petsafe.localFirst";
+
+    /**
+     * Propiedad del sistema con los segundos entre sincronizaciones.
+     */
+    public static final String PROPIEDAD_INTERVALO = "petsafe.localFirst.intervalo";
+
+    /**
+     * Segundos entre sincronizaciones, si no se indican otros.
+     */
+    public static final int INTERVALO_POR_DEFECTO = 30;
+
+    /**
+     * Propiedad del sistema con la carpeta en la que se guarda la copia.
+     */
+    public static final String PROPIEDAD_CARPETA = "petsafe.localFirst.carpeta";
+
+    /**
+     * Cambios que se piden al registro en cada consulta.
+     */
+    static final int CAMBIOS_POR_LOTE = 500;
+
+    /**
+     * Versiones anteriores a la última aplicada que se vuelven a pedir en cada ciclo, por si alguna
+     * se confirmó después que otra posterior.
+     */
+    static final int SOLAPE_VERSIONES = 100;
+
+    /**
+     * Primeros bytes de los archivos de la copia y de la cola de pendientes (con la versión del formato).
+     */
+    private static final int MAGIA_COPIA = 0x50534C01;
+    private static final int MAGIA_PENDIENTES = 0x50535002;
+
+    /**
+     * Cola de pendientes anterior a las claves de las altas.
+     */
+    private static final int MAGIA_PENDIENTES_SIN_CLAVE = 0x50535001;
+
+    /**
+     * Tipos de operación sobre una cita.
+     */
+    private static final byte CREAR = 0;
+    private static final byte MODIFICAR = 1;
+    private static final byte BORRAR = 2;
+
+    /**
+     * Operación sobre una cita hecha en local y pendiente de subir.
+     *
+     * @param tipo {@link #CREAR}, {@link #MODIFICAR} o {@link #BORRAR}.
+     * @param cita La cita con sus datos nuevos; no se modifica nunca.
+     * @param version Versión de la cita en el servidor sobre la que se hizo la operación.
+     * @param clave Clave de idempotencia de las altas, generada al crear la cita; {@code null} en
+     *              el resto de operaciones.
+     */
+    private record Operacion(byte tipo, Cita cita, int version, String clave) {
+    }
+
+    /**
+     * Cambio sobre una cita hecho en local que no se ha podido subir y se ha descartado.
+     *
+     * @param operacion "alta", "modificación" o "borrado".
+     * @param cita La cita con los datos del cambio descartado.
+     * @param conflicto {@code true} si la cita se había cambiado o borrado desde otro equipo, y
+     *                  {@code false} si el servidor ha rechazado el cambio.
+     */
+    public record CambioRechazado(String operacion, Cita cita, boolean conflicto) {
+    }
+
+    /**
+     * Copia del usuario que ha iniciado sesión, o {@code null} si el modo local no está activo.
+     */
+    private static volatile ReplicaLocal instancia;
+
+    private final int idUsuario;
+    private final Path archivoCopia;
+    private final Path archivoPendientes;
+    private final long intervaloMs;
+
+    /**
+     * Si la copia tiene datos, leídos de disco o del servidor. Hasta entonces los modelos leen del servidor.
+     */
+    private volatile boolean cargada = false;
+
+    /**
+     * Última versión del registro de cambios aplicada, y las versiones aplicadas dentro de la
+     * ventana de solape.
+     */
+    private long version = 0;
+    private final TreeSet<Long> versionesAplicadas = new TreeSet<>();
+
+    private ArrayList<TipoAnimal> tiposAnimal = new ArrayList<>();
+    private ArrayList<Situacion> situaciones = new ArrayList<>();
+    private ArrayList<TipoNegocio> tiposNegocio = new ArrayList<>();
+    private final Map<Integer, ServicioCercano> negocios = new HashMap<>();
+    private final Map<Integer, ServicioCercano> protectoras = new HashMap<>();
+    private final Map<Integer, Reporte> reportes = new HashMap<>();
+    private final Map<Integer, Cita> citas = new HashMap<>();
+    private final Map<Integer, Integer> versionesCitas = new HashMap<>();
+
+    /**
+     * Operaciones pendientes de subir, en orden.
+     */
+    private final ArrayList<Operacion> pendientes = new ArrayList<>();
+
+    /**
+     * ID que ha asignado el servidor a cada cita creada en local, por su ID temporal, para las
+     * pantallas que todavía tengan la cita con el ID temporal.
+     */
+    private final Map<Integer, Integer> idsAsignados = new HashMap<>();
+
+    /**
+     * Citas que hay que volver a leer del servidor porque se ha descartado un cambio local.
+     */
+    private final Set<Integer> citasPorLeer = new HashSet<>();
+
+    /**
+     * Cambios descartados que todavía no se han mostrado al usuario.
+     */
+    private final ArrayList<CambioRechazado> rechazados = new ArrayList<>();
+
+    private int siguienteIdTemporal = -1;
+
+    /**
+     * Solo se sincroniza desde un hilo a la vez.
+     */
+    private final Object sincronizando = new Object();
+
+    /**
+     * Aviso al hilo de sincronización para que no espere al siguiente ciclo.
+     */
+    private final Object aviso = new Object();
+    private boolean avisado = false;
+    private Thread hilo;
+
+    /**
+     * Crea la copia de un usuario, sin leerla todavía.
+     *
+     * @param idUsuario El ID del usuario.
+     * @param carpeta Carpeta en la que se guardan la copia y la cola de pendientes.
+     * @param intervaloMs Milisegundos entre sincronizaciones.
+     */
+    ReplicaLocal(int idUsuario, Path carpeta, long intervaloMs) {
+        this.idUsuario = idUsuario;
+        this.archivoCopia = carpeta.resolve("copia-" + idUsuario + ".dat");
+        this.archivoPendientes = carpeta.resolve("pendientes-" + idUsuario + ".dat");
+        this.intervaloMs = intervaloMs;
+    }
+
+    /**
+     * Activa el modo local para el usuario que acaba de iniciar sesión, si está habilitado. La copia
+     * se lee de disco y se sincroniza en segundo plano.
+     *
+     * @param idUsuario El ID del usuario.
+     */
+    public static void iniciar(int idUsuario) {
+        if (!Boolean.getBoolean(PROPIEDAD_ACTIVA)) {
+            return;
+        }
+        synchronized (ReplicaLocal.class) {
+            ReplicaLocal actual = instancia;
+            if (actual != null) {
+                if (actual.idUsuario == idUsuario) {
+                    return;
+                }
+                actual.detener();
+            }
+            String carpeta = System.getProperty(PROPIEDAD_CARPETA);
+            ReplicaLocal nueva = new ReplicaLocal(idUsuario,
+                    carpeta != null ? Paths.get(carpeta) : Paths.get(System.getProperty("user.home"), ".petsafe", "local"),
+                    1000L * Integer.getInteger(PROPIEDAD_INTERVALO, INTERVALO_POR_DEFECTO));
+            instancia = nueva;
+            nueva.arrancar();
+        }
+    }
+
+    /**
+     * Devuelve la copia local si el modo local está activo y ya tiene datos.
+     *
+     * @return La copia, o {@code null} si los modelos deben leer del servidor.
+     */
+    static ReplicaLocal getActiva() {
+        ReplicaLocal res = instancia;
+        return res != null && res.cargada ? res : null;
+    }
+
+    /**
+     * El ID del usuario cuyas citas se copian.
+     *
+     * @return El ID del usuario.
+     */
+    public int getIdUsuario() {
+        return idUsuario;
+    }
+
+    /**
+     * Número de operaciones hechas en local que todavía no se han subido al servidor.
+     *
+     * @return Las operaciones pendientes.
+     */
+    public synchronized int getPendientes() {
+        return pendientes.size();
+    }
+
+    /**
+     * Devuelve los cambios hechos en local que se han descartado desde la última llamada, para
+     * mostrárselos al usuario, y los quita de la lista.
+     *
+     * @return Los cambios descartados, en el orden en que se hicieron. Puede estar vacía.
+     */
+    public synchronized List<CambioRechazado> recogerRechazados() {
+        List<CambioRechazado> res = new ArrayList<>(rechazados);
+        rechazados.clear();
+        return res;
+    }
+
+    /**
+     * Devuelve los cambios descartados de la copia del usuario que ha iniciado sesión.
+     *
+     * @return Los cambios descartados desde la última llamada; vacía si el modo local no está activo.
+     * @see #recogerRechazados()
+     */
+    public static List<CambioRechazado> recogerRechazadosActiva() {
+        ReplicaLocal actual = instancia;
+        return actual != null ? actual.recogerRechazados() : new ArrayList<>();
+    }
+
+    private void arrancar() {
+        hilo = new Thread(() -> {
+            cargar();
+            while (!Thread.currentThread().isInterrupted()) {
+                sincronizar();
+                synchronized (aviso) {
+                    try {
+                        if (!avisado) {
+                            aviso.wait(intervaloMs);
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    avisado = false;
+                }
+            }
+        }, "replica-local");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    private void detener() {
+        if (hilo != null) {
+            hilo.interrupt();
+        }
+    }
+
+    /**
+     * Despierta al hilo de sincronización para que suba los cambios sin esperar al siguiente ciclo.
+     */
+    private void avisar() {
+        synchronized (aviso) {
+            avisado = true;
+            aviso.notifyAll();
+        }
+    }
+
+    synchronized ArrayList<TipoAnimal> readTiposAnimal() {
+        return new ArrayList<>(tiposAnimal);
+    }
+
+    synchronized ArrayList<Situacion> readSituaciones() {
+        return new ArrayList<>(situaciones);
+    }
+
+    synchronized ArrayList<TipoNegocio> readTiposNegocio() {
+        return new ArrayList<>(tiposNegocio);
+    }
+
+    synchronized ArrayList<ServicioCercano> readServiciosNegocios() {
+        return new ArrayList<>(negocios.values());
+    }
+
+    synchronized ArrayList<ServicioCercano> readServiciosProtectoras() {
+        return new ArrayList<>(protectoras.values());
+    }
+
+    synchronized ArrayList<Reporte> readReportes() {
+        return new ArrayList<>(reportes.values());
+    }
+
+    /**
+     * Devuelve una copia de las citas del usuario, ordenadas por fecha y hora.
+     *
+     * @param fecha Solo las de esta fecha, o {@code null} para todas.
+     * @return Las citas.
+     */
+    synchronized ArrayList<Cita> readCitas(LocalDate fecha) {
+        ArrayList<Cita> res = new ArrayList<>();
+        for (Cita c : citas.values()) {
+            if (fecha == null || fecha.equals(c.getFecha())) {
+                res.add(copia(c));
+            }
+        }
+        res.sort(Comparator.comparing(Cita::getFecha).thenComparing(Cita::getHora).thenComparingInt(Cita::getIdCita));
+        return res;
+    }
+
+    /**
+     * Crea una cita en la copia local y la deja pendiente de subir.
+     *
+     * @param cita La cita.
+     * @return {@code true} si se ha guardado la operación en disco.
+     */
+    synchronized boolean crearCita(Cita cita) {
+        Cita nueva = copia(cita);
+        nueva.setIdCita(siguienteIdTemporal--);
+        return encolar(new Operacion(CREAR, nueva, 0, UUID.randomUUID().toString()));
+    }
+
+    /**
+     * Modifica una cita en la copia local y deja la modificación pendiente de subir.
+     *
+     * @param cita La cita con sus datos nuevos.
+     * @return 1 si se ha modificado, 0 si la cita no existe o no se pudo guardar la operación.
+     */
+    synchronized int modificarCita(Cita cita) {
+        int id = resolver(cita.getIdCita());
+        if (!citas.containsKey(id)) {
+            return 0;
+        }
+        Cita nueva = copia(cita);
+        nueva.setIdCita(id);
+        return encolar(new Operacion(MODIFICAR, nueva, versionesCitas.getOrDefault(id, 0), null)) ? 1 : 0;
+    }
+
+    /**
+     * Borra una cita de la copia local y deja el borrado pendiente de subir.
+     *
+     * @param cita La cita.
+     * @return {@code true} si se ha borrado.
+     */
+    synchronized boolean borrarCita(Cita cita) {
+        int id = resolver(cita.getIdCita());
+        Cita actual = citas.get(id);
+        if (actual == null) {
+            return false;
+        }
+        return encolar(new Operacion(BORRAR, copia(actual), versionesCitas.getOrDefault(id, 0), null));
+    }
+
+    private boolean encolar(Operacion op) {
+        pendientes.add(op);
+        try {
+            escribirPendientes();
+        } catch (IOException e) {
+            e.printStackTrace();
+            pendientes.remove(pendientes.size() - 1);
+            return false;
+        }
+        aplicarLocal(op);
+        avisar();
+        return true;
+    }
+
+    private void aplicarLocal(Operacion op) {
+        if (op.tipo() == BORRAR) {
+            citas.remove(op.cita().getIdCita());
+        } else {
+            citas.put(op.cita().getIdCita(), copia(op.cita()));
+        }
+    }
+
+    private int resolver(int id) {
+        Integer asignado = idsAsignados.get(id);
+        return asignado != null ? asignado : id;
+    }
+
+    private boolean tienePendientes(int idCita) {
+        for (Operacion op : pendientes) {
+            if (op.cita().getIdCita() == idCita) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sube las operaciones pendientes y trae los cambios del servidor. Si falla la conexión se
+     * deja para el siguiente ciclo.
+     *
+     * @return {@code true} si se ha completado.
+     */
+    public boolean sincronizar() {
+        synchronized (sincronizando) {
+            DBUtil.leerDelPrincipal(true);
+            try {
+                enviarPendientes();
+                boolean cambios = cargada ? traerCambios() : cargarTodo();
+                if (cambios) {
+                    guardar();
+                }
+                return true;
+            } catch (SQLException e) {
+                System.err.println("No se pudo sincronizar la copia local: " + e.getMessage());
+                return false;
+            } finally {
+                DBUtil.leerDelPrincipal(false);
+            }
+        }
+    }
+
+    /**
+     * Sube las operaciones pendientes, en orden, hasta que no quede ninguna o falle la conexión.
+     */
+    private void enviarPendientes() throws SQLException {
+        CitaModel modelo = new CitaModel();
+        while (true) {
+            Operacion op;
+            synchronized (this) {
+                if (pendientes.isEmpty()) {
+                    return;
+                }
+                op = pendientes.get(0);
+            }
+
+            int idServidor = op.cita().getIdCita();
+            int versionNueva = op.version() + 1;
+            boolean aplicada;
+            boolean conflicto = true;
+            try {
+                if (op.tipo() == CREAR) {
+                    // Con la misma clave, un reintento tras un corte devuelve la cita ya creada
+                    CitaModel.CitaSubida subida = modelo.insertCitaSincronizar(op.cita(), op.clave());
+                    idServidor = subida.id();
+                    versionNueva = subida.version();
+                    aplicada = true;
+                } else if (op.tipo() == MODIFICAR) {
+                    aplicada = modelo.updateCitaSincronizar(op.cita(), op.version()) > 0;
+                } else {
+                    aplicada = modelo.deleteCitaSincronizar(op.cita().getIdCita(), op.version()) > 0;
+                }
+            } catch (SQLException e) {
+                if (esFalloDeConexion(e)) {
+                    throw e;
+                }
+                // El servidor rechaza la operación y la rechazará siempre: se descarta
+                e.printStackTrace();
+                aplicada = false;
+                conflicto = false;
+            }
+
+            synchronized (this) {
+                pendientes.remove(0);
+                if (aplicada) {
+                    confirmar(op, idServidor, versionNueva);
+                } else {
+                    descartar(op, conflicto);
+                }
+                try {
+                    escribirPendientes();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Anota en la copia una operación que ya está en el servidor. Las siguientes operaciones sobre
+     * la misma cita se hicieron sobre el resultado de esta, así que pasan a llevar su ID y su versión.
+     */
+    private void confirmar(Operacion op, int idServidor, int versionNueva) {
+        int id = op.cita().getIdCita();
+        if (op.tipo() == CREAR) {
+            idsAsignados.put(id, idServidor);
+            Cita local = citas.remove(id);
+            if (local != null) {
+                local.setIdCita(idServidor);
+                citas.put(idServidor, local);
+            }
+        }
+        if (op.tipo() == BORRAR) {
+            versionesCitas.remove(idServidor);
+        } else {
+            versionesCitas.put(idServidor, versionNueva);
+        }
+        for (int i = 0; i < pendientes.size(); i++) {
+            Operacion siguiente = pendientes.get(i);
+            if (siguiente.cita().getIdCita() == id) {
+                Cita cita = copia(siguiente.cita());
+                cita.setIdCita(idServidor);
+                pendientes.set(i, new Operacion(siguiente.tipo(), cita, versionNueva, siguiente.clave()));
+            }
+        }
+    }
+
+    /**
+     * Descarta una operación en conflicto con el servidor o rechazada por él, junto con las siguientes
+     * sobre la misma cita, y deja la cita pendiente de volver a leer para que se vea la versión del
+     * servidor. La operación se añade a {@link #rechazados} para avisar al usuario.
+     */
+    private void descartar(Operacion op, boolean conflicto) {
+        int id = op.cita().getIdCita();
+        System.err.println((conflicto ? "Conflicto" : "Rechazo") + " al subir la cita " + id + ": se conserva la versión del servidor");
+        String operacion = op.tipo() == CREAR ? "alta" : op.tipo() == MODIFICAR ? "modificación" : "borrado";
+        rechazados.add(new CambioRechazado(operacion, copia(op.cita()), conflicto));
+        pendientes.removeIf(siguiente -> siguiente.cita().getIdCita() == id);
+        if (id < 0) {
+            citas.remove(id);
+        } else {
+            citasPorLeer.add(id);
+        }
+    }
+
+    private static boolean esFalloDeConexion(SQLException e) {
+        return e instanceof SQLRecoverableException || e instanceof SQLTransientException
+                || (e.getSQLState() != null && e.getSQLState().startsWith("08"));
+    }
+
+    /**
+     * Lee del servidor todos los datos de la copia. Se usa la primera vez y si el registro de cambios
+     * se ha vaciado (por ejemplo, al restaurar una copia de seguridad de la base de datos).
+     *
+     * @return {@code true}.
+     */
+    private boolean cargarTodo() throws SQLException {
+        // La versión se lee antes que los datos: lo que cambie mientras tanto se vuelve a aplicar
+        long ultima = new CambioModel().readUltimaVersion();
+        ArrayList<TipoAnimal> leidosTipos = exigir(new TipoAnimalModel().readTipoAnimales(), "los tipos de animal");
+        ArrayList<Situacion> leidasSituaciones = exigir(new SituacionModel().readSituaciones(), "las situaciones");
+        ArrayList<TipoNegocio> leidosTiposNegocio = exigir(new TipoNegocioModel().readTipoNegocio(), "los tipos de negocio");
+        List<ServicioCercano> leidosNegocios = exigir(new NegocioModel().readServiciosCercanos(null), "los negocios");
+        List<ServicioCercano> leidasProtectoras = exigir(new ProtectoraModel().readServiciosCercanos(null), "las protectoras");
+        List<Reporte> leidosReportes = exigir(new ReporteModel().readReportesParaEmparejar(null), "los reportes");
+        Map<Integer, Integer> leidasVersiones = new HashMap<>();
+        ArrayList<Cita> leidasCitas = new CitaModel().readCitasSincronizar(idUsuario, null, leidasVersiones);
+
+        Set<Integer> idsNegocios = new HashSet<>();
+        Set<Integer> idsProtectoras = new HashSet<>();
+        Set<Integer> idsReportes = new HashSet<>();
+        synchronized (this) {
+            idsNegocios.addAll(negocios.keySet());
+            idsProtectoras.addAll(protectoras.keySet());
+            idsReportes.addAll(reportes.keySet());
+            tiposAnimal = leidosTipos;
+            situaciones = leidasSituaciones;
+            tiposNegocio = leidosTiposNegocio;
+            citas.clear();
+            versionesCitas.clear();
+            for (Cita c : leidasCitas) {
+                citas.put(c.getIdCita(), c);
+            }
+            versionesCitas.putAll(leidasVersiones);
+            // Lo que todavía no se ha subido se sigue viendo
+            for (Operacion op : pendientes) {
+                aplicarLocal(op);
+            }
+            version = ultima;
+            versionesAplicadas.clear();
+        }
+        for (ServicioCercano s : leidosNegocios) idsNegocios.add(s.getId());
+        for (ServicioCercano s : leidasProtectoras) idsProtectoras.add(s.getId());
+        for (Reporte r : leidosReportes) idsReportes.add(r.getId());
+        aplicarServicios(negocios, idsNegocios, leidosNegocios);
+        aplicarServicios(protectoras, idsProtectoras, leidasProtectoras);
+        aplicarReportes(idsReportes, leidosReportes);
+
+        cargada = true;
+        Catalogos.invalidar();
+        return true;
+    }
+
+    /**
+     * Trae los cambios posteriores a la última versión aplicada.
+     *
+     * @return {@code true} si ha cambiado algo.
+     */
+    private boolean traerCambios() throws SQLException {
+        boolean hay = releerCitasEnConflicto();
+
+        CambioModel modelo = new CambioModel();
+        long desde;
+        long ultimaAplicada;
+        synchronized (this) {
+            ultimaAplicada = version;
+            desde = Math.max(0, version - SOLAPE_VERSIONES);
+        }
+        boolean primerLote = true;
+        while (true) {
+            ArrayList<CambioModel.Cambio> lote = modelo.readCambios(desde, idUsuario, CAMBIOS_POR_LOTE);
+            // El primer lote incluye al menos la última versión aplicada; si no está, el registro
+            // se ha vaciado y no se puede saber qué ha cambiado. Tampoco si el mantenimiento ha
+            // borrado cambios posteriores a ella que todavía no se habían aplicado.
+            if (primerLote && ultimaAplicada > 0
+                    && (lote.isEmpty() || modelo.readPrimeraVersion() > ultimaAplicada + 1)) {
+                return cargarTodo();
+            }
+            primerLote = false;
+
+            Map<String, Set<Integer>> porTabla = new LinkedHashMap<>();
+            synchronized (this) {
+                for (CambioModel.Cambio c : lote) {
+                    if (!versionesAplicadas.contains(c.version())) {
+                        porTabla.computeIfAbsent(c.tabla(), t -> new LinkedHashSet<>()).add(c.registro());
+                    }
+                }
+            }
+            if (!porTabla.isEmpty()) {
+                aplicar(porTabla);
+                hay = true;
+            }
+            synchronized (this) {
+                for (CambioModel.Cambio c : lote) {
+                    versionesAplicadas.add(c.version());
+                    version = Math.max(version, c.version());
+                }
+                versionesAplicadas.headSet(version - SOLAPE_VERSIONES, true).clear();
+            }
+
+            if (lote.size() < CAMBIOS_POR_LOTE) {
+                return hay;
+            }
+            desde = lote.get(lote.size() - 1).version();
+        }
+    }
+
+    private boolean releerCitasEnConflicto() throws SQLException {
+        Set<Integer> ids;
+        synchronized (this) {
+            if (citasPorLeer.isEmpty()) {
+                return false;
+            }
+            ids = new HashSet<>(citasPorLeer);
+        }
+        aplicarCitas(ids);
+        synchronized (this) {
+            citasPorLeer.removeAll(ids);
+        }
+        return true;
+    }
+
+    /**
+     * Vuelve a leer del servidor los registros que han cambiado.
+     *
+     * @param porTabla Los IDs de los registros cambiados, por tabla.
+     */
+    private void aplicar(Map<String, Set<Integer>> porTabla) throws SQLException {
+        boolean catalogos = false;
+        for (Map.Entry<String, Set<Integer>> cambio : porTabla.entrySet()) {
+            Set<Integer> ids = cambio.getValue();
+            switch (cambio.getKey()) {
+                case CambioModel.CITAS:
+                    aplicarCitas(ids);
+                    break;
+                case CambioModel.NEGOCIO:
+                    aplicarServicios(negocios, ids, exigir(new NegocioModel().readServiciosCercanos(ids), "los negocios"));
+                    break;
+                case CambioModel.PROTECTORAS:
+                    aplicarServicios(protectoras, ids, exigir(new ProtectoraModel().readServiciosCercanos(ids), "las protectoras"));
+                    break;
+                case CambioModel.REPORTE:
+                    aplicarReportes(ids, exigir(new ReporteModel().readReportesParaEmparejar(ids), "los reportes"));
+                    break;
+                case CambioModel.TIPO:
+                case CambioModel.SITUACION:
+                case CambioModel.TIPO_NEGOCIO:
+                    catalogos = true;
+                    break;
+                default:
+                    // Tabla que esta versión de la aplicación no copia
+            }
+        }
+        if (catalogos) {
+            // Son tan pequeños que se leen enteros
+            ArrayList<TipoAnimal> leidosTipos = exigir(new TipoAnimalModel().readTipoAnimales(), "los tipos de animal");
+            ArrayList<Situacion> leidasSituaciones = exigir(new SituacionModel().readSituaciones(), "las situaciones");
+            ArrayList<TipoNegocio> leidosTiposNegocio = exigir(new TipoNegocioModel().readTipoNegocio(), "los tipos de negocio");
+            synchronized (this) {
+                tiposAnimal = leidosTipos;
+                situaciones = leidasSituaciones;
+                tiposNegocio = leidosTiposNegocio;
+            }
+            Catalogos.invalidar();
+        }
+    }
+
+    private void aplicarCitas(Set<Integer> ids) throws SQLException {
+        Map<Integer, Integer> versiones = new HashMap<>();
+        Map<Integer, Cita> leidas = new HashMap<>();
+        for (Cita c : new CitaModel().readCitasSincronizar(idUsuario, ids, versiones)) {
+            leidas.put(c.getIdCita(), c);
+        }
+        synchronized (this) {
+            for (int id : ids) {
+                // Una cita con cambios sin subir se queda como está hasta que se suban
+                if (tienePendientes(id)) {
+                    continue;
+                }
+                Cita cita = leidas.get(id);
+                if (cita != null) {
+                    citas.put(id, cita);
+                    versionesCitas.put(id, versiones.get(id));
+                } else {
+                    citas.remove(id);
+                    versionesCitas.remove(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Aplica los servicios leídos y avisa a {@link ServiciosCercanos}. Los IDs pedidos que no se han
+     * leído se han borrado.
+     */
+    private void aplicarServicios(Map<Integer, ServicioCercano> copia, Set<Integer> ids, List<ServicioCercano> leidos) {
+        Map<Integer, ServicioCercano> porId = new HashMap<>();
+        for (ServicioCercano s : leidos) {
+            porId.put(s.getId(), s);
+        }
+        List<ServicioCercano> cambiados = new ArrayList<>();
+        List<ServicioCercano> borrados = new ArrayList<>();
+        synchronized (this) {
+            for (int id : ids) {
+                ServicioCercano nuevo = porId.get(id);
+                if (nuevo != null) {
+                    copia.put(id, nuevo);
+                    cambiados.add(nuevo);
+                } else {
+                    ServicioCercano anterior = copia.remove(id);
+                    if (anterior != null) {
+                        borrados.add(anterior);
+                    }
+                }
+            }
+        }
+        for (ServicioCercano s : cambiados) {
+            ServiciosCercanos.registrarCambio(s);
+        }
+        for (ServicioCercano s : borrados) {
+            ServiciosCercanos.registrarBaja(s);
+        }
+    }
+
+    /**
+     * Aplica los reportes leídos. Los IDs pedidos que no se han leído se han borrado o ya no son de
+     * un animal perdido o encontrado.
+     */
+    private void aplicarReportes(Set<Integer> ids, List<Reporte> leidos) {
+        Map<Integer, Reporte> porId = new HashMap<>();
+        for (Reporte r : leidos) {
+            porId.put(r.getId(), r);
+        }
+        synchronized (this) {
+            for (int id : ids) {
+                Reporte nuevo = porId.get(id);
+                if (nuevo != null) {
+                    reportes.put(id, nuevo);
+                } else {
+                    reportes.remove(id);
+                }
+            }
+        }
+    }
+
+    /**
+     * Los modelos devuelven {@code null} si no han podido leer; para la sincronización es un fallo
+     * que se reintenta en el siguiente ciclo, como uno de conexión.
+     */
+    private static <T> T exigir(T leido, String que) throws SQLException {
+        if (leido == null) {
+            throw new SQLException("No se pudieron leer " + que, "08000");
+        }
+        return leido;
+    }
+
+    /**
+     * Lee la copia y la cola de pendientes guardadas. Si la copia no existe o no se puede leer, se
+     * queda vacía y se cargará entera del servidor.
+     */
+    void cargar() {
+        boolean leida = false;
+        synchronized (this) {
+            if (Files.exists(archivoCopia)) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivoCopia)))) {
+                    leerCopia(in);
+                    leida = true;
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    vaciar();
+                }
+            }
+            if (Files.exists(archivoPendientes)) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivoPendientes)))) {
+                    leerPendientes(in);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                for (Operacion op : pendientes) {
+                    aplicarLocal(op);
+                    siguienteIdTemporal = Math.min(siguienteIdTemporal, op.cita().getIdCita() - 1);
+                }
+            }
+        }
+        if (leida) {
+            cargada = true;
+            Catalogos.invalidar();
+        }
+    }
+
+    private void vaciar() {
+        version = 0;
+        tiposAnimal = new ArrayList<>();
+        situaciones = new ArrayList<>();
+        tiposNegocio = new ArrayList<>();
+        negocios.clear();
+        protectoras.clear();
+        reportes.clear();
+        citas.clear();
+        versionesCitas.clear();
+    }
+
+    /**
+     * Guarda la copia en disco. Se escribe en un archivo temporal que después sustituye al anterior,
+     * para que un cierre a medias no deje una copia corrupta.
+     */
+    private synchronized void guardar() {
+        try {
+            escribir(archivoCopia, out -> {
+                out.writeInt(MAGIA_COPIA);
+                out.writeInt(idUsuario);
+                out.writeLong(version);
+                out.writeInt(siguienteIdTemporal);
+
+                out.writeInt(tiposAnimal.size());
+                for (TipoAnimal t : tiposAnimal) {
+                    out.writeInt(t.getId());
+                    escribirTexto(out, t.getNombre());
+                }
+                out.writeInt(situaciones.size());
+                for (Situacion s : situaciones) {
+                    out.writeInt(s.getId());
+                    escribirTexto(out, s.getNombre());
+                }
+                out.writeInt(tiposNegocio.size());
+                for (TipoNegocio t : tiposNegocio) {
+                    out.writeInt(t.getId());
+                    escribirTexto(out, t.getNombre());
+                }
+                escribirServicios(out, negocios);
+                escribirServicios(out, protectoras);
+
+                out.writeInt(reportes.size());
+                for (Reporte r : reportes.values()) {
+                    Animal a = r.getAnimal();
+                    out.writeInt(r.getId());
+                    escribirTexto(out, r.getUbicacion());
+                    out.writeDouble(r.getLatitud());
+                    out.writeDouble(r.getLongitud());
+                    out.writeInt(a.getId());
+                    escribirTexto(out, a.getDescripción());
+                    out.writeLong(a.getDate() != null ? a.getDate().toEpochDay() : Long.MIN_VALUE);
+                    out.writeInt(a.getTipo().getId());
+                    out.writeInt(a.getSituacion().getId());
+                }
+
+                // Solo las citas tal como están en el servidor: las pendientes se aplican al leer la cola
+                out.writeInt(versionesCitas.size());
+                for (Map.Entry<Integer, Integer> v : versionesCitas.entrySet()) {
+                    out.writeInt(v.getKey());
+                    out.writeInt(v.getValue());
+                }
+                out.writeInt(citas.size());
+                for (Cita c : citas.values()) {
+                    escribirCita(out, c);
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void leerCopia(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIA_COPIA || in.readInt() != idUsuario) {
+            throw new IOException("Formato de la copia local no válido: " + archivoCopia);
+        }
+        version = in.readLong();
+        siguienteIdTemporal = in.readInt();
+
+        tiposAnimal = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            tiposAnimal.add(new TipoAnimal(in.readInt(), leerTexto(in)));
+        }
+        situaciones = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            situaciones.add(new Situacion(in.readInt(), leerTexto(in)));
+        }
+        tiposNegocio = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            tiposNegocio.add(new TipoNegocio(in.readInt(), leerTexto(in)));
+        }
+        leerServicios(in, negocios);
+        leerServicios(in, protectoras);
+
+        reportes.clear();
+        for (int i = in.readInt(); i > 0; i--) {
+            int id = in.readInt();
+            String ubicacion = leerTexto(in);
+            double latitud = in.readDouble();
+            double longitud = in.readDouble();
+            int idAnimal = in.readInt();
+            String descripcion = leerTexto(in);
+            long dia = in.readLong();
+            Animal animal = new Animal(idAnimal, null, dia != Long.MIN_VALUE ? LocalDate.ofEpochDay(dia) : null,
+                    new TipoAnimal(in.readInt(), null), descripcion, new Situacion(in.readInt(), null));
+            Reporte reporte = new Reporte(id, ubicacion, animal, null);
+            reporte.setLatitud(latitud);
+            reporte.setLongitud(longitud);
+            reportes.put(id, reporte);
+        }
+
+        versionesCitas.clear();
+        for (int i = in.readInt(); i > 0; i--) {
+            versionesCitas.put(in.readInt(), in.readInt());
+        }
+        citas.clear();
+        for (int i = in.readInt(); i > 0; i--) {
+            Cita c = leerCita(in);
+            citas.put(c.getIdCita(), c);
+        }
+    }
+
+    /**
+     * Guarda la cola de pendientes, forzando la escritura en el disco antes de volver.
+     */
+    private void escribirPendientes() throws IOException {
+        escribir(archivoPendientes, out -> {
+            out.writeInt(MAGIA_PENDIENTES);
+            out.writeInt(pendientes.size());
+            for (Operacion op : pendientes) {
+                out.writeByte(op.tipo());
+                out.writeInt(op.version());
+                escribirTexto(out, op.clave());
+                escribirCita(out, op.cita());
+            }
+        });
+    }
+
+    private void leerPendientes(DataInputStream in) throws IOException {
+        pendientes.clear();
+        int magia = in.readInt();
+        if (magia != MAGIA_PENDIENTES && magia != MAGIA_PENDIENTES_SIN_CLAVE) {
+            throw new IOException("Formato de la cola de pendientes no válido: " + archivoPendientes);
+        }
+        for (int i = in.readInt(); i > 0; i--) {
+            byte tipo = in.readByte();
+            int version = in.readInt();
+            String clave = magia == MAGIA_PENDIENTES ? leerTexto(in) : null;
+            if (tipo == CREAR && clave == null) {
+                // Alta guardada por una versión anterior: desde ahora se reintenta con una clave fija
+                clave = UUID.randomUUID().toString();
+            }
+            pendientes.add(new Operacion(tipo, leerCita(in), version, clave));
+        }
+    }
+
+    /**
+     * Escritura de un archivo de la copia.
+     */
+    private interface Escritura {
+        void escribir(DataOutputStream out) throws IOException;
+    }
+
+    private static void escribir(Path destino, Escritura escritura) throws IOException {
+        Files.createDirectories(destino.getParent());
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        try (FileOutputStream archivo = new FileOutputStream(temporal.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(archivo))) {
+            escritura.escribir(out);
+            out.flush();
+            archivo.getFD().sync();
+        }
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void escribirServicios(DataOutputStream out, Map<Integer, ServicioCercano> servicios) throws IOException {
+        out.writeInt(servicios.size());
+        for (ServicioCercano s : servicios.values()) {
+            out.writeByte(s.getCategoria().ordinal());
+            out.writeInt(s.getId());
+            escribirTexto(out, s.getNombre());
+            escribirTexto(out, s.getDireccion());
+            out.writeDouble(s.getLatitud());
+            out.writeDouble(s.getLongitud());
+        }
+    }
+
+    private static void leerServicios(DataInputStream in, Map<Integer, ServicioCercano> servicios) throws IOException {
+        servicios.clear();
+        for (int i = in.readInt(); i > 0; i--) {
+            ServicioCercano.Categoria categoria = ServicioCercano.Categoria.values()[in.readByte()];
+            int id = in.readInt();
+            servicios.put(id, new ServicioCercano(categoria, id, leerTexto(in), leerTexto(in), in.readDouble(), in.readDouble()));
+        }
+    }
+
+    private static void escribirCita(DataOutputStream out, Cita c) throws IOException {
+        out.writeInt(c.getIdCita());
+        out.writeInt(c.getIdUsuario());
+        out.writeLong(c.getFecha().toEpochDay());
+        out.writeInt(c.getHora().toSecondOfDay());
+        escribirTexto(out, c.getNombreAnimal());
+        escribirTexto(out, c.getMotivo());
+    }
+
+    private static Cita leerCita(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        int idUsuario = in.readInt();
+        LocalDate fecha = LocalDate.ofEpochDay(in.readLong());
+        LocalTime hora = LocalTime.ofSecondOfDay(in.readInt());
+        return new Cita(id, fecha, hora, leerTexto(in), leerTexto(in), idUsuario);
+    }
+
+    private static void escribirTexto(DataOutputStream out, String texto) throws IOException {
+        out.writeBoolean(texto != null);
+        if (texto != null) {
+            out.writeUTF(texto);
+        }
+    }
+
+    private static String leerTexto(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static Cita copia(Cita c) {
+        return new Cita(c.getIdCita(), c.getFecha(), c.getHora(), c.getNombreAnimal(), c.getMotivo(), c.getIdUsuario());
+    }
+}
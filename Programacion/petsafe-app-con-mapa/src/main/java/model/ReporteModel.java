@@ -3,12 +3,20 @@ package model;
 import com.example.petsafeapp.*; 
 
 import java.io.*;
+import java.sql.Connection;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Clase modelo para gestionar las operaciones CRUD (Crear, Leer, Actualizar, Eliminar)
@@ -21,6 +29,26 @@ import java.util.ArrayList;
  */
 public class ReporteModel extends DBUtil{
 
+    /**
+     * Situación de los animales en adopción.
+     */
+    public static final int SITUACION_EN_ADOPCION = 3;
+
+    /**
+     * Kilómetros por grado de latitud.
+     */
+    private static final double KM_POR_GRADO = Math.PI * IndiceEspacial.RADIO_TIERRA_KM / 180;
+
+    /**
+     * Hilo de las geocodificaciones de los reportes guardados sin coordenadas. Es uno solo para no
+     * saturar el geocodificador, que puede hacer una petición HTTP.
+     */
+    private static final ExecutorService GEOCODIFICACION = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "geocodificar-reportes");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
     /**
      * Crea un nuevo registro de reporte en la base de datos.
      * <p>
@@ -28,6 +56,12 @@ public class ReporteModel extends DBUtil{
      * y la ubicación, pero no maneja la escritura de ninguna imagen como BLOB.
      * El método {@code readReportes}, en contraste, sí procesa imágenes BLOB.
      * </p>
+     * <p>
+     * También guarda las coordenadas del reporte y, en la misma transacción, los avisos para los
+     * usuarios que vigilan su zona (ver {@link ServicioNotificaciones}), de modo que se guardan los
+     * dos o ninguno. No geocodifica la ubicación: si el reporte no trae coordenadas se guarda sin
+     * ellas y quien llama puede buscarlas después en segundo plano con {@link #geocodificar(Reporte)}.
+     * </p>
      *
      * @param reporte El objeto {@link Reporte} que contiene la información a insertar.
      *                Se espera que el objeto {@code reporte} tenga asociados un objeto
@@ -42,21 +76,47 @@ public class ReporteModel extends DBUtil{
         int idAnimal = reporte.getAnimal().getId();
         int idUsuario = reporte.getUsuario().getId();
         String ubicacion = reporte.getUbicacion();
+        double[] coordenadas = coordenadasConocidas(reporte);
 
+        Connection con = this.getConexion();
         try {
-            String sql = "INSERT INTO reporte (animal, Usuario, ubicacion) VALUES (?, ?, ?)"; // Columnas FK: animal, Usuario
-            PreparedStatement ps = this.getConexion().prepareStatement(sql);
+            con.setAutoCommit(false);
+            String sql = "INSERT INTO reporte (animal, Usuario, ubicacion, latitud, longitud) VALUES (?, ?, ?, ?, ?)"; // Columnas FK: animal, Usuario
+            PreparedStatement ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
 
             ps.setInt(1, idAnimal);
             ps.setInt(2, idUsuario);
             ps.setString(3,ubicacion);
+            setCoordenadas(ps, 4, coordenadas);
 
             int filasAfectadas = ps.executeUpdate();
-            if (filasAfectadas > 0)
-                res = true;
+            boolean conId = false;
+            if (filasAfectadas > 0) {
+                ResultSet claves = ps.getGeneratedKeys();
+                if (claves.next()) {
+                    conId = true;
+                    reporte.setId(claves.getInt(1));
+                    if (coordenadas != null) {
+                        reporte.setLatitud(coordenadas[0]);
+                        reporte.setLongitud(coordenadas[1]);
+                        ServicioNotificaciones.notificarReporte(con, reporte);
+                    }
+                }
+            }
+            con.commit();
+            res = filasAfectadas > 0;
+
+            if (conId) {
+                BuscadorTexto.registrarCambio(reporte);
+            }
 
         } catch (SQLException e) {
             e.printStackTrace();
+            try {
+                con.rollback();
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
         } finally {
             // Cerramos conexión
             this.cerrarConexion();
@@ -64,6 +124,323 @@ public class ReporteModel extends DBUtil{
         }
     }
 
+    /**
+     * Geocodifica en segundo plano la ubicación de un reporte guardado sin coordenadas. Si se
+     * encuentra, guarda sus coordenadas y, en la misma transacción, los avisos para los usuarios que
+     * vigilan la zona, que al crearlo no se podían calcular. Si no se encuentra, el reporte se queda
+     * sin coordenadas y el mapa lo sitúa por su dirección.
+     *
+     * @param reporte El reporte, con su ID, su animal (con tipo), su usuario y su ubicación.
+     * @return Una tarea que termina con el reporte: con sus coordenadas si se han encontrado y
+     *         guardado, o sin ellas en caso contrario.
+     */
+    public static CompletableFuture<Reporte> geocodificar(Reporte reporte) {
+        if (coordenadasConocidas(reporte) != null || reporte.getUbicacion() == null || reporte.getUbicacion().isBlank()) {
+            return CompletableFuture.completedFuture(reporte);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            double[] coord = Geocodificador.getPredeterminado().obtenerCoordenadas(reporte.getUbicacion());
+            if (coord != null && new ReporteModel().guardarCoordenadas(reporte, coord[0], coord[1])) {
+                reporte.setLatitud(coord[0]);
+                reporte.setLongitud(coord[1]);
+            }
+            return reporte;
+        }, GEOCODIFICACION);
+    }
+
+    /**
+     * Guarda las coordenadas de un reporte que no tenía y los avisos para los usuarios que vigilan
+     * la zona, en una sola transacción. Si mientras tanto se le han puesto coordenadas, no hace nada.
+     *
+     * @param reporte El reporte, con su ID, su animal (con tipo) y su usuario.
+     * @param latitud La latitud en grados.
+     * @param longitud La longitud en grados.
+     * @return {@code true} si se han guardado las coordenadas, {@code false} en caso contrario o si
+     *         ocurre un error.
+     */
+    private boolean guardarCoordenadas(Reporte reporte, double latitud, double longitud) {
+        boolean res = false;
+
+        Connection con = this.getConexion();
+        try {
+            con.setAutoCommit(false);
+            String sql = "UPDATE reporte SET latitud = ?, longitud = ? WHERE id = ? AND latitud IS NULL";
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setDouble(1, latitud);
+            ps.setDouble(2, longitud);
+            ps.setInt(3, reporte.getId());
+
+            boolean actualizado = ps.executeUpdate() > 0;
+            if (actualizado) {
+                Reporte geocodificado = new Reporte(reporte.getId(), reporte.getUbicacion(), reporte.getAnimal(), reporte.getUsuario());
+                geocodificado.setLatitud(latitud);
+                geocodificado.setLongitud(longitud);
+                ServicioNotificaciones.notificarReporte(con, geocodificado);
+            }
+            con.commit();
+            res = actualizado;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            try {
+                con.rollback();
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+        } finally {
+            this.cerrarConexion();
+        }
+        return res;
+    }
+
+    /**
+     * Inserta varios reportes con una sola ejecución por lotes, usando la conexión indicada sin
+     * confirmar la transacción ni cerrar la conexión (de eso se encarga quien llama). Con una
+     * conexión de {@link #getConexionPorLotes()} el driver envía las filas en sentencias de varias
+     * filas. A cada reporte se le asigna el ID generado.
+     * <p>
+     * A diferencia de {@link #createReporte(Reporte)}, no avisa al buscador de texto (quien llama
+     * debe hacerlo después de confirmar la transacción) ni guarda los avisos de los suscriptores (quien llama debe guardarlos en la misma transacción con {@link ServicioNotificaciones}).
+     * </p>
+     *
+     * @param con La conexión, con la transacción abierta.
+     * @param reportes Los reportes, con su animal (ya insertado), su usuario, su ubicación y sus
+     *                 coordenadas (o NaN si no se conocen).
+     * @throws SQLException Si ocurre un error al insertar.
+     */
+    void insertarReportes(Connection con, List<Reporte> reportes) throws SQLException {
+        String sql = "INSERT INTO reporte (animal, Usuario, ubicacion, latitud, longitud) VALUES (?, ?, ?, ?, ?)";
+        try (PreparedStatement ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (Reporte reporte : reportes) {
+                ps.setInt(1, reporte.getAnimal().getId());
+                ps.setInt(2, reporte.getUsuario().getId());
+                ps.setString(3, reporte.getUbicacion());
+                setCoordenadas(ps, 4, Double.isNaN(reporte.getLatitud()) || Double.isNaN(reporte.getLongitud())
+                        ? null : new double[]{reporte.getLatitud(), reporte.getLongitud()});
+                ps.addBatch();
+            }
+            ps.executeBatch();
+
+            try (ResultSet claves = ps.getGeneratedKeys()) {
+                for (int i = 0; i < reportes.size() && claves.next(); i++) {
+                    reportes.get(i).setId(claves.getInt(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Lee los reportes que pueden ser el mismo animal que otro, para el {@link EmparejadorReportes}:
+     * los de la situación indicada y el mismo tipo de animal, con fecha dentro de la ventana de días
+     * y coordenadas dentro del rectángulo que contiene el círculo de búsqueda. La consulta es un rango
+     * del índice de las coordenadas del reporte o del de tipo, situación y fecha del animal (el que
+     * sea más selectivo); quien llama descarta los que quedan en las esquinas del rectángulo. Los reportes se leen con los mismos datos que
+     * {@link #readReportesParaEmparejar(Collection)}.
+     *
+     * En el modo local se filtran los de {@link ReplicaLocal}.
+     *
+     * @param reporte El reporte de referencia, con su animal (tipo y fecha) y sus coordenadas.
+     * @param situacion La situación de los reportes a buscar.
+     * @param radioKm El radio de búsqueda, en kilómetros.
+     * @param ventanaDias La diferencia máxima de días con el reporte de referencia.
+     * @return Un {@link ArrayList} de reportes, o {@code null} si ocurre un error.
+     */
+    ArrayList<Reporte> readCandidatosEmparejamiento(Reporte reporte, int situacion, double radioKm, int ventanaDias) {
+        double latitud = reporte.getLatitud();
+        double longitud = reporte.getLongitud();
+        double gradosLat = radioKm / KM_POR_GRADO;
+        double gradosLon = radioKm / (KM_POR_GRADO * Math.max(Math.cos(Math.toRadians(latitud)), 0.01));
+        int tipo = reporte.getAnimal().getTipo().getId();
+        LocalDate desde = reporte.getAnimal().getDate().minusDays(ventanaDias);
+        LocalDate hasta = reporte.getAnimal().getDate().plusDays(ventanaDias);
+
+        ReplicaLocal replica = ReplicaLocal.getActiva();
+        if (replica != null) {
+            ArrayList<Reporte> res = new ArrayList<>();
+            for (Reporte r : replica.readReportes()) {
+                Animal a = r.getAnimal();
+                if (a.getTipo().getId() == tipo && a.getSituacion().getId() == situacion
+                        && a.getDate() != null && !a.getDate().isBefore(desde) && !a.getDate().isAfter(hasta)
+                        && Math.abs(r.getLatitud() - latitud) <= gradosLat && Math.abs(r.getLongitud() - longitud) <= gradosLon) {
+                    res.add(r);
+                }
+            }
+            return res;
+        }
+
+        ArrayList<Reporte> reportes = new ArrayList<Reporte>();
+        try {
+            String sql = "SELECT r.id, r.ubicacion, r.latitud, r.longitud, " +
+                    "    a.id AS animal_id, a.descripcion, a.fecha, a.tipo, a.situacion " +
+                    "FROM reporte r " +
+                    "INNER JOIN animal a ON r.animal = a.id " +
+                    "WHERE r.latitud BETWEEN ? AND ? AND r.longitud BETWEEN ? AND ? " +
+                    "AND a.tipo = ? AND a.situacion = ? AND a.fecha BETWEEN ? AND ?";
+            PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
+            ps.setDouble(1, latitud - gradosLat);
+            ps.setDouble(2, latitud + gradosLat);
+            ps.setDouble(3, longitud - gradosLon);
+            ps.setDouble(4, longitud + gradosLon);
+            ps.setInt(5, tipo);
+            ps.setInt(6, situacion);
+            ps.setDate(7, Date.valueOf(desde));
+            ps.setDate(8, Date.valueOf(hasta));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    reportes.add(leerReporteParaEmparejar(rs));
+                }
+            }
+            return reportes;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            // Cerramos conexión
+            this.cerrarConexion();
+        }
+    }
+
+    /**
+     * Lee algunos reportes, o todos, con los datos mínimos para emparejarlos: los de animales perdidos
+     * y encontrados que tienen coordenadas. No lee imágenes ni datos del usuario: el {@link Animal}
+     * de cada reporte solo trae ID, fecha, tipo, descripción y situación.
+     *
+     * @param ids Los IDs de los reportes, o {@code null} para leerlos todos. Los que no se devuelven
+     *            no existen o no son de un animal perdido o encontrado con coordenadas.
+     * @return Un {@link ArrayList} de reportes, o {@code null} si ocurre un error.
+     */
+    ArrayList<Reporte> readReportesParaEmparejar(Collection<Integer> ids) {
+        ArrayList<Reporte> reportes = new ArrayList<Reporte>();
+        if (ids != null && ids.isEmpty()) {
+            return reportes;
+        }
+
+        try {
+            String sql = "SELECT r.id, r.ubicacion, r.latitud, r.longitud, " +
+                    "    a.id AS animal_id, a.descripcion, a.fecha, a.tipo, a.situacion " +
+                    "FROM reporte r " +
+                    "INNER JOIN animal a ON r.animal = a.id " +
+                    "WHERE r.latitud IS NOT NULL AND r.longitud IS NOT NULL " +
+                    "AND a.situacion IN (" + EmparejadorReportes.SITUACION_ENCONTRADO + ", " + EmparejadorReportes.SITUACION_PERDIDO + ")";
+            if (ids != null) {
+                sql += " AND r.id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+            }
+            PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
+            if (ids != null) {
+                int i = 1;
+                for (int id : ids) {
+                    ps.setInt(i++, id);
+                }
+            }
+            ResultSet rs = ps.executeQuery();
+
+            while (rs.next()) {
+                reportes.add(leerReporteParaEmparejar(rs));
+            }
+
+            return reportes;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            // Cerramos conexión
+            this.cerrarConexion();
+        }
+    }
+
+    /**
+     * Construye un reporte con los datos para emparejarlo a partir de la fila actual.
+     */
+    private static Reporte leerReporteParaEmparejar(ResultSet rs) throws SQLException {
+        Date fecha = rs.getDate("fecha");
+        Animal animal = new Animal(rs.getInt("animal_id"), null,
+                fecha != null ? fecha.toLocalDate() : null,
+                new TipoAnimal(rs.getInt("tipo"), null),
+                rs.getString("descripcion"),
+                new Situacion(rs.getInt("situacion"), null));
+
+        Reporte reporte = new Reporte(rs.getInt("id"), rs.getString("ubicacion"), animal, null);
+        reporte.setLatitud(rs.getDouble("latitud"));
+        reporte.setLongitud(rs.getDouble("longitud"));
+        return reporte;
+    }
+
+    /**
+     * Lee los reportes con la descripción de su animal, para cargar el {@link BuscadorTexto}.
+     * No lee imágenes ni datos del usuario: el {@link Animal} de cada reporte solo trae ID y descripción.
+     *
+     * @return Un {@link ArrayList} de reportes, o {@code null} si ocurre un error.
+     */
+    public ArrayList<Reporte> readReportesParaBuscar() {
+        ArrayList<Reporte> reportes = new ArrayList<Reporte>();
+
+        try {
+            String sql = "SELECT r.id, r.ubicacion, a.id AS animal_id, a.descripcion " +
+                    "FROM reporte r " +
+                    "INNER JOIN animal a ON r.animal = a.id";
+            PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
+            ResultSet rs = ps.executeQuery();
+
+            while (rs.next()) {
+                Animal animal = new Animal(rs.getInt("animal_id"), null, null, null, rs.getString("descripcion"), null);
+                reportes.add(new Reporte(rs.getInt("id"), rs.getString("ubicacion"), animal, null));
+            }
+
+            return reportes;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            // Cerramos conexión
+            this.cerrarConexion();
+        }
+    }
+
+    /**
+     * Lee los marcadores del mapa de los reportes de animales perdidos y en adopción (los
+     * encontrados no se muestran). Solo lee las columnas del marcador y el nombre del usuario, sin
+     * imágenes: la foto del animal se pide por su ID ({@link MarcadorMapa#urlImagen(int)}) cuando
+     * se abre el popup.
+     *
+     * @return Los marcadores, en orden de ID, o {@code null} si ocurre un error.
+     */
+    public ArrayList<MarcadorMapa> readMarcadoresMapa() {
+        ArrayList<MarcadorMapa> marcadores = new ArrayList<>();
+
+        try {
+            String sql = "SELECT r.id, r.ubicacion, r.latitud, r.longitud, " +
+                    "    a.id AS animal_id, a.descripcion, a.tipo, a.situacion, u.nombreUser " +
+                    "FROM reporte r " +
+                    "INNER JOIN animal a ON r.animal = a.id " +
+                    "INNER JOIN Usuario u ON r.Usuario = u.id " +
+                    "WHERE a.situacion <> " + EmparejadorReportes.SITUACION_ENCONTRADO + " " +
+                    "ORDER BY r.id";
+            PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    marcadores.add(new MarcadorMapa(
+                            MarcadorMapa.Categoria.REPORTE,
+                            rs.getInt("id"),
+                            getCoordenada(rs, "latitud"),
+                            getCoordenada(rs, "longitud"),
+                            rs.getString("nombreUser"),
+                            rs.getString("descripcion"),
+                            rs.getString("ubicacion"),
+                            rs.getInt("tipo"),
+                            rs.getInt("situacion") == SITUACION_EN_ADOPCION,
+                            rs.getInt("animal_id")
+                    ));
+                }
+            }
+            return marcadores;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            // Cerramos conexión
+            this.cerrarConexion();
+        }
+    }
+
     /**
      * Lee todos los registros de reportes de la base de datos.
      * Realiza JOINs con las tablas {@code Animal}, {@code Usuario}, {@code Tipo} (TipoAnimal),
@@ -110,7 +487,7 @@ public class ReporteModel extends DBUtil{
                     "INNER JOIN Tipo t ON a.tipo = t.id " + // JOIN con Tipo (a través de Animal)
                     "INNER JOIN Situacion s ON a.situacion = s.id " + // JOIN con Situación (a través de Animal)
                     "ORDER BY r.id ASC"; // Ordenación;
-            PreparedStatement ps = this.getConexion().prepareStatement(sql);
+            PreparedStatement ps = this.getConexionLectura().prepareStatement(sql);
             ResultSet rs = ps.executeQuery();
 
             while (rs.next()) {
@@ -192,7 +569,8 @@ public class ReporteModel extends DBUtil{
 
     /**
      * Actualiza un registro de reporte existente en la base de datos.
-     * Modifica el animal asociado, el usuario asociado y la ubicación del reporte.
+     * Modifica el animal asociado, el usuario asociado y la ubicación del reporte,
+     * junto con sus coordenadas.
      * <p>
      * <strong>Nota:</strong> Este método actualiza los IDs de referencia del animal y usuario,
      * y la cadena de ubicación, pero no maneja la actualización de imágenes BLOB
@@ -208,23 +586,32 @@ public class ReporteModel extends DBUtil{
      */
     public int updateReporte(Reporte reporte) {
         int res = 0;
+        double[] coordenadas = coordenadas(reporte);
 
         try {
             String sql = "UPDATE reporte\n" +
                     "SET\n" +
                     "    animal = ?,    -- 1st placeholder (Nuevo ID de Animal)\n" +
                     "    Usuario = ?,   -- 2nd placeholder (Nuevo ID de Usuario)\n" +
-                    "    ubicacion = ?    -- 3rd placeholder (Nueva Ubicación)\n" +
+                    "    ubicacion = ?,   -- 3rd placeholder (Nueva Ubicación)\n" +
+                    "    latitud = ?,     -- 4th placeholder\n" +
+                    "    longitud = ?     -- 5th placeholder\n" +
                     "WHERE\n" +
-                    "    id = ?;          -- 4th placeholder (ID del Reporte a actualizar)";
+                    "    id = ?;          -- 6th placeholder (ID del Reporte a actualizar)";
             PreparedStatement ps = this.getConexion().prepareStatement(sql);
 
             ps.setInt(1, reporte.getAnimal().getId());
             ps.setInt(2, reporte.getUsuario().getId());
             ps.setString(3,reporte.getUbicacion());
-            ps.setInt(4,reporte.getId());
+            setCoordenadas(ps, 4, coordenadas);
+            ps.setInt(6,reporte.getId());
 
             res = ps.executeUpdate();
+            if (res > 0) {
+                reporte.setLatitud(coordenadas != null ? coordenadas[0] : Double.NaN);
+                reporte.setLongitud(coordenadas != null ? coordenadas[1] : Double.NaN);
+                BuscadorTexto.registrarCambio(reporte);
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         } finally {
@@ -267,8 +654,10 @@ public class ReporteModel extends DBUtil{
             ps.setInt(1, idReporte);
 
             int filasAfectadas = ps.executeUpdate();
-            if (filasAfectadas > 0)
+            if (filasAfectadas > 0) {
                 res = true;
+                BuscadorTexto.registrarBajaReporte(idReporte);
+            }
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -277,4 +666,32 @@ public class ReporteModel extends DBUtil{
             return res;
         }
     }
+
+    /**
+     * Coordenadas de la ubicación de un reporte: las que ya trae el reporte o, si no tiene,
+     * las que devuelve el geocodificador para su ubicación.
+     *
+     * @param reporte El reporte.
+     * @return Un array {latitud, longitud}, o {@code null} si no se conocen.
+     */
+    private static double[] coordenadas(Reporte reporte) {
+        double[] conocidas = coordenadasConocidas(reporte);
+        if (conocidas != null || reporte.getUbicacion() == null || reporte.getUbicacion().isBlank()) {
+            return conocidas;
+        }
+        return Geocodificador.getPredeterminado().obtenerCoordenadas(reporte.getUbicacion());
+    }
+
+    /**
+     * Coordenadas que ya trae un reporte.
+     *
+     * @param reporte El reporte.
+     * @return Un array {latitud, longitud}, o {@code null} si no tiene.
+     */
+    private static double[] coordenadasConocidas(Reporte reporte) {
+        if (!Double.isNaN(reporte.getLatitud()) && !Double.isNaN(reporte.getLongitud())) {
+            return new double[]{reporte.getLatitud(), reporte.getLongitud()};
+        }
+        return null;
+    }
 }
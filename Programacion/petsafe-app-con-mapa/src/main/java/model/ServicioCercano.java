@@ -0,0 +1,156 @@
+package model;
+
+import java.util.Objects;
+
+/**
+ * Datos mínimos de un negocio o una protectora para la búsqueda de servicios cercanos.
+ * Es lo único que se guarda en el índice espacial, así que no incluye imágenes ni datos del usuario.
+ */
+public class ServicioCercano {
+
+    /**
+     * Tipo de servicio que se puede buscar.
+     */
+    public enum Categoria {
+        /** Negocio de tipo veterinario (tipoNegocio 1). */
+        VETERINARIO,
+        /** Cualquier otro negocio (tiendas, peluquerías, locales que admiten mascotas...). */
+        LOCAL,
+        /** Protectora de animales. */
+        PROTECTORA
+    }
+
+    /**
+     * Tipo de servicio.
+     */
+    private final Categoria categoria;
+
+    /**
+     * idNegocio o idProtectora, según la categoría.
+     */
+    private final int id;
+
+    /**
+     * Nombre del negocio o de la protectora.
+     */
+    private final String nombre;
+
+    /**
+     * Dirección postal.
+     */
+    private final String direccion;
+
+    /**
+     * Latitud en grados, o {@link Double#NaN} si todavía no se ha geocodificado.
+     */
+    private final double latitud;
+
+    /**
+     * Longitud en grados, o {@link Double#NaN} si todavía no se ha geocodificado.
+     */
+    private final double longitud;
+
+    /**
+     * Constructor con todos los datos del servicio.
+     *
+     * @param categoria Tipo de servicio.
+     * @param id idNegocio o idProtectora.
+     * @param nombre Nombre del servicio.
+     * @param direccion Dirección postal.
+     * @param latitud Latitud en grados, o {@link Double#NaN} si no se conoce.
+     * @param longitud Longitud en grados, o {@link Double#NaN} si no se conoce.
+     */
+    public ServicioCercano(Categoria categoria, int id, String nombre, String direccion, double latitud, double longitud) {
+        this.categoria = categoria;
+        this.id = id;
+        this.nombre = nombre;
+        this.direccion = direccion;
+        this.latitud = latitud;
+        this.longitud = longitud;
+    }
+
+    /**
+     * Categoría de un negocio según su tipo.
+     *
+     * @param tipoNegocioId El id del tipo de negocio.
+     * @return {@link Categoria#VETERINARIO} para el tipo 1 y {@link Categoria#LOCAL} para el resto.
+     */
+    public static Categoria categoriaNegocio(int tipoNegocioId) {
+        return tipoNegocioId == 1 ? Categoria.VETERINARIO : Categoria.LOCAL;
+    }
+
+    /**
+     * @return El tipo de servicio.
+     */
+    public Categoria getCategoria() {
+        return categoria;
+    }
+
+    /**
+     * @return El idNegocio o el idProtectora, según la categoría.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return El nombre del negocio o de la protectora.
+     */
+    public String getNombre() {
+        return nombre;
+    }
+
+    /**
+     * @return La dirección postal.
+     */
+    public String getDireccion() {
+        return direccion;
+    }
+
+    /**
+     * @return La latitud en grados, o {@link Double#NaN} si todavía no se ha geocodificado.
+     */
+    public double getLatitud() {
+        return latitud;
+    }
+
+    /**
+     * @return La longitud en grados, o {@link Double#NaN} si todavía no se ha geocodificado.
+     */
+    public double getLongitud() {
+        return longitud;
+    }
+
+    /**
+     * @return {@code true} si el servicio tiene coordenadas válidas.
+     */
+    public boolean tieneCoordenadas() {
+        return !Double.isNaN(latitud) && !Double.isNaN(longitud);
+    }
+
+    /**
+     * Dos servicios son iguales si son el mismo registro (los negocios se comparan solo por id,
+     * porque pueden cambiar de tipo).
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ServicioCercano)) return false;
+        ServicioCercano otro = (ServicioCercano) o;
+        return id == otro.id && esProtectora() == otro.esProtectora();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, esProtectora());
+    }
+
+    private boolean esProtectora() {
+        return categoria == Categoria.PROTECTORA;
+    }
+
+    @Override
+    public String toString() {
+        return nombre + " - " + direccion;
+    }
+}
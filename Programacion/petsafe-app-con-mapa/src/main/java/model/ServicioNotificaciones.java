@@ -0,0 +1,145 @@
+package model;
+
+import com.example.petsafeapp.Animal;
+import com.example.petsafeapp.Reporte;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Avisos a los usuarios de los reportes nuevos dentro de sus zonas vigiladas.
+ * <p>
+ * Al guardar un reporte, {@link ReporteModel} (y {@link ImportadorAnimales}) llama a
+ * {@link #notificarReporte(Connection, Reporte)} dentro de la misma transacción: las suscripciones que
+ * cubren el reporte se buscan en la base de datos y se guarda una notificación por usuario afectado
+ * (aunque el reporte caiga en varias de sus zonas), salvo para quien lo ha creado. Así se tienen en
+ * cuenta las zonas dadas de alta desde cualquier equipo, y las notificaciones se confirman o se
+ * descartan junto con el reporte.
+ * </p>
+ * <p>
+ * Lo que se agrupa es la lectura: la aplicación consulta las notificaciones sin leer del usuario cada
+ * cierto número de segundos (propiedad del sistema {@value #PROPIEDAD_INTERVALO}, por defecto
+ * {@value #INTERVALO_POR_DEFECTO_SEGUNDOS}) y le muestra juntas todas las nuevas, de modo que una
+ * racha de reportes en una zona supone un solo aviso.
+ * </p>
+ */
+public class ServicioNotificaciones {
+
+    /**
+     * Propiedad del sistema con los segundos entre dos consultas de las notificaciones sin leer.
+     */
+    public static final String PROPIEDAD_INTERVALO = "petsafe.notificaciones.intervalo";
+
+    /**
+     * Intervalo de consulta por defecto, en segundos.
+     */
+    public static final long INTERVALO_POR_DEFECTO_SEGUNDOS = 30;
+
+    private ServicioNotificaciones() {
+    }
+
+    /**
+     * Guarda las notificaciones de un reporte nuevo para los usuarios que vigilan la zona, usando la
+     * conexión indicada sin confirmar la transacción ni cerrar la conexión (de eso se encarga quien llama).
+     *
+     * @param con La conexión, con la transacción en la que se ha insertado el reporte.
+     * @param reporte El reporte, con su ID, su animal (con tipo) y sus coordenadas.
+     * @return El número de usuarios avisados.
+     * @throws SQLException Si ocurre un error al leer las suscripciones o al guardar las notificaciones.
+     */
+    static int notificarReporte(Connection con, Reporte reporte) throws SQLException {
+        if (!sePuedeNotificar(reporte)) {
+            return 0;
+        }
+        List<Suscripcion> candidatas = new SuscripcionModel().readSuscripcionesZona(con, reporte.getLatitud(),
+                reporte.getLongitud(), reporte.getAnimal().getTipo().getId());
+        List<Notificacion> notificaciones = generarNotificaciones(reporte, candidatas, LocalDateTime.now());
+        new NotificacionModel().insertarNotificaciones(con, notificaciones);
+        return notificaciones.size();
+    }
+
+    /**
+     * Genera las notificaciones de un reporte nuevo a partir de las suscripciones candidatas.
+     *
+     * @param reporte El reporte, con su ID, su animal (con tipo) y sus coordenadas.
+     * @param suscripciones Las suscripciones a comprobar; se descartan las que no cubren el reporte.
+     * @param fecha Momento de las notificaciones.
+     * @return Una notificación por usuario afectado, salvo el autor del reporte, en el orden de sus
+     *         suscripciones. Puede estar vacía.
+     */
+    static List<Notificacion> generarNotificaciones(Reporte reporte, List<Suscripcion> suscripciones, LocalDateTime fecha) {
+        List<Notificacion> res = new ArrayList<>();
+        if (!sePuedeNotificar(reporte)) {
+            return res;
+        }
+        int idAutor = reporte.getUsuario() != null ? reporte.getUsuario().getId() : 0;
+        int idTipo = reporte.getAnimal().getTipo().getId();
+
+        Map<Integer, Double> distancias = new LinkedHashMap<>();
+        for (Suscripcion s : suscripciones) {
+            if (s.getIdUsuario() == idAutor || !s.cubre(reporte.getLatitud(), reporte.getLongitud(), idTipo)) {
+                continue;
+            }
+            double d = IndiceEspacial.distanciaKm(s.getLatitud(), s.getLongitud(), reporte.getLatitud(), reporte.getLongitud());
+            distancias.merge(s.getIdUsuario(), d, Math::min);
+        }
+
+        for (Map.Entry<Integer, Double> e : distancias.entrySet()) {
+            res.add(new Notificacion(0, e.getKey(), reporte.getId(), mensaje(reporte, e.getValue()), fecha));
+        }
+        return res;
+    }
+
+    /**
+     * Devuelve los segundos entre dos consultas de las notificaciones sin leer del usuario.
+     *
+     * @return El valor de {@value #PROPIEDAD_INTERVALO}, o {@value #INTERVALO_POR_DEFECTO_SEGUNDOS}
+     *         si no está indicada o no es válida.
+     */
+    public static long getIntervaloLectura() {
+        String valor = System.getProperty(PROPIEDAD_INTERVALO);
+        if (valor == null) {
+            return INTERVALO_POR_DEFECTO_SEGUNDOS;
+        }
+        try {
+            return Math.max(1, Long.parseLong(valor));
+        } catch (NumberFormatException e) {
+            System.err.println("Valor no válido para " + PROPIEDAD_INTERVALO + ": " + valor);
+            return INTERVALO_POR_DEFECTO_SEGUNDOS;
+        }
+    }
+
+    /**
+     * Indica si el reporte tiene los datos necesarios para buscar a quién avisar: tipo de animal y coordenadas.
+     */
+    private static boolean sePuedeNotificar(Reporte reporte) {
+        Animal animal = reporte.getAnimal();
+        return animal != null && animal.getTipo() != null
+                && !Double.isNaN(reporte.getLatitud()) && !Double.isNaN(reporte.getLongitud());
+    }
+
+    /**
+     * Texto de la notificación de un reporte para un usuario.
+     */
+    private static String mensaje(Reporte reporte, double distanciaKm) {
+        Animal animal = reporte.getAnimal();
+        StringBuilder sb = new StringBuilder("Nuevo reporte");
+        if (animal.getSituacion() != null && animal.getSituacion().getNombre() != null) {
+            sb.append(" (").append(animal.getSituacion().getNombre()).append(")");
+        }
+        if (animal.getTipo().getNombre() != null) {
+            sb.append(" de ").append(animal.getTipo().getNombre().toLowerCase(Locale.ROOT));
+        }
+        sb.append(String.format(Locale.ROOT, " a %.1f km del centro de tu zona vigilada", distanciaKm));
+        if (reporte.getUbicacion() != null) {
+            sb.append(": ").append(reporte.getUbicacion());
+        }
+        return sb.length() > 500 ? sb.substring(0, 500) : sb.toString();
+    }
+}
@@ -0,0 +1,476 @@
+package model;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Búsqueda de los veterinarios, locales y protectoras más cercanos a un punto o a una dirección.
+ * <p>
+ * Mantiene en memoria un {@link IndiceEspacial} por categoría con las coordenadas guardadas en la
+ * base de datos. Se carga la primera vez que se usa y después se actualiza de forma incremental:
+ * {@link NegocioModel} y {@link ProtectoraModel} avisan de cada alta, modificación o baja hecha en
+ * este equipo, y {@link #refrescar()} aplica las hechas desde otros equipos.
+ * </p>
+ * <p>
+ * Las direcciones se geocodifican en un hilo en segundo plano (ver {@link #geocodificar(ServicioCercano)}),
+ * porque el geocodificador puede hacer una petición HTTP: los modelos guardan el registro sin
+ * esperar y las coordenadas se guardan y se añaden al índice cuando llegan.
+ * </p>
+ */
+public class ServiciosCercanos {
+
+    /**
+     * Número de resultados que muestran por defecto las listas.
+     */
+    public static final int RESULTADOS_POR_DEFECTO = 20;
+
+    /**
+     * Hilo de las geocodificaciones. Es uno solo para que dos cambios seguidos de la dirección de
+     * un servicio se guarden en orden, y para no saturar el geocodificador.
+     */
+    private static final ExecutorService GEOCODIFICACION = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "geocodificar-servicios");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    /**
+     * Milisegundos mínimos entre dos lecturas del registro de cambios (ver {@link #refrescar()}).
+     */
+    static final long INTERVALO_REFRESCO_MS = 10_000;
+
+    /**
+     * Instancia compartida; es {@code null} hasta que termina la primera carga.
+     */
+    private static volatile ServiciosCercanos instancia;
+
+    /**
+     * Protege la carga en curso, los cambios recibidos mientras tanto y la publicación de la instancia.
+     */
+    private static final Object CARGA = new Object();
+
+    /**
+     * Carga inicial en curso, o {@code null} si no ha empezado o ya ha terminado.
+     */
+    private static CompletableFuture<ServiciosCercanos> carga;
+
+    /**
+     * Cambios notificados durante la carga inicial, en orden. La carga puede haber leído los registros
+     * antes de que cambiaran, así que se aplican al terminar, antes de publicar la instancia.
+     */
+    private static List<Consumer<ServiciosCercanos>> cambiosDuranteCarga = new ArrayList<>();
+
+    /**
+     * Un índice espacial por categoría, para no tener que filtrar durante la búsqueda.
+     */
+    private final Map<ServicioCercano.Categoria, IndiceEspacial<ServicioCercano>> indices =
+            new EnumMap<>(ServicioCercano.Categoria.class);
+
+    /**
+     * Categoría en la que está indexado cada servicio (un negocio puede cambiar de tipo).
+     */
+    private final Map<ServicioCercano, ServicioCercano.Categoria> categorias = new ConcurrentHashMap<>();
+
+    /**
+     * Última versión del registro de cambios que se ha aplicado, o -1 si no se conoce (hay que
+     * volver a cargarlo todo).
+     */
+    private long version = -1;
+
+    /**
+     * Momento de la última carga o lectura del registro de cambios, en milisegundos.
+     */
+    private long ultimoRefresco;
+
+    private ServiciosCercanos() {
+        for (ServicioCercano.Categoria categoria : ServicioCercano.Categoria.values()) {
+            indices.put(categoria, new IndiceEspacial<>());
+        }
+    }
+
+    /**
+     * Devuelve el buscador compartido, cargándolo desde la base de datos la primera vez. La carga
+     * se hace fuera del cerrojo: los que llegan mientras tanto esperan a la misma carga, y los
+     * cambios que se notifican durante ella se aplican antes de devolver la instancia.
+     *
+     * @return La instancia compartida.
+     */
+    public static ServiciosCercanos getInstancia() {
+        ServiciosCercanos res = instancia;
+        if (res != null) {
+            return res;
+        }
+        CompletableFuture<ServiciosCercanos> propia = null;
+        CompletableFuture<ServiciosCercanos> enCurso;
+        synchronized (CARGA) {
+            if (instancia != null) {
+                return instancia;
+            }
+            if (carga == null) {
+                carga = propia = new CompletableFuture<>();
+            }
+            enCurso = carga;
+        }
+
+        if (propia != null) {
+            ServiciosCercanos nueva = new ServiciosCercanos();
+            try {
+                nueva.cargar();
+            } finally {
+                synchronized (CARGA) {
+                    for (Consumer<ServiciosCercanos> cambio : cambiosDuranteCarga) {
+                        cambio.accept(nueva);
+                    }
+                    cambiosDuranteCarga = null;
+                    instancia = nueva;
+                    carga = null;
+                }
+                propia.complete(nueva);
+            }
+        }
+        return enCurso.join();
+    }
+
+    /**
+     * Notifica el alta o la modificación de un servicio. Si el índice todavía no se ha cargado
+     * no hace nada, porque la carga inicial ya leerá el registro de la base de datos; si se está
+     * cargando, el cambio se aplica al terminar.
+     *
+     * @param servicio El servicio con sus coordenadas actuales.
+     */
+    static void registrarCambio(ServicioCercano servicio) {
+        aplicarCambio(res -> res.actualizar(servicio));
+    }
+
+    /**
+     * Notifica la baja de un servicio.
+     *
+     * @param servicio El servicio eliminado (basta con la categoría y el id).
+     */
+    static void registrarBaja(ServicioCercano servicio) {
+        aplicarCambio(res -> res.eliminar(servicio));
+    }
+
+    /**
+     * Aplica un cambio a la instancia compartida, o lo guarda para aplicarlo al terminar la carga
+     * en curso.
+     */
+    private static void aplicarCambio(Consumer<ServiciosCercanos> cambio) {
+        ServiciosCercanos res = instancia;
+        if (res == null) {
+            synchronized (CARGA) {
+                res = instancia;
+                if (res == null) {
+                    if (carga != null) {
+                        cambiosDuranteCarga.add(cambio);
+                    }
+                    return;
+                }
+            }
+        }
+        cambio.accept(res);
+    }
+
+    /**
+     * Geocodifica en segundo plano la dirección de un servicio recién guardado, guarda sus
+     * coordenadas en la base de datos y lo coloca en el índice. Si la dirección no se encuentra,
+     * el registro se queda sin coordenadas y se vuelve a intentar en la siguiente carga del índice.
+     *
+     * @param servicio El servicio, con su dirección.
+     */
+    static void geocodificar(ServicioCercano servicio) {
+        if (servicio.getDireccion() == null || servicio.getDireccion().isBlank()) {
+            return;
+        }
+        GEOCODIFICACION.execute(() -> {
+            ServicioCercano geocodificado = guardarCoordenadas(servicio);
+            if (geocodificado != null) {
+                registrarCambio(geocodificado);
+            }
+        });
+    }
+
+    /**
+     * Carga en los índices todos los negocios y protectoras con coordenadas, sustituyendo lo que
+     * hubiera. Los registros anteriores a la existencia de las columnas de coordenadas se geocodifican
+     * en segundo plano y se van añadiendo conforme se resuelven. Si no se pueden leer, los índices
+     * no cambian y se vuelve a intentar en el siguiente {@link #refrescar()}.
+     * <p>
+     * Se lee del principal y sin {@link CacheConsultas}: los datos no pueden ser anteriores a la
+     * versión del registro de cambios desde la que después se refrescan.
+     * </p>
+     */
+    public void cargar() {
+        List<ServicioCercano> leidos;
+        List<ServicioCercano> leidas;
+        long ultima;
+        DBUtil.leerDelPrincipal(true);
+        try {
+            // La versión se lee antes que los datos: lo que cambie mientras tanto se vuelve a aplicar
+            ultima = leerUltimaVersion();
+            leidos = new NegocioModel().readServiciosCercanos();
+            leidas = new ProtectoraModel().readServiciosCercanos();
+        } finally {
+            DBUtil.leerDelPrincipal(false);
+        }
+        if (leidos == null || leidas == null) {
+            return;
+        }
+        List<ServicioCercano> servicios = new ArrayList<>();
+        servicios.addAll(leidos);
+        servicios.addAll(leidas);
+
+        List<ServicioCercano> pendientes = new ArrayList<>();
+        synchronized (this) {
+            categorias.clear();
+            for (ServicioCercano.Categoria categoria : ServicioCercano.Categoria.values()) {
+                List<ServicioCercano> valores = new ArrayList<>();
+                for (ServicioCercano s : servicios) {
+                    if (s.getCategoria() != categoria) continue;
+                    if (s.tieneCoordenadas()) {
+                        valores.add(s);
+                        categorias.put(s, categoria);
+                    } else if (s.getDireccion() != null && !s.getDireccion().isBlank()) {
+                        pendientes.add(s);
+                    }
+                }
+                double[] latitudes = new double[valores.size()];
+                double[] longitudes = new double[valores.size()];
+                for (int i = 0; i < valores.size(); i++) {
+                    latitudes[i] = valores.get(i).getLatitud();
+                    longitudes[i] = valores.get(i).getLongitud();
+                }
+                indices.get(categoria).cargar(valores, latitudes, longitudes);
+            }
+            version = ultima;
+            ultimoRefresco = System.currentTimeMillis();
+        }
+
+        if (!pendientes.isEmpty()) {
+            GEOCODIFICACION.execute(() -> geocodificarPendientes(pendientes));
+        }
+    }
+
+    /**
+     * Aplica los negocios y protectoras que han cambiado desde otros equipos, leyendo el registro de
+     * cambios ({@code cambio}, ver {@code V006__registro_cambios.sql}) desde la última versión aplicada
+     * y volviendo a leer solo esos registros. Como {@link ReplicaLocal}, vuelve a pedir las últimas
+     * {@value ReplicaLocal#SOLAPE_VERSIONES} versiones por si alguna se confirmó después que otra
+     * posterior, y lo vuelve a cargar todo si el registro se ha vaciado desde entonces.
+     * <p>
+     * Lee el registro como mucho una vez cada {@value #INTERVALO_REFRESCO_MS} ms. En el modo local no
+     * hace nada, porque {@link ReplicaLocal} ya avisa de los cambios que recibe. Hace consultas: no se
+     * debe llamar desde el hilo de la interfaz.
+     * </p>
+     */
+    public void refrescar() {
+        if (ReplicaLocal.getActiva() != null) {
+            return;
+        }
+        long desde;
+        synchronized (this) {
+            long ahora = System.currentTimeMillis();
+            if (ahora - ultimoRefresco < INTERVALO_REFRESCO_MS) {
+                return;
+            }
+            ultimoRefresco = ahora;
+            desde = version;
+        }
+        if (desde < 0) {
+            cargar();
+            return;
+        }
+
+        // Como en la carga, los registros cambiados se leen del principal y sin caché
+        DBUtil.leerDelPrincipal(true);
+        try {
+            CambioModel modelo = new CambioModel();
+            Set<Integer> negocios = new LinkedHashSet<>();
+            Set<Integer> protectoras = new LinkedHashSet<>();
+            long ultima = desde;
+            long consulta = Math.max(0, desde - ReplicaLocal.SOLAPE_VERSIONES);
+            boolean primerLote = true;
+            while (true) {
+                ArrayList<CambioModel.Cambio> lote = modelo.readCambios(consulta, 0, ReplicaLocal.CAMBIOS_POR_LOTE);
+                if (primerLote && desde > 0 && (lote.isEmpty() || modelo.readPrimeraVersion() > desde + 1)) {
+                    cargar();
+                    return;
+                }
+                primerLote = false;
+                for (CambioModel.Cambio c : lote) {
+                    if (CambioModel.NEGOCIO.equals(c.tabla())) {
+                        negocios.add(c.registro());
+                    } else if (CambioModel.PROTECTORAS.equals(c.tabla())) {
+                        protectoras.add(c.registro());
+                    }
+                    ultima = Math.max(ultima, c.version());
+                }
+                if (lote.size() < ReplicaLocal.CAMBIOS_POR_LOTE) {
+                    break;
+                }
+                consulta = lote.get(lote.size() - 1).version();
+            }
+
+            if (aplicarLeidos(negocios, new NegocioModel().readServiciosCercanos(negocios), ServicioCercano.Categoria.LOCAL)
+                    && aplicarLeidos(protectoras, new ProtectoraModel().readServiciosCercanos(protectoras), ServicioCercano.Categoria.PROTECTORA)) {
+                synchronized (this) {
+                    version = Math.max(version, ultima);
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            DBUtil.leerDelPrincipal(false);
+        }
+    }
+
+    /**
+     * Aplica los servicios vueltos a leer. Los IDs pedidos que no se han leído se han borrado.
+     *
+     * @return {@code false} si no se han podido leer.
+     */
+    private boolean aplicarLeidos(Set<Integer> ids, List<ServicioCercano> leidos, ServicioCercano.Categoria categoria) {
+        if (leidos == null) {
+            return false;
+        }
+        Set<Integer> borrados = new HashSet<>(ids);
+        for (ServicioCercano s : leidos) {
+            borrados.remove(s.getId());
+            actualizar(s);
+        }
+        for (int id : borrados) {
+            eliminar(new ServicioCercano(categoria, id, null, null, Double.NaN, Double.NaN));
+        }
+        return true;
+    }
+
+    /**
+     * Lee la última versión del registro de cambios, o -1 si no se puede (en el modo local no hace falta).
+     */
+    private static long leerUltimaVersion() {
+        if (ReplicaLocal.getActiva() != null) {
+            return -1;
+        }
+        try {
+            return new CambioModel().readUltimaVersion();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Añade un servicio al índice o actualiza su posición y categoría.
+     * Si el servicio no tiene coordenadas se quita del índice.
+     *
+     * @param servicio El servicio.
+     */
+    public synchronized void actualizar(ServicioCercano servicio) {
+        eliminar(servicio);
+        if (servicio.tieneCoordenadas()) {
+            indices.get(servicio.getCategoria()).insertar(servicio, servicio.getLatitud(), servicio.getLongitud());
+            categorias.put(servicio, servicio.getCategoria());
+        }
+    }
+
+    /**
+     * Quita un servicio del índice.
+     *
+     * @param servicio El servicio.
+     */
+    public synchronized void eliminar(ServicioCercano servicio) {
+        ServicioCercano.Categoria anterior = categorias.remove(servicio);
+        if (anterior != null) {
+            indices.get(anterior).eliminar(servicio);
+        }
+    }
+
+    /**
+     * Busca los {@code k} servicios más cercanos a un punto entre las categorías indicadas.
+     *
+     * @param latitud Latitud del punto, en grados.
+     * @param longitud Longitud del punto, en grados.
+     * @param k Número máximo de resultados.
+     * @param categoriasBuscadas Categorías en las que buscar; si no se indica ninguna se busca en todas.
+     * @return Los servicios encontrados con su distancia, del más cercano al más lejano.
+     */
+    public List<IndiceEspacial.Resultado<ServicioCercano>> buscarCercanos(double latitud, double longitud, int k,
+                                                                        ServicioCercano.Categoria... categoriasBuscadas) {
+        if (categoriasBuscadas.length == 0) {
+            categoriasBuscadas = ServicioCercano.Categoria.values();
+        }
+        List<IndiceEspacial.Resultado<ServicioCercano>> res = new ArrayList<>();
+        for (ServicioCercano.Categoria categoria : categoriasBuscadas) {
+            res.addAll(indices.get(categoria).cercanos(latitud, longitud, k, null));
+        }
+        if (categoriasBuscadas.length > 1) {
+            res.sort(Comparator.comparingDouble(IndiceEspacial.Resultado::getDistanciaKm));
+            if (res.size() > k) {
+                res = new ArrayList<>(res.subList(0, k));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Busca los {@code k} servicios más cercanos a una dirección.
+     *
+     * @param direccion La dirección de referencia.
+     * @param k Número máximo de resultados.
+     * @param categoriasBuscadas Categorías en las que buscar; si no se indica ninguna se busca en todas.
+     * @return Los servicios encontrados con su distancia, o {@code null} si la dirección no se pudo geocodificar.
+     */
+    public List<IndiceEspacial.Resultado<ServicioCercano>> buscarCercanos(String direccion, int k,
+                                                                        ServicioCercano.Categoria... categoriasBuscadas) {
+        double[] coord = Geocodificador.getPredeterminado().obtenerCoordenadas(direccion);
+        if (coord == null) {
+            return null;
+        }
+        return buscarCercanos(coord[0], coord[1], k, categoriasBuscadas);
+    }
+
+    /**
+     * Geocodifica los servicios que no tienen coordenadas, las guarda en la base de datos
+     * y los añade al índice.
+     *
+     * @param pendientes Servicios sin coordenadas.
+     */
+    private void geocodificarPendientes(List<ServicioCercano> pendientes) {
+        for (ServicioCercano s : pendientes) {
+            ServicioCercano geocodificado = guardarCoordenadas(s);
+            if (geocodificado != null) {
+                actualizar(geocodificado);
+            }
+        }
+    }
+
+    /**
+     * Geocodifica la dirección de un servicio y guarda sus coordenadas en la base de datos.
+     *
+     * @param s El servicio.
+     * @return El servicio con sus coordenadas, o {@code null} si la dirección no se encontró o no
+     *         se pudieron guardar.
+     */
+    private static ServicioCercano guardarCoordenadas(ServicioCercano s) {
+        double[] coord = Geocodificador.getPredeterminado().obtenerCoordenadas(s.getDireccion());
+        if (coord == null) {
+            return null;
+        }
+        boolean guardado = s.getCategoria() == ServicioCercano.Categoria.PROTECTORA
+                ? new ProtectoraModel().updateCoordenadas(s.getId(), coord[0], coord[1])
+                : new NegocioModel().updateCoordenadas(s.getId(), coord[0], coord[1]);
+        return guardado ? new ServicioCercano(s.getCategoria(), s.getId(), s.getNombre(), s.getDireccion(), coord[0], coord[1]) : null;
+    }
+}
@@ -0,0 +1,267 @@
+package model;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Protocolo {@code petsafe-img://} con el que el mapa ({@code WebView}) pide las fotos de la base
+ * de datos sin que haya que volcarlas antes a archivos temporales.
+ * <p>
+ * Las URLs tienen la forma {@code petsafe-img://<entidad>/<id>/<tamaño>} (ver {@link #url(String, int, int)}),
+ * donde la entidad es una de las de {@link ImagenModel} y el tamaño es el lado mayor, en píxeles,
+ * al que se reduce la imagen (0 para servirla tal cual). La imagen se lee de la base de datos solo
+ * cuando WebKit la pide, es decir, cuando el usuario abre el popup que la muestra.
+ * </p>
+ * <p>
+ * Las imágenes servidas se guardan reducidas en una caché de hasta {@value #MAX_BYTES} bytes,
+ * descartando las menos usadas, y dos peticiones simultáneas de la misma URL se resuelven con una
+ * sola lectura. Los modelos avisan con {@link #registrarCambio(String, int)} cuando una imagen cambia.
+ * </p>
+ */
+public final class ServidorImagenes {
+
+    /**
+     * Esquema de las URLs.
+     */
+    public static final String ESQUEMA = "petsafe-img";
+
+    /**
+     * Tamaño máximo de la caché de imágenes servidas, en bytes.
+     */
+    private static final long MAX_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * Imágenes servidas, por entidad, id y tamaño, de menos a más usada.
+     */
+    private static final LinkedHashMap<String, byte[]> CACHE = new LinkedHashMap<>(64, 0.75f, true);
+    private static long bytesCache = 0;
+
+    /**
+     * Lecturas en curso, para no repetir una que ya se está haciendo.
+     */
+    private static final Map<String, CompletableFuture<byte[]>> EN_CURSO = new ConcurrentHashMap<>();
+
+    private static boolean registrado = false;
+
+    private ServidorImagenes() {
+    }
+
+    /**
+     * Registra el protocolo en la máquina virtual. Debe llamarse una vez al arrancar, antes de
+     * cargar el mapa; las siguientes llamadas no hacen nada.
+     */
+    public static synchronized void registrar() {
+        if (registrado) {
+            return;
+        }
+        try {
+            URL.setURLStreamHandlerFactory(protocolo -> ESQUEMA.equals(protocolo) ? new Manejador() : null);
+            registrado = true;
+        } catch (Error e) {
+            // Ya hay otra fábrica registrada: el mapa no podrá mostrar las fotos
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Construye la URL de una imagen.
+     *
+     * @param entidad El tipo de registro, una de las constantes de {@link ImagenModel}.
+     * @param id El ID del registro.
+     * @param tamano Lado mayor en píxeles al que se reduce la imagen, o 0 para no reducirla.
+     * @return La URL, por ejemplo {@code petsafe-img://animal/12/100}.
+     */
+    public static String url(String entidad, int id, int tamano) {
+        return ESQUEMA + "://" + entidad + "/" + id + "/" + tamano;
+    }
+
+    /**
+     * Descarta de la caché las imágenes de un registro, porque su imagen ha cambiado o se ha borrado.
+     *
+     * @param entidad El tipo de registro, una de las constantes de {@link ImagenModel}.
+     * @param id El ID del registro.
+     */
+    static void registrarCambio(String entidad, int id) {
+        String prefijo = entidad + "/" + id + "/";
+        synchronized (CACHE) {
+            Iterator<Map.Entry<String, byte[]>> entradas = CACHE.entrySet().iterator();
+            while (entradas.hasNext()) {
+                Map.Entry<String, byte[]> entrada = entradas.next();
+                if (entrada.getKey().startsWith(prefijo)) {
+                    bytesCache -= entrada.getValue().length;
+                    entradas.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Devuelve los bytes de una imagen, de la caché o de la base de datos.
+     *
+     * @param entidad El tipo de registro.
+     * @param id El ID del registro.
+     * @param tamano Lado mayor en píxeles, o 0 para no reducirla.
+     * @return Los bytes (PNG o JPEG), o {@code null} si el registro no tiene imagen.
+     */
+    public static byte[] leer(String entidad, int id, int tamano) {
+        String clave = entidad + "/" + id + "/" + tamano;
+        synchronized (CACHE) {
+            byte[] guardada = CACHE.get(clave);
+            if (guardada != null) {
+                return guardada;
+            }
+        }
+
+        CompletableFuture<byte[]> nueva = new CompletableFuture<>();
+        CompletableFuture<byte[]> lectura = EN_CURSO.putIfAbsent(clave, nueva);
+        if (lectura != null) {
+            return lectura.join();
+        }
+        byte[] res = null;
+        try {
+            res = reducir(new ImagenModel().readImagen(entidad, id), tamano);
+            if (res != null) {
+                guardar(clave, res);
+            }
+        } finally {
+            nueva.complete(res);
+            EN_CURSO.remove(clave);
+        }
+        return res;
+    }
+
+    private static void guardar(String clave, byte[] imagen) {
+        synchronized (CACHE) {
+            byte[] anterior = CACHE.put(clave, imagen);
+            bytesCache += imagen.length - (anterior != null ? anterior.length : 0);
+            Iterator<byte[]> menosUsadas = CACHE.values().iterator();
+            while (bytesCache > MAX_BYTES && CACHE.size() > 1) {
+                bytesCache -= menosUsadas.next().length;
+                menosUsadas.remove();
+            }
+        }
+    }
+
+    /**
+     * Reduce una imagen para que su lado mayor no pase de un tamaño. Si ya es más pequeña, no se
+     * puede leer o el tamaño es 0, se devuelve sin cambios.
+     */
+    static byte[] reducir(byte[] imagen, int tamano) {
+        if (imagen == null || tamano <= 0) {
+            return imagen;
+        }
+        try {
+            BufferedImage original = ImageIO.read(new ByteArrayInputStream(imagen));
+            if (original == null) {
+                return imagen;
+            }
+            int lado = Math.max(original.getWidth(), original.getHeight());
+            if (lado <= tamano) {
+                return imagen;
+            }
+            int ancho = Math.max(1, original.getWidth() * tamano / lado);
+            int alto = Math.max(1, original.getHeight() * tamano / lado);
+            boolean transparente = original.getColorModel().hasAlpha();
+            BufferedImage reducida = new BufferedImage(ancho, alto,
+                    transparente ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = reducida.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(original, 0, 0, ancho, alto, null);
+            g.dispose();
+
+            ByteArrayOutputStream salida = new ByteArrayOutputStream();
+            ImageIO.write(reducida, transparente ? "png" : "jpg", salida);
+            return salida.toByteArray();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return imagen;
+        }
+    }
+
+    /**
+     * Abre las conexiones de las URLs {@code petsafe-img://}.
+     */
+    private static final class Manejador extends URLStreamHandler {
+        @Override
+        protected URLConnection openConnection(URL url) {
+            return new Conexion(url);
+        }
+    }
+
+    /**
+     * Conexión a una imagen: la lee al conectar y la devuelve desde memoria.
+     */
+    private static final class Conexion extends URLConnection {
+
+        private byte[] imagen;
+
+        Conexion(URL url) {
+            super(url);
+        }
+
+        @Override
+        public void connect() throws IOException {
+            if (connected) {
+                return;
+            }
+            String[] partes = url.getPath().split("/");
+            try {
+                if (partes.length != 3) {
+                    throw new NumberFormatException();
+                }
+                imagen = leer(url.getHost(), Integer.parseInt(partes[1]), Integer.parseInt(partes[2]));
+            } catch (NumberFormatException e) {
+                throw new FileNotFoundException("URL de imagen no válida: " + url);
+            }
+            if (imagen == null) {
+                throw new FileNotFoundException("Imagen no encontrada: " + url);
+            }
+            connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            connect();
+            return new ByteArrayInputStream(imagen);
+        }
+
+        @Override
+        public String getContentType() {
+            try {
+                connect();
+                String extension = ExportadorDatos.extension(new ByteArrayInputStream(imagen));
+                if ("bin".equals(extension)) {
+                    return "application/octet-stream";
+                }
+                return "image/" + ("jpg".equals(extension) ? "jpeg" : extension);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            try {
+                connect();
+                return imagen.length;
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+    }
+}
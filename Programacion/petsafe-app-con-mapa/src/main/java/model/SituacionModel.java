@@ -36,6 +36,7 @@ public class SituacionModel extends DBUtil {
             ps.setString(1, nombre);
 
             int filasAfectadas = ps.executeUpdate();
+            Catalogos.invalidar();
             if (filasAfectadas > 0)
                 res = true;
 
@@ -104,6 +105,7 @@ public class SituacionModel extends DBUtil {
             ps.setInt(2, situacion.getId());
 
             res = ps.executeUpdate();
+            Catalogos.invalidar();
         } catch (SQLException e) {
             e.printStackTrace();
         } finally {
@@ -146,6 +148,7 @@ public class SituacionModel extends DBUtil {
             ps.setInt(1, idSituacion);
 
             int filasAfectadas = ps.executeUpdate();
+            Catalogos.invalidar();
             if (filasAfectadas > 0)
                 res = true;
 
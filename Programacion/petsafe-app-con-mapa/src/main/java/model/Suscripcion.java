@@ -0,0 +1,120 @@
+package model;
+
+/**
+ * Zona vigilada por un usuario: quiere recibir un aviso cada vez que se reporta un animal
+ * del tipo indicado (o de cualquier tipo) a menos de cierta distancia de un punto.
+ * Dos suscripciones son iguales si tienen el mismo ID.
+ */
+public class Suscripcion {
+
+    /**
+     * Valor de {@link #getIdTipo()} para las suscripciones que aceptan cualquier tipo de animal.
+     */
+    public static final int TODOS_LOS_TIPOS = 0;
+
+    /**
+     * Radio máximo de una suscripción, en kilómetros. Acota el rectángulo en el que se buscan las
+     * suscripciones que cubren un reporte (ver {@link SuscripcionModel}).
+     */
+    public static final double RADIO_MAXIMO_KM = 50;
+
+    /**
+     * ID de la suscripción en la base de datos.
+     */
+    private int id;
+
+    /**
+     * ID del usuario que recibe los avisos.
+     */
+    private final int idUsuario;
+
+    /**
+     * Latitud del centro de la zona.
+     */
+    private final double latitud;
+
+    /**
+     * Longitud del centro de la zona.
+     */
+    private final double longitud;
+
+    /**
+     * Radio de la zona, en kilómetros.
+     */
+    private final double radioKm;
+
+    /**
+     * ID del tipo de animal vigilado, o {@link #TODOS_LOS_TIPOS}.
+     */
+    private final int idTipo;
+
+    /**
+     * Constructor con todos los datos de la suscripción.
+     *
+     * @param id ID de la suscripción (0 si todavía no está guardada).
+     * @param idUsuario ID del usuario que recibe los avisos.
+     * @param latitud Latitud del centro de la zona.
+     * @param longitud Longitud del centro de la zona.
+     * @param radioKm Radio de la zona, en kilómetros (como mucho {@link #RADIO_MAXIMO_KM}).
+     * @param idTipo ID del tipo de animal vigilado, o {@link #TODOS_LOS_TIPOS}.
+     */
+    public Suscripcion(int id, int idUsuario, double latitud, double longitud, double radioKm, int idTipo) {
+        this.id = id;
+        this.idUsuario = idUsuario;
+        this.latitud = latitud;
+        this.longitud = longitud;
+        this.radioKm = Math.min(radioKm, RADIO_MAXIMO_KM);
+        this.idTipo = idTipo;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getIdUsuario() {
+        return idUsuario;
+    }
+
+    public double getLatitud() {
+        return latitud;
+    }
+
+    public double getLongitud() {
+        return longitud;
+    }
+
+    public double getRadioKm() {
+        return radioKm;
+    }
+
+    public int getIdTipo() {
+        return idTipo;
+    }
+
+    /**
+     * Indica si un reporte en un punto y de un tipo de animal cae dentro de esta suscripción.
+     *
+     * @param latitud Latitud del reporte.
+     * @param longitud Longitud del reporte.
+     * @param idTipo ID del tipo de animal del reporte.
+     * @return {@code true} si el tipo coincide y el punto está dentro del radio.
+     */
+    public boolean cubre(double latitud, double longitud, int idTipo) {
+        return (this.idTipo == TODOS_LOS_TIPOS || this.idTipo == idTipo)
+                && IndiceEspacial.distanciaKm(this.latitud, this.longitud, latitud, longitud) <= radioKm;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Suscripcion && ((Suscripcion) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(id);
+    }
+}
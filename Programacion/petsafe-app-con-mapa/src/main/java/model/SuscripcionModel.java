@@ -0,0 +1,168 @@
+package model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+
+/**
+ * Clase modelo para gestionar las zonas vigiladas por los usuarios (tabla {@code suscripcion}).
+ * Al crear un reporte, {@link ServicioNotificaciones} busca aquí las zonas que lo cubren.
+ * Extiende {@link DBUtil} para utilizar sus funcionalidades de conexión a la base de datos.
+ */
+public class SuscripcionModel extends DBUtil {
+
+    /**
+     * Kilómetros por grado de latitud.
+     */
+    private static final double KM_POR_GRADO = Math.PI * IndiceEspacial.RADIO_TIERRA_KM / 180;
+
+    /**
+     * Crea una nueva suscripción y le asigna el ID generado por la base de datos.
+     *
+     * @param suscripcion La suscripción a guardar.
+     * @return {@code true} si la suscripción fue creada, {@code false} en caso contrario o si ocurre un error.
+     */
+    public boolean createSuscripcion(Suscripcion suscripcion) {
+        boolean res = false;
+
+        try {
+            String sql = "INSERT INTO suscripcion (usuario, latitud, longitud, radio_km, tipo) VALUES (?, ?, ?, ?, ?)";
+            PreparedStatement ps = this.getConexion().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+
+            ps.setInt(1, suscripcion.getIdUsuario());
+            ps.setDouble(2, suscripcion.getLatitud());
+            ps.setDouble(3, suscripcion.getLongitud());
+            ps.setDouble(4, suscripcion.getRadioKm());
+            if (suscripcion.getIdTipo() == Suscripcion.TODOS_LOS_TIPOS) {
+                ps.setNull(5, Types.INTEGER);
+            } else {
+                ps.setInt(5, suscripcion.getIdTipo());
+            }
+
+            if (ps.executeUpdate() > 0) {
+                res = true;
+                ResultSet claves = ps.getGeneratedKeys();
+                if (claves.next()) {
+                    suscripcion.setId(claves.getInt(1));
+                }
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            this.cerrarConexion();
+        }
+        return res;
+    }
+
+    /**
+     * Lee las suscripciones que cubren un punto para un tipo de animal, usando la conexión indicada
+     * sin cerrarla. La base de datos devuelve las que tienen el centro dentro del rectángulo que
+     * rodea al punto con {@link Suscripcion#RADIO_MAXIMO_KM} (índice {@code idx_suscripcion_coordenadas})
+     * y después se descartan las que no llegan al punto con su propio radio.
+     *
+     * @param con La conexión, por ejemplo con la transacción en la que se guarda el reporte.
+     * @param latitud Latitud del punto.
+     * @param longitud Longitud del punto.
+     * @param idTipo ID del tipo de animal.
+     * @return Las suscripciones que cubren el punto; puede haber varias del mismo usuario.
+     * @throws SQLException Si ocurre un error en la consulta.
+     */
+    ArrayList<Suscripcion> readSuscripcionesZona(Connection con, double latitud, double longitud, int idTipo) throws SQLException {
+        double gradosLat = Suscripcion.RADIO_MAXIMO_KM / KM_POR_GRADO;
+        double gradosLon = Suscripcion.RADIO_MAXIMO_KM / (KM_POR_GRADO * Math.max(Math.cos(Math.toRadians(latitud)), 0.01));
+
+        ArrayList<Suscripcion> suscripciones = new ArrayList<Suscripcion>();
+        String sql = "SELECT id, usuario, latitud, longitud, radio_km, tipo FROM suscripcion " +
+                "WHERE latitud BETWEEN ? AND ? AND longitud BETWEEN ? AND ? AND (tipo IS NULL OR tipo = ?)";
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setDouble(1, latitud - gradosLat);
+            ps.setDouble(2, latitud + gradosLat);
+            ps.setDouble(3, longitud - gradosLon);
+            ps.setDouble(4, longitud + gradosLon);
+            ps.setInt(5, idTipo);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Suscripcion s = leerFila(rs);
+                    if (s.cubre(latitud, longitud, idTipo)) {
+                        suscripciones.add(s);
+                    }
+                }
+            }
+        }
+        return suscripciones;
+    }
+
+    /**
+     * Lee las suscripciones de un usuario.
+     *
+     * @param idUsuario El ID del usuario.
+     * @return Un {@link ArrayList} con sus suscripciones, o {@code null} si ocurre un error.
+     */
+    public ArrayList<Suscripcion> readSuscripcionesUsuario(int idUsuario) {
+        return leer("SELECT id, usuario, latitud, longitud, radio_km, tipo FROM suscripcion WHERE usuario = ?", idUsuario);
+    }
+
+    /**
+     * Elimina una suscripción.
+     *
+     * @param idSuscripcion El ID de la suscripción.
+     * @return {@code true} si se eliminó, {@code false} en caso contrario o si ocurre un error.
+     */
+    public boolean deleteSuscripcion(int idSuscripcion) {
+        boolean res = false;
+
+        try {
+            PreparedStatement ps = this.getConexion().prepareStatement("DELETE FROM suscripcion WHERE id = ?");
+            ps.setInt(1, idSuscripcion);
+
+            if (ps.executeUpdate() > 0) {
+                res = true;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            this.cerrarConexion();
+        }
+        return res;
+    }
+
+    /**
+     * Ejecuta una consulta de suscripciones con el ID de usuario como parámetro.
+     */
+    private ArrayList<Suscripcion> leer(String sql, int idUsuario) {
+        ArrayList<Suscripcion> suscripciones = new ArrayList<Suscripcion>();
+
+        try {
+            PreparedStatement ps = this.getConexion().prepareStatement(sql);
+            ps.setInt(1, idUsuario);
+            ResultSet rs = ps.executeQuery();
+
+            while (rs.next()) {
+                suscripciones.add(leerFila(rs));
+            }
+
+            return suscripciones;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            this.cerrarConexion();
+        }
+    }
+
+    /**
+     * Crea la suscripción de la fila actual de una consulta.
+     */
+    private static Suscripcion leerFila(ResultSet rs) throws SQLException {
+        int tipo = rs.getInt("tipo");
+        if (rs.wasNull()) {
+            tipo = Suscripcion.TODOS_LOS_TIPOS;
+        }
+        return new Suscripcion(rs.getInt("id"), rs.getInt("usuario"), rs.getDouble("latitud"),
+                rs.getDouble("longitud"), rs.getDouble("radio_km"), tipo);
+    }
+}
@@ -37,6 +37,7 @@ public class TipoAnimalModel extends DBUtil {
             ps.setString(1, nombre);
 
             int filasAfectadas = ps.executeUpdate();
+            Catalogos.invalidar();
             if (filasAfectadas > 0)
                 res = true;
 
@@ -105,6 +106,7 @@ public class TipoAnimalModel extends DBUtil {
             ps.setInt(2, tipoAnimal.getId());
 
             res = ps.executeUpdate();
+            Catalogos.invalidar();
         } catch (SQLException e) {
             e.printStackTrace();
         } finally {
@@ -147,6 +149,7 @@ public class TipoAnimalModel extends DBUtil {
             ps.setInt(1, idTipoAnimal);
 
             int filasAfectadas = ps.executeUpdate();
+            Catalogos.invalidar();
             if (filasAfectadas > 0)
                 res = true;
 
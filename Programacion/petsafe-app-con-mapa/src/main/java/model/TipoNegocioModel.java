@@ -38,6 +38,7 @@ public class TipoNegocioModel extends DBUtil{
             ps.setString(1, nombre);
 
             int filasAfectadas = ps.executeUpdate();
+            Catalogos.invalidar();
             if (filasAfectadas > 0)
                 res = true;
 
@@ -106,6 +107,7 @@ public class TipoNegocioModel extends DBUtil{
             ps.setInt(2,tipoNegocio.getId());
 
             res = ps.executeUpdate();
+            Catalogos.invalidar();
         } catch (SQLException e) {
             e.printStackTrace();
         } finally {
@@ -148,6 +150,7 @@ public class TipoNegocioModel extends DBUtil{
             ps.setInt(1, idTipoNegocio);
 
             int filasAfectadas = ps.executeUpdate();
+            Catalogos.invalidar();
             if (filasAfectadas > 0)
                 res = true;
 
@@ -4,10 +4,15 @@ import com.example.petsafeapp.Usuario;
 import javafx.scene.image.Image; // Import mantenido aunque el método que lo usa está comentado
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Clase modelo para gestionar las operaciones CRUD (Crear, Leer, Actualizar, Eliminar)
@@ -19,6 +24,33 @@ import java.util.ArrayList;
  */
 public class UsuarioModel extends DBUtil{
 
+    /**
+     * Tipo de cuenta de un usuario, según la tabla en la que tiene sus datos propios.
+     */
+    public enum TipoCuenta {
+        PERSONA, NEGOCIO, PROTECTORA,
+        /** El usuario no tiene datos en ninguna de las tablas anteriores. */
+        NINGUNO
+    }
+
+    /**
+     * Datos de un usuario que se completan en segundo plano tras iniciar sesión.
+     *
+     * @param foto Archivo con su imagen de perfil, o {@code null} si no tiene o no se pudo descargar.
+     * @param tipoCuenta Su tipo de cuenta.
+     */
+    public record DatosUsuario(File foto, TipoCuenta tipoCuenta) {
+    }
+
+    /**
+     * Hilo que completa los datos de los usuarios tras iniciar sesión.
+     */
+    private static final ExecutorService HIDRATACION = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "hidratacion-usuario");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
     /**
      * Crea un nuevo registro de usuario en la base de datos, incluyendo su imagen de logo como un BLOB.
      * La imagen se obtiene del objeto {@link Usuario} a través de {@code usuario.getFoto()}.
@@ -133,21 +165,28 @@ public class UsuarioModel extends DBUtil{
     public int updateUsuario(Usuario usuario) { // Podría lanzar FileNotFoundException
         int res = 0;
         FileInputStream fis = null;
+        // Si la foto todavía no se ha cargado (ver hidratarUsuario) se conserva la guardada
+        boolean conFoto = usuario.getFoto() != null;
 
         try {
             String sql = "UPDATE Usuario SET nombreUser = ?, contraseña = ?, email = ?, " +
-                    "telefonoContacto = ?, logoImagen = ? WHERE id = ?;";
+                    "telefonoContacto = ?" + (conFoto ? ", logoImagen = ?" : "") + " WHERE id = ?;";
             PreparedStatement ps = this.getConexion().prepareStatement(sql);
-            fis = new FileInputStream(usuario.getFoto()); // Puede lanzar FileNotFoundException
 
             ps.setString(1, usuario.getNombre());
             ps.setString(2, usuario.getContrasena());
             ps.setString(3, usuario.getEmail());
             ps.setString(4, usuario.getNumTel());
-            ps.setBinaryStream(5, fis, (int) usuario.getFoto().length()); // Actualiza el BLOB
-            ps.setInt(6,usuario.getId());
+            if (conFoto) {
+                fis = new FileInputStream(usuario.getFoto()); // Puede lanzar FileNotFoundException
+                ps.setBinaryStream(5, fis, (int) usuario.getFoto().length()); // Actualiza el BLOB
+            }
+            ps.setInt(conFoto ? 6 : 5, usuario.getId());
 
             res = ps.executeUpdate();
+            if (res > 0 && conFoto) {
+                ServidorImagenes.registrarCambio(ImagenModel.USUARIO, usuario.getId());
+            }
         } catch (SQLException | FileNotFoundException e) { // Capturar también FileNotFoundException
             e.printStackTrace();
         } finally {
@@ -197,8 +236,10 @@ public class UsuarioModel extends DBUtil{
             ps.setInt(1, idUsuario);
 
             int filasAfectadas = ps.executeUpdate();
-            if (filasAfectadas > 0)
+            if (filasAfectadas > 0) {
                 res = true;
+                ServidorImagenes.registrarCambio(ImagenModel.USUARIO, idUsuario);
+            }
 
         } catch (SQLException e) {
             e.printStackTrace();
@@ -238,25 +279,7 @@ public class UsuarioModel extends DBUtil{
                 String contrasenya = rs.getString("contraseña");
                 String email = rs.getString("email");
                 String numTel = rs.getString("telefonoContacto");
-                InputStream is = rs.getBinaryStream("logoImagen");
-
-                File tempFile = null;
-                if (is != null) {
-                    tempFile = File.createTempFile("imagen_", ".jpg");
-                    try (FileOutputStream fos = new FileOutputStream(tempFile)) {
-                        byte[] buffer = new byte[1024];
-                        int bytesRead;
-                        while ((bytesRead = is.read(buffer)) != -1) {
-                            fos.write(buffer, 0, bytesRead);
-                        }
-                    } catch (IOException e) { // Captura IOException del manejo de archivos
-                        e.printStackTrace();
-                    } finally {
-                        if (is != null) {
-                           try { is.close(); } catch (IOException e) { e.printStackTrace(); }
-                        }
-                    }
-                }
+                File tempFile = volcarImagen(rs.getBinaryStream("logoImagen"));
                 res = new Usuario(id, tempFile, numTel, email, contrasenya, nombre);
             }
 
@@ -268,6 +291,155 @@ public class UsuarioModel extends DBUtil{
         return res; // Devuelve el usuario encontrado o null
     }
 
+    /**
+     * Comprueba las credenciales de un usuario para iniciar sesión.
+     * <p>
+     * A diferencia de {@link #getUsuarioConCredenciales(String, String)}, solo busca por el email
+     * (que tiene un índice único) y lee las columnas de texto: la contraseña se compara en memoria y
+     * la imagen de perfil no se descarga. El usuario devuelto tiene la foto a {@code null}; se completa
+     * después con {@link #hidratarUsuario(int)}.
+     * </p>
+     *
+     * @param emailIntroducido El email del usuario.
+     * @param contrasenaIntroducida La contraseña introducida.
+     * @return El {@link Usuario} sin foto si las credenciales son correctas, o {@code null} si no lo son
+     *         o si ocurre un error.
+     */
+    public Usuario autenticar(String emailIntroducido, String contrasenaIntroducida) {
+        Usuario res = null;
+
+        try {
+            String sql = "SELECT id, nombreUser, contraseña, email, telefonoContacto FROM Usuario WHERE email = ? LIMIT 1";
+            PreparedStatement ps = this.getConexion().prepareStatement(sql);
+
+            ps.setString(1, emailIntroducido);
+
+            ResultSet rs = ps.executeQuery();
+
+            if (rs.next()) {
+                String contrasenya = rs.getString("contraseña");
+                if (contrasenya != null && contrasenaIntroducida != null
+                        && MessageDigest.isEqual(contrasenya.getBytes(StandardCharsets.UTF_8),
+                                                 contrasenaIntroducida.getBytes(StandardCharsets.UTF_8))) {
+                    res = new Usuario(rs.getInt("id"), null, rs.getString("telefonoContacto"),
+                            rs.getString("email"), contrasenya, rs.getString("nombreUser"));
+                }
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            this.cerrarConexion();
+        }
+        return res;
+    }
+
+    /**
+     * Lee en segundo plano los datos que faltan de un usuario devuelto por
+     * {@link #autenticar(String, String)}: descarga su imagen de perfil y averigua su tipo de cuenta.
+     * El usuario no se modifica aquí; quien lo muestra asigna la foto con {@link Usuario#setFoto(File)}
+     * en su propio hilo.
+     *
+     * @param idUsuario El ID del usuario.
+     * @return Un {@link CompletableFuture} que se completa con la foto y el tipo de cuenta.
+     */
+    public static CompletableFuture<DatosUsuario> hidratarUsuario(int idUsuario) {
+        return CompletableFuture.supplyAsync(() -> {
+            UsuarioModel um = new UsuarioModel();
+            File foto = um.getFotoUsuario(idUsuario);
+            return new DatosUsuario(foto, um.getTipoCuenta(idUsuario));
+        }, HIDRATACION);
+    }
+
+    /**
+     * Descarga la imagen de perfil de un usuario a un archivo temporal.
+     *
+     * @param idUsuario El ID del usuario.
+     * @return El archivo con la imagen, o {@code null} si no tiene o si ocurre un error.
+     */
+    public File getFotoUsuario(int idUsuario) {
+        File res = null;
+
+        try {
+            String sql = "SELECT logoImagen FROM Usuario WHERE id = ?";
+            PreparedStatement ps = this.getConexion().prepareStatement(sql);
+
+            ps.setInt(1, idUsuario);
+
+            ResultSet rs = ps.executeQuery();
+
+            if (rs.next()) {
+                res = volcarImagen(rs.getBinaryStream("logoImagen"));
+            }
+
+        } catch (SQLException | IOException e) {
+            e.printStackTrace();
+        } finally {
+            this.cerrarConexion();
+        }
+        return res;
+    }
+
+    /**
+     * Averigua el tipo de cuenta de un usuario con una sola consulta.
+     *
+     * @param idUsuario El ID del usuario.
+     * @return El tipo de cuenta, o {@code null} si ocurre un error.
+     */
+    public TipoCuenta getTipoCuenta(int idUsuario) {
+        TipoCuenta res = null;
+
+        try {
+            String sql = "SELECT EXISTS(SELECT 1 FROM Persona WHERE Usuario_id = ?) AS persona, " +
+                    "EXISTS(SELECT 1 FROM Negocio WHERE Usuario_id = ?) AS negocio, " +
+                    "EXISTS(SELECT 1 FROM protectoras WHERE Usuario_id = ?) AS protectora";
+            PreparedStatement ps = this.getConexion().prepareStatement(sql);
+
+            ps.setInt(1, idUsuario);
+            ps.setInt(2, idUsuario);
+            ps.setInt(3, idUsuario);
+
+            ResultSet rs = ps.executeQuery();
+
+            if (rs.next()) {
+                if (rs.getBoolean("persona"))
+                    res = TipoCuenta.PERSONA;
+                else if (rs.getBoolean("negocio"))
+                    res = TipoCuenta.NEGOCIO;
+                else if (rs.getBoolean("protectora"))
+                    res = TipoCuenta.PROTECTORA;
+                else
+                    res = TipoCuenta.NINGUNO;
+            }
+
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            this.cerrarConexion();
+        }
+        return res;
+    }
+
+    /**
+     * Guarda el contenido de un BLOB de imagen en un archivo temporal y cierra el flujo.
+     *
+     * @param is El flujo del BLOB, o {@code null} si la columna es {@code NULL}.
+     * @return El archivo temporal, o {@code null} si no había imagen.
+     * @throws IOException Si no se puede crear el archivo temporal.
+     */
+    private static File volcarImagen(InputStream is) throws IOException {
+        if (is == null) {
+            return null;
+        }
+        File tempFile = File.createTempFile("imagen_", ".jpg");
+        try (InputStream in = is; FileOutputStream fos = new FileOutputStream(tempFile)) {
+            in.transferTo(fos);
+        } catch (IOException e) { // Captura IOException del manejo de archivos
+            e.printStackTrace();
+        }
+        return tempFile;
+    }
+
     /**
      * Verifica si un email ya existe en la base de datos de usuarios.
      *
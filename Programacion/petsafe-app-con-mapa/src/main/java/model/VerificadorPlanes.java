@@ -0,0 +1,402 @@
+package model;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Comprobación de los planes de ejecución de las consultas de los modelos, para detectar cuándo un
+ * cambio convierte una búsqueda por índice en un recorrido completo de la tabla.
+ * <p>
+ * Lee el código fuente del paquete {@code model}, extrae las sentencias SQL escritas como literales
+ * (incluidas las que se parten en varias líneas con {@code +}) y ejecuta {@code EXPLAIN} de cada
+ * {@code SELECT}, {@code UPDATE} y {@code DELETE} contra la base de datos configurada en
+ * {@link DBUtil}, que debe ser una MariaDB local con muchos datos (por ejemplo la de
+ * {@code Sistemas Informáticos/docker-compose.yaml}). Una sentencia falla si:
+ * </p>
+ * <ul>
+ *     <li>recorre entera una tabla o un índice ({@code type} {@code ALL} o {@code index}) de más de
+ *     {@code umbral} filas, o</li>
+ *     <li>necesita ordenar aparte o crear una tabla temporal ({@code Using filesort} o
+ *     {@code Using temporary}),</li>
+ * </ul>
+ * <p>
+ * salvo que su método esté en {@link #PERMITIDOS} con el motivo. Los parámetros {@code ?} se
+ * sustituyen por valores de ejemplo ({@code '1'}, o los de {@link #PARAMETROS}); las sentencias que
+ * se construyen con partes variables no se pueden comprobar y se indican en el informe.
+ * </p>
+ * <p>
+ * Uso: {@code VerificadorPlanes <carpeta de model> [informe] [umbral]}. Escribe el plan de cada
+ * sentencia en el informe (por defecto {@code planes-consultas.txt}) y termina con código 1 si alguna
+ * falla. El perfil {@code verificar-planes} de Maven lo ejecuta en la fase {@code verify}, y
+ * {@code Sistemas Informáticos/Scripts/verificar_planes.sh} lo ejecuta contra una MariaDB desechable
+ * que arranca con Docker y rellena con {@link GeneradorDatos}.
+ * </p>
+ */
+public class VerificadorPlanes extends DBUtil {
+
+    /**
+     * Filas a partir de las cuales un recorrido completo se considera un fallo.
+     */
+    public static final long UMBRAL_POR_DEFECTO = 1000;
+
+    /**
+     * Métodos cuyas sentencias pueden recorrer tablas enteras u ordenar aparte, con el motivo.
+     * Son listados completos que la aplicación carga a propósito.
+     */
+    static final Map<String, String> PERMITIDOS = Map.ofEntries(
+            Map.entry("AnimalModel.readAnimales/0", "listado completo para el mapa"),
+            Map.entry("AnimalModel.readHashesImagen/0", "carga del índice de imágenes al arrancar"),
+            Map.entry("AnimalModel.readIdsSinHashImagen/0", "proceso de relleno por lotes, fuera de la aplicación"),
+            Map.entry("AuditoriaModel.readHistorial/2", "ordena solo el historial de un animal"),
+            Map.entry("CitaModel.readCitas/0", "listado completo de citas"),
+            Map.entry("ExportadorDatos", "exportaciones completas, leídas en streaming"),
+            Map.entry("MantenimientoAuditoria.leerParticiones/2", "tabla de metadatos de information_schema"),
+            Map.entry("MarcadorMapaModel.leerVisibles/0", "carga completa del mapa, una vez por ejecución"),
+            Map.entry("NegocioModel.readMarcadoresMapa/0", "marcadores del mapa"),
+            Map.entry("NegocioModel.readNegocios/0", "listado completo con imágenes"),
+            Map.entry("NegocioModel.readServiciosCercanos/0", "carga del índice espacial al arrancar"),
+            Map.entry("NegocioModel.readTextosBusqueda/0", "carga del buscador de texto"),
+            Map.entry("NotificacionModel.readNotificacionesNoLeidas/1", "ordena solo las notificaciones sin leer de un usuario"),
+            Map.entry("PersonaModel.readPersonas/0", "listado completo"),
+            Map.entry("ProtectoraModel.readMarcadoresMapa/0", "marcadores del mapa"),
+            Map.entry("ProtectoraModel.readProtectoras/0", "listado completo con imágenes"),
+            Map.entry("ProtectoraModel.readServiciosCercanos/0", "carga del índice espacial al arrancar"),
+            Map.entry("ProtectoraModel.readTextosBusqueda/0", "carga del buscador de texto"),
+            Map.entry("ReporteModel.readMarcadoresMapa/0", "marcadores del mapa"),
+            Map.entry("ReporteModel.readReportes/0", "listado completo con imágenes"),
+            Map.entry("ReporteModel.readReportesParaBuscar/0", "carga del buscador de texto"),
+            Map.entry("SituacionModel.readSituaciones/0", "catálogo pequeño"),
+            Map.entry("TipoAnimalModel.readTipoAnimales/0", "catálogo pequeño"),
+            Map.entry("TipoNegocioModel.readTipoNegocio/0", "catálogo pequeño"),
+            Map.entry("UsuarioModel.readUsuarios/0", "listado completo de fotos para el mapa")
+    );
+
+    /**
+     * Valores de ejemplo de los parámetros de algunos métodos, cuando {@code '1'} no sirve
+     * (por ejemplo, para columnas de fecha, o para las lecturas incrementales, que en la aplicación
+     * solo piden las últimas versiones).
+     */
+    static final Map<String, String[]> PARAMETROS = Map.of(
+            "CitaModel.readCitasDia/2", new String[]{"1", "2025-05-20"},
+            "MarcadorMapaModel.leerDesde/1", new String[]{"1000000000"},
+            "ReporteModel.readCandidatosEmparejamiento/4",
+            new String[]{"39.42", "39.52", "-0.44", "-0.31", "1", "1", "2025-04-20", "2025-06-19"},
+            "SuscripcionModel.readSuscripcionesZona/4", new String[]{"39.02", "39.92", "-0.96", "0.21", "1"}
+    );
+
+    /**
+     * Sentencia SQL encontrada en el código de un modelo.
+     *
+     * @param metodo Clase, método y número de parámetros del método en el que aparece
+     *               ({@code Clase.metodo/n}, para distinguir las sobrecargas).
+     * @param linea Línea en la que empieza el literal.
+     * @param sql La sentencia, o {@code null} si se construye con partes variables.
+     */
+    record Sentencia(String metodo, int linea, String sql) {
+    }
+
+    private static final Pattern METODO = Pattern.compile(
+            "(?:public|protected|private|static)[\\w<>\\[\\], ]*?\\s(\\w+)\\s*\\(([^;{)]*)\\)\\s*(?:throws [\\w., ]+)?\\{");
+
+    private static final Pattern VERBO = Pattern.compile("^\\s*(SELECT|UPDATE|DELETE|INSERT)\\b",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Extrae las sentencias SQL de un fichero fuente.
+     *
+     * @param clase Nombre de la clase, para identificar las sentencias.
+     * @param fuente El código fuente.
+     * @return Las sentencias encontradas, en orden de aparición.
+     */
+    static List<Sentencia> extraer(String clase, String fuente) {
+        String codigo = quitarComentarios(fuente);
+
+        List<int[]> metodos = new ArrayList<>();
+        List<String> nombres = new ArrayList<>();
+        Matcher m = METODO.matcher(codigo);
+        while (m.find()) {
+            metodos.add(new int[]{m.start()});
+            String parametros = m.group(2).trim();
+            nombres.add(m.group(1) + "/" + (parametros.isEmpty() ? 0 : parametros.split(",").length));
+        }
+
+        List<Sentencia> res = new ArrayList<>();
+        int i = 0;
+        while (i < codigo.length()) {
+            char c = codigo.charAt(i);
+            if (c == '\'') {
+                // literal de carácter, por ejemplo '"'
+                i = codigo.indexOf('\'', i + (codigo.charAt(i + 1) == '\\' ? 3 : 2)) + 1;
+                continue;
+            }
+            if (c != '"') {
+                i++;
+                continue;
+            }
+
+            int inicio = i;
+            StringBuilder sql = new StringBuilder();
+            boolean dinamica = false;
+            while (true) {
+                i = leerLiteral(codigo, i, sql);
+                int j = saltarEspacios(codigo, i);
+                if (j < codigo.length() && codigo.charAt(j) == '+') {
+                    int k = saltarEspacios(codigo, j + 1);
+                    if (k < codigo.length() && codigo.charAt(k) == '"') {
+                        i = k;
+                        continue;
+                    }
+                    dinamica = true;
+                }
+                break;
+            }
+
+            // Un literal con solo la palabra clave (como la etiqueta de un case) no es una sentencia
+            if (VERBO.matcher(sql).find() && (dinamica || sql.toString().trim().split("\\s+").length > 1)) {
+                String metodo = clase;
+                for (int n = metodos.size() - 1; n >= 0; n--) {
+                    if (metodos.get(n)[0] < inicio) {
+                        metodo = clase + "." + nombres.get(n);
+                        break;
+                    }
+                }
+                int linea = 1;
+                for (int n = 0; n < inicio; n++) {
+                    if (codigo.charAt(n) == '\n') linea++;
+                }
+                res.add(new Sentencia(metodo, linea, dinamica ? null : sql.toString().trim()));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Sustituye los comentarios por espacios, conservando los saltos de línea y sin tocar los literales.
+     */
+    private static String quitarComentarios(String fuente) {
+        StringBuilder sb = new StringBuilder(fuente.length());
+        int i = 0;
+        while (i < fuente.length()) {
+            char c = fuente.charAt(i);
+            if (c == '"') {
+                int fin = finLiteral(fuente, i);
+                sb.append(fuente, i, fin);
+                i = fin;
+            } else if (fuente.startsWith("//", i)) {
+                while (i < fuente.length() && fuente.charAt(i) != '\n') {
+                    sb.append(' ');
+                    i++;
+                }
+            } else if (fuente.startsWith("/*", i)) {
+                int fin = fuente.indexOf("*/", i + 2);
+                fin = fin < 0 ? fuente.length() : fin + 2;
+                for (; i < fin; i++) {
+                    sb.append(fuente.charAt(i) == '\n' ? '\n' : ' ');
+                }
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Posición siguiente a las comillas de cierre del literal que empieza en {@code i}.
+     */
+    private static int finLiteral(String s, int i) {
+        int j = i + 1;
+        while (j < s.length() && s.charAt(j) != '"') {
+            j += s.charAt(j) == '\\' ? 2 : 1;
+        }
+        return Math.min(j + 1, s.length());
+    }
+
+    /**
+     * Lee el literal que empieza en {@code i}, añade su contenido (con los escapes resueltos) y
+     * devuelve la posición siguiente.
+     */
+    private static int leerLiteral(String s, int i, StringBuilder destino) {
+        int j = i + 1;
+        while (j < s.length() && s.charAt(j) != '"') {
+            char c = s.charAt(j);
+            if (c == '\\' && j + 1 < s.length()) {
+                char e = s.charAt(j + 1);
+                destino.append(e == 'n' ? '\n' : e == 't' ? '\t' : e == 'r' ? '\r' : e);
+                j += 2;
+            } else {
+                destino.append(c);
+                j++;
+            }
+        }
+        return j + 1;
+    }
+
+    private static int saltarEspacios(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Comprueba el plan de una sentencia y lo añade al informe.
+     *
+     * @param s La sentencia.
+     * @param umbral Filas a partir de las cuales un recorrido completo es un fallo.
+     * @param informe Donde se escribe el plan.
+     * @return {@code true} si la sentencia cumple las reglas (o está permitida).
+     */
+    boolean comprobar(Sentencia s, long umbral, PrintWriter informe) {
+        informe.println("== " + s.metodo() + " (línea " + s.linea() + ")");
+        if (s.sql() == null) {
+            informe.println("   OMITIDA: la sentencia se construye con partes variables");
+            informe.println();
+            return true;
+        }
+        informe.println("   " + s.sql().replaceAll("\\s+", " "));
+        if (s.sql().regionMatches(true, 0, "INSERT", 0, 6)) {
+            informe.println("   OK (INSERT)");
+            informe.println();
+            return true;
+        }
+
+        List<String> problemas = new ArrayList<>();
+        try (PreparedStatement ps = this.getConexion().prepareStatement("EXPLAIN " + s.sql())) {
+            asignarParametros(ps, s);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String tabla = rs.getString("table");
+                    String tipo = rs.getString("type");
+                    long filas = rs.getLong("rows");
+                    String extra = rs.getString("Extra");
+                    informe.printf("   tabla=%s type=%s key=%s rows=%d extra=%s%n",
+                            tabla, tipo, rs.getString("key"), filas, extra);
+
+                    if (("ALL".equals(tipo) || "index".equals(tipo)) && filas > umbral) {
+                        problemas.add("recorre " + filas + " filas de " + tabla + " (" + tipo + ")");
+                    }
+                    if (extra != null && extra.contains("Using filesort")) {
+                        problemas.add("ordena aparte (filesort) en " + tabla);
+                    }
+                    if (extra != null && extra.contains("Using temporary")) {
+                        problemas.add("usa una tabla temporal en " + tabla);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            problemas.add("no se pudo ejecutar EXPLAIN: " + e.getMessage());
+        } finally {
+            this.cerrarConexion();
+        }
+
+        String permitido = PERMITIDOS.get(s.metodo());
+        boolean ok = problemas.isEmpty() || permitido != null;
+        for (String p : problemas) {
+            informe.println("   " + (permitido != null ? "PERMITIDO" : "FALLO") + ": " + p);
+        }
+        if (!problemas.isEmpty() && permitido != null) {
+            informe.println("   Motivo: " + permitido);
+        }
+        if (problemas.isEmpty()) {
+            informe.println("   OK");
+        }
+        informe.println();
+        return ok;
+    }
+
+    /**
+     * Asigna valores de ejemplo a los parámetros de una sentencia: enteros para {@code LIMIT} y
+     * {@code OFFSET}, los de {@link #PARAMETROS} si los hay y {@code '1'} en el resto.
+     */
+    private static void asignarParametros(PreparedStatement ps, Sentencia s) throws SQLException {
+        String[] valores = PARAMETROS.get(s.metodo());
+        String sql = s.sql().toUpperCase(Locale.ROOT);
+        int n = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            if (sql.charAt(i) != '?') {
+                continue;
+            }
+            n++;
+            String antes = sql.substring(Math.max(0, i - 8), i).trim();
+            if (antes.endsWith("LIMIT") || antes.endsWith("OFFSET") || antes.endsWith(",")) {
+                ps.setInt(n, 50);
+            } else if (valores != null && n <= valores.length) {
+                ps.setString(n, valores[n - 1]);
+            } else {
+                ps.setString(n, "1");
+            }
+        }
+    }
+
+    /**
+     * Extrae las sentencias de todos los modelos de una carpeta.
+     *
+     * @param carpeta La carpeta con el código del paquete {@code model}.
+     * @return Las sentencias, ordenadas por clase.
+     * @throws IOException Si no se puede leer algún fichero.
+     */
+    static List<Sentencia> extraerCarpeta(Path carpeta) throws IOException {
+        List<Sentencia> res = new ArrayList<>();
+        try (Stream<Path> ficheros = Files.list(carpeta)) {
+            for (Path f : ficheros.filter(p -> p.toString().endsWith(".java")).sorted().toList()) {
+                String clase = f.getFileName().toString().replace(".java", "");
+                if (clase.equals(VerificadorPlanes.class.getSimpleName()) || clase.equals(Migraciones.class.getSimpleName())) {
+                    continue;
+                }
+                res.addAll(extraer(clase, Files.readString(f, StandardCharsets.UTF_8)));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Ejecuta la comprobación desde la línea de comandos.
+     *
+     * @param args Carpeta del paquete {@code model}, y opcionalmente el fichero del informe y el umbral.
+     * @throws IOException Si no se puede leer el código o escribir el informe.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Uso: VerificadorPlanes <carpeta de model> [informe] [umbral]");
+            System.exit(2);
+        }
+        Path carpeta = Paths.get(args[0]);
+        Path destino = Paths.get(args.length > 1 ? args[1] : "planes-consultas.txt");
+        long umbral = args.length > 2 ? Long.parseLong(args[2]) : UMBRAL_POR_DEFECTO;
+
+        List<Sentencia> sentencias = extraerCarpeta(carpeta);
+        VerificadorPlanes verificador = new VerificadorPlanes();
+        int fallos = 0;
+        try (PrintWriter informe = new PrintWriter(Files.newBufferedWriter(destino, StandardCharsets.UTF_8))) {
+            informe.println("Planes de ejecución de las consultas de " + carpeta + " (umbral " + umbral + " filas)");
+            informe.println();
+            for (Sentencia s : sentencias) {
+                if (!verificador.comprobar(s, umbral, informe)) {
+                    fallos++;
+                    System.err.println("FALLO: " + s.metodo() + " (línea " + s.linea() + ")");
+                }
+            }
+        }
+
+        System.out.println(sentencias.size() + " sentencias comprobadas, " + fallos + " con fallos. Informe: " + destino);
+        if (fallos > 0) {
+            System.exit(1);
+        }
+    }
+}
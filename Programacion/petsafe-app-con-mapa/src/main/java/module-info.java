@@ -2,6 +2,7 @@ module com.example.petsafeapp {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.sql;
+    requires java.desktop;
     requires mysql.connector.j;
     requires org.json;
     requires javafx.web;
@@ -0,0 +1,5 @@
+@echo off
+rem Lanzador de PetSafe con el archivo CDS generado por el perfil arranque-rapido.
+rem Si el archivo no existe o no es compatible con esta JVM, se arranca igual sin el (-Xshare:auto).
+set DIR=%~dp0
+"%DIR%java" -Xshare:auto -XX:SharedArchiveFile="%DIR%..\lib\petsafe.jsa" -m com.example.petsafeapp/com.example.petsafeapp.HelloApplication %*
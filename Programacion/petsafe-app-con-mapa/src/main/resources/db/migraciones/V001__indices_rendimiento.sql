@@ -0,0 +1,16 @@
+-- Índices que necesitan las consultas habituales de la aplicación.
+
+-- 1. Inicio de sesión: búsqueda por email (UsuarioModel.autenticar). El email debe ser único.
+CREATE UNIQUE INDEX uq_usuario_email ON usuario (email);
+
+-- 2. Agenda: citas de un usuario en un día (CitaModel)
+CREATE INDEX idx_citas_usuario_fecha ON citas (Id_Usuario, Fecha);
+
+-- 3. Búsqueda de un animal por descripción y tipo (AnimalModel.getAnimalConNombreYTipo)
+CREATE INDEX idx_animal_descripcion_tipo ON animal (descripcion, tipo);
+
+-- 4. Listados de veterinarios y locales: negocios de un tipo en orden de ID
+CREATE INDEX idx_negocio_tipo_id ON negocio (tipoNegocio_id, idNegocio);
+
+-- 5. Historial de auditoría de un animal por fecha
+CREATE INDEX idx_auditoria_animal_fecha ON auditoriaanimal (animal_id, fecha_hora);
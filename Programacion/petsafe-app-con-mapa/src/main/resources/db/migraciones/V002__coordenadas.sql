@@ -0,0 +1,16 @@
+-- Coordenadas geográficas de negocios y protectoras para la búsqueda de servicios cercanos.
+-- La aplicación las rellena al crear o modificar el registro (geocodificando la dirección)
+-- y las carga al arrancar en un índice espacial en memoria.
+
+-- 1. Columnas de latitud y longitud
+ALTER TABLE negocio
+    ADD COLUMN latitud DOUBLE DEFAULT NULL,
+    ADD COLUMN longitud DOUBLE DEFAULT NULL;
+
+ALTER TABLE protectoras
+    ADD COLUMN latitud DOUBLE DEFAULT NULL,
+    ADD COLUMN longitud DOUBLE DEFAULT NULL;
+
+-- 2. Índices para cargar solo los registros ya geocodificados
+CREATE INDEX idx_negocio_coordenadas ON negocio (latitud, longitud);
+CREATE INDEX idx_protectoras_coordenadas ON protectoras (latitud, longitud);
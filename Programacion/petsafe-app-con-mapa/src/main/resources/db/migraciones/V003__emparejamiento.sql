@@ -0,0 +1,12 @@
+-- Emparejamiento de reportes de animales perdidos y encontrados.
+-- La aplicación guarda las coordenadas de cada reporte al crearlo y mantiene en memoria
+-- un índice espacio-temporal con los reportes de animales perdidos y encontrados.
+
+-- 1. Coordenadas del reporte
+ALTER TABLE reporte
+    ADD COLUMN latitud DOUBLE DEFAULT NULL,
+    ADD COLUMN longitud DOUBLE DEFAULT NULL;
+
+-- 2. Índices para la carga inicial del emparejador (solo perdidos y encontrados, por tipo y fecha)
+CREATE INDEX idx_reporte_coordenadas ON reporte (latitud, longitud);
+CREATE INDEX idx_animal_tipo_situacion_fecha ON animal (tipo, situacion, fecha);
@@ -0,0 +1,10 @@
+-- Hash perceptual (dHash de 64 bits) de la foto de cada animal, para buscar fotos parecidas.
+-- La aplicación lo calcula al crear o modificar un animal; los animales ya existentes se
+-- completan con el proceso model.RellenoHashesImagen.
+
+-- 1. Columna del hash
+ALTER TABLE animal
+    ADD COLUMN hash_imagen BIGINT DEFAULT NULL;
+
+-- 2. Índice para cargar los hashes y localizar los animales pendientes de calcular
+CREATE INDEX idx_animal_hash_imagen ON animal (hash_imagen);
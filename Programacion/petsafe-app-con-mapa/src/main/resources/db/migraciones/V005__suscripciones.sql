@@ -0,0 +1,32 @@
+-- Avisos de reportes cercanos.
+-- Cada usuario puede vigilar zonas (centro + radio) para un tipo de animal o para todos.
+-- Al crear un reporte dentro de una zona vigilada, la aplicación genera una notificación
+-- para el usuario, que se muestra en la aplicación hasta que la lee.
+
+-- 1. Zonas vigiladas por los usuarios
+CREATE TABLE IF NOT EXISTS `suscripcion` (
+  `id` int(11) NOT NULL AUTO_INCREMENT,
+  `usuario` int(11) NOT NULL,
+  `latitud` double NOT NULL,
+  `longitud` double NOT NULL,
+  `radio_km` double NOT NULL,
+  `tipo` int(11) DEFAULT NULL,
+  PRIMARY KEY (`id`),
+  KEY `idx_suscripcion_usuario` (`usuario`),
+  CONSTRAINT `suscripcion_ibfk_1` FOREIGN KEY (`usuario`) REFERENCES `usuario` (`id`) ON DELETE CASCADE,
+  CONSTRAINT `suscripcion_ibfk_2` FOREIGN KEY (`tipo`) REFERENCES `tipo` (`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+-- 2. Notificaciones pendientes de leer
+CREATE TABLE IF NOT EXISTS `notificacion` (
+  `id` int(11) NOT NULL AUTO_INCREMENT,
+  `usuario` int(11) NOT NULL,
+  `reporte` int(11) DEFAULT NULL,
+  `mensaje` varchar(500) NOT NULL,
+  `fecha` datetime NOT NULL,
+  `leida` tinyint(1) NOT NULL DEFAULT 0,
+  PRIMARY KEY (`id`),
+  KEY `idx_notificacion_usuario_leida` (`usuario`, `leida`),
+  CONSTRAINT `notificacion_ibfk_1` FOREIGN KEY (`usuario`) REFERENCES `usuario` (`id`) ON DELETE CASCADE,
+  CONSTRAINT `notificacion_ibfk_2` FOREIGN KEY (`reporte`) REFERENCES `reporte` (`id`) ON DELETE SET NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
@@ -0,0 +1,99 @@
+-- Registro de cambios para el modo local (petsafe.localFirst).
+-- Cada alta, modificación o baja en las tablas que la aplicación copia en local deja una fila en
+-- `cambio` con un número de versión creciente. La aplicación pide los cambios posteriores a la
+-- última versión que tiene y vuelve a leer solo esos registros.
+
+-- 1. Registro de cambios. `usuario` solo se rellena en las tablas privadas de cada usuario (citas),
+--    para que cada aplicación reciba solo los cambios que le interesan.
+CREATE TABLE IF NOT EXISTS `cambio` (
+  `version` bigint(20) NOT NULL AUTO_INCREMENT,
+  `tabla` varchar(32) NOT NULL,
+  `registro` int(11) NOT NULL,
+  `usuario` int(11) DEFAULT NULL,
+  PRIMARY KEY (`version`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+-- 2. Versión de cada cita, para detectar conflictos al subir los cambios hechos en local:
+--    una modificación solo se aplica si la cita sigue en la versión sobre la que se hizo.
+ALTER TABLE citas
+    ADD COLUMN version int(11) NOT NULL DEFAULT 0;
+
+DELIMITER $$
+
+CREATE TRIGGER Citas_Antes_Actualizar_Version
+BEFORE UPDATE ON citas
+FOR EACH ROW
+BEGIN
+    SET NEW.version = OLD.version + 1;
+END$$
+
+-- 3. Disparadores que rellenan el registro de cambios
+
+CREATE TRIGGER Citas_Cambio_Insertar AFTER INSERT ON citas
+FOR EACH ROW INSERT INTO cambio (tabla, registro, usuario) VALUES ('citas', NEW.id, NEW.Id_Usuario)$$
+
+CREATE TRIGGER Citas_Cambio_Actualizar AFTER UPDATE ON citas
+FOR EACH ROW INSERT INTO cambio (tabla, registro, usuario) VALUES ('citas', NEW.id, NEW.Id_Usuario)$$
+
+CREATE TRIGGER Citas_Cambio_Borrar AFTER DELETE ON citas
+FOR EACH ROW INSERT INTO cambio (tabla, registro, usuario) VALUES ('citas', OLD.id, OLD.Id_Usuario)$$
+
+CREATE TRIGGER Negocio_Cambio_Insertar AFTER INSERT ON negocio
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('negocio', NEW.idNegocio)$$
+
+CREATE TRIGGER Negocio_Cambio_Actualizar AFTER UPDATE ON negocio
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('negocio', NEW.idNegocio)$$
+
+CREATE TRIGGER Negocio_Cambio_Borrar AFTER DELETE ON negocio
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('negocio', OLD.idNegocio)$$
+
+CREATE TRIGGER Protectoras_Cambio_Insertar AFTER INSERT ON protectoras
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('protectoras', NEW.idProtectora)$$
+
+CREATE TRIGGER Protectoras_Cambio_Actualizar AFTER UPDATE ON protectoras
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('protectoras', NEW.idProtectora)$$
+
+CREATE TRIGGER Protectoras_Cambio_Borrar AFTER DELETE ON protectoras
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('protectoras', OLD.idProtectora)$$
+
+CREATE TRIGGER Reporte_Cambio_Insertar AFTER INSERT ON reporte
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('reporte', NEW.id)$$
+
+CREATE TRIGGER Reporte_Cambio_Actualizar AFTER UPDATE ON reporte
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('reporte', NEW.id)$$
+
+CREATE TRIGGER Reporte_Cambio_Borrar AFTER DELETE ON reporte
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('reporte', OLD.id)$$
+
+-- La copia local de los reportes incluye el tipo, la situación y la fecha de su animal
+CREATE TRIGGER Animal_Cambio_Actualizar AFTER UPDATE ON animal
+FOR EACH ROW INSERT INTO cambio (tabla, registro) SELECT 'reporte', id FROM reporte WHERE animal = NEW.id$$
+
+CREATE TRIGGER Tipo_Cambio_Insertar AFTER INSERT ON tipo
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('tipo', NEW.id)$$
+
+CREATE TRIGGER Tipo_Cambio_Actualizar AFTER UPDATE ON tipo
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('tipo', NEW.id)$$
+
+CREATE TRIGGER Tipo_Cambio_Borrar AFTER DELETE ON tipo
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('tipo', OLD.id)$$
+
+CREATE TRIGGER Situacion_Cambio_Insertar AFTER INSERT ON situacion
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('situacion', NEW.id)$$
+
+CREATE TRIGGER Situacion_Cambio_Actualizar AFTER UPDATE ON situacion
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('situacion', NEW.id)$$
+
+CREATE TRIGGER Situacion_Cambio_Borrar AFTER DELETE ON situacion
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('situacion', OLD.id)$$
+
+CREATE TRIGGER TipoNegocio_Cambio_Insertar AFTER INSERT ON tiponegocio
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('tiponegocio', NEW.id)$$
+
+CREATE TRIGGER TipoNegocio_Cambio_Actualizar AFTER UPDATE ON tiponegocio
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('tiponegocio', NEW.id)$$
+
+CREATE TRIGGER TipoNegocio_Cambio_Borrar AFTER DELETE ON tiponegocio
+FOR EACH ROW INSERT INTO cambio (tabla, registro) VALUES ('tiponegocio', OLD.id)$$
+
+DELIMITER ;
@@ -0,0 +1,74 @@
+-- Auditoría de animales particionada por meses.
+-- auditoriaanimal y animal_imagen_backup crecen con cada alta, modificación o baja de un animal, y
+-- la copia de seguridad guarda la imagen entera. Al partirlas por mes, el proceso
+-- model.MantenimientoAuditoria puede archivar en ficheros y borrar un mes entero con un
+-- DROP PARTITION, sin recorrer ni bloquear el resto de la tabla.
+
+-- 1. Una tabla particionada no admite claves ajenas. Además, la auditoría tiene que sobrevivir al
+--    animal: con la clave ajena, la fila que Animal_Antes_Borrar inserta impedía borrarlo.
+ALTER TABLE auditoriaanimal DROP FOREIGN KEY IF EXISTS auditoriaanimal_ibfk_1;
+ALTER TABLE animal_imagen_backup DROP FOREIGN KEY IF EXISTS animal_imagen_backup_ibfk_1;
+
+-- 2. La columna de la partición tiene que formar parte de la clave primaria y no puede ser nula.
+--    El índice (animal_id, fecha) sirve el historial de un animal ya ordenado por fecha; el de
+--    auditoriaanimal ya lo crea V001, así que solo se añade si falta.
+UPDATE auditoriaanimal SET fecha_hora = '2000-01-01' WHERE fecha_hora IS NULL;
+UPDATE animal_imagen_backup SET fecha_copia = '2000-01-01' WHERE fecha_copia IS NULL;
+
+ALTER TABLE auditoriaanimal
+    MODIFY fecha_hora DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, fecha_hora),
+    DROP INDEX IF EXISTS animal_id,
+    ADD INDEX IF NOT EXISTS idx_auditoria_animal_fecha (animal_id, fecha_hora);
+
+ALTER TABLE animal_imagen_backup
+    MODIFY fecha_copia DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, fecha_copia),
+    DROP INDEX IF EXISTS animal_id,
+    ADD INDEX IF NOT EXISTS idx_imagen_backup_animal_fecha (animal_id, fecha_copia);
+
+-- 3. Particiones. De momento una sola; MantenimientoAuditoria la divide en un mes por partición
+--    (p202601, p202602...) y va creando las de los meses siguientes.
+ALTER TABLE auditoriaanimal
+    PARTITION BY RANGE (TO_DAYS(fecha_hora)) (PARTITION p_futuro VALUES LESS THAN MAXVALUE);
+
+ALTER TABLE animal_imagen_backup
+    PARTITION BY RANGE (TO_DAYS(fecha_copia)) (PARTITION p_futuro VALUES LESS THAN MAXVALUE);
+
+-- 4. Al modificar un animal, la imagen solo se copia si ha cambiado: antes se guardaba una copia
+--    completa en cada modificación aunque fuera la misma foto.
+DROP TRIGGER IF EXISTS Animal_Despues_Actualizar;
+
+DELIMITER $$
+
+CREATE TRIGGER Animal_Despues_Actualizar
+AFTER UPDATE ON animal
+FOR EACH ROW
+BEGIN
+    INSERT INTO AuditoriaAnimal (animal_id, operacion, datos_antiguos, datos_nuevos)
+    VALUES (
+        NEW.id,
+        'UPDATE',
+        CONCAT(
+            'descripcion: ', OLD.descripcion, ', ',
+            'tipo: ', OLD.tipo, ', ',
+            'situacion: ', OLD.situacion, ', ',
+            'fecha: ', OLD.fecha
+        ),
+        CONCAT(
+            'descripcion: ', NEW.descripcion, ', ',
+            'tipo: ', NEW.tipo, ', ',
+            'situacion: ', NEW.situacion, ', ',
+            'fecha: ', NEW.fecha
+        )
+    );
+
+    IF NOT (OLD.imagen <=> NEW.imagen) THEN
+        INSERT INTO Animal_Imagen_Backup (animal_id, imagen)
+        VALUES (NEW.id, NEW.imagen);
+    END IF;
+END$$
+
+DELIMITER ;
@@ -0,0 +1,156 @@
+-- Marcadores del mapa precalculados.
+-- El mapa necesitaba unir reporte, animal y usuario y leer aparte negocio y protectoras. Ahora lee
+-- una sola tabla, `marcador_mapa`, que los disparadores mantienen al día con cada escritura en
+-- esas tablas. Las bajas no borran la fila sino que la ocultan (visible = 0), para que la aplicación
+-- pueda pedir solo lo que ha cambiado desde su última lectura (`version`) y quitar del mapa
+-- lo que ya no está.
+
+-- 1. Tabla de marcadores. `version` sale de una secuencia del servidor, así que solo crece, sin
+--    depender del reloj. Solo cambia si cambia algún dato del marcador: las modificaciones que no
+--    afectan al mapa (la foto del animal, su hash...) no lo reenvían.
+CREATE SEQUENCE IF NOT EXISTS seq_marcador_mapa;
+
+CREATE TABLE IF NOT EXISTS `marcador_mapa` (
+  `entidad` varchar(12) NOT NULL,
+  `entidad_id` int(11) NOT NULL,
+  `categoria` varchar(12) NOT NULL,
+  `latitud` double DEFAULT NULL,
+  `longitud` double DEFAULT NULL,
+  `nombre` varchar(255) DEFAULT NULL,
+  `descripcion` varchar(255) DEFAULT NULL,
+  `direccion` varchar(255) DEFAULT NULL,
+  `tipo` int(11) NOT NULL DEFAULT 0,
+  `en_adopcion` tinyint(1) NOT NULL DEFAULT 0,
+  `id_imagen` int(11) NOT NULL DEFAULT 0,
+  `visible` tinyint(1) NOT NULL DEFAULT 1,
+  `version` bigint(20) NOT NULL DEFAULT 0,
+  PRIMARY KEY (`entidad`, `entidad_id`),
+  KEY `idx_marcador_mapa_visible` (`visible`, `categoria`),
+  KEY `idx_marcador_mapa_version` (`version`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_general_ci;
+
+DELIMITER $$
+
+CREATE TRIGGER Marcador_Mapa_Version_Insertar BEFORE INSERT ON marcador_mapa
+FOR EACH ROW SET NEW.version = NEXT VALUE FOR seq_marcador_mapa$$
+
+CREATE TRIGGER Marcador_Mapa_Version_Actualizar BEFORE UPDATE ON marcador_mapa
+FOR EACH ROW
+BEGIN
+    IF NOT (OLD.categoria <=> NEW.categoria AND OLD.latitud <=> NEW.latitud AND OLD.longitud <=> NEW.longitud
+            AND OLD.nombre <=> NEW.nombre AND OLD.descripcion <=> NEW.descripcion
+            AND OLD.direccion <=> NEW.direccion AND OLD.tipo <=> NEW.tipo AND OLD.en_adopcion <=> NEW.en_adopcion
+            AND OLD.id_imagen <=> NEW.id_imagen AND OLD.visible <=> NEW.visible) THEN
+        SET NEW.version = NEXT VALUE FOR seq_marcador_mapa;
+    END IF;
+END$$
+
+-- 2. Marcadores de reportes. Dependen del reporte, de su animal y del nombre de su usuario.
+CREATE PROCEDURE Marcador_Mapa_Reportes(IN p_reporte INT, IN p_animal INT, IN p_usuario INT)
+BEGIN
+    INSERT INTO marcador_mapa (entidad, entidad_id, categoria, latitud, longitud, nombre, descripcion,
+                               direccion, tipo, en_adopcion, id_imagen, visible)
+    SELECT 'reporte', r.id, 'REPORTE', r.latitud, r.longitud, u.nombreUser, a.descripcion, r.ubicacion,
+           COALESCE(a.tipo, 0), a.situacion <=> 3, a.id, NOT (a.situacion <=> 1)
+    FROM reporte r
+    INNER JOIN animal a ON r.animal = a.id
+    INNER JOIN usuario u ON r.Usuario = u.id
+    WHERE r.id = p_reporte OR r.animal = p_animal OR r.Usuario = p_usuario
+    ON DUPLICATE KEY UPDATE
+        latitud = VALUES(latitud), longitud = VALUES(longitud), nombre = VALUES(nombre),
+        descripcion = VALUES(descripcion), direccion = VALUES(direccion), tipo = VALUES(tipo),
+        en_adopcion = VALUES(en_adopcion), id_imagen = VALUES(id_imagen), visible = VALUES(visible);
+END$$
+
+CREATE TRIGGER Reporte_Marcador_Insertar AFTER INSERT ON reporte
+FOR EACH ROW CALL Marcador_Mapa_Reportes(NEW.id, NULL, NULL)$$
+
+CREATE TRIGGER Reporte_Marcador_Actualizar AFTER UPDATE ON reporte
+FOR EACH ROW CALL Marcador_Mapa_Reportes(NEW.id, NULL, NULL)$$
+
+CREATE TRIGGER Reporte_Marcador_Borrar AFTER DELETE ON reporte
+FOR EACH ROW UPDATE marcador_mapa SET visible = 0 WHERE entidad = 'reporte' AND entidad_id = OLD.id$$
+
+CREATE TRIGGER Animal_Marcador_Actualizar AFTER UPDATE ON animal
+FOR EACH ROW CALL Marcador_Mapa_Reportes(NULL, NEW.id, NULL)$$
+
+CREATE TRIGGER Usuario_Marcador_Actualizar AFTER UPDATE ON usuario
+FOR EACH ROW
+BEGIN
+    IF NOT (OLD.nombreUser <=> NEW.nombreUser) THEN
+        CALL Marcador_Mapa_Reportes(NULL, NULL, NEW.id);
+    END IF;
+END$$
+
+-- 3. Marcadores de negocios y protectoras, con los datos de la propia fila.
+CREATE TRIGGER Negocio_Marcador_Insertar AFTER INSERT ON negocio
+FOR EACH ROW
+INSERT INTO marcador_mapa (entidad, entidad_id, categoria, latitud, longitud, nombre, descripcion,
+                           direccion, tipo, id_imagen)
+VALUES ('negocio', NEW.idNegocio, IF(NEW.tipoNegocio_id <=> 1, 'VETERINARIO', 'LOCAL'), NEW.latitud,
+        NEW.longitud, NEW.nombreNegocio, NEW.descripcion, NEW.direccion, COALESCE(NEW.tipoNegocio_id, 0),
+        COALESCE(NEW.Usuario_id, 0))
+ON DUPLICATE KEY UPDATE
+    categoria = VALUES(categoria), latitud = VALUES(latitud), longitud = VALUES(longitud),
+    nombre = VALUES(nombre), descripcion = VALUES(descripcion), direccion = VALUES(direccion),
+    tipo = VALUES(tipo), id_imagen = VALUES(id_imagen), visible = 1$$
+
+CREATE TRIGGER Negocio_Marcador_Actualizar AFTER UPDATE ON negocio
+FOR EACH ROW
+UPDATE marcador_mapa
+SET categoria = IF(NEW.tipoNegocio_id <=> 1, 'VETERINARIO', 'LOCAL'), latitud = NEW.latitud,
+    longitud = NEW.longitud, nombre = NEW.nombreNegocio, descripcion = NEW.descripcion,
+    direccion = NEW.direccion, tipo = COALESCE(NEW.tipoNegocio_id, 0), id_imagen = COALESCE(NEW.Usuario_id, 0)
+WHERE entidad = 'negocio' AND entidad_id = NEW.idNegocio$$
+
+CREATE TRIGGER Negocio_Marcador_Borrar AFTER DELETE ON negocio
+FOR EACH ROW UPDATE marcador_mapa SET visible = 0 WHERE entidad = 'negocio' AND entidad_id = OLD.idNegocio$$
+
+CREATE TRIGGER Protectoras_Marcador_Insertar AFTER INSERT ON protectoras
+FOR EACH ROW
+INSERT INTO marcador_mapa (entidad, entidad_id, categoria, latitud, longitud, nombre, descripcion,
+                           direccion, id_imagen)
+VALUES ('protectora', NEW.idProtectora, 'PROTECTORA', NEW.latitud, NEW.longitud, NEW.nombreProtectora,
+        NEW.descripcion, NEW.direccion, COALESCE(NEW.Usuario_id, 0))
+ON DUPLICATE KEY UPDATE
+    latitud = VALUES(latitud), longitud = VALUES(longitud), nombre = VALUES(nombre),
+    descripcion = VALUES(descripcion), direccion = VALUES(direccion), id_imagen = VALUES(id_imagen),
+    visible = 1$$
+
+CREATE TRIGGER Protectoras_Marcador_Actualizar AFTER UPDATE ON protectoras
+FOR EACH ROW
+UPDATE marcador_mapa
+SET latitud = NEW.latitud, longitud = NEW.longitud, nombre = NEW.nombreProtectora,
+    descripcion = NEW.descripcion, direccion = NEW.direccion, id_imagen = COALESCE(NEW.Usuario_id, 0)
+WHERE entidad = 'protectora' AND entidad_id = NEW.idProtectora$$
+
+CREATE TRIGGER Protectoras_Marcador_Borrar AFTER DELETE ON protectoras
+FOR EACH ROW UPDATE marcador_mapa SET visible = 0 WHERE entidad = 'protectora' AND entidad_id = OLD.idProtectora$$
+
+DELIMITER ;
+
+-- 4. Carga inicial, después de crear los disparadores para no perder lo que se escriba mientras
+--    tanto. Los reportes de animales ya encontrados (situación 1) quedan ocultos y los negocios de
+--    tipo 1 son veterinarios.
+INSERT INTO marcador_mapa (entidad, entidad_id, categoria, latitud, longitud, nombre, descripcion,
+                           direccion, tipo, en_adopcion, id_imagen, visible)
+SELECT 'reporte', r.id, 'REPORTE', r.latitud, r.longitud, u.nombreUser, a.descripcion, r.ubicacion,
+       COALESCE(a.tipo, 0), a.situacion <=> 3, a.id, NOT (a.situacion <=> 1)
+FROM reporte r
+INNER JOIN animal a ON r.animal = a.id
+INNER JOIN usuario u ON r.Usuario = u.id
+ON DUPLICATE KEY UPDATE entidad_id = entidad_id;
+
+INSERT INTO marcador_mapa (entidad, entidad_id, categoria, latitud, longitud, nombre, descripcion,
+                           direccion, tipo, id_imagen)
+SELECT 'negocio', idNegocio, IF(tipoNegocio_id <=> 1, 'VETERINARIO', 'LOCAL'), latitud, longitud,
+       nombreNegocio, descripcion, direccion, COALESCE(tipoNegocio_id, 0), COALESCE(Usuario_id, 0)
+FROM negocio
+ON DUPLICATE KEY UPDATE entidad_id = entidad_id;
+
+INSERT INTO marcador_mapa (entidad, entidad_id, categoria, latitud, longitud, nombre, descripcion,
+                           direccion, id_imagen)
+SELECT 'protectora', idProtectora, 'PROTECTORA', latitud, longitud, nombreProtectora, descripcion,
+       direccion, COALESCE(Usuario_id, 0)
+FROM protectoras
+ON DUPLICATE KEY UPDATE entidad_id = entidad_id;
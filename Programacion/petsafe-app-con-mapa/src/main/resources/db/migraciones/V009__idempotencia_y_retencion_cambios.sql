@@ -0,0 +1,18 @@
+-- Subida segura de las citas creadas en el modo local y retención del registro de cambios.
+
+-- 1. Clave de idempotencia de las citas. La aplicación genera un UUID para cada cita que crea en
+--    local y lo envía con el INSERT. Si la conexión se corta después de que el servidor guarde la
+--    cita pero antes de que llegue la respuesta, al reintentar la subida el índice único impide
+--    crearla otra vez y la aplicación recupera la ya creada por su clave. Las citas creadas fuera
+--    del modo local la dejan a NULL, que el índice único admite repetido.
+ALTER TABLE citas
+    ADD COLUMN clave_cliente char(36) DEFAULT NULL;
+
+ALTER TABLE citas
+    ADD UNIQUE INDEX uk_citas_clave_cliente (clave_cliente);
+
+-- 2. Momento de cada cambio del registro (V006), para borrar los antiguos: lo hace
+--    model.MantenimientoCambios con los días de retención de cambios.retencionDias. Las filas que
+--    ya había toman el momento de la migración, así que se conservan un periodo completo.
+ALTER TABLE cambio
+    ADD COLUMN fecha timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP;
@@ -0,0 +1,7 @@
+-- Búsqueda en la base de datos de las zonas vigiladas que cubren un reporte nuevo.
+-- Al crear un reporte, la aplicación lee las suscripciones cuyo centro está dentro del rectángulo
+-- que rodea al reporte con el radio máximo de una suscripción (50 km), y comprueba después una a
+-- una la distancia y el tipo de animal. Así ve también las suscripciones creadas desde otros equipos.
+
+-- 1. Índice para el rectángulo de latitud y longitud
+CREATE INDEX idx_suscripcion_coordenadas ON suscripcion (latitud, longitud);
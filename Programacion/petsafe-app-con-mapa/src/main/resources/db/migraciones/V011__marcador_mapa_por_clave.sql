@@ -0,0 +1,33 @@
+-- Marcadores de reportes recalculados por clave.
+-- El procedimiento de V008 buscaba los reportes con `r.id = p_reporte OR r.animal = p_animal OR
+-- r.Usuario = p_usuario`: con el OR no se puede usar ningún índice y cada escritura en reporte,
+-- animal o usuario recorría la tabla entera. Ahora los reportes afectados se buscan con una
+-- consulta por clave (la clave primaria y los índices de `animal` y `Usuario`), unidas con UNION,
+-- y las claves nulas no se consultan. Los disparadores no cambian: siguen llamando al procedimiento
+-- con una sola clave.
+
+DROP PROCEDURE IF EXISTS Marcador_Mapa_Reportes;
+
+DELIMITER $$
+
+CREATE PROCEDURE Marcador_Mapa_Reportes(IN p_reporte INT, IN p_animal INT, IN p_usuario INT)
+BEGIN
+    INSERT INTO marcador_mapa (entidad, entidad_id, categoria, latitud, longitud, nombre, descripcion,
+                               direccion, tipo, en_adopcion, id_imagen, visible)
+    SELECT 'reporte', r.id, 'REPORTE', r.latitud, r.longitud, u.nombreUser, a.descripcion, r.ubicacion,
+           COALESCE(a.tipo, 0), a.situacion <=> 3, a.id, NOT (a.situacion <=> 1)
+    FROM (SELECT id FROM reporte WHERE p_reporte IS NOT NULL AND id = p_reporte
+          UNION
+          SELECT id FROM reporte WHERE p_animal IS NOT NULL AND animal = p_animal
+          UNION
+          SELECT id FROM reporte WHERE p_usuario IS NOT NULL AND Usuario = p_usuario) afectados
+    INNER JOIN reporte r ON r.id = afectados.id
+    INNER JOIN animal a ON r.animal = a.id
+    INNER JOIN usuario u ON r.Usuario = u.id
+    ON DUPLICATE KEY UPDATE
+        latitud = VALUES(latitud), longitud = VALUES(longitud), nombre = VALUES(nombre),
+        descripcion = VALUES(descripcion), direccion = VALUES(direccion), tipo = VALUES(tipo),
+        en_adopcion = VALUES(en_adopcion), id_imagen = VALUES(id_imagen), visible = VALUES(visible);
+END$$
+
+DELIMITER ;
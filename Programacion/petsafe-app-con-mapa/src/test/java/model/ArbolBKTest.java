@@ -0,0 +1,97 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de {@link ArbolBK}: las búsquedas por radio se comparan con una búsqueda exhaustiva.
+ */
+class ArbolBKTest {
+
+    @Test
+    void encuentraLosMismosElementosQueRecorrerTodos() {
+        SplittableRandom aleatorio = new SplittableRandom(42);
+        ArbolBK<Integer> arbol = new ArbolBK<>();
+        long[] hashes = new long[2000];
+        for (int i = 0; i < hashes.length; i++) {
+            // La mitad son variaciones de pocos bits de otro hash, como las fotos parecidas
+            hashes[i] = i > 0 && i % 2 == 0 ? cambiarBits(hashes[i - 1], aleatorio.nextInt(8), aleatorio) : aleatorio.nextLong();
+            arbol.insertar(hashes[i], i);
+        }
+        assertEquals(hashes.length, arbol.size());
+
+        for (int consulta = 0; consulta < 50; consulta++) {
+            long hash = cambiarBits(hashes[aleatorio.nextInt(hashes.length)], aleatorio.nextInt(6), aleatorio);
+            for (int radio : new int[]{0, 3, HashPerceptual.DISTANCIA_SIMILAR}) {
+                List<ArbolBK.Resultado<Integer>> encontrados = arbol.buscar(hash, radio);
+
+                List<Integer> esperados = new ArrayList<>();
+                for (int i = 0; i < hashes.length; i++) {
+                    if (HashPerceptual.distancia(hash, hashes[i]) <= radio) {
+                        esperados.add(i);
+                    }
+                }
+                assertEquals(esperados, encontrados.stream().map(ArbolBK.Resultado::getValor).sorted().collect(Collectors.toList()));
+                for (int i = 0; i < encontrados.size(); i++) {
+                    ArbolBK.Resultado<Integer> r = encontrados.get(i);
+                    assertEquals(HashPerceptual.distancia(hash, hashes[r.getValor()]), r.getDistancia());
+                    if (i > 0) {
+                        assertTrue(encontrados.get(i - 1).getDistancia() <= r.getDistancia());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void guardaJuntosLosElementosConElMismoHash() {
+        ArbolBK<String> arbol = new ArbolBK<>();
+        arbol.insertar(0xF0F0L, "a");
+        arbol.insertar(0xF0F0L, "b");
+        arbol.insertar(0xF0F1L, "c");
+
+        List<ArbolBK.Resultado<String>> encontrados = arbol.buscar(0xF0F0L, 0);
+        assertEquals(List.of("a", "b"), encontrados.stream().map(ArbolBK.Resultado::getValor).collect(Collectors.toList()));
+        assertEquals(3, arbol.buscar(0xF0F0L, 1).size());
+    }
+
+    @Test
+    void eliminaSinPerderLosDescendientes() {
+        ArbolBK<Integer> arbol = new ArbolBK<>();
+        arbol.insertar(0L, 1);
+        arbol.insertar(0b1L, 2);
+        arbol.insertar(0b11L, 3);
+
+        assertTrue(arbol.eliminar(0L, 1));
+        assertFalse(arbol.eliminar(0L, 1));
+        assertFalse(arbol.eliminar(0b111L, 3));
+        assertEquals(2, arbol.size());
+
+        assertTrue(arbol.buscar(0L, 0).isEmpty());
+        assertEquals(List.of(2, 3), arbol.buscar(0L, 2).stream().map(ArbolBK.Resultado::getValor).collect(Collectors.toList()));
+    }
+
+    @Test
+    void unArbolVacioNoEncuentraNada() {
+        assertTrue(new ArbolBK<Integer>().buscar(0L, 64).isEmpty());
+    }
+
+    /**
+     * Cambia {@code n} bits distintos de un hash, elegidos al azar.
+     */
+    private static long cambiarBits(long hash, int n, SplittableRandom aleatorio) {
+        long res = hash;
+        while (HashPerceptual.distancia(res, hash) < n) {
+            res ^= 1L << aleatorio.nextInt(64);
+        }
+        return res;
+    }
+}
@@ -0,0 +1,205 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Calendar;
+import java.util.Set;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de {@link CacheConsultas} sobre una {@link JdbcFalso}: qué tablas se sacan del texto de
+ * las consultas, cuándo se reutiliza un resultado y cuándo se descarta.
+ */
+class CacheConsultasTest {
+
+    private static final String ANIMALES = "SELECT id, descripcion FROM animal WHERE tipo = ?";
+    private static final String NEGOCIOS = "SELECT idNegocio, nombreNegocio FROM negocio WHERE tipoNegocio_id = ?";
+    private static final String CITAS = "SELECT c.id FROM citas c INNER JOIN usuario u ON c.usuario = u.id WHERE u.id = ?";
+
+    private JdbcFalso bd;
+
+    @BeforeEach
+    void vaciarCache() {
+        CacheConsultas.invalidarTodo();
+        bd = new JdbcFalso();
+        bd.responder(ANIMALES, new String[]{"id", "descripcion"}, new Object[]{1, "Negro"}, new Object[]{2, "Blanco"});
+        bd.responder(NEGOCIOS, new String[]{"idNegocio", "nombreNegocio"}, new Object[]{7, "Clínica"});
+        bd.responder(CITAS, new String[]{"id"}, new Object[]{3});
+    }
+
+    @Test
+    void sacaLasTablasDeFromYJoinConSusAlias() {
+        assertEquals(Set.of("animal"), CacheConsultas.analizar("SELECT * FROM animal"));
+        assertEquals(Set.of("reporte", "animal", "usuario"), CacheConsultas.analizar(
+                "SELECT r.id FROM reporte r INNER JOIN animal AS a ON r.animal = a.id "
+                        + "LEFT JOIN usuario u ON r.Usuario = u.id WHERE a.tipo = ?"));
+        assertEquals(Set.of("negocio", "tiponegocio"), CacheConsultas.analizar(
+                "SELECT n.nombreNegocio FROM negocio n, tipoNegocio t WHERE n.tipoNegocio_id = t.id"));
+        assertEquals(Set.of("animal"), CacheConsultas.analizar("SELECT id FROM `petsafe`.`animal` WHERE id = ?"));
+    }
+
+    @Test
+    void sacaLasTablasDeLasSubconsultas() {
+        assertEquals(Set.of("usuario", "citas"), CacheConsultas.analizar(
+                "SELECT nombreUser FROM usuario WHERE id IN (SELECT usuario FROM citas WHERE fecha = ?)"));
+        assertEquals(Set.of("animal", "reporte"), CacheConsultas.analizar(
+                "SELECT t.tipo, t.n FROM (SELECT a.tipo, COUNT(*) n FROM animal a JOIN reporte r ON r.animal = a.id "
+                        + "GROUP BY a.tipo) t ORDER BY t.n DESC"));
+    }
+
+    @Test
+    void noGuardaConsultasQueNoSonDeterministasNiEscrituras() {
+        assertNull(CacheConsultas.analizar("SELECT * FROM citas WHERE fecha >= CURDATE()"));
+        assertNull(CacheConsultas.analizar("SELECT id FROM animal ORDER BY RAND() LIMIT 1"));
+        assertNull(CacheConsultas.analizar("SELECT id FROM animal WHERE id = ? FOR UPDATE"));
+        assertNull(CacheConsultas.analizar("UPDATE animal SET descripcion = ? WHERE id = ?"));
+        assertNull(CacheConsultas.analizar("SELECT version FROM cambio WHERE version > ?"));
+        assertNull(CacheConsultas.analizar("SELECT a.id FROM animal a JOIN marcador_mapa m ON m.entidad_id = a.id"));
+    }
+
+    @Test
+    void reutilizaElResultadoConLosMismosParametros() throws SQLException {
+        Connection c = CacheConsultas.envolver(bd.conectar());
+
+        assertEquals(2, contar(c, ANIMALES, 1));
+        assertEquals(2, contar(c, ANIMALES, 1));
+        assertEquals(1, bd.veces(ANIMALES));
+
+        contar(c, ANIMALES, 2);
+        assertEquals(2, bd.veces(ANIMALES));
+    }
+
+    @Test
+    void unaEscrituraSoloDescartaLasConsultasDeSuTabla() throws SQLException {
+        Connection c = CacheConsultas.envolver(bd.conectar());
+        contar(c, ANIMALES, 1);
+        contar(c, NEGOCIOS, 1);
+
+        try (PreparedStatement ps = c.prepareStatement("UPDATE animal SET descripcion = ? WHERE id = ?")) {
+            ps.setString(1, "Gris");
+            ps.setInt(2, 1);
+            ps.executeUpdate();
+        }
+        contar(c, ANIMALES, 1);
+        contar(c, NEGOCIOS, 1);
+
+        assertEquals(2, bd.veces(ANIMALES));
+        assertEquals(1, bd.veces(NEGOCIOS));
+    }
+
+    @Test
+    void unaEscrituraDescartaLasTablasQueCambianPorCascada() throws SQLException {
+        Connection c = CacheConsultas.envolver(bd.conectar());
+        contar(c, CITAS, 1);
+
+        try (PreparedStatement ps = c.prepareStatement("DELETE FROM usuario WHERE id = ?")) {
+            ps.setInt(1, 1);
+            ps.executeUpdate();
+        }
+        contar(c, CITAS, 1);
+
+        assertEquals(2, bd.veces(CITAS));
+    }
+
+    @Test
+    void noGuardaUnResultadoInvalidadoMientrasSeLeia() throws SQLException {
+        Connection c = CacheConsultas.envolver(bd.conectar());
+        // Otra conexión escribe en animal entre la consulta y el final de su lectura
+        bd.alConsultar(() -> CacheConsultas.invalidar("UPDATE animal SET descripcion = 'Gris' WHERE id = 1"));
+        contar(c, ANIMALES, 1);
+
+        bd.alConsultar(() -> { });
+        contar(c, ANIMALES, 1);
+        contar(c, ANIMALES, 1);
+
+        assertEquals(2, bd.veces(ANIMALES));
+    }
+
+    @Test
+    void unaInvalidacionDeOtraTablaNoImpideGuardar() throws SQLException {
+        Connection c = CacheConsultas.envolver(bd.conectar());
+        bd.alConsultar(() -> CacheConsultas.invalidar("UPDATE negocio SET nombreNegocio = 'Otro' WHERE idNegocio = 7"));
+        contar(c, ANIMALES, 1);
+        contar(c, ANIMALES, 1);
+
+        assertEquals(1, bd.veces(ANIMALES));
+    }
+
+    @Test
+    void noGuardaLasFilasConContrasenas() throws SQLException {
+        String login = "SELECT * FROM Usuario WHERE email = ? LIMIT 1";
+        bd.responder(login, new String[]{"id", "email", "contraseña"}, new Object[]{1, "ana@correo.es", "secreta"});
+        Connection c = CacheConsultas.envolver(bd.conectar());
+
+        for (int i = 0; i < 2; i++) {
+            try (PreparedStatement ps = c.prepareStatement(login)) {
+                ps.setString(1, "ana@correo.es");
+                try (ResultSet rs = ps.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals("secreta", rs.getString("contraseña"));
+                    assertFalse(rs.next());
+                }
+            }
+        }
+        assertEquals(2, bd.veces(login));
+    }
+
+    @Test
+    void lasFilasGuardadasAdmitenLosGettersConDosArgumentos() throws SQLException {
+        String sql = "SELECT id, precio, fecha FROM citas WHERE usuario = ?";
+        LocalDateTime fecha = LocalDateTime.of(2025, 5, 20, 10, 30);
+        bd.responder(sql, new String[]{"id", "precio", "fecha"},
+                new Object[]{5, new BigDecimal("12.345"), Timestamp.valueOf(fecha)});
+        Connection c = CacheConsultas.envolver(bd.conectar());
+        contar(c, sql, 1);
+
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals(5L, rs.getObject("id", Long.class));
+                assertEquals("5", rs.getObject(1, String.class));
+                assertEquals(new BigDecimal("12.35"), rs.getBigDecimal("precio").setScale(2, RoundingMode.HALF_UP));
+                assertEquals(fecha, rs.getObject("fecha", LocalDateTime.class));
+                assertEquals(LocalDate.of(2025, 5, 20), rs.getObject("fecha", LocalDate.class));
+
+                Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+                assertEquals(fecha.toInstant(ZoneOffset.UTC), rs.getTimestamp("fecha", utc).toInstant());
+                assertEquals(1, rs.getRow());
+            }
+        }
+        assertEquals(1, bd.veces(sql));
+    }
+
+    /**
+     * Ejecuta una consulta con un parámetro entero y cuenta sus filas.
+     */
+    private static int contar(Connection c, String sql, int parametro) throws SQLException {
+        int n = 0;
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, parametro);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,179 @@
+package model;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas del reparto de lecturas entre el principal y la réplica de {@link DBUtil}, con las bases
+ * de datos falsas {@code jdbc:falso:principal} y {@code jdbc:falso:replica} de {@link JdbcFalso}.
+ * <p>
+ * La marca de escritura es de cada hilo, así que cada prueba trabaja en hilos nuevos.
+ * </p>
+ */
+class DBUtilTest {
+
+    private static final String CONSULTA = "SELECT 1";
+    private static final String RETRASO = "SHOW SLAVE STATUS";
+
+    private static JdbcFalso principal;
+    private static JdbcFalso replica;
+
+    @BeforeAll
+    static void registrarBasesDeDatos() {
+        principal = JdbcFalso.registrar("jdbc:falso:principal");
+        replica = JdbcFalso.registrar("jdbc:falso:replica");
+        replica.responder(RETRASO, new String[]{"Seconds_Behind_Master"}, new Object[]{0L});
+    }
+
+    @Test
+    void sinEscriturasLeeDeLaReplica() throws Exception {
+        assertEquals("replica", enHiloNuevo(DBUtilTest::leer));
+    }
+
+    @Test
+    void trasEscribirElMismoHiloLeeDelPrincipal() throws Exception {
+        assertEquals("principal", enHiloNuevo(() -> {
+            escribir();
+            return leer();
+        }));
+    }
+
+    @Test
+    void lasEscriturasDeOtroHiloNoCambianLasLecturas() throws Exception {
+        enHiloNuevo(() -> {
+            escribir();
+            return null;
+        });
+        assertEquals("replica", enHiloNuevo(DBUtilTest::leer));
+    }
+
+    @Test
+    void unaTareaPreparadaTrasEscribirLeeDelPrincipal() throws Exception {
+        assertEquals("principal", enHiloNuevo(() -> {
+            escribir();
+            FutureTask<String> lectura = new FutureTask<>(DBUtilTest::leer);
+            Runnable tarea = DBUtil.conEscriturasDelHilo(lectura);
+            enHiloNuevo(() -> {
+                tarea.run();
+                return null;
+            });
+            return lectura.get();
+        }));
+    }
+
+    @Test
+    void elHiloQueSigueTrasEscribirEnOtroLeeDelPrincipal() throws Exception {
+        Runnable[] tarea = new Runnable[1];
+        enHiloNuevo(() -> {
+            escribir();
+            tarea[0] = DBUtil.trasEscriturasDelHilo(() -> { });
+            return null;
+        });
+        assertEquals("principal", enHiloNuevo(() -> {
+            tarea[0].run();
+            return leer();
+        }));
+    }
+
+    @Test
+    void unaSentenciaNormalSoloCuentaComoEscrituraAlEscribir() throws Exception {
+        assertEquals("replica", enHiloNuevo(() -> {
+            DBUtil db = new DBUtil();
+            try (Statement st = db.getConexion().createStatement()) {
+                st.executeQuery(CONSULTA).close();
+            } finally {
+                db.cerrarConexion();
+            }
+            return leer();
+        }));
+        assertEquals("principal", enHiloNuevo(() -> {
+            DBUtil db = new DBUtil();
+            try (Statement st = db.getConexion().createStatement()) {
+                st.executeUpdate("DELETE FROM notificacion WHERE leida = 1");
+            } finally {
+                db.cerrarConexion();
+            }
+            return leer();
+        }));
+    }
+
+    @Test
+    void leeElRetrasoDeLaReplica() throws SQLException {
+        JdbcFalso bd = new JdbcFalso();
+        bd.responder(RETRASO, new String[]{"Seconds_Behind_Master"}, new Object[]{3L});
+        assertEquals(3000, DBUtil.retrasoMs(bd.conectar()));
+
+        JdbcFalso parada = new JdbcFalso();
+        parada.responder(RETRASO, new String[]{"Seconds_Behind_Master"}, new Object[]{null});
+        assertEquals(-1, DBUtil.retrasoMs(parada.conectar()));
+
+        JdbcFalso sinReplicacion = new JdbcFalso();
+        sinReplicacion.responder(RETRASO, new String[]{"Seconds_Behind_Master"});
+        assertEquals(-1, DBUtil.retrasoMs(sinReplicacion.conectar()));
+    }
+
+    @Test
+    void avisaDeQueFaltaElPrivilegioParaLeerElRetraso() {
+        JdbcFalso bd = new JdbcFalso();
+        bd.fallar(RETRASO, new SQLException("Access denied; you need (at least one of) the REPLICATION CLIENT privilege(s) "
+                + "for this operation", "42000", 1227));
+
+        SQLException e = assertThrows(SQLException.class, () -> DBUtil.retrasoMs(bd.conectar()));
+        assertEquals(1227, e.getErrorCode());
+        assertTrue(e.getMessage().contains("REPLICATION CLIENT"));
+    }
+
+    /**
+     * Escribe en el principal con una sentencia preparada.
+     */
+    private static void escribir() throws SQLException {
+        DBUtil db = new DBUtil();
+        try (PreparedStatement ps = db.getConexion().prepareStatement("UPDATE notificacion SET leida = 1 WHERE id = ?")) {
+            ps.setInt(1, 1);
+            ps.executeUpdate();
+        } finally {
+            db.cerrarConexion();
+        }
+    }
+
+    /**
+     * Lee con {@link DBUtil#getConexionLectura()} y devuelve de dónde ha leído.
+     */
+    private static String leer() throws SQLException {
+        long enPrincipal = principal.veces(CONSULTA);
+        long enReplica = replica.veces(CONSULTA);
+        DBUtil db = new DBUtil();
+        try (Connection c = db.getConexionLectura(); PreparedStatement ps = c.prepareStatement(CONSULTA)) {
+            ps.executeQuery().close();
+        } finally {
+            db.cerrarConexion();
+        }
+        if (principal.veces(CONSULTA) > enPrincipal) {
+            return "principal";
+        }
+        return replica.veces(CONSULTA) > enReplica ? "replica" : "ninguna";
+    }
+
+    private static <T> T enHiloNuevo(Callable<T> tarea) throws Exception {
+        FutureTask<T> futuro = new FutureTask<>(tarea);
+        Thread hilo = new Thread(futuro, "prueba-dbutil");
+        hilo.start();
+        try {
+            return futuro.get();
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package model;
+
+import com.example.petsafeapp.Animal;
+import com.example.petsafeapp.Reporte;
+import com.example.petsafeapp.Situacion;
+import com.example.petsafeapp.TipoAnimal;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de {@link EmparejadorReportes}: la puntuación de los candidatos y su búsqueda en la base
+ * de datos con {@link JdbcFalso}.
+ */
+class EmparejadorReportesTest {
+
+    private static final TipoAnimal PERRO = new TipoAnimal(1, "Perro");
+    private static final Situacion ENCONTRADO = new Situacion(EmparejadorReportes.SITUACION_ENCONTRADO, "Encontrado");
+    private static final Situacion PERDIDO = new Situacion(EmparejadorReportes.SITUACION_PERDIDO, "Perdido");
+
+    /**
+     * Centro de Valencia.
+     */
+    private static final double LATITUD = 39.4699;
+    private static final double LONGITUD = -0.3763;
+
+    private static final LocalDate FECHA = LocalDate.of(2025, 5, 20);
+
+    private static final String CANDIDATOS = "SELECT r.id, r.ubicacion, r.latitud, r.longitud, " +
+            "    a.id AS animal_id, a.descripcion, a.fecha, a.tipo, a.situacion " +
+            "FROM reporte r " +
+            "INNER JOIN animal a ON r.animal = a.id " +
+            "WHERE r.latitud BETWEEN ? AND ? AND r.longitud BETWEEN ? AND ? " +
+            "AND a.tipo = ? AND a.situacion = ? AND a.fecha BETWEEN ? AND ?";
+
+    @Test
+    void ordenaLosCandidatosYDescartaLosQueQuedanFuera() {
+        List<CoincidenciaReporte> coincidencias = EmparejadorReportes.puntuar(
+                reporte(1, 10, PERDIDO, FECHA, LATITUD, LONGITUD),
+                List.of(reporte(2, 20, ENCONTRADO, FECHA.plusDays(10), LATITUD + 0.01, LONGITUD),
+                        reporte(3, 30, ENCONTRADO, FECHA, LATITUD + 0.001, LONGITUD),
+                        // En una esquina del rectángulo, fuera del círculo
+                        reporte(4, 40, ENCONTRADO, FECHA, LATITUD + 0.04, LONGITUD + 0.05),
+                        reporte(5, 50, ENCONTRADO, FECHA.plusDays(31), LATITUD, LONGITUD),
+                        reporte(6, 10, ENCONTRADO, FECHA, LATITUD, LONGITUD)),
+                5, 30);
+
+        assertEquals(List.of(3, 2), coincidencias.stream().map(CoincidenciaReporte::getIdReporte).collect(Collectors.toList()));
+        assertEquals(10, coincidencias.get(1).getDias());
+        assertTrue(coincidencias.get(0).getDistanciaKm() < 0.2);
+    }
+
+    @Test
+    void buscaLosCandidatosDeLaSituacionContrariaEnLaBaseDeDatos() {
+        JdbcFalso principal = JdbcFalso.registrar("jdbc:falso:principal");
+        principal.responder(CANDIDATOS, new String[]{"id", "ubicacion", "latitud", "longitud", "animal_id",
+                        "descripcion", "fecha", "tipo", "situacion"},
+                new Object[]{7, "Calle de Colón", LATITUD + 0.002, LONGITUD, 70, "Perro marrón",
+                        Date.valueOf(FECHA.minusDays(2)), PERRO.getId(), ENCONTRADO.getId()});
+
+        DBUtil.leerDelPrincipal(true);
+        try {
+            List<CoincidenciaReporte> coincidencias = EmparejadorReportes.buscarCoincidencias(
+                    reporte(1, 10, PERDIDO, FECHA, LATITUD, LONGITUD));
+
+            assertEquals(List.of(CANDIDATOS), principal.getEjecutadas());
+            assertEquals(1, coincidencias.size());
+            assertEquals(7, coincidencias.get(0).getIdReporte());
+            assertEquals(70, coincidencias.get(0).getIdAnimal());
+            assertEquals(2, coincidencias.get(0).getDias());
+        } finally {
+            DBUtil.leerDelPrincipal(false);
+        }
+    }
+
+    @Test
+    void noBuscaSiElReporteNoTieneCoordenadas() {
+        JdbcFalso principal = JdbcFalso.registrar("jdbc:falso:principal");
+
+        assertTrue(EmparejadorReportes.buscarCoincidencias(reporte(1, 10, PERDIDO, FECHA, Double.NaN, Double.NaN)).isEmpty());
+        assertTrue(principal.getEjecutadas().isEmpty());
+    }
+
+    private static Reporte reporte(int id, int idAnimal, Situacion situacion, LocalDate fecha, double latitud, double longitud) {
+        Animal animal = new Animal(idAnimal, null, fecha, PERRO, "Prueba", situacion);
+        Reporte reporte = new Reporte(id, "Calle de prueba", animal, null);
+        reporte.setLatitud(latitud);
+        reporte.setLongitud(longitud);
+        return reporte;
+    }
+}
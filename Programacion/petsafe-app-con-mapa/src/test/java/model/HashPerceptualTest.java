@@ -0,0 +1,121 @@
+package model;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de {@link HashPerceptual} con imágenes dibujadas en memoria.
+ */
+class HashPerceptualTest {
+
+    @Test
+    void laDistanciaCuentaLosBitsDistintos() {
+        assertEquals(0, HashPerceptual.distancia(0x1234L, 0x1234L));
+        assertEquals(1, HashPerceptual.distancia(0L, 1L << 63));
+        assertEquals(64, HashPerceptual.distancia(0L, -1L));
+        assertEquals(2, HashPerceptual.distancia(0b1010L, 0b1111L));
+    }
+
+    @Test
+    void cadaBitIndicaSiElPixelEsMasOscuroQueElDeSuDerecha() {
+        assertEquals(-1L, HashPerceptual.calcular(degradado(90, 80, true)));
+        assertEquals(0L, HashPerceptual.calcular(degradado(90, 80, false)));
+    }
+
+    @Test
+    void unaFotoReescaladaORecomprimidaSeParece() throws IOException {
+        BufferedImage foto = foto(320, 240);
+        long hash = HashPerceptual.calcular(foto);
+
+        assertTrue(HashPerceptual.distancia(hash, HashPerceptual.calcular(reescalar(foto, 160, 120))) < HashPerceptual.DISTANCIA_SIMILAR);
+        assertTrue(HashPerceptual.distancia(hash, HashPerceptual.calcular(recomprimir(foto, "jpg"))) < HashPerceptual.DISTANCIA_SIMILAR);
+        assertTrue(HashPerceptual.distancia(hash, HashPerceptual.calcular(espejo(foto))) > HashPerceptual.DISTANCIA_SIMILAR);
+    }
+
+    @Test
+    void calculaElMismoHashDesdeLosBytesDeLaImagen() throws IOException {
+        BufferedImage foto = foto(120, 90);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(foto, "png", png);
+
+        assertEquals(HashPerceptual.calcular(foto), HashPerceptual.calcular(new ByteArrayInputStream(png.toByteArray())));
+    }
+
+    @Test
+    void noCalculaNadaSinImagen() {
+        assertNull(HashPerceptual.calcular((BufferedImage) null));
+        assertNull(HashPerceptual.calcular(new ByteArrayInputStream(new byte[]{1, 2, 3})));
+        assertNull(HashPerceptual.calcular(new File("no-existe.png")));
+    }
+
+    /**
+     * Degradado horizontal de negro a blanco, o de blanco a negro.
+     */
+    private static BufferedImage degradado(int ancho, int alto, boolean aclarando) {
+        BufferedImage imagen = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < ancho; x++) {
+            int gris = (aclarando ? x : ancho - 1 - x) * 255 / (ancho - 1);
+            for (int y = 0; y < alto; y++) {
+                imagen.setRGB(x, y, new Color(gris, gris, gris).getRGB());
+            }
+        }
+        return imagen;
+    }
+
+    /**
+     * Una "foto" con formas de distintos tonos, para que el hash no sea uniforme.
+     */
+    private static BufferedImage foto(int ancho, int alto) {
+        BufferedImage imagen = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = imagen.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(new Color(200, 180, 150));
+        g.fillRect(0, 0, ancho, alto);
+        g.setColor(new Color(60, 40, 30));
+        g.fillOval(ancho / 8, alto / 6, ancho / 3, alto / 2);
+        g.setColor(new Color(120, 140, 90));
+        g.fillRect(ancho / 2, alto / 3, ancho / 3, alto / 2);
+        g.setColor(new Color(20, 20, 20));
+        g.fillOval(ancho * 3 / 4, alto / 10, ancho / 8, alto / 6);
+        g.dispose();
+        return imagen;
+    }
+
+    private static BufferedImage reescalar(BufferedImage imagen, int ancho, int alto) {
+        BufferedImage res = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = res.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(imagen, 0, 0, ancho, alto, null);
+        g.dispose();
+        return res;
+    }
+
+    private static BufferedImage recomprimir(BufferedImage imagen, String formato) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(imagen, formato, bytes);
+        return ImageIO.read(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private static BufferedImage espejo(BufferedImage imagen) {
+        BufferedImage res = new BufferedImage(imagen.getWidth(), imagen.getHeight(), BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < imagen.getHeight(); y++) {
+            for (int x = 0; x < imagen.getWidth(); x++) {
+                res.setRGB(imagen.getWidth() - 1 - x, y, imagen.getRGB(x, y));
+            }
+        }
+        return res;
+    }
+}
@@ -0,0 +1,417 @@
+package model;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Base de datos falsa para las pruebas: conexiones JDBC que devuelven los resultados preparados con
+ * {@link #responder(String, String[], Object[]...)} y anotan cada sentencia que ejecutan, sin servidor.
+ * <p>
+ * Las consultas sin respuesta preparada devuelven un resultado vacío y las escrituras, una fila
+ * modificada. Solo implementa lo que usan los modelos: sentencias preparadas y normales, lectura
+ * de filas por posición o por nombre de columna y transacciones.
+ * </p>
+ * <p>
+ * Para probar {@link DBUtil}, que abre sus conexiones con {@link DriverManager}, cada base de datos
+ * se registra con {@link #registrar(String)} bajo una URL {@code jdbc:falso:...}; la configuración
+ * de Surefire del {@code pom.xml} apunta ahí {@code db.url} y {@code db.replicas}.
+ * </p>
+ */
+final class JdbcFalso {
+
+    /**
+     * Bases de datos registradas, por URL.
+     */
+    private static final Map<String, JdbcFalso> REGISTRADAS = new ConcurrentHashMap<>();
+
+    static {
+        try {
+            DriverManager.registerDriver(new Controlador());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Un resultado preparado.
+     */
+    private record Tabla(String[] columnas, List<Object[]> filas) {
+    }
+
+    private final Map<String, Tabla> respuestas = new HashMap<>();
+    private final Map<String, SQLException> fallos = new HashMap<>();
+    private final List<String> ejecutadas = Collections.synchronizedList(new ArrayList<>());
+    private volatile Runnable alConsultar = () -> { };
+
+    /**
+     * Prepara el resultado de una consulta, sea cual sea el valor de sus parámetros.
+     *
+     * @param sql El texto exacto de la consulta.
+     * @param columnas Nombres de las columnas.
+     * @param filas Valores de cada fila, en el orden de las columnas.
+     */
+    void responder(String sql, String[] columnas, Object[]... filas) {
+        respuestas.put(sql, new Tabla(columnas, List.of(filas)));
+    }
+
+    /**
+     * Hace que una consulta falle con una excepción.
+     *
+     * @param sql El texto exacto de la consulta.
+     * @param error La excepción que lanza.
+     */
+    void fallar(String sql, SQLException error) {
+        fallos.put(sql, error);
+    }
+
+    /**
+     * Crea una base de datos falsa vacía y la registra, sustituyendo a la anterior si la había.
+     *
+     * @param url Su URL, que empieza por {@code jdbc:falso:}.
+     * @return La base de datos.
+     */
+    static JdbcFalso registrar(String url) {
+        JdbcFalso bd = new JdbcFalso();
+        REGISTRADAS.put(url, bd);
+        return bd;
+    }
+
+    /**
+     * Indica algo que hacer en cada consulta, antes de devolver su resultado; por ejemplo, escribir
+     * desde otra conexión mientras se lee.
+     */
+    void alConsultar(Runnable accion) {
+        alConsultar = accion;
+    }
+
+    /**
+     * Devuelve las sentencias ejecutadas hasta ahora, en orden.
+     */
+    List<String> getEjecutadas() {
+        synchronized (ejecutadas) {
+            return new ArrayList<>(ejecutadas);
+        }
+    }
+
+    /**
+     * Cuenta las veces que se ha ejecutado una sentencia.
+     */
+    long veces(String sql) {
+        return getEjecutadas().stream().filter(sql::equals).count();
+    }
+
+    /**
+     * Abre una conexión nueva, en modo de confirmación automática.
+     */
+    Connection conectar() {
+        return proxy(Connection.class, new Conexion());
+    }
+
+    private static <T> T proxy(Class<T> tipo, InvocationHandler manejador) {
+        return tipo.cast(Proxy.newProxyInstance(JdbcFalso.class.getClassLoader(), new Class<?>[]{tipo}, manejador));
+    }
+
+    /**
+     * Respuesta común de los métodos de {@link Object} y de {@code close}/{@code isClosed}.
+     */
+    private abstract static class Cerrable implements InvocationHandler {
+        boolean cerrado;
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+            switch (metodo.getName()) {
+                case "close":
+                    cerrado = true;
+                    return null;
+                case "isClosed":
+                    return cerrado;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return getClass().getSimpleName();
+                default:
+                    if (cerrado) {
+                        throw new SQLException(getClass().getSimpleName() + " cerrado");
+                    }
+                    return responder(proxy, metodo.getName(), args == null ? new Object[0] : args);
+            }
+        }
+
+        abstract Object responder(Object proxy, String metodo, Object[] args) throws SQLException;
+    }
+
+    private final class Conexion extends Cerrable {
+        boolean autoCommit = true;
+
+        @Override
+        Object responder(Object proxy, String metodo, Object[] args) throws SQLException {
+            switch (metodo) {
+                case "prepareStatement":
+                    return proxy(PreparedStatement.class, new Sentencia((Connection) proxy, (String) args[0]));
+                case "createStatement":
+                    return proxy(Statement.class, new Sentencia((Connection) proxy, null));
+                case "getAutoCommit":
+                    return autoCommit;
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    return null;
+                case "isValid":
+                    return true;
+                case "commit":
+                case "rollback":
+                case "setReadOnly":
+                case "setTransactionIsolation":
+                case "clearWarnings":
+                    return null;
+                case "getWarnings":
+                    return null;
+                default:
+                    throw new SQLException(metodo + " no está disponible en JdbcFalso");
+            }
+        }
+    }
+
+    private final class Sentencia extends Cerrable {
+        final Connection conexion;
+        final String sql;
+        final TreeMap<Integer, Object> parametros = new TreeMap<>();
+        final List<String> lote = new ArrayList<>();
+
+        Sentencia(Connection conexion, String sql) {
+            this.conexion = conexion;
+            this.sql = sql;
+        }
+
+        @Override
+        Object responder(Object proxy, String metodo, Object[] args) throws SQLException {
+            if (metodo.startsWith("set") && args.length >= 2 && args[0] instanceof Integer indice) {
+                parametros.put(indice, args[1]);
+                return null;
+            }
+            String texto = args.length > 0 && args[0] instanceof String otro ? otro : sql;
+            switch (metodo) {
+                case "executeQuery":
+                    ejecutadas.add(texto);
+                    if (fallos.containsKey(texto)) {
+                        throw fallos.get(texto);
+                    }
+                    alConsultar.run();
+                    return filas((Statement) proxy, respuestas.getOrDefault(texto, new Tabla(new String[]{"id"}, List.of())));
+                case "executeUpdate":
+                    ejecutadas.add(texto);
+                    return 1;
+                case "execute":
+                    ejecutadas.add(texto);
+                    return false;
+                case "addBatch":
+                    lote.add(texto);
+                    return null;
+                case "executeBatch":
+                    ejecutadas.addAll(lote);
+                    int[] res = new int[lote.size()];
+                    Arrays.fill(res, 1);
+                    lote.clear();
+                    return res;
+                case "getConnection":
+                    return conexion;
+                case "clearParameters":
+                    parametros.clear();
+                    return null;
+                case "setFetchSize":
+                case "setMaxRows":
+                case "setQueryTimeout":
+                    return null;
+                default:
+                    throw new SQLException(metodo + " no está disponible en JdbcFalso");
+            }
+        }
+    }
+
+    /**
+     * Controlador JDBC de las URL {@code jdbc:falso:...} registradas.
+     */
+    private static final class Controlador implements Driver {
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            JdbcFalso bd = REGISTRADAS.get(url);
+            if (bd == null) {
+                throw new SQLException("No hay ninguna base de datos registrada en " + url, "08001");
+            }
+            return bd.conectar();
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url != null && url.startsWith("jdbc:falso:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+
+    private static ResultSet filas(Statement st, Tabla tabla) {
+        return proxy(ResultSet.class, new Filas(st, tabla));
+    }
+
+    private static final class Filas extends Cerrable {
+        final Statement st;
+        final Tabla tabla;
+        int fila = -1;
+        boolean nulo;
+
+        Filas(Statement st, Tabla tabla) {
+            this.st = st;
+            this.tabla = tabla;
+        }
+
+        @Override
+        Object responder(Object proxy, String metodo, Object[] args) throws SQLException {
+            switch (metodo) {
+                case "next":
+                    fila = Math.min(fila + 1, tabla.filas().size());
+                    return fila < tabla.filas().size();
+                case "wasNull":
+                    return nulo;
+                case "getStatement":
+                    return st;
+                case "getMetaData":
+                    return proxy(ResultSetMetaData.class, new Metadatos(tabla));
+                case "findColumn":
+                    return columna(args[0]);
+                default:
+                    break;
+            }
+            if (!metodo.startsWith("get") || args.length != 1) {
+                throw new SQLException(metodo + " no está disponible en JdbcFalso");
+            }
+            if (fila < 0 || fila >= tabla.filas().size()) {
+                throw new SQLException("No hay ninguna fila actual");
+            }
+            Object valor = tabla.filas().get(fila)[columna(args[0]) - 1];
+            nulo = valor == null;
+            switch (metodo) {
+                case "getString":
+                    return valor == null ? null : valor.toString();
+                case "getInt":
+                    return valor == null ? 0 : ((Number) valor).intValue();
+                case "getLong":
+                    return valor == null ? 0L : ((Number) valor).longValue();
+                case "getDouble":
+                    return valor == null ? 0.0 : ((Number) valor).doubleValue();
+                case "getBoolean":
+                    return valor != null && (valor instanceof Boolean b ? b : ((Number) valor).intValue() != 0);
+                default:
+                    return valor;
+            }
+        }
+
+        private int columna(Object arg) throws SQLException {
+            if (arg instanceof Integer i) {
+                return i;
+            }
+            String[] columnas = tabla.columnas();
+            for (int i = 0; i < columnas.length; i++) {
+                if (columnas[i].equalsIgnoreCase((String) arg)) {
+                    return i + 1;
+                }
+            }
+            throw new SQLException("No existe la columna " + arg);
+        }
+    }
+
+    /**
+     * Metadatos de un resultado preparado. El tipo de cada columna se deduce del valor de la primera
+     * fila que no es nulo.
+     */
+    private static final class Metadatos extends Cerrable {
+        final Tabla tabla;
+
+        Metadatos(Tabla tabla) {
+            this.tabla = tabla;
+        }
+
+        @Override
+        Object responder(Object proxy, String metodo, Object[] args) throws SQLException {
+            switch (metodo) {
+                case "getColumnCount":
+                    return tabla.columnas().length;
+                case "getColumnLabel":
+                case "getColumnName":
+                    return tabla.columnas()[(Integer) args[0] - 1];
+                case "getColumnType":
+                    return tipo((Integer) args[0] - 1);
+                default:
+                    throw new SQLException(metodo + " no está disponible en JdbcFalso");
+            }
+        }
+
+        private int tipo(int columna) {
+            for (Object[] fila : tabla.filas()) {
+                Object valor = fila[columna];
+                if (valor instanceof Integer) return Types.INTEGER;
+                if (valor instanceof Long) return Types.BIGINT;
+                if (valor instanceof Double) return Types.DOUBLE;
+                if (valor instanceof BigDecimal) return Types.DECIMAL;
+                if (valor instanceof Boolean) return Types.BOOLEAN;
+                if (valor instanceof byte[]) return Types.VARBINARY;
+                if (valor instanceof java.sql.Date) return Types.DATE;
+                if (valor instanceof java.sql.Time) return Types.TIME;
+                if (valor instanceof Timestamp) return Types.TIMESTAMP;
+                if (valor != null) return Types.VARCHAR;
+            }
+            return Types.VARCHAR;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de {@link Migraciones}: la separación de los scripts en sentencias y de los
+ * {@code ALTER TABLE} en cláusulas, y la comprobación de la versión del esquema con {@link JdbcFalso}.
+ */
+class MigracionesTest {
+
+    private JdbcFalso principal;
+
+    @BeforeEach
+    void registrarBaseDeDatos() {
+        principal = JdbcFalso.registrar("jdbc:falso:principal");
+    }
+
+    @Test
+    void separaLasSentenciasSinComentariosNiDelimitador() {
+        String script = "-- Comentario inicial\r\n" +
+                "\r\n" +
+                "CREATE TABLE a (\r\n" +
+                "  id INT -- comentario al final de una línea\r\n" +
+                ");\r\n" +
+                "-- 2. Otro paso\n" +
+                "ALTER TABLE a ADD COLUMN b INT;\n" +
+                "INSERT INTO a VALUES (1)";
+
+        assertEquals(List.of(
+                "CREATE TABLE a (\n  id INT -- comentario al final de una línea\n)",
+                "ALTER TABLE a ADD COLUMN b INT",
+                "INSERT INTO a VALUES (1)"), Migraciones.separarSentencias(script));
+    }
+
+    @Test
+    void respetaElCambioDeDelimitador() {
+        String script = "DELIMITER $$\n" +
+                "CREATE TRIGGER t AFTER INSERT ON a FOR EACH ROW\n" +
+                "BEGIN\n" +
+                "    INSERT INTO b VALUES (NEW.id);\n" +
+                "    -- no es el final\n" +
+                "    UPDATE c SET n = n + 1;\n" +
+                "END$$\n" +
+                "DELIMITER ;\n" +
+                "DROP TABLE x;\n";
+
+        List<String> sentencias = Migraciones.separarSentencias(script);
+        assertEquals(2, sentencias.size());
+        assertTrue(sentencias.get(0).startsWith("CREATE TRIGGER t"));
+        assertTrue(sentencias.get(0).contains("INSERT INTO b VALUES (NEW.id);\n    UPDATE c SET n = n + 1;\nEND"));
+        assertFalse(sentencias.get(0).contains("no es el final"));
+        assertEquals("DROP TABLE x", sentencias.get(1));
+    }
+
+    @Test
+    void separaLasClausulasDeUnAlterTable() {
+        assertEquals(List.of(
+                "ALTER TABLE negocio ADD COLUMN latitud DOUBLE DEFAULT NULL",
+                "ALTER TABLE negocio ADD COLUMN longitud DOUBLE DEFAULT NULL"),
+                Migraciones.separarClausulas("ALTER TABLE negocio\n    ADD COLUMN latitud DOUBLE DEFAULT NULL,\n    ADD COLUMN longitud DOUBLE DEFAULT NULL"));
+    }
+
+    @Test
+    void noSeparaPorComasEntreParentesisNiComillas() {
+        String sentencia = "ALTER TABLE a ADD INDEX i (x, y), ADD COLUMN c VARCHAR(5) DEFAULT 'a,b', " +
+                "ADD COLUMN `d,e` INT";
+
+        assertEquals(List.of(
+                "ALTER TABLE a ADD INDEX i (x, y)",
+                "ALTER TABLE a ADD COLUMN c VARCHAR(5) DEFAULT 'a,b'",
+                "ALTER TABLE a ADD COLUMN `d,e` INT"), Migraciones.separarClausulas(sentencia));
+        assertEquals(List.of("CREATE INDEX i ON a (x, y)"), Migraciones.separarClausulas("CREATE INDEX i ON a (x, y)"));
+    }
+
+    @Test
+    void reconoceLasSentenciasQueCreanUnSoloObjeto() {
+        assertTrue(Migraciones.creaUnObjeto("CREATE INDEX i ON a (x)"));
+        assertTrue(Migraciones.creaUnObjeto("ALTER TABLE a ADD COLUMN b INT"));
+        assertFalse(Migraciones.creaUnObjeto("ALTER TABLE a ADD COLUMN b INT, ADD COLUMN c INT"));
+        assertFalse(Migraciones.creaUnObjeto("ALTER TABLE a DROP COLUMN b"));
+        assertFalse(Migraciones.creaUnObjeto("UPDATE a SET b = 1"));
+    }
+
+    @Test
+    void todosLosScriptsSeLeenYTienenSentencias() throws IOException {
+        int anterior = 0;
+        for (String nombre : Migraciones.MIGRACIONES) {
+            assertTrue(Migraciones.getVersion(nombre) > anterior, nombre);
+            anterior = Migraciones.getVersion(nombre);
+
+            try (InputStream is = Migraciones.class.getResourceAsStream("/db/migraciones/" + nombre)) {
+                assertNotNull(is, nombre);
+                List<String> sentencias = Migraciones.separarSentencias(new String(is.readAllBytes(), StandardCharsets.UTF_8));
+                assertFalse(sentencias.isEmpty(), nombre);
+                for (String sentencia : sentencias) {
+                    assertFalse(sentencia.toUpperCase().startsWith("DELIMITER"), nombre);
+                }
+            }
+        }
+    }
+
+    @Test
+    void indicaLasMigracionesQueFaltan() throws SQLException {
+        principal.responder("SELECT version FROM schema_migraciones", new String[]{"version"},
+                new Object[]{1}, new Object[]{2}, new Object[]{4});
+
+        List<String> pendientes = new Migraciones().comprobarVersion();
+        assertEquals(Migraciones.MIGRACIONES.length - 3, pendientes.size());
+        assertEquals(Migraciones.MIGRACIONES[2], pendientes.get(0));
+        assertEquals(Migraciones.MIGRACIONES[Migraciones.MIGRACIONES.length - 1], pendientes.get(pendientes.size() - 1));
+    }
+
+    @Test
+    void sinTablaDeMigracionesFaltanTodasYOtrosErroresSeLanzan() throws SQLException {
+        principal.fallar("SELECT version FROM schema_migraciones", new SQLException("Table doesn't exist", "42S02", 1146));
+        assertEquals(List.of(Migraciones.MIGRACIONES), new Migraciones().comprobarVersion());
+
+        principal.fallar("SELECT version FROM schema_migraciones", new SQLException("Access denied", "42000", 1142));
+        assertThrows(SQLException.class, () -> new Migraciones().comprobarVersion());
+    }
+}
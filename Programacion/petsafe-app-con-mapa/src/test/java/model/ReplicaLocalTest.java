@@ -0,0 +1,47 @@
+package model;
+
+import com.example.petsafeapp.Cita;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de {@link ReplicaLocal}: la subida de las citas creadas en local con {@link JdbcFalso}.
+ */
+class ReplicaLocalTest {
+
+    private static final String INSERTAR_CITA = "INSERT IGNORE INTO Citas (id_usuario, fecha, hora, Nombre_Animal, motivo, clave_cliente) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    @TempDir
+    Path carpeta;
+
+    @Test
+    void guardaParaElUsuarioLosCambiosQueElServidorRechaza() {
+        JdbcFalso principal = JdbcFalso.registrar("jdbc:falso:principal");
+        principal.fallar(INSERTAR_CITA, new SQLException("Cannot add or update a child row", "23000", 1452));
+
+        ReplicaLocal replica = new ReplicaLocal(10, carpeta, 1000);
+        assertTrue(replica.crearCita(new Cita(LocalDate.of(2025, 5, 20), LocalTime.of(10, 30), "Toby", "Vacunas", 10)));
+        replica.sincronizar();
+
+        assertEquals(0, replica.getPendientes());
+        assertTrue(replica.readCitas(null).isEmpty());
+        List<ReplicaLocal.CambioRechazado> rechazados = replica.recogerRechazados();
+        assertEquals(1, rechazados.size());
+        assertEquals("alta", rechazados.get(0).operacion());
+        assertEquals("Toby", rechazados.get(0).cita().getNombreAnimal());
+        assertFalse(rechazados.get(0).conflicto());
+        // Una vez recogidos no se vuelven a mostrar
+        assertTrue(replica.recogerRechazados().isEmpty());
+    }
+}
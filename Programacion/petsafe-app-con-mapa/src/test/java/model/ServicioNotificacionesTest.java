@@ -0,0 +1,115 @@
+package model;
+
+import com.example.petsafeapp.Animal;
+import com.example.petsafeapp.Reporte;
+import com.example.petsafeapp.Situacion;
+import com.example.petsafeapp.TipoAnimal;
+import com.example.petsafeapp.Usuario;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de {@link ServicioNotificaciones}: la generación de los avisos a partir de las suscripciones
+ * candidatas, y su búsqueda y guardado en la base de datos con {@link JdbcFalso}.
+ */
+class ServicioNotificacionesTest {
+
+    private static final TipoAnimal PERRO = new TipoAnimal(1, "Perro");
+    private static final TipoAnimal GATO = new TipoAnimal(2, "Gato");
+
+    /**
+     * Centro de Valencia, donde están las zonas vigiladas de las pruebas.
+     */
+    private static final double LATITUD = 39.4699;
+    private static final double LONGITUD = -0.3763;
+
+    private static final LocalDateTime AHORA = LocalDateTime.of(2025, 5, 20, 10, 0);
+
+    private static final String SUSCRIPCIONES_ZONA = "SELECT id, usuario, latitud, longitud, radio_km, tipo FROM suscripcion " +
+            "WHERE latitud BETWEEN ? AND ? AND longitud BETWEEN ? AND ? AND (tipo IS NULL OR tipo = ?)";
+
+    private static final String INSERTAR_NOTIFICACION = "INSERT INTO notificacion (usuario, reporte, mensaje, fecha) VALUES (?, ?, ?, ?)";
+
+    @Test
+    void avisaALosUsuariosQueVigilanLaZona() {
+        List<Notificacion> notificaciones = ServicioNotificaciones.generarNotificaciones(
+                reporte(100, 99, PERRO, LATITUD + 0.001, LONGITUD),
+                List.of(new Suscripcion(1, 10, LATITUD, LONGITUD, 2, Suscripcion.TODOS_LOS_TIPOS),
+                        new Suscripcion(2, 20, LATITUD + 1, LONGITUD, 2, Suscripcion.TODOS_LOS_TIPOS)),
+                AHORA);
+
+        assertEquals(1, notificaciones.size());
+        assertEquals(10, notificaciones.get(0).getIdUsuario());
+        assertEquals(100, notificaciones.get(0).getIdReporte());
+        assertEquals(AHORA, notificaciones.get(0).getFecha());
+        assertTrue(notificaciones.get(0).getMensaje().contains("de perro"));
+    }
+
+    @Test
+    void unaSolaNotificacionAunqueElReporteCaigaEnVariasZonas() {
+        List<Notificacion> notificaciones = ServicioNotificaciones.generarNotificaciones(
+                reporte(100, 99, PERRO, LATITUD + 0.001, LONGITUD),
+                List.of(new Suscripcion(1, 10, LATITUD, LONGITUD, 2, Suscripcion.TODOS_LOS_TIPOS),
+                        new Suscripcion(2, 10, LATITUD + 0.002, LONGITUD, 2, PERRO.getId())),
+                AHORA);
+
+        assertEquals(1, notificaciones.size());
+        assertTrue(notificaciones.get(0).getMensaje().contains(" a 0.1 km "));
+    }
+
+    @Test
+    void noAvisaAlAutorNiPorOtrosTipos() {
+        List<Notificacion> notificaciones = ServicioNotificaciones.generarNotificaciones(
+                reporte(100, 10, PERRO, LATITUD, LONGITUD),
+                List.of(new Suscripcion(1, 10, LATITUD, LONGITUD, 2, Suscripcion.TODOS_LOS_TIPOS),
+                        new Suscripcion(2, 20, LATITUD, LONGITUD, 2, GATO.getId())),
+                AHORA);
+
+        assertTrue(notificaciones.isEmpty());
+    }
+
+    @Test
+    void noAvisaDeReportesSinCoordenadas() throws SQLException {
+        JdbcFalso bd = new JdbcFalso();
+        Connection con = bd.conectar();
+
+        assertEquals(0, ServicioNotificaciones.notificarReporte(con, reporte(100, 99, PERRO, Double.NaN, Double.NaN)));
+        assertTrue(bd.getEjecutadas().isEmpty());
+    }
+
+    @Test
+    void buscaLasZonasEnLaBaseDeDatosYGuardaLosAvisosEnLaMismaConexion() throws SQLException {
+        JdbcFalso bd = new JdbcFalso();
+        // El rectángulo puede devolver zonas que no llegan al reporte con su radio
+        bd.responder(SUSCRIPCIONES_ZONA, new String[]{"id", "usuario", "latitud", "longitud", "radio_km", "tipo"},
+                new Object[]{1, 10, LATITUD, LONGITUD, 2.0, null},
+                new Object[]{2, 20, LATITUD + 0.3, LONGITUD, 5.0, null},
+                new Object[]{3, 30, LATITUD, LONGITUD + 0.01, 2.0, PERRO.getId()});
+        Connection con = bd.conectar();
+        con.setAutoCommit(false);
+
+        assertEquals(2, ServicioNotificaciones.notificarReporte(con, reporte(100, 99, PERRO, LATITUD, LONGITUD)));
+        assertEquals(List.of(SUSCRIPCIONES_ZONA, INSERTAR_NOTIFICACION, INSERTAR_NOTIFICACION), bd.getEjecutadas());
+        assertFalse(con.getAutoCommit());
+        assertFalse(con.isClosed());
+    }
+
+    private static Reporte reporte(int id, int idAutor, TipoAnimal tipo, double latitud, double longitud) {
+        Animal animal = new Animal(null, LocalDate.of(2025, 5, 20), tipo, "Prueba", new Situacion(2, "Perdido"));
+        Usuario autor = new Usuario();
+        autor.setId(idAutor);
+        Reporte reporte = new Reporte(id, "Calle de prueba", animal, autor);
+        reporte.setLatitud(latitud);
+        reporte.setLongitud(longitud);
+        return reporte;
+    }
+}
@@ -6,10 +6,22 @@ DB_PASSWORD="root"
 DB_NAME="PetSafe"
 BACKUP_DIR="/git/Backups"
 BACKUP_FILE="petsafe_backup_$(date +%F).sql.gz"
+APP_DIR="/git/Programacion/petsafe-app-con-mapa"
+# Meses de auditoría archivados fuera de la base de datos (no se suben al repositorio)
+ARCHIVO_DIR="/srv/petsafe/archivo"
 
 # Crear directorio si no existe
 mkdir -p "$BACKUP_DIR"
 
+# Archivar y borrar los meses antiguos de la auditoría y los cambios antiguos del modo local
+# para que no crezca el volcado
+echo "Mantenimiento de la auditoría y del registro de cambios..."
+if ! mvn -q -B -f "$APP_DIR/pom.xml" -Pmantenimiento-auditoria verify \
+        -Dpetsafe.db.user="$DB_USER" -Dpetsafe.db.password="$DB_PASSWORD" \
+        -Dpetsafe.auditoria.archivo="$ARCHIVO_DIR"; then
+    echo "Aviso: el mantenimiento de la auditoría ha fallado; se hace el backup igualmente."
+fi
+
 # Exportar y comprimir la base de datos
 echo "Exportando base de datos..."
 MYSQL_PWD="$DB_PASSWORD" mariadb-dump -u "$DB_USER" "$DB_NAME" | gzip > "$BACKUP_DIR/$BACKUP_FILE"
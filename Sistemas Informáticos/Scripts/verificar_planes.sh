@@ -0,0 +1,45 @@
+#!/bin/bash
+# verificar_planes.sh
+# Comprueba los planes de las consultas de la aplicación (perfil verificar-planes de Maven) contra
+# una MariaDB desechable: la arranca con Docker, crea el esquema con "Base de Datos/petSafe.sql",
+# aplica las migraciones, la rellena con GeneradorDatos y la borra al terminar.
+# Uso: ./verificar_planes.sh [opciones de mvn]   (por ejemplo -Dpetsafe.planes.umbral=5000)
+
+set -euo pipefail
+
+# Configuración
+PUERTO=3307                       # Puerto local, para no chocar con la MariaDB del docker-compose
+IMAGEN="mariadb:10.11"
+CONTENEDOR="petsafe-planes-$$"
+RAIZ="$(cd "$(dirname "$0")/../.." && pwd)"
+PROYECTO="$RAIZ/Programacion/petsafe-app-con-mapa"
+
+# Borra el contenedor al salir, también si algo falla
+trap 'docker rm -f "$CONTENEDOR" >/dev/null 2>&1 || true' EXIT
+
+echo "Arrancando $IMAGEN en el puerto $PUERTO..."
+docker run -d --name "$CONTENEDOR" \
+    -e MARIADB_ROOT_PASSWORD=root \
+    -p "$PUERTO:3306" \
+    -v "$RAIZ/Base de Datos/petSafe.sql:/docker-entrypoint-initdb.d/petSafe.sql:ro" \
+    "$IMAGEN" --lower-case-table-names=1 >/dev/null
+
+# El servidor acepta conexiones cuando ha terminado de cargar el esquema
+echo "Esperando a que cargue el esquema..."
+for _ in $(seq 1 120); do
+    if docker exec "$CONTENEDOR" mariadb -uroot -proot -e "SELECT 1 FROM petsafe.usuario LIMIT 1" >/dev/null 2>&1; then
+        break
+    fi
+    sleep 1
+done
+docker exec "$CONTENEDOR" mariadb -uroot -proot -e "SELECT 1 FROM petsafe.usuario LIMIT 1" >/dev/null
+
+cd "$PROYECTO"
+mvn -B -Pverificar-planes verify \
+    -Dpetsafe.planes.generar=true \
+    -Dpetsafe.db.url="jdbc:mysql://localhost:$PUERTO/petsafe" \
+    -Dpetsafe.db.user=root \
+    -Dpetsafe.db.password=root \
+    "$@"
+
+echo "Informe: $PROYECTO/target/planes-consultas.txt"